@@ -167,6 +167,8 @@ public class ASLocale {
     public String islandhelpLevelPlayer;
     // /island top;
     public String islandhelpTop;
+    // /island rank [page]
+    public String islandhelpRank;
     // /island warps;
     public String islandhelpWarps;
     // /island warp <player>
@@ -270,6 +272,7 @@ public class ASLocale {
     public String adminHelppurge;
     public String adminHelppurgeAllowDisallow;
     public String adminHelppurgeUnowned;
+    public String adminHelppurgeStatusStop;
     // /acid info <player>;
     public String adminHelpinfo;
     public String adminHelpclearReset;
@@ -291,6 +294,10 @@ public class ASLocale {
     public String purgepurgeCancelled;
     public String purgefinished;
     public String purgeremovingName;
+    public String purgeStatus;
+    public String purgeNotRunning;
+    public String purgeDeleting;
+    public String purgeStopped;
     public String adminHelppurgeholes;
     public String adminAllowPurge;
     public String adminPreventPurge;
@@ -303,6 +310,7 @@ public class ASLocale {
     public String registererrorBedrockNotFound;
     // info
     public String adminInfoislandLocation;
+    public String adminInfoerrorNotListed;
     public String adminInfoerrorNullTeamLeader;
     public String adminInfoerrorTeamMembersExist;
     public String adminHelpinfoIsland;
@@ -551,7 +559,19 @@ public class ASLocale {
     public String adminHelpAddRange;
     public String errorBlockedByAPI;
     public String adminHelpcobbleStats;
+    public String adminHelpEntityIndex;
+    public String adminHelpLevelQueue;
+    public String adminHelpPlayerCache;
+    public String adminEntityIndexRebuilt;
+    public String adminEntityIndexOk;
+    public String adminEntityIndexMismatch;
+    public String adminHelpExportIslands;
+    public String adminExportIslandsDone;
+    public String adminExportIslandsError;
     public String topTenerrorExcluded;
+    public String rankHeader;
+    public String rankYourRank;
+    public String rankNotRanked;
     public String leaveWarning;
     public String leaveCanceled;
     public String unlimited;
@@ -939,6 +959,12 @@ public class ASLocale {
                         locale.getString("topTen.errorNotReady", "Top ten list not generated yet!"));
         topTenerrorExcluded = ChatColor.translateAlternateColorCodes('&',
                 locale.getString("topTen.errorExcluded", "FYI: You are excluded from the top ten as you do not have [perm]"));
+        rankHeader = ChatColor.translateAlternateColorCodes('&',
+                locale.getString("rank.header", "Island ranking - page [page] of [total]:"));
+        rankYourRank = ChatColor.translateAlternateColorCodes('&',
+                locale.getString("rank.yourRank", "Your island is ranked #[rank] of [total]"));
+        rankNotRanked = ChatColor.translateAlternateColorCodes('&',
+                locale.getString("rank.notRanked", "Your island is not ranked yet. Calculate your island level first."));
         levelislandLevel = ChatColor.translateAlternateColorCodes('&', locale.getString("level.islandLevel", "Island level"));
         levelerrornotYourIsland = ChatColor.translateAlternateColorCodes('&',
                 locale.getString("level.errornotYourIsland", "Only the island owner can do that."));
@@ -1080,6 +1106,8 @@ public class ASLocale {
         islandhelpLevelPlayer = ChatColor.translateAlternateColorCodes('&',
                 locale.getString("island.helpLevelPlayer", "see another player's island level."));
         islandhelpTop = ChatColor.translateAlternateColorCodes('&', locale.getString("island.helpTop", "see the top ranked islands."));
+        islandhelpRank = ChatColor.translateAlternateColorCodes('&',
+                locale.getString("island.helpRank", "see your island's rank or a page of the island ranking."));
         islandhelpValue =
                 ChatColor.translateAlternateColorCodes('&',
                         locale.getString("island.helpValue", "see island level value of block in hand"));
@@ -1258,6 +1286,8 @@ public class ASLocale {
                 locale.getString("adminHelp.purgeallowdisallow", "allow/disallow island to be purged if it meets purge criteria"));
         adminHelppurgeUnowned = ChatColor.translateAlternateColorCodes('&',
                 locale.getString("adminHelp.purgeunowned", "remove unowned islands"));
+        adminHelppurgeStatusStop = ChatColor.translateAlternateColorCodes('&',
+                locale.getString("adminHelp.purgestatusstop", "show how far the purge has got, or stop it"));
         adminHelppurgeholes = ChatColor.translateAlternateColorCodes('&',
                 locale.getString("adminHelp.purgeholes", "free up island holes for reuse"));
         adminHelpinfo = ChatColor.translateAlternateColorCodes('&',
@@ -1334,6 +1364,14 @@ public class ASLocale {
                 locale.getString("purge.finished", "Finished purging of inactive islands."));
         purgeremovingName = ChatColor.translateAlternateColorCodes('&',
                 locale.getString("purge.removingName", "Purge: Removing [name]'s island"));
+        purgeStatus = ChatColor.translateAlternateColorCodes('&',
+                locale.getString("purge.status",
+                        "Purged [done] of [total] islands ([removed] removed). [rate] islands per minute. Time left: [time]"));
+        purgeNotRunning = ChatColor.translateAlternateColorCodes('&', locale.getString("purge.notRunning", "No purge is running"));
+        purgeDeleting = ChatColor.translateAlternateColorCodes('&',
+                locale.getString("purge.deleting", "Deleting [islands] islands: [chunks] chunks waiting, [rate] chunks per second"));
+        purgeStopped = ChatColor.translateAlternateColorCodes('&',
+                locale.getString("purge.stopped", "Purge stopped. [number] islands were not purged."));
         purgeRemovingAt = ChatColor.translateAlternateColorCodes('&',
                 locale.getString("purge.removingAt", "Removing island at location [location]"));
         purgeNowWaiting = ChatColor.translateAlternateColorCodes('&', locale.getString("purge.nowWaiting", "Now waiting..."));
@@ -1365,6 +1403,8 @@ public class ASLocale {
                 locale.getString("adminInfo.errorNullTeamLeader", "Team leader should be null!"));
         adminInfoerrorTeamMembersExist = ChatColor.translateAlternateColorCodes('&',
                 locale.getString("adminInfo.errorTeamMembersExist", "Player has team members, but shouldn't!"));
+        adminInfoerrorNotListed = ChatColor.translateAlternateColorCodes('&',
+                locale.getString("adminInfo.errorNotListed", "[name] says they are in this team, but the leader does not list them!"));
         resetChallengessuccess = ChatColor.translateAlternateColorCodes('&',
                 locale.getString("resetallchallenges.success", "[name] has had all challenges reset."));
         checkTeamcheckingTeam = ChatColor.translateAlternateColorCodes('&',
@@ -1386,6 +1426,8 @@ public class ASLocale {
                 locale.getString("adminInfo.islandLocation", "Island Location"));
         adminInfoerrorTeamMembersExist = ChatColor.translateAlternateColorCodes('&',
                 locale.getString("adminInfo.errorTeamMembersExist", "Player has team members, but shouldn't!"));
+        adminInfoerrorNotListed = ChatColor.translateAlternateColorCodes('&',
+                locale.getString("adminInfo.errorNotListed", "[name] says they are in this team, but the leader does not list them!"));
         resetChallengessuccess = ChatColor.translateAlternateColorCodes('&',
                 locale.getString("resetallchallenges.success", "[name] has had all challenges reset."));
         checkTeamcheckingTeam = ChatColor.translateAlternateColorCodes('&',
@@ -1548,6 +1590,24 @@ public class ASLocale {
                         locale.getString("adminTopBreeders.checking", "Checking [number] islands..."));
         adminTopBreedersNothing = ChatColor.translateAlternateColorCodes('&',
                 locale.getString("adminTopBreeders.nothing", "No creatures found."));
+        adminHelpEntityIndex = ChatColor.translateAlternateColorCodes('&',
+                locale.getString("adminHelp.entityindex", "rebuilds or verifies the island entity counts used by the limits"));
+        adminHelpLevelQueue = ChatColor.translateAlternateColorCodes('&',
+                locale.getString("adminHelp.levelqueue", "shows the island level chunk queue and wait times"));
+        adminHelpPlayerCache = ChatColor.translateAlternateColorCodes('&',
+                locale.getString("adminHelp.playercache", "shows the player data cache size, hits, misses and load times"));
+        adminEntityIndexRebuilt = ChatColor.translateAlternateColorCodes('&',
+                locale.getString("adminEntityIndex.rebuilt", "Entity index rebuilt. [number] entities indexed."));
+        adminEntityIndexOk = ChatColor.translateAlternateColorCodes('&',
+                locale.getString("adminEntityIndex.ok", "Entity index matches the loaded worlds. [number] entities indexed."));
+        adminEntityIndexMismatch = ChatColor.translateAlternateColorCodes('&',
+                locale.getString("adminEntityIndex.mismatch", "Entity index has [number] mismatches. Use rebuild to fix them."));
+        adminHelpExportIslands = ChatColor.translateAlternateColorCodes('&',
+                locale.getString("adminHelp.exportislands", "writes all islands to islands.yml"));
+        adminExportIslandsDone = ChatColor.translateAlternateColorCodes('&',
+                locale.getString("adminExportIslands.done", "Islands exported to islands.yml."));
+        adminExportIslandsError = ChatColor.translateAlternateColorCodes('&',
+                locale.getString("adminExportIslands.error", "Could not export the islands. See the console for details."));
         adminDeleteIslandError = ChatColor.translateAlternateColorCodes('&',
                 locale.getString("adminDeleteIsland.error", "Use &ldeleteisland confirm &r&cto delete the island you are on."));
         adminDeleteIslandnoid = ChatColor.translateAlternateColorCodes('&',
@@ -16,6 +16,7 @@ import com.wasteofplastic.askyblock.listeners.IslandGuard;
 import com.wasteofplastic.askyblock.listeners.IslandGuard1_9;
 import com.wasteofplastic.askyblock.listeners.JoinLeaveEvents;
 import com.wasteofplastic.askyblock.listeners.LavaCheck;
+import com.wasteofplastic.askyblock.listeners.LevelTracker;
 import com.wasteofplastic.askyblock.listeners.NetherPortals;
 import com.wasteofplastic.askyblock.listeners.NetherSpawning;
 import com.wasteofplastic.askyblock.listeners.PlayerEvents;
@@ -27,6 +28,7 @@ import com.wasteofplastic.askyblock.panels.ControlPanel;
 import com.wasteofplastic.askyblock.panels.SchematicsPanel;
 import com.wasteofplastic.askyblock.panels.SettingsPanel;
 import com.wasteofplastic.askyblock.panels.WarpPanel;
+import com.wasteofplastic.askyblock.schematics.SchematicPaster;
 import com.wasteofplastic.askyblock.util.VaultHelper;
 
 import org.bukkit.Bukkit;
@@ -44,6 +46,7 @@ import org.bukkit.plugin.java.JavaPlugin;
 import org.bukkit.potion.PotionEffect;
 
 import java.io.File;
+import java.io.IOException;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.UUID;
@@ -62,6 +65,13 @@ public final class ASkyBlock extends JavaPlugin {
     private File playersFolder;
     private Challenges challenges;
     private PlayerCache players;
+    private PlayerStore playerStore;
+    private PlayerSaveQueue playerSaveQueue;
+    private Leaderboard leaderboard;
+    private IslandPurge islandPurge;
+    private IslandPool islandPool;
+    private SchematicPaster schematicPaster;
+    private IslandDeleter islandDeleter;
     private WarpSigns warpSignsListener;
     private LavaCheck lavaListener;
     private BiomesPanel biomes;
@@ -70,6 +80,9 @@ public final class ASkyBlock extends JavaPlugin {
     private TinyDB tinyDB;
     private WarpPanel warpPanel;
     private TopTen topTen;
+    private EntityIndex entityIndex;
+    private TileEntityCounter tileEntityCounter;
+    private ChunkSnapshotQueue chunkSnapshotQueue;
     private Messages messages;
     private ChatListener chatListener;
     private SchematicsPanel schematicsPanel;
@@ -182,12 +195,37 @@ public final class ASkyBlock extends JavaPlugin {
     @Override
     public void onDisable() {
         try {
+            if (islandPurge != null) {
+                islandPurge.close();
+            }
+            if (islandPool != null) {
+                islandPool.close();
+            }
+            if (schematicPaster != null) {
+                schematicPaster.drain();
+            }
+            if (islandDeleter != null) {
+                islandDeleter.drain();
+            }
             if (players != null) {
                 players.removeAllPlayers();
             }
+            if (playerSaveQueue != null) {
+                playerSaveQueue.drain();
+            }
+            if (leaderboard != null) {
+                leaderboard.close();
+            }
+            if (playerStore != null) {
+                playerStore.close();
+            }
+            if (chunkSnapshotQueue != null) {
+                chunkSnapshotQueue.shutdown();
+            }
             if (grid != null) {
                 // Save grid synchronously
                 grid.saveGrid(false);
+                grid.closeStore();
             }
             // Save the warps and do not reload the panel
             if (warpSignsListener != null) {
@@ -199,7 +237,7 @@ public final class ASkyBlock extends JavaPlugin {
             TopTen.topTenSave();
             // Close the name database
             if (tinyDB != null) {
-                tinyDB.saveDB();
+                tinyDB.close();
             }
             // Save the coops
             CoopPlay.getInstance().saveCoops();
@@ -270,10 +308,18 @@ public final class ASkyBlock extends JavaPlugin {
         if (!playersFolder.exists()) {
             playersFolder.mkdir();
         }
+        playerStore = openPlayerStore();
+        playerSaveQueue = new PlayerSaveQueue(this, playerStore);
         if (DEBUG) {
             Bukkit.getLogger().info("DEBUG: Setting up player cache");
         }
         players = new PlayerCache(this);
+        leaderboard = new Leaderboard(this);
+        leaderboard.load();
+        getServer().getPluginManager().registerEvents(leaderboard, this);
+        islandPurge = new IslandPurge(this);
+        schematicPaster = new SchematicPaster(this);
+        islandDeleter = new IslandDeleter(this);
         // Set up commands for this plugin
         islandCmd = new IslandCmd(this);
         if (Settings.GAMETYPE.equals(Settings.GameType.ASKYBLOCK)) {
@@ -356,6 +402,15 @@ public final class ASkyBlock extends JavaPlugin {
                     tinyDB = new TinyDB(this);
                 }
 
+                if (chunkSnapshotQueue == null) {
+                    chunkSnapshotQueue = new ChunkSnapshotQueue(this);
+                }
+                // Carry on with a purge that was running when the server stopped
+                islandPurge.resume();
+                // Islands pasted ahead of time for new players
+                islandPool = new IslandPool(this);
+                islandPool.load();
+
                 getWarpSignsListener().loadWarpList();
                 if (Settings.useWarpPanel) {
                     warpPanel = new WarpPanel(ASkyBlock.this);
@@ -432,6 +487,14 @@ public final class ASkyBlock extends JavaPlugin {
         manager.registerEvents(new IslandGuard(this), this);
         // Island Entity Limits
         manager.registerEvents(new EntityLimits(this), this);
+        // Island entity counts used by the limits
+        entityIndex = new EntityIndex(this);
+        entityIndex.rebuild();
+        manager.registerEvents(entityIndex, this);
+        tileEntityCounter = new TileEntityCounter(this);
+        manager.registerEvents(tileEntityCounter, this);
+        // Incremental island levels
+        manager.registerEvents(new LevelTracker(this), this);
         // Player events
         playerEvents = new PlayerEvents(this);
         manager.registerEvents(playerEvents, this);
@@ -493,6 +556,27 @@ public final class ASkyBlock extends JavaPlugin {
         return warpSignsListener;
     }
 
+    /**
+     * @return the chunk snapshot queue used by level calculations
+     */
+    public ChunkSnapshotQueue getChunkSnapshotQueue() {
+        return chunkSnapshotQueue;
+    }
+
+    /**
+     * @return the entity index
+     */
+    public EntityIndex getEntityIndex() {
+        return entityIndex;
+    }
+
+    /**
+     * @return the tile entity counter
+     */
+    public TileEntityCounter getTileEntityCounter() {
+        return tileEntityCounter;
+    }
+
     /**
      * @return the grid
      */
@@ -518,6 +602,7 @@ public final class ASkyBlock extends JavaPlugin {
         getWarpSignsListener().removeWarp(player);
         Island island = grid.getIsland(player);
         if (island != null) {
+            island.setLevelTally(null);
             if (removeBlocks) {
                 grid.removePlayersFromIsland(island, player);
                 new DeleteIslandChunk(this, island);
@@ -559,6 +644,109 @@ public final class ASkyBlock extends JavaPlugin {
         return playersFolder;
     }
 
+    /**
+     * @return where player files are kept
+     */
+    public PlayerStore getPlayerStore() {
+        return playerStore;
+    }
+
+    /**
+     * Opens the player store chosen in the config. If the store has been changed, the players
+     * are moved from the old store to the new one.
+     *
+     * @return player store
+     */
+    private PlayerStore openPlayerStore() {
+        YamlPlayerStore folder = new YamlPlayerStore(playersFolder);
+        File databaseFile = new File(getDataFolder(), "players.db");
+        File indexFile = new File(getDataFolder(), "players.idx");
+        if (Settings.playerDatabase) {
+            try {
+                if (!databaseFile.exists()) {
+                    // Move the players into a temporary database so that a failed move is started again next time
+                    File tempFile = new File(getDataFolder(), "players.db.tmp");
+                    File tempIndexFile = new File(getDataFolder(), "players.idx.tmp");
+                    tempFile.delete();
+                    tempIndexFile.delete();
+                    getLogger().info("Moving players into players.db...");
+                    PlayerDatabase temp = new PlayerDatabase(tempFile, tempIndexFile);
+                    temp.open();
+                    int count = PlayerStoreMigrator.migrate(folder, temp);
+                    temp.close();
+                    if (!tempFile.renameTo(databaseFile) || !tempIndexFile.renameTo(indexFile)) {
+                        throw new IOException("Could not rename " + tempFile.getName());
+                    }
+                    getLogger().info("Moved " + count + " players into players.db. The player files in the players folder are no longer used.");
+                }
+                PlayerDatabase database = new PlayerDatabase(databaseFile, indexFile);
+                database.open();
+                return database;
+            } catch (IOException e) {
+                getLogger().severe("Could not open players.db! Using the players folder. " + e.getMessage());
+            }
+        } else if (databaseFile.exists()) {
+            // The database has been turned off, so move the players back into the players folder
+            try {
+                getLogger().info("Moving players from players.db into the players folder...");
+                PlayerDatabase database = new PlayerDatabase(databaseFile, indexFile);
+                database.open();
+                int count = PlayerStoreMigrator.migrate(database, folder);
+                database.close();
+                File old = new File(getDataFolder(), "players.db.old");
+                old.delete();
+                databaseFile.renameTo(old);
+                indexFile.delete();
+                getLogger().info("Moved " + count + " players. players.db has been renamed players.db.old");
+            } catch (IOException e) {
+                getLogger().severe("Could not move players from players.db! " + e.getMessage());
+            }
+        }
+        return folder;
+    }
+
+    /**
+     * @return the queue that writes player files in the background
+     */
+    public PlayerSaveQueue getPlayerSaveQueue() {
+        return playerSaveQueue;
+    }
+
+    /**
+     * @return the island leaderboard
+     */
+    public Leaderboard getLeaderboard() {
+        return leaderboard;
+    }
+
+    /**
+     * @return the purge of abandoned islands
+     */
+    public IslandPurge getIslandPurge() {
+        return islandPurge;
+    }
+
+    /**
+     * @return the islands pasted ahead of time, or null if the grid has not loaded yet
+     */
+    public IslandPool getIslandPool() {
+        return islandPool;
+    }
+
+    /**
+     * @return the schematic paster
+     */
+    public SchematicPaster getSchematicPaster() {
+        return schematicPaster;
+    }
+
+    /**
+     * @return the queue of island chunks being deleted
+     */
+    public IslandDeleter getIslandDeleter() {
+        return islandDeleter;
+    }
+
     /**
      * @return the newIsland
      */
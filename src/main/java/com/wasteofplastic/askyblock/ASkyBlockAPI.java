@@ -447,6 +447,59 @@ public class ASkyBlockAPI {
         return new HashMap<UUID, Long>(TopTen.getTopTenList());
     }
 
+    /**
+     * Gets the rank of the player's island among all islands. Team members get the rank of their team's island.
+     * Islands with the same level have the same rank.
+     *
+     * @param playerUUID
+     * @return rank, 1 being the highest, or 0 if the island is not ranked
+     */
+    public int getIslandRank(UUID playerUUID) {
+        return plugin.getLeaderboard().getRank(getRankedOwner(playerUUID));
+    }
+
+    /**
+     * @return number of ranked islands
+     */
+    public int getLeaderboardSize() {
+        return plugin.getLeaderboard().size();
+    }
+
+    /**
+     * Gets a page of the island ranking
+     *
+     * @param page - page number, starting at 1
+     * @param pageSize - islands on each page
+     * @return island owner and level, highest first
+     */
+    public Map<UUID, Long> getLeaderboardPage(int page, int pageSize) {
+        return plugin.getLeaderboard().getPage(page, pageSize);
+    }
+
+    /**
+     * Gets the islands ranked near the player's island
+     *
+     * @param playerUUID
+     * @param range - number of islands above and below the player's island
+     * @return island owner and level, highest first. Empty if the island is not ranked.
+     */
+    public Map<UUID, Long> getLeaderboardAround(UUID playerUUID, int range) {
+        return plugin.getLeaderboard().getAround(getRankedOwner(playerUUID), range);
+    }
+
+    /**
+     * @return the team leader if the player is in a team, otherwise the player
+     */
+    private UUID getRankedOwner(UUID playerUUID) {
+        if (plugin.getPlayers().inTeam(playerUUID)) {
+            UUID leader = plugin.getPlayers().getTeamLeader(playerUUID);
+            if (leader != null) {
+                return leader;
+            }
+        }
+        return playerUUID;
+    }
+
     /**
      * Obtains a copy of the island object owned by playerUUID
      *
@@ -0,0 +1,163 @@
+package com.wasteofplastic.askyblock;
+
+import org.bukkit.material.MaterialData;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Compiled form of the block values and limits in blockvalues.yml. Every block type id and data
+ * value is resolved once, when the config loads, to a value and an optional limit slot so that the
+ * level calculation does not have to create objects or do map lookups for every block.
+ * Blocks are looked up by key, which is (typeId << 4) | data.
+ *
+ * @author tastybento
+ */
+public class BlockValueTable {
+
+    /**
+     * Value of a key that is not in blockvalues.yml
+     */
+    public static final int NOT_COUNTED = Integer.MIN_VALUE;
+    /**
+     * Limit slot of a key that has no limit
+     */
+    public static final int NO_LIMIT = -1;
+    /**
+     * Number of keys - 4096 block ids each with 16 data values
+     */
+    public static final int SIZE = 4096 << 4;
+
+    private final int[] values = new int[SIZE];
+    private final int[] limitSlots = new int[SIZE];
+    private final int[] limits;
+    private final int signature;
+
+    /**
+     * Compiles the block values and limits. Lookups follow the same order as the level calculation always has:
+     * a limited specific block, a limited generic block, a specific block and then a generic block.
+     *
+     * @param blockValues - values by material data
+     * @param blockLimits - limits by material data
+     */
+    @SuppressWarnings("deprecation")
+    public BlockValueTable(Map<MaterialData, Integer> blockValues, Map<MaterialData, Integer> blockLimits) {
+        Map<Integer, Integer> valueByKey = new HashMap<>();
+        for (Map.Entry<MaterialData, Integer> en : blockValues.entrySet()) {
+            int key = getKey(en.getKey());
+            if (key >= 0) {
+                valueByKey.put(key, en.getValue());
+            }
+        }
+        Map<Integer, Integer> slotByKey = new HashMap<>();
+        int[] limitList = new int[blockLimits.size()];
+        for (Map.Entry<MaterialData, Integer> en : blockLimits.entrySet()) {
+            int key = getKey(en.getKey());
+            if (key >= 0 && !slotByKey.containsKey(key)) {
+                limitList[slotByKey.size()] = en.getValue();
+                slotByKey.put(key, slotByKey.size());
+            }
+        }
+        limits = Arrays.copyOf(limitList, slotByKey.size());
+        for (int key = 0; key < SIZE; key++) {
+            int generic = key & ~0xF;
+            values[key] = NOT_COUNTED;
+            limitSlots[key] = NO_LIMIT;
+            if (slotByKey.containsKey(key) && valueByKey.containsKey(key)) {
+                values[key] = valueByKey.get(key);
+                limitSlots[key] = slotByKey.get(key);
+            } else if (slotByKey.containsKey(generic) && valueByKey.containsKey(generic)) {
+                values[key] = valueByKey.get(generic);
+                limitSlots[key] = slotByKey.get(generic);
+            } else if (valueByKey.containsKey(key)) {
+                values[key] = valueByKey.get(key);
+            } else if (valueByKey.containsKey(generic)) {
+                values[key] = valueByKey.get(generic);
+            }
+        }
+        signature = 31 * (31 * Arrays.hashCode(values) + Arrays.hashCode(limitSlots)) + Arrays.hashCode(limits);
+    }
+
+    /**
+     * @param typeId - block type id
+     * @param data - block data
+     * @return the key used to look up this block
+     */
+    public static int getKey(int typeId, int data) {
+        return ((typeId & 0xFFF) << 4) | (data & 0xF);
+    }
+
+    @SuppressWarnings("deprecation")
+    private static int getKey(MaterialData materialData) {
+        if (materialData.getItemTypeId() < 0 || materialData.getItemTypeId() >= 4096
+                || materialData.getData() < 0 || materialData.getData() > 15) {
+            return -1;
+        }
+        return getKey(materialData.getItemTypeId(), materialData.getData());
+    }
+
+    /**
+     * @param key - block key
+     * @return the material data for this key, e.g., for reports
+     */
+    @SuppressWarnings("deprecation")
+    public static MaterialData getMaterialData(int key) {
+        return new MaterialData(key >> 4, (byte) (key & 0xF));
+    }
+
+    /**
+     * Values by key. The array is shared and must not be changed.
+     *
+     * @return the value for each key, or NOT_COUNTED
+     */
+    public int[] getValues() {
+        return values;
+    }
+
+    /**
+     * Limit slots by key. The array is shared and must not be changed.
+     *
+     * @return the slot in the limit counter for each key, or NO_LIMIT
+     */
+    public int[] getLimitSlots() {
+        return limitSlots;
+    }
+
+    /**
+     * @param key - block key
+     * @return the value of the block, or NOT_COUNTED
+     */
+    public int getValue(int key) {
+        return values[key];
+    }
+
+    /**
+     * @param slot - limit slot
+     * @return the maximum number of blocks in this slot that can be counted
+     */
+    public int getLimit(int slot) {
+        return limits[slot];
+    }
+
+    /**
+     * @return the number of limit slots
+     */
+    public int getLimitCount() {
+        return limits.length;
+    }
+
+    /**
+     * @return a hash of the compiled values and limits. If it changes, anything counted with the old table is stale.
+     */
+    public int getSignature() {
+        return signature;
+    }
+
+    /**
+     * @return a fresh counter of how many more of each limited block can be counted
+     */
+    public int[] newLimitCounter() {
+        return limits.clone();
+    }
+}
@@ -0,0 +1,199 @@
+package com.wasteofplastic.askyblock;
+
+import org.bukkit.Chunk;
+import org.bukkit.ChunkSnapshot;
+import org.bukkit.World;
+import org.bukkit.scheduler.BukkitRunnable;
+import org.bukkit.scheduler.BukkitTask;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * Takes chunk snapshots of islands for level calculations a few chunks at a time so that many
+ * requests at once do not make the server lag. At most Settings.levelChunksPerTick chunks are
+ * captured each tick across all requests, oldest request first. Requests for an island that is
+ * already queued share the same snapshots.
+ *
+ * @author tastybento
+ */
+public class ChunkSnapshotQueue {
+
+    private static final boolean DEBUG = false;
+    private final ASkyBlock plugin;
+    // Pending requests by world and island, in the order they were made
+    private final Map<String, Request> requests = new LinkedHashMap<>();
+    private BukkitTask task;
+    // Stats
+    private long captured;
+    private long completed;
+    private long totalWait;
+    private long maxWait;
+    private long lastWait;
+
+    private class Request {
+        private final World world;
+        private final List<int[]> chunks = new ArrayList<>();
+        private final Set<ChunkSnapshot> snapshots = new HashSet<>();
+        private final List<Consumer<Set<ChunkSnapshot>>> callbacks = new ArrayList<>();
+        private final long queued = System.currentTimeMillis();
+
+        private Request(World world, Island island) {
+            this.world = world;
+            int maxX = island.getMinProtectedX() + island.getProtectionSize() - 1;
+            int maxZ = island.getMinProtectedZ() + island.getProtectionSize() - 1;
+            for (int x = island.getMinProtectedX() >> 4; x <= maxX >> 4; x++) {
+                for (int z = island.getMinProtectedZ() >> 4; z <= maxZ >> 4; z++) {
+                    chunks.add(new int[]{x, z});
+                }
+            }
+        }
+    }
+
+    public ChunkSnapshotQueue(ASkyBlock plugin) {
+        this.plugin = plugin;
+    }
+
+    /**
+     * Queues the island's chunks to be snapshot. The callback is run on the main thread once all the
+     * chunks have been captured.
+     *
+     * @param island
+     * @param world - the world to take the chunks from
+     * @param callback - receives the snapshots. The set must not be changed because it may be shared.
+     */
+    public void request(Island island, World world, Consumer<Set<ChunkSnapshot>> callback) {
+        String key = world.getName() + ":" + island.getMinProtectedX() + ":" + island.getMinProtectedZ() + ":" + island.getProtectionSize();
+        Request request = requests.get(key);
+        if (request == null) {
+            request = new Request(world, island);
+            requests.put(key, request);
+        } else if (DEBUG) {
+            plugin.getLogger().info("DEBUG: sharing chunk snapshots with queued request " + key);
+        }
+        request.callbacks.add(callback);
+        if (task == null) {
+            task = new BukkitRunnable() {
+
+                @Override
+                public void run() {
+                    tick();
+                }
+            }.runTaskTimer(plugin, 0L, 1L);
+        }
+    }
+
+    /**
+     * Captures up to the per tick limit of chunks and hands finished requests to their callbacks
+     */
+    private void tick() {
+        int budget = Math.max(1, Settings.levelChunksPerTick);
+        Iterator<Request> it = requests.values().iterator();
+        while (it.hasNext() && budget > 0) {
+            Request request = it.next();
+            while (!request.chunks.isEmpty() && budget > 0) {
+                int[] coords = request.chunks.remove(request.chunks.size() - 1);
+                request.snapshots.add(snapshot(request.world, coords[0], coords[1]));
+                captured++;
+                budget--;
+            }
+            if (request.chunks.isEmpty()) {
+                it.remove();
+                lastWait = System.currentTimeMillis() - request.queued;
+                maxWait = Math.max(maxWait, lastWait);
+                totalWait += lastWait;
+                completed++;
+                Set<ChunkSnapshot> snapshots = Collections.unmodifiableSet(request.snapshots);
+                for (Consumer<Set<ChunkSnapshot>> callback : request.callbacks) {
+                    callback.accept(snapshots);
+                }
+            }
+        }
+        if (requests.isEmpty()) {
+            task.cancel();
+            task = null;
+        }
+    }
+
+    private ChunkSnapshot snapshot(World world, int x, int z) {
+        if (world.isChunkLoaded(x, z)) {
+            return world.getChunkAt(x, z).getChunkSnapshot();
+        }
+        Chunk chunk = world.getChunkAt(x, z);
+        chunk.load();
+        ChunkSnapshot snapshot = chunk.getChunkSnapshot();
+        chunk.unload();
+        return snapshot;
+    }
+
+    /**
+     * Stops capturing and drops any pending requests
+     */
+    public void shutdown() {
+        if (task != null) {
+            task.cancel();
+            task = null;
+        }
+        requests.clear();
+    }
+
+    /**
+     * @return number of requests waiting for snapshots
+     */
+    public int getQueuedRequests() {
+        return requests.size();
+    }
+
+    /**
+     * @return number of chunks waiting to be captured
+     */
+    public int getQueuedChunks() {
+        int result = 0;
+        for (Request request : requests.values()) {
+            result += request.chunks.size();
+        }
+        return result;
+    }
+
+    /**
+     * @return total number of chunks captured
+     */
+    public long getCaptured() {
+        return captured;
+    }
+
+    /**
+     * @return total number of requests completed
+     */
+    public long getCompleted() {
+        return completed;
+    }
+
+    /**
+     * @return wait of the last completed request in milliseconds
+     */
+    public long getLastWait() {
+        return lastWait;
+    }
+
+    /**
+     * @return longest wait of any completed request in milliseconds
+     */
+    public long getMaxWait() {
+        return maxWait;
+    }
+
+    /**
+     * @return average wait of completed requests in milliseconds
+     */
+    public long getAverageWait() {
+        return completed == 0 ? 0 : totalWait / completed;
+    }
+}
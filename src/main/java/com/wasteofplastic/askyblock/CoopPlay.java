@@ -14,13 +14,14 @@ import org.bukkit.entity.Player;
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 import java.util.UUID;
-import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * Handles coop play interactions
@@ -31,7 +32,10 @@ public class CoopPlay {
 
     private static CoopPlay instance = new CoopPlay(ASkyBlock.getPlugin());
     private static File coops;
+    // Coop player -> island center -> player who made them coop
     private Map<UUID, Map<Location, UUID>> coopPlayers = new HashMap<>();
+    // Island center -> coop players, the reverse of coopPlayers
+    private Map<Location, Set<UUID>> islandCoops = new HashMap<>();
     private ASkyBlock plugin;
 
     private CoopPlay(ASkyBlock plugin) {
@@ -93,13 +97,7 @@ public class CoopPlay {
             return false;
         }
 
-        if (!coopPlayers.containsKey(newPlayer.getUniqueId())) {
-            coopPlayers.get(newPlayer.getUniqueId()).put(coopIsland.getCenter(), requester.getUniqueId());
-        } else {
-            coopPlayers.put(newPlayer.getUniqueId(), new HashMap<Location, UUID>() {{
-                put(coopIsland.getCenter(), requester.getUniqueId());
-            }});
-        }
+        addCoop(newPlayer.getUniqueId(), coopIsland.getCenter(), requester.getUniqueId());
         return true;
     }
 
@@ -120,7 +118,7 @@ public class CoopPlay {
                 final CoopLeaveEvent event = new CoopLeaveEvent(targetPlayerUUID, requester.getUniqueId(), coopIsland);
                 Bukkit.getPluginManager().callEvent(event);
                 if (!event.isCancelled()) {
-                    removed = coopPlayers.get(targetPlayerUUID).remove(coopIsland.getCenter()) != null;
+                    removed = removeCoop(targetPlayerUUID, coopIsland.getCenter()) != null;
                 }
             }
         }
@@ -143,11 +141,10 @@ public class CoopPlay {
      */
     public List<UUID> getCoopPlayers(Location islandLoc) {
         Island coopIsland = plugin.getGrid().getIslandAt(islandLoc);
-        List<UUID> result = new ArrayList<>();
-        if (coopIsland != null) {
-            coopPlayers.keySet().stream().filter(uuid -> coopPlayers.get(uuid).containsKey(coopIsland.getCenter())).forEach(result::add);
+        if (coopIsland == null) {
+            return new ArrayList<>();
         }
-        return result;
+        return new ArrayList<>(islandCoops.getOrDefault(coopIsland.getCenter(), Collections.emptySet()));
     }
 
     /**
@@ -158,11 +155,7 @@ public class CoopPlay {
         if (island == null) {
             return;
         }
-
-        coopPlayers.values().forEach(coopPlayer -> {
-            coopPlayer.values().forEach(uuid -> Bukkit.getPluginManager().callEvent(new CoopLeaveEvent(player, uuid, island)));
-            coopPlayer.remove(island.getCenter());
-        });
+        clearIsland(island);
     }
 
     /**
@@ -170,25 +163,84 @@ public class CoopPlay {
      * Used when player logs out.
      */
     public void clearMyCoops(Player player) {
-        Island coopIsland = plugin.getGrid().getIsland(player.getUniqueId());
-        if (coopPlayers.get(player.getUniqueId()) != null) {
-            final AtomicBoolean notCancelled = new AtomicBoolean(false);
-            final Map<Location, UUID> map = coopPlayers.get(player.getUniqueId());
+        Map<Location, UUID> map = coopPlayers.get(player.getUniqueId());
+        if (map == null) {
+            return;
+        }
+        // Copy because removing the last coop removes the map
+        for (Map.Entry<Location, UUID> entry : new ArrayList<>(map.entrySet())) {
+            final CoopLeaveEvent event = new CoopLeaveEvent(player.getUniqueId(), entry.getValue(), plugin.getGrid().getIslandAt(entry.getKey()));
+            Bukkit.getPluginManager().callEvent(event);
+            if (!event.isCancelled()) {
+                removeCoop(player.getUniqueId(), entry.getKey());
+            }
+        }
+    }
 
-            map.values().forEach(uuid -> {
-                final CoopLeaveEvent event = new CoopLeaveEvent(player.getUniqueId(), uuid, coopIsland);
-                Bukkit.getPluginManager().callEvent(event);
-                if (!event.isCancelled()) {
-                    map.entrySet().removeIf(entry -> uuid.equals(entry.getValue()));
-                } else {
-                    notCancelled.set(true);
-                }
-            });
+    /**
+     * Makes a player coop on an island. Keeps both indexes in step.
+     *
+     * @param player - coop player
+     * @param center - center of the island
+     * @param inviter - player who made them coop
+     */
+    private void addCoop(UUID player, Location center, UUID inviter) {
+        coopPlayers.computeIfAbsent(player, k -> new HashMap<>()).put(center, inviter);
+        islandCoops.computeIfAbsent(center, k -> new HashSet<>()).add(player);
+        membersChanged(center);
+    }
 
-            if (notCancelled.get()) {
-                coopPlayers.remove(player.getUniqueId());
+    /**
+     * Marks the member set of the island at this center as stale
+     *
+     * @param center - center of the island
+     */
+    private void membersChanged(Location center) {
+        Island island = plugin.getGrid() == null ? null : plugin.getGrid().getIslandAt(center);
+        if (island != null) {
+            island.membersChanged();
+        }
+    }
+
+    /**
+     * Removes a player's coop from an island. Keeps both indexes in step.
+     *
+     * @param player - coop player
+     * @param center - center of the island
+     * @return the player who made them coop, or null if they were not coop there
+     */
+    private UUID removeCoop(UUID player, Location center) {
+        UUID inviter = null;
+        Map<Location, UUID> map = coopPlayers.get(player);
+        if (map != null) {
+            inviter = map.remove(center);
+            if (map.isEmpty()) {
+                coopPlayers.remove(player);
             }
         }
+        Set<UUID> coopSet = islandCoops.get(center);
+        if (coopSet != null) {
+            coopSet.remove(player);
+            if (coopSet.isEmpty()) {
+                islandCoops.remove(center);
+            }
+        }
+        membersChanged(center);
+        return inviter;
+    }
+
+    /**
+     * Removes every coop player from an island. These leave events cannot be cancelled.
+     */
+    private void clearIsland(Island island) {
+        Set<UUID> coopSet = islandCoops.get(island.getCenter());
+        if (coopSet == null) {
+            return;
+        }
+        for (UUID uuid : new ArrayList<>(coopSet)) {
+            UUID inviter = removeCoop(uuid, island.getCenter());
+            Bukkit.getPluginManager().callEvent(new CoopLeaveEvent(uuid, inviter, island));
+        }
     }
 
     public void saveCoops() {
@@ -233,14 +285,12 @@ public class CoopPlay {
      * Sets a player's coops from string. Used when loading a player.
      */
     private void setMyCoops(UUID uuid, List<String> coops) {
-        Map<Location, UUID> temp = new HashMap<>();
         coops.stream().map(s -> s.split("\\|")).filter(strings -> strings.length == 2).forEach(strings -> {
             Island coopIsland = plugin.getGrid().getIslandAt(Util.getLocationString(strings[0]));
             if (coopIsland != null) {
-                temp.put(coopIsland.getCenter(), UUID.fromString(strings[1]));
+                addCoop(uuid, coopIsland.getCenter(), UUID.fromString(strings[1]));
             }
         });
-        coopPlayers.put(uuid, temp);
     }
 
     /**
@@ -280,10 +330,7 @@ public class CoopPlay {
             return;
         }
 
-        coopPlayers.values().forEach(map -> {
-            Bukkit.getPluginManager().callEvent(new CoopLeaveEvent(map.get(island), coopIsland.getOwner(), coopIsland));
-            map.remove(island);
-        });
+        clearIsland(coopIsland);
     }
 
 }
\ No newline at end of file
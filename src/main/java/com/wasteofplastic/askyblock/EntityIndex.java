@@ -0,0 +1,383 @@
+package com.wasteofplastic.askyblock;
+
+import com.wasteofplastic.askyblock.util.Util;
+
+import org.bukkit.Chunk;
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.entity.Animals;
+import org.bukkit.entity.Entity;
+import org.bukkit.entity.EntityType;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.entity.CreatureSpawnEvent;
+import org.bukkit.event.entity.EntityDeathEvent;
+import org.bukkit.event.vehicle.VehicleCreateEvent;
+import org.bukkit.event.vehicle.VehicleDestroyEvent;
+import org.bukkit.event.world.ChunkLoadEvent;
+import org.bukkit.event.world.ChunkUnloadEvent;
+import org.bukkit.metadata.MetadataValue;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Live index of the entities that belong to each island, split by world and entity type.
+ * An entity belongs to the island it was tagged with (spawnLoc meta data) or, if it was
+ * never tagged, the island it was found on. The index is kept up to date from spawn,
+ * death and chunk load/unload events. Only entities that are counted are kept: types with
+ * an entity limit, animals and villagers. Entities that vanish without an event, e.g., by
+ * despawning, are pruned when a count reaches a limit and every minute.
+ *
+ * @author tastybento
+ */
+public class EntityIndex implements Listener {
+
+    private static final boolean DEBUG = false;
+    private static final String SPAWN_LOC = "spawnLoc";
+    // Ticks between prunes of the whole index
+    private static final long PRUNE_PERIOD = 1200L;
+    private static final Set<EntityType> ANIMAL_TYPES = EnumSet.noneOf(EntityType.class);
+
+    static {
+        for (EntityType type : EntityType.values()) {
+            if (type == EntityType.SQUID || (type.getEntityClass() != null && Animals.class.isAssignableFrom(type.getEntityClass()))) {
+                ANIMAL_TYPES.add(type);
+            }
+        }
+    }
+
+    private final ASkyBlock plugin;
+    // Island -> entity type -> entities, one map per world
+    private final Map<World, Map<Island, Map<EntityType, Set<Entity>>>> index = new HashMap<>();
+    // Reverse lookup so that removal is O(1)
+    private final Map<Entity, Island> owners = new HashMap<>();
+
+    public EntityIndex(ASkyBlock plugin) {
+        this.plugin = plugin;
+        plugin.getServer().getScheduler().runTaskTimer(plugin, this::pruneAll, PRUNE_PERIOD, PRUNE_PERIOD);
+    }
+
+    /**
+     * @return true if this entity is something the limits count
+     */
+    private static boolean isTracked(Entity entity) {
+        EntityType type = entity.getType();
+        return ANIMAL_TYPES.contains(type) || type == EntityType.VILLAGER || Settings.entityLimits.containsKey(type);
+    }
+
+    /**
+     * Counts how many entities of a type belong to an island in a world
+     *
+     * @param limit - if the count reaches this limit, stale entries are pruned and the count is done again. Use 0 for no pruning.
+     * @return number of entities
+     */
+    public int count(Island island, World world, EntityType type, int limit) {
+        Map<EntityType, Set<Entity>> types = getTypes(island, world, false);
+        if (types == null) {
+            return 0;
+        }
+        Set<Entity> entities = types.get(type);
+        if (entities == null) {
+            return 0;
+        }
+        if (limit > 0 && entities.size() >= limit) {
+            prune(entities);
+        }
+        return entities.size();
+    }
+
+    /**
+     * Counts the animals (including squid) on an island in the overworld and the island nether
+     *
+     * @param limit - if the count reaches this limit, stale entries are pruned and the count is done again. Use 0 for no pruning.
+     * @return number of animals
+     */
+    public int countAnimals(Island island, int limit) {
+        int result = countAnimals(island, ASkyBlock.getIslandWorld());
+        if (Settings.createNether && Settings.newNether && ASkyBlock.getNetherWorld() != null) {
+            result += countAnimals(island, ASkyBlock.getNetherWorld());
+        }
+        if (limit > 0 && result >= limit) {
+            pruneIsland(island);
+            return countAnimals(island, 0);
+        }
+        return result;
+    }
+
+    private int countAnimals(Island island, World world) {
+        Map<EntityType, Set<Entity>> types = getTypes(island, world, false);
+        if (types == null) {
+            return 0;
+        }
+        int result = 0;
+        for (Map.Entry<EntityType, Set<Entity>> en : types.entrySet()) {
+            if (ANIMAL_TYPES.contains(en.getKey())) {
+                result += en.getValue().size();
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Adds an entity to an island. If the entity is already known it is moved.
+     */
+    public void add(Entity entity, Island island) {
+        if (island == null || !isTracked(entity)) {
+            return;
+        }
+        Island previous = owners.put(entity, island);
+        if (previous != null) {
+            Map<EntityType, Set<Entity>> types = getTypes(previous, entity.getWorld(), false);
+            if (types != null && types.containsKey(entity.getType())) {
+                types.get(entity.getType()).remove(entity);
+            }
+        }
+        getTypes(island, entity.getWorld(), true).computeIfAbsent(entity.getType(), k -> new HashSet<>()).add(entity);
+    }
+
+    /**
+     * Removes an entity from the index
+     */
+    public void remove(Entity entity) {
+        Island island = owners.remove(entity);
+        if (island == null) {
+            return;
+        }
+        Map<EntityType, Set<Entity>> types = getTypes(island, entity.getWorld(), false);
+        if (types != null && types.containsKey(entity.getType())) {
+            types.get(entity.getType()).remove(entity);
+        }
+    }
+
+    /**
+     * Removes everything known about an island, e.g., when it is deleted
+     */
+    public void removeIsland(Island island) {
+        for (Map<Island, Map<EntityType, Set<Entity>>> islands : index.values()) {
+            Map<EntityType, Set<Entity>> types = islands.remove(island);
+            if (types != null) {
+                types.values().forEach(entities -> entities.forEach(owners::remove));
+            }
+        }
+    }
+
+    /**
+     * Clears the index and scans every loaded chunk in the island worlds
+     *
+     * @return the number of entities indexed
+     */
+    public int rebuild() {
+        index.clear();
+        owners.clear();
+        for (World world : getWorlds()) {
+            for (Chunk chunk : world.getLoadedChunks()) {
+                addChunk(chunk);
+            }
+        }
+        return owners.size();
+    }
+
+    /**
+     * Compares the index against a real scan of the loaded island worlds
+     *
+     * @return a list of mismatches, empty if the index is correct
+     */
+    public List<String> verify() {
+        List<String> result = new ArrayList<>();
+        Map<World, Map<Island, Map<EntityType, Integer>>> scan = new HashMap<>();
+        for (World world : getWorlds()) {
+            Map<Island, Map<EntityType, Integer>> islands = new HashMap<>();
+            for (Entity entity : world.getEntities()) {
+                if (!isTracked(entity)) {
+                    continue;
+                }
+                Island island = getOwner(entity);
+                if (island != null) {
+                    islands.computeIfAbsent(island, k -> new EnumMap<>(EntityType.class)).merge(entity.getType(), 1, Integer::sum);
+                }
+            }
+            scan.put(world, islands);
+        }
+        // Prune everything so that the comparison is against live entities only
+        for (Map<Island, Map<EntityType, Set<Entity>>> islands : index.values()) {
+            for (Map<EntityType, Set<Entity>> types : islands.values()) {
+                types.values().forEach(this::prune);
+            }
+        }
+        Set<World> worlds = new HashSet<>(scan.keySet());
+        worlds.addAll(index.keySet());
+        for (World world : worlds) {
+            Map<Island, Map<EntityType, Integer>> scanned = scan.getOrDefault(world, new HashMap<>());
+            Map<Island, Map<EntityType, Set<Entity>>> indexed = index.getOrDefault(world, new HashMap<>());
+            Set<Island> islands = new HashSet<>(scanned.keySet());
+            islands.addAll(indexed.keySet());
+            for (Island island : islands) {
+                Map<EntityType, Integer> scannedTypes = scanned.getOrDefault(island, new EnumMap<>(EntityType.class));
+                Map<EntityType, Set<Entity>> indexedTypes = indexed.getOrDefault(island, new HashMap<>());
+                Set<EntityType> types = EnumSet.noneOf(EntityType.class);
+                types.addAll(scannedTypes.keySet());
+                types.addAll(indexedTypes.keySet());
+                for (EntityType type : types) {
+                    int real = scannedTypes.getOrDefault(type, 0);
+                    int count = indexedTypes.containsKey(type) ? indexedTypes.get(type).size() : 0;
+                    if (real != count) {
+                        result.add(world.getName() + " " + island.getCenter().getBlockX() + "," + island.getCenter().getBlockZ() + " "
+                                + Util.prettifyText(type.toString()) + ": index = " + count + ", actual = " + real);
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return the number of entities in the index
+     */
+    public int size() {
+        return owners.size();
+    }
+
+    /**
+     * Tracks entities once they have actually spawned
+     */
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onCreatureSpawn(final CreatureSpawnEvent e) {
+        if (inWorld(e.getEntity().getWorld())) {
+            add(e.getEntity(), getOwner(e.getEntity()));
+        }
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onVehicleCreate(final VehicleCreateEvent e) {
+        if (inWorld(e.getVehicle().getWorld())) {
+            add(e.getVehicle(), getOwner(e.getVehicle()));
+        }
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onEntityDeath(final EntityDeathEvent e) {
+        remove(e.getEntity());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onVehicleDestroy(final VehicleDestroyEvent e) {
+        remove(e.getVehicle());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onChunkLoad(final ChunkLoadEvent e) {
+        if (plugin.getGrid() != null && inWorld(e.getWorld())) {
+            addChunk(e.getChunk());
+        }
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onChunkUnload(final ChunkUnloadEvent e) {
+        if (inWorld(e.getWorld())) {
+            for (Entity entity : e.getChunk().getEntities()) {
+                remove(entity);
+            }
+        }
+    }
+
+    private void addChunk(Chunk chunk) {
+        for (Entity entity : chunk.getEntities()) {
+            if (isTracked(entity)) {
+                add(entity, getOwner(entity));
+            }
+        }
+    }
+
+    /**
+     * Finds the island that an entity belongs to. Tagged entities belong to the island they were tagged with,
+     * others belong to the island they are on.
+     */
+    private Island getOwner(Entity entity) {
+        if (entity.hasMetadata(SPAWN_LOC)) {
+            for (MetadataValue v : entity.getMetadata(SPAWN_LOC)) {
+                // There is a chance another plugin also uses the meta data spawnLoc
+                if (v.getOwningPlugin().equals(plugin)) {
+                    Location spawnLoc = Util.getLocationString(v.asString());
+                    if (spawnLoc != null) {
+                        return plugin.getGrid().getIslandAt(spawnLoc);
+                    }
+                }
+            }
+        }
+        return plugin.getGrid().getIslandAt(entity.getLocation());
+    }
+
+    private Map<EntityType, Set<Entity>> getTypes(Island island, World world, boolean create) {
+        if (create) {
+            return index.computeIfAbsent(world, k -> new HashMap<>()).computeIfAbsent(island, k -> new EnumMap<>(EntityType.class));
+        }
+        Map<Island, Map<EntityType, Set<Entity>>> islands = index.get(world);
+        return islands == null ? null : islands.get(island);
+    }
+
+    /**
+     * Removes entities that have died, despawned or been removed without an event
+     */
+    private void prune(Set<Entity> entities) {
+        entities.removeIf(entity -> {
+            if (!entity.isValid()) {
+                owners.remove(entity);
+                if (DEBUG) {
+                    plugin.getLogger().info("DEBUG: pruned " + entity.getType());
+                }
+                return true;
+            }
+            return false;
+        });
+    }
+
+    /**
+     * Prunes every island and drops islands and types with nothing left
+     */
+    private void pruneAll() {
+        int before = owners.size();
+        for (Map<Island, Map<EntityType, Set<Entity>>> islands : index.values()) {
+            islands.values().removeIf(types -> {
+                types.values().removeIf(entities -> {
+                    prune(entities);
+                    return entities.isEmpty();
+                });
+                return types.isEmpty();
+            });
+        }
+        if (DEBUG) {
+            plugin.getLogger().info("DEBUG: pruned " + (before - owners.size()) + " entities, " + owners.size() + " left");
+        }
+    }
+
+    private void pruneIsland(Island island) {
+        for (Map<Island, Map<EntityType, Set<Entity>>> islands : index.values()) {
+            Map<EntityType, Set<Entity>> types = islands.get(island);
+            if (types != null) {
+                types.values().forEach(this::prune);
+            }
+        }
+    }
+
+    private boolean inWorld(World world) {
+        return world.equals(ASkyBlock.getIslandWorld())
+                || (Settings.createNether && Settings.newNether && world.equals(ASkyBlock.getNetherWorld()));
+    }
+
+    private List<World> getWorlds() {
+        List<World> worlds = new ArrayList<>();
+        worlds.add(ASkyBlock.getIslandWorld());
+        if (Settings.createNether && Settings.newNether && ASkyBlock.getNetherWorld() != null) {
+            worlds.add(ASkyBlock.getNetherWorld());
+        }
+        return worlds;
+    }
+}
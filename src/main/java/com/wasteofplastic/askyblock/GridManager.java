@@ -32,15 +32,17 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Queue;
 import java.util.Set;
 import java.util.TreeMap;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedQueue;
 
 /**
  * This class manages the island islandGrid. It knows where every island is, and
  * where new
  * ones should go. It can handle any size of island or protection size
- * The islandGrid is stored in a YML file.
+ * The islandGrid is stored in a YML file or the binary island store.
  *
  * @author tastybento
  */
@@ -50,16 +52,45 @@ public class GridManager {
     private static final String SETTINGS_KEY = "settingskey";
     private static final String ISLANDS_FILENAME = "islands.yml";
     private static final String ISLANDNAMES_FILENAME = "islandnames.yml";
+    private static final String ISLANDSTORE_FILENAME = "islands.dat";
+    private static final String JOURNAL_FILENAME = "islands.journal";
     private ASkyBlock plugin;
     private TreeMap<Integer, TreeMap<Integer, Island>> islandGrid = new TreeMap<>();
+    // Direct lookup by grid cell for islands that sit on the island distance lattice
+    private final IslandCellMap islandCells = new IslandCellMap();
+    // Number of islands that are not on the lattice and can only be found in islandGrid
+    private int offLattice;
+    private final int cellSize = Settings.islandDistance;
+    private final int xOrigin = Settings.islandXOffset - Settings.islandDistance / 2;
+    private final int zOrigin = Settings.islandZOffset - Settings.islandDistance / 2;
     private Map<UUID, Island> ownershipMap = new HashMap<>();
     private Island spawn;
     private File islandNameFile;
     private YamlConfiguration islandNames = new YamlConfiguration();
+    // Binary island store, null if islands.yml is used
+    private IslandStore islandStore;
+    // Journal of changes on top of islands.yml, used if there is no binary store
+    private IslandJournal islandJournal;
+    // Islands taken out of the grid since the last save
+    private final List<Island> removedIslands = new ArrayList<>();
+    // Saves waiting to be written, in the order they were made
+    private final Queue<Runnable> pendingWrites = new ConcurrentLinkedQueue<>();
+    // Gives out spots for new islands
+    private final IslandAllocator allocator;
 
     public GridManager(ASkyBlock plugin) {
         this.plugin = plugin;
         loadGrid();
+        allocator = new IslandAllocator(plugin, this);
+        int count = 0;
+        int extent = 0;
+        for (TreeMap<Integer, Island> integerIslandTreeMap : islandGrid.values()) {
+            for (Island island : integerIslandTreeMap.values()) {
+                count++;
+                extent = Math.max(extent, Math.max(Math.abs(island.getCenter().getBlockX()), Math.abs(island.getCenter().getBlockZ())));
+            }
+        }
+        allocator.load(count, extent);
     }
 
     /**
@@ -120,6 +151,8 @@ public class GridManager {
     private void loadGrid() {
         plugin.getLogger().info("Loading island grid...");
         islandGrid.clear();
+        islandCells.clear();
+        offLattice = 0;
         islandNameFile = new File(plugin.getDataFolder(), ISLANDNAMES_FILENAME);
         if (!islandNameFile.exists()) {
             try {
@@ -136,8 +169,38 @@ public class GridManager {
         }
 
         File islandFile = new File(plugin.getDataFolder(), ISLANDS_FILENAME);
+        File storeFile = new File(plugin.getDataFolder(), ISLANDSTORE_FILENAME);
+        boolean importYml = false;
+        if (Settings.binaryIslands) {
+            islandStore = new IslandStore(storeFile);
+            importYml = !storeFile.exists();
+            try {
+                islandStore.open();
+            } catch (IOException e) {
+                plugin.getLogger().severe("Could not open " + ISLANDSTORE_FILENAME + "! " + e.getMessage() + " Using " + ISLANDS_FILENAME + " instead.");
+                islandStore = null;
+            }
+        }
+        if (islandStore != null && !importYml) {
+            plugin.getLogger().info("Loading " + ISLANDSTORE_FILENAME);
+            List<String> settingsKey = islandStore.getSettingsKey();
+            if (!islandStore.getSpawnLocation().isEmpty()) {
+                loadSpawn(islandStore.getSpawnLocation(), islandStore.getSpawnPoint(), islandStore.getSpawnRange(),
+                        islandStore.getSpawnSettings(), settingsKey);
+            }
+            int count = islandStore.load(serial -> loadIsland(serial, settingsKey));
+            plugin.getLogger().info("Loaded " + count + " islands");
+            markClean(settingsKey);
+            return;
+        }
+        File journalFile = new File(plugin.getDataFolder(), JOURNAL_FILENAME);
+        if (islandStore == null) {
+            islandJournal = new IslandJournal(islandFile, journalFile, SETTINGS_KEY);
+        }
         if (!islandFile.exists()) {
             plugin.getLogger().info(ISLANDS_FILENAME + " does not exist. Creating...");
+            // Any journal left over belongs to an islands.yml that is no longer there
+            journalFile.delete();
             convert();
             plugin.getLogger().info(ISLANDS_FILENAME + " created.");
         } else {
@@ -150,38 +213,19 @@ public class GridManager {
                     List<String> settingsKey = islandYaml.getStringList(SETTINGS_KEY);
 
                     if (islandYaml.contains("spawn")) {
-                        Location spawnLoc = Util.getLocationString(islandYaml.getString("spawn.location"));
-
-                        if (spawnLoc != null && spawnLoc.getWorld() != null && spawnLoc.getWorld().equals(ASkyBlock.getIslandWorld())) {
-                            Location spawnPoint = Util.getLocationString(islandYaml.getString("spawn.spawnpoint"));
-
-                            int range = islandYaml.getInt("spawn.range", Settings.islandProtectionRange);
-                            if (range < 0) {
-                                range = Settings.islandProtectionRange;
-                            }
-
-                            String spawnSettings = islandYaml.getString("spawn.settings");
-                            Island newSpawn = new Island(plugin, spawnLoc.getBlockX(), spawnLoc.getBlockZ());
-                            newSpawn.setSpawn(true);
-                            if (spawnPoint != null) {
-                                newSpawn.setSpawnPoint(spawnPoint);
-                            }
-
-                            newSpawn.setProtectionSize(range);
-                            newSpawn.setSettings(spawnSettings, settingsKey);
-                            spawn = newSpawn;
-                        }
+                        loadSpawn(islandYaml.getString("spawn.location"), islandYaml.getString("spawn.spawnpoint"),
+                                islandYaml.getInt("spawn.range", Settings.islandProtectionRange), islandYaml.getString("spawn.settings"), settingsKey);
                     }
 
                     islandList = islandYaml.getStringList(Settings.worldName);
+                    // Apply any changes saved since islands.yml was last written
+                    IslandJournal journal = islandJournal != null ? islandJournal : new IslandJournal(islandFile, journalFile, SETTINGS_KEY);
+                    islandList = journal.load(islandList, settingsKey, IslandJournal.getSpawn(spawn));
                     for (String island : islandList) {
-                        Island newIsland = addIsland(island, settingsKey);
-                        if (newIsland.getOwner() != null) {
-                            ownershipMap.put(newIsland.getOwner(), newIsland);
-                        }
-                        if (newIsland.isSpawn()) {
-                            spawn = newIsland;
-                        }
+                        loadIsland(island, settingsKey);
+                    }
+                    if (islandStore == null) {
+                        markClean(settingsKey);
                     }
                 } else {
                     plugin.getLogger().severe("Could not find any islands for this world. World name in config.yml is probably wrong.");
@@ -194,6 +238,62 @@ public class GridManager {
                 plugin.getLogger().severe("Could not load " + ISLANDS_FILENAME);
             }
         }
+        if (islandStore != null) {
+            // First time with the binary store, so copy everything over
+            saveGrid(false);
+            journalFile.delete();
+            plugin.getLogger().info("Imported " + ISLANDS_FILENAME + " into " + ISLANDSTORE_FILENAME);
+        }
+    }
+
+    /**
+     * Marks every island as saved if they were loaded with the current settings key.
+     * Otherwise they stay dirty so that the next save writes them with the current key.
+     */
+    private void markClean(List<String> settingsKey) {
+        if (!settingsKey.equals(getSettingsKey())) {
+            return;
+        }
+        for (TreeMap<Integer, Island> integerIslandTreeMap : islandGrid.values()) {
+            for (Island island : integerIslandTreeMap.values()) {
+                island.setDirty(false);
+            }
+        }
+    }
+
+    /**
+     * Sets up the spawn island from its saved details
+     */
+    private void loadSpawn(String location, String point, int range, String settings, List<String> settingsKey) {
+        Location spawnLoc = Util.getLocationString(location);
+        if (spawnLoc != null && spawnLoc.getWorld() != null && spawnLoc.getWorld().equals(ASkyBlock.getIslandWorld())) {
+            Location spawnPoint = Util.getLocationString(point);
+            if (range < 0) {
+                range = Settings.islandProtectionRange;
+            }
+            Island newSpawn = new Island(plugin, spawnLoc.getBlockX(), spawnLoc.getBlockZ());
+            newSpawn.setSpawn(true);
+            if (spawnPoint != null) {
+                newSpawn.setSpawnPoint(spawnPoint);
+            }
+            newSpawn.setProtectionSize(range);
+            newSpawn.setSettings(settings, settingsKey);
+            spawn = newSpawn;
+        }
+    }
+
+    /**
+     * Adds a saved island to the grid
+     */
+    private Island loadIsland(String serial, List<String> settingsKey) {
+        Island newIsland = addIsland(serial, settingsKey);
+        if (newIsland.getOwner() != null) {
+            ownershipMap.put(newIsland.getOwner(), newIsland);
+        }
+        if (newIsland.isSpawn()) {
+            spawn = newIsland;
+        }
+        return newIsland;
     }
 
     /**
@@ -426,16 +526,101 @@ public class GridManager {
 
     /**
      * Saves the grid. Option to save sync or async.
-     * Async cannot be used when disabling the plugin
+     * Async cannot be used when disabling the plugin.
+     * Only islands that have changed since the last save are serialized. The writing is done off the main
+     * thread, either to the binary store or to the islands.yml journal. A sync save also compacts the journal.
      */
     public void saveGrid(boolean async) {
-        final File islandFile = new File(plugin.getDataFolder(), ISLANDS_FILENAME);
-        final YamlConfiguration islandYaml = new YamlConfiguration();
+        final List<String> settingsKey = getSettingsKey();
+        final String spawnData = IslandJournal.getSpawn(getSpawn());
+        final String spawnLocation = getSpawn() == null ? "" : Util.getStringLocation(getSpawn().getCenter());
+        final String spawnPoint = getSpawn() == null ? "" : Util.getStringLocation(getSpawn().getSpawnPoint());
+        final int spawnRange = getSpawn() == null ? 0 : getSpawn().getProtectionSize();
+        final String spawnSettings = getSpawn() == null ? "" : getSpawn().getSettings();
+        final List<Island> changed = new ArrayList<>();
+        final List<String> serials = new ArrayList<>();
+        final List<Island> removed = new ArrayList<>(removedIslands);
+        removedIslands.clear();
+        for (TreeMap<Integer, Island> integerIslandTreeMap : islandGrid.values()) {
+            for (Island island : integerIslandTreeMap.values()) {
+                if (island.isDirty()) {
+                    island.setDirty(false);
+                    if (island.isSpawn()) {
+                        // Spawn is saved separately
+                        removed.add(island);
+                    } else {
+                        changed.add(island);
+                        serials.add(island.save());
+                    }
+                }
+            }
+        }
+        final List<String> removedKeys = new ArrayList<>();
+        for (Island island : removed) {
+            removedKeys.add(IslandJournal.getKey(island));
+        }
+        final IslandStore store = islandStore;
+        final IslandJournal journal = islandJournal;
+        pendingWrites.add(() -> {
+            try {
+                if (store != null) {
+                    store.setHeader(settingsKey, spawnLocation, spawnPoint, spawnRange, spawnSettings);
+                    store.update(changed, serials, removed);
+                } else {
+                    journal.write(serials, removedKeys, settingsKey, spawnData, !async);
+                }
+            } catch (IOException e) {
+                plugin.getLogger().severe("Could not save " + (store != null ? ISLANDSTORE_FILENAME : ISLANDS_FILENAME) + "! " + e.getMessage());
+                // Try again next time
+                for (Island island : changed) {
+                    island.setDirty(true);
+                }
+            }
+        });
+        if (async) {
+            Bukkit.getScheduler().runTaskAsynchronously(plugin, this::flushWrites);
+        } else {
+            flushWrites();
+        }
+        // Save any island names
+        if (islandNames != null) {
+            try {
+                islandNames.save(islandNameFile);
+            } catch (IOException e) {
+                plugin.getLogger().severe("Could not save islandnames.yml! " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Runs any waiting writes in the order they were made
+     */
+    private void flushWrites() {
+        synchronized (pendingWrites) {
+            Runnable write;
+            while ((write = pendingWrites.poll()) != null) {
+                write.run();
+            }
+        }
+    }
 
+    /**
+     * @return the names of the island settings flags, in the order they are saved
+     */
+    private List<String> getSettingsKey() {
         List<String> islandSettings = new ArrayList<>();
         for (SettingsFlag flag : SettingsFlag.values()) {
             islandSettings.add(flag.toString());
         }
+        return islandSettings;
+    }
+
+    /**
+     * @return the grid in the islands.yml format
+     */
+    private YamlConfiguration toYaml() {
+        final YamlConfiguration islandYaml = new YamlConfiguration();
+        islandYaml.set(SETTINGS_KEY, getSettingsKey());
 
         if (getSpawn() != null) {
             islandYaml.set("spawn.location", Util.getStringLocation(getSpawn().getCenter()));
@@ -454,29 +639,36 @@ public class GridManager {
         }
 
         islandYaml.set(Settings.worldName, islandList);
-        if (async) {
-            Bukkit.getScheduler().runTaskAsynchronously(plugin, () -> {
-                try {
-                    islandYaml.save(islandFile);
-                } catch (Exception e) {
-                    plugin.getLogger().severe("Could not save " + ISLANDS_FILENAME + "!");
-                    //e.printStackTrace();
-                }
-            });
-        } else {
-            try {
-                islandYaml.save(islandFile);
-            } catch (Exception e) {
-                plugin.getLogger().severe("Could not save " + ISLANDS_FILENAME + "! " + e.getMessage());
+        return islandYaml;
+    }
+
+    /**
+     * Writes the whole grid to islands.yml, e.g., to go back from the binary store
+     *
+     * @return true if successful
+     */
+    public boolean exportGrid() {
+        YamlConfiguration islandYaml = toYaml();
+        flushWrites();
+        try {
+            synchronized (pendingWrites) {
+                islandYaml.save(new File(plugin.getDataFolder(), ISLANDS_FILENAME));
+                // The journal is now part of islands.yml
+                new File(plugin.getDataFolder(), JOURNAL_FILENAME).delete();
             }
+            return true;
+        } catch (IOException e) {
+            plugin.getLogger().severe("Could not save " + ISLANDS_FILENAME + "! " + e.getMessage());
+            return false;
         }
-        // Save any island names
-        if (islandNames != null) {
-            try {
-                islandNames.save(islandNameFile);
-            } catch (IOException e) {
-                plugin.getLogger().severe("Could not save islandnames.yml! " + e.getMessage());
-            }
+    }
+
+    /**
+     * Closes the binary island store, if it is used. Call after the final save.
+     */
+    public void closeStore() {
+        if (islandStore != null) {
+            islandStore.close();
         }
     }
 
@@ -533,19 +725,55 @@ public class GridManager {
      * @return PlayerIsland or null
      */
     public Island getIslandAt(int x, int z) {
+        Island island = islandCells.get(cellKey(x, z));
+        if (island != null && island.inIslandSpace(x, z)) {
+            return island;
+        }
+        if (offLattice == 0) {
+            return null;
+        }
+        // Legacy islands that are not on the lattice
         Entry<Integer, TreeMap<Integer, Island>> en = islandGrid.floorEntry(x);
         if (en != null) {
             Entry<Integer, Island> ent = en.getValue().floorEntry(z);
-            if (ent != null) {
-                Island island = ent.getValue();
-                if (island.inIslandSpace(x, z)) {
-                    return island;
-                }
+            if (ent != null && ent.getValue().inIslandSpace(x, z)) {
+                return ent.getValue();
             }
         }
         return null;
     }
 
+    /**
+     * @return the key of the lattice cell that contains x,z
+     */
+    private long cellKey(int x, int z) {
+        return IslandCellMap.key(Math.floorDiv(x - xOrigin, cellSize), Math.floorDiv(z - zOrigin, cellSize));
+    }
+
+    /**
+     * @return true if the island fills exactly one lattice cell
+     */
+    private boolean onLattice(Island island) {
+        return island.getIslandDistance() == cellSize && Math.floorMod(island.getMinX() - xOrigin, cellSize) == 0
+                && Math.floorMod(island.getMinZ() - zOrigin, cellSize) == 0;
+    }
+
+    private void addToCells(Island island) {
+        if (onLattice(island)) {
+            islandCells.put(cellKey(island.getMinX(), island.getMinZ()), island);
+        } else {
+            offLattice++;
+        }
+    }
+
+    private void removeFromCells(Island island) {
+        if (onLattice(island)) {
+            islandCells.remove(cellKey(island.getMinX(), island.getMinZ()));
+        } else {
+            offLattice--;
+        }
+    }
+
     // islandGrid manipulation methods
 
     /**
@@ -627,6 +855,15 @@ public class GridManager {
                     deletedIsland.setLocked(false);
                     zEntry.remove(z);
                     islandGrid.put(x, zEntry);
+                    removeFromCells(deletedIsland);
+                    removedIslands.add(deletedIsland);
+                    if (plugin.getEntityIndex() != null) {
+                        plugin.getEntityIndex().removeIsland(deletedIsland);
+                        plugin.getTileEntityCounter().removeIsland(deletedIsland);
+                    }
+                    if (onLattice(deletedIsland)) {
+                        allocator.release(deletedIsland.getCenter().getBlockX(), deletedIsland.getCenter().getBlockZ());
+                    }
                 }
             }
 
@@ -658,10 +895,7 @@ public class GridManager {
 
         final int px = loc.getBlockX(), pz = loc.getBlockZ();
 
-        Island spawn = getSpawn();
-        if (spawn != null && spawn.getProtectionSize() > spawn.getIslandDistance()
-                && (Math.abs(px - spawn.getCenter().getBlockX()) < ((spawn.getProtectionSize() + Settings.islandDistance) / 2)
-                && Math.abs(pz - spawn.getCenter().getBlockZ()) < ((spawn.getProtectionSize() + Settings.islandDistance) / 2))) {
+        if (nearSpawn(px, pz)) {
             return true;
         }
         if (!Settings.useOwnGenerator) {
@@ -687,6 +921,46 @@ public class GridManager {
         return false;
     }
 
+    /**
+     * @return true if an island centered at x,z would be inside a spawn protection range bigger than an island
+     */
+    boolean nearSpawn(int x, int z) {
+        return spawn != null && spawn.getProtectionSize() > spawn.getIslandDistance()
+                && Math.abs(x - spawn.getCenter().getBlockX()) < ((spawn.getProtectionSize() + Settings.islandDistance) / 2)
+                && Math.abs(z - spawn.getCenter().getBlockZ()) < ((spawn.getProtectionSize() + Settings.islandDistance) / 2);
+    }
+
+    /**
+     * Finds the spot for a new island. Spots of deleted islands are used first, then the next spot
+     * out on the spiral. Used for creating new islands ONLY
+     *
+     * @return the island center
+     */
+    public Location getNextIslandLocation() {
+        long spot = allocator.next();
+        return new Location(ASkyBlock.getIslandWorld(), IslandAllocator.getX(spot), Settings.islandHeight, IslandAllocator.getZ(spot));
+    }
+
+    /**
+     * Stops the island spot at this location being used for anyone else's new island
+     *
+     * @param location
+     */
+    public void reserveIslandLocation(Location location) {
+        Location spot = getClosestIsland(location);
+        allocator.reserve(spot.getBlockX(), spot.getBlockZ());
+    }
+
+    /**
+     * Lets the island spot at this location be used for new islands again
+     *
+     * @param location
+     */
+    public void unreserveIslandLocation(Location location) {
+        Location spot = getClosestIsland(location);
+        allocator.unreserve(spot.getBlockX(), spot.getBlockZ());
+    }
+
     /**
      * Adds an island to the islandGrid with the CENTER point x,z
      */
@@ -743,11 +1017,13 @@ public class GridManager {
             } else {
                 zEntry.put(newIsland.getMinZ(), newIsland);
                 islandGrid.put(newIsland.getMinX(), zEntry);
+                addToCells(newIsland);
             }
         } else {
             TreeMap<Integer, Island> zEntry = new TreeMap<>();
             zEntry.put(newIsland.getMinZ(), newIsland);
             islandGrid.put(newIsland.getMinX(), zEntry);
+            addToCells(newIsland);
         }
     }
 
@@ -979,7 +1255,7 @@ public class GridManager {
 
         Island island = getIslandAt(loc);
         if (island != null) {
-            return island.onIsland(loc) && island.getMembers().contains(player.getUniqueId());
+            return island.onIsland(loc) && island.getMemberSet().contains(player.getUniqueId());
         }
 
         Set<Location> islandTestLocations = new HashSet<>();
@@ -1108,6 +1384,7 @@ public class GridManager {
             }
 
             TopTen.remove(oldOwner);
+            plugin.getLeaderboard().remove(oldOwner);
             Bukkit.getPluginManager().callEvent(new IslandChangeOwnerEvent(island, oldOwner, newOwner));
             return true;
         }
@@ -1,22 +1,21 @@
 package com.wasteofplastic.askyblock;
 
-import com.google.common.collect.HashMultiset;
-import com.google.common.collect.Multiset;
 import com.wasteofplastic.askyblock.util.Util;
 
 import org.bukkit.Location;
 import org.bukkit.Material;
 import org.bukkit.World;
 import org.bukkit.block.Biome;
-import org.bukkit.block.BlockState;
-import org.bukkit.block.Hopper;
 import org.bukkit.entity.Entity;
 import org.bukkit.entity.Villager;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 import java.util.UUID;
 
 /**
@@ -48,9 +47,13 @@ public class Island implements Cloneable {
     private int votes;
     private int islandDistance;
     private boolean locked = false, isSpawn = false, purgeProtected;
-    private Multiset<Material> tileEntityCount = HashMultiset.create();
     private HashMap<SettingsFlag, Boolean> igs = new HashMap<>();
     private int levelHandicap;
+    private LevelTally levelTally;
+    // Cached members, null when they need to be worked out again
+    private Set<UUID> memberSet;
+    // True if the island has changed since it was last saved
+    private volatile boolean dirty = true;
 
     /**
      * New island by loading islands.yml
@@ -108,6 +111,15 @@ public class Island implements Cloneable {
                     levelHandicap = 0;
                 }
             }
+
+            // Get the running level tally
+            if (split.length > 11) {
+                StringBuilder tally = new StringBuilder(split[11]);
+                for (int i = 12; i < split.length; i++) {
+                    tally.append(":").append(split[i]);
+                }
+                levelTally = LevelTally.fromString(tally.toString());
+            }
         } catch (Exception e) {
             e.printStackTrace();
         }
@@ -181,6 +193,7 @@ public class Island implements Cloneable {
                 igs.put(flag, Settings.defaultIslandSettings.get(flag));
             }
         }
+        dirty = true;
     }
 
     /**
@@ -194,6 +207,7 @@ public class Island implements Cloneable {
                 igs.put(flag, Settings.defaultIslandSettings.get(flag));
             }
         }
+        dirty = true;
     }
 
     /**
@@ -201,6 +215,7 @@ public class Island implements Cloneable {
      */
     public void setIgsFlag(SettingsFlag flag, boolean value) {
         this.igs.put(flag, value);
+        dirty = true;
     }
 
     @Override
@@ -241,6 +256,7 @@ public class Island implements Cloneable {
      */
     public void setMinX(int minX) {
         this.minX = minX;
+        dirty = true;
     }
 
     /**
@@ -255,6 +271,7 @@ public class Island implements Cloneable {
      */
     public void setMinZ(int minZ) {
         this.minZ = minZ;
+        dirty = true;
     }
 
     /**
@@ -269,6 +286,7 @@ public class Island implements Cloneable {
      */
     public void setIslandDistance(int islandDistance) {
         this.islandDistance = islandDistance;
+        dirty = true;
     }
 
     /**
@@ -283,6 +301,7 @@ public class Island implements Cloneable {
      */
     public void setCenter(Location center) {
         this.center = center;
+        dirty = true;
     }
 
     /**
@@ -297,6 +316,8 @@ public class Island implements Cloneable {
      */
     public void setOwner(UUID owner) {
         this.owner = owner;
+        dirty = true;
+        membersChanged();
     }
 
     /**
@@ -311,6 +332,7 @@ public class Island implements Cloneable {
      */
     public void setCreatedDate(long createdDate) {
         this.createdDate = createdDate;
+        dirty = true;
     }
 
     /**
@@ -325,6 +347,7 @@ public class Island implements Cloneable {
      */
     public void setUpdatedDate(long updatedDate) {
         this.updatedDate = updatedDate;
+        dirty = true;
     }
 
     /**
@@ -339,6 +362,7 @@ public class Island implements Cloneable {
      */
     public void setPassword(String password) {
         this.password = password;
+        dirty = true;
     }
 
     /**
@@ -353,6 +377,7 @@ public class Island implements Cloneable {
      */
     public void setVotes(int votes) {
         this.votes = votes;
+        dirty = true;
     }
 
     /**
@@ -368,6 +393,7 @@ public class Island implements Cloneable {
     public void setLocked(boolean locked) {
         // Bukkit.getLogger().info("DEBUG: island is now " + locked);
         this.locked = locked;
+        dirty = true;
     }
 
     /**
@@ -395,7 +421,7 @@ public class Island implements Cloneable {
 
         return center.getBlockX() + ":" + center.getBlockY() + ":" + center.getBlockZ() + ":" + protectionRange + ":"
                 + islandDistance + ":" + ownerString + ":" + locked + ":" + purgeProtected + ":" + getSettings() + ":"
-                + getBiome().toString() + ":" + levelHandicap;
+                + getBiome().toString() + ":" + levelHandicap + (levelTally != null ? ":" + levelTally.toString() : "");
     }
 
     /**
@@ -433,6 +459,7 @@ public class Island implements Cloneable {
      */
     public void setBiome(Biome biome) {
         this.biome = biome;
+        dirty = true;
     }
 
     /**
@@ -454,19 +481,39 @@ public class Island implements Cloneable {
      * @return a list of UUIDs that have legitimate access to the island
      */
     public List<UUID> getMembers() {
-        // Add any coop members for this island
-        List<UUID> result = new ArrayList<>(
-                CoopPlay.getInstance().getCoopPlayers(center.toVector().toLocation(ASkyBlock.getIslandWorld())));
-        if (Settings.createNether && Settings.newNether && ASkyBlock.getNetherWorld() != null) {
-            result.addAll(CoopPlay.getInstance().getCoopPlayers(center.toVector().toLocation(ASkyBlock.getNetherWorld())));
-        }
-        if (owner == null) {
-            return result;
+        return new ArrayList<>(getMemberSet());
+    }
+
+    /**
+     * Provides all the players who are allowed on this island including coop members.
+     * The set is cached and only rebuilt after a team, coop or owner change, so it is
+     * cheap to use in protection checks.
+     *
+     * @return an unmodifiable set of UUIDs that have legitimate access to the island
+     */
+    public Set<UUID> getMemberSet() {
+        if (memberSet == null) {
+            // Add any coop members for this island
+            Set<UUID> result = new HashSet<>(
+                    CoopPlay.getInstance().getCoopPlayers(center.toVector().toLocation(ASkyBlock.getIslandWorld())));
+            if (Settings.createNether && Settings.newNether && ASkyBlock.getNetherWorld() != null) {
+                result.addAll(CoopPlay.getInstance().getCoopPlayers(center.toVector().toLocation(ASkyBlock.getNetherWorld())));
+            }
+            if (owner != null) {
+                result.add(owner);
+                // Add any team members
+                result.addAll(plugin.getPlayers().getMembers(owner));
+            }
+            memberSet = Collections.unmodifiableSet(result);
         }
-        result.add(owner);
-        // Add any team members
-        result.addAll(plugin.getPlayers().getMembers(owner));
-        return result;
+        return memberSet;
+    }
+
+    /**
+     * Marks the member set of this island as stale. Must be called whenever its team or coops change.
+     */
+    public void membersChanged() {
+        memberSet = null;
     }
 
     /**
@@ -481,6 +528,7 @@ public class Island implements Cloneable {
      */
     public void setSpawn(boolean isSpawn) {
         this.isSpawn = isSpawn;
+        dirty = true;
     }
 
     /**
@@ -495,6 +543,7 @@ public class Island implements Cloneable {
      */
     public void setPurgeProtected(boolean purgeProtected) {
         this.purgeProtected = purgeProtected;
+        dirty = true;
     }
 
     /**
@@ -554,68 +603,24 @@ public class Island implements Cloneable {
         this.protectionRange = protectionSize;
         this.minProtectedX = center.getBlockX() - protectionSize / 2;
         this.minProtectedZ = center.getBlockZ() - protectionSize / 2;
-
+        // The tally only covers the old protection area
+        this.levelTally = null;
+        dirty = true;
     }
 
     /**
      * @return number of hoppers on the island
      */
     public int getHopperCount() {
-        tileEntityCount.clear();
-        int result = 0;
-        for (int x = getMinProtectedX() / 16; x <= (getMinProtectedX() + getProtectionSize() - 1) / 16; x++) {
-            for (int z = getMinProtectedZ() / 16; z <= (getMinProtectedZ() + getProtectionSize() - 1) / 16; z++) {
-                for (BlockState holder : world.getChunkAt(x, z).getTileEntities()) {
-                    if (holder instanceof Hopper && onIsland(holder.getLocation())) {
-                        result++;
-                    }
-                }
-            }
-        }
-        return result;
+        return getTileEntityCount(Material.HOPPER, world);
     }
 
     /**
-     * @return count of how many tile entities of type mat are on the island at last count. Counts are done when a player places
-     * a tile entity.
+     * @return count of how many tile entities of type mat are on the island. Counts are kept up to date
+     * by the tile entity counter, so this is cheap to call when a player places a tile entity.
      */
     public int getTileEntityCount(Material material, World world) {
-        int result = 0;
-        for (int x = getMinProtectedX() / 16; x <= (getMinProtectedX() + getProtectionSize() - 1) / 16; x++) {
-            for (int z = getMinProtectedZ() / 16; z <= (getMinProtectedZ() + getProtectionSize() - 1) / 16; z++) {
-                for (BlockState holder : world.getChunkAt(x, z).getTileEntities()) {
-                    //plugin.getLogger().info("DEBUG: tile entity: " + holder.getType());
-                    if (onIsland(holder.getLocation())) {
-                        if (holder.getType() == material) {
-                            result++;
-                        } else if (material.equals(Material.REDSTONE_COMPARATOR_OFF)) {
-                            if (holder.getType().equals(Material.REDSTONE_COMPARATOR_ON)) {
-                                result++;
-                            }
-                        } else if (material.equals(Material.FURNACE)) {
-                            if (holder.getType().equals(Material.BURNING_FURNACE)) {
-                                result++;
-                            }
-                        } else if (material.toString().endsWith("BANNER")) {
-                            if (holder.getType().toString().endsWith("BANNER")) {
-                                result++;
-                            }
-                        } else if (material.equals(Material.WALL_SIGN) || material.equals(Material.SIGN_POST)) {
-                            if (holder.getType().equals(Material.WALL_SIGN) || holder.getType().equals(Material.SIGN_POST)) {
-                                result++;
-                            }
-                        }
-                    }
-                }
-                for (Entity holder : world.getChunkAt(x, z).getEntities()) {
-                    //plugin.getLogger().info("DEBUG: entity: " + holder.getType());
-                    if (holder.getType().toString().equals(material.toString()) && onIsland(holder.getLocation())) {
-                        result++;
-                    }
-                }
-            }
-        }
-        return result;
+        return plugin.getTileEntityCounter().getCount(this, world, material);
     }
 
     public Location getSpawnPoint() {
@@ -624,7 +629,7 @@ public class Island implements Cloneable {
 
     public void setSpawnPoint(Location location) {
         spawnPoint = location;
-
+        dirty = true;
     }
 
     /**
@@ -633,8 +638,8 @@ public class Island implements Cloneable {
     public void toggleIgs(SettingsFlag flag) {
         if (igs.containsKey(flag)) {
             igs.put(flag, !igs.get(flag));
+            dirty = true;
         }
-
     }
 
     /**
@@ -649,6 +654,36 @@ public class Island implements Cloneable {
      */
     public void setLevelHandicap(int levelHandicap) {
         this.levelHandicap = levelHandicap;
+        dirty = true;
+    }
+
+    /**
+     * @return the running block value tally, or null if the island needs a full level calculation
+     */
+    public LevelTally getLevelTally() {
+        return levelTally;
+    }
+
+    /**
+     * @param levelTally the running block value tally to set, or null to clear it
+     */
+    public void setLevelTally(LevelTally levelTally) {
+        this.levelTally = levelTally;
+        dirty = true;
+    }
+
+    /**
+     * @return true if the island has changed since it was last saved
+     */
+    public boolean isDirty() {
+        return dirty;
+    }
+
+    /**
+     * @param dirty true if the island needs to be written at the next save, false once it has been saved
+     */
+    public void setDirty(boolean dirty) {
+        this.dirty = dirty;
     }
 
     /**
@@ -0,0 +1,191 @@
+package com.wasteofplastic.askyblock;
+
+import org.bukkit.Location;
+
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * Hands out spots for new islands. New islands are placed on a spiral out from the start position.
+ * The spiral frontier is the next spot that has never been given out, and spots before it that are
+ * empty, or whose island was deleted, are kept in a free list and given out first.
+ * Works out the frontier and the free list from the island grid when the grid is loaded, so nothing
+ * else needs to be saved. Finding a spot only looks at the grid, not the world, unless the server is
+ * not using this plugin's world generator. Then every spot, including those in the free list, is
+ * checked for blocks first.
+ *
+ * @author tastybento
+ */
+class IslandAllocator {
+
+    private static final boolean DEBUG = false;
+    // Spots walked when loading per island in the grid, so a few far away islands cannot make it walk forever
+    private static final int WALK_PER_ISLAND = 16;
+    private static final int MIN_WALK = 1024;
+    private final ASkyBlock plugin;
+    private final GridManager grid;
+    // Next spot on the spiral that has not been given out
+    private int x;
+    private int z;
+    // Empty spots before the frontier, oldest first
+    private final Set<Long> free = new LinkedHashSet<>();
+    // Spots kept for a player by an admin
+    private final Set<Long> reserved = new HashSet<>();
+
+    IslandAllocator(ASkyBlock plugin, GridManager grid) {
+        this.plugin = plugin;
+        this.grid = grid;
+        this.x = Settings.islandXOffset + Settings.islandStartX;
+        this.z = Settings.islandZOffset + Settings.islandStartZ;
+    }
+
+    /**
+     * @return key for the island center x,z
+     */
+    static long spot(int x, int z) {
+        return ((long) x << 32) | (z & 0xFFFFFFFFL);
+    }
+
+    static int getX(long spot) {
+        return (int) (spot >> 32);
+    }
+
+    static int getZ(long spot) {
+        return (int) spot;
+    }
+
+    /**
+     * Walks the spiral to find the frontier and the empty spots before it
+     *
+     * @param islands - number of islands in the grid
+     * @param extent - largest x or z distance of an island center from 0,0
+     */
+    void load(int islands, int extent) {
+        long start = System.nanoTime();
+        free.clear();
+        int cx = Settings.islandXOffset + Settings.islandStartX;
+        int cz = Settings.islandZOffset + Settings.islandStartZ;
+        x = cx;
+        z = cz;
+        Set<Long> holes = new LinkedHashSet<>();
+        int bound = extent + Settings.islandDistance;
+        long walk = Math.max(MIN_WALK, (long) islands * WALK_PER_ISLAND);
+        for (long steps = 0; steps < walk && Math.max(Math.abs(cx), Math.abs(cz)) <= bound; steps++) {
+            long next = step(cx, cz);
+            if (grid.getIslandAt(cx, cz) != null || grid.nearSpawn(cx, cz)) {
+                // Everything up to here has been given out
+                free.addAll(holes);
+                holes.clear();
+                x = getX(next);
+                z = getZ(next);
+            } else {
+                holes.add(spot(cx, cz));
+            }
+            cx = getX(next);
+            cz = getZ(next);
+        }
+        if (DEBUG) {
+            plugin.getLogger().info("DEBUG: island frontier is " + x + "," + z + " with " + free.size()
+                    + " free spots. Took " + (System.nanoTime() - start) / 1000000 + " ms");
+        }
+    }
+
+    /**
+     * Gives out the next free spot. The spot stays free until an island is added there.
+     *
+     * @return the island center
+     */
+    long next() {
+        Iterator<Long> it = free.iterator();
+        while (it.hasNext()) {
+            long spot = it.next();
+            it.remove();
+            if (isEmpty(getX(spot), getZ(spot))) {
+                return spot;
+            }
+        }
+        while (!isEmpty(x, z)) {
+            advance();
+        }
+        long spot = spot(x, z);
+        advance();
+        return spot;
+    }
+
+    /**
+     * Makes the spot available again, e.g., after its island is deleted
+     *
+     * @param x - island center x
+     * @param z - island center z
+     */
+    void release(int x, int z) {
+        free.add(spot(x, z));
+    }
+
+    /**
+     * Stops the spot being given out to anyone else
+     *
+     * @param x - island center x
+     * @param z - island center z
+     */
+    void reserve(int x, int z) {
+        reserved.add(spot(x, z));
+    }
+
+    /**
+     * Lets the spot be given out again
+     *
+     * @param x - island center x
+     * @param z - island center z
+     */
+    void unreserve(int x, int z) {
+        if (reserved.remove(spot(x, z))) {
+            free.add(spot(x, z));
+        }
+    }
+
+    private boolean isFree(int x, int z) {
+        return !reserved.contains(spot(x, z)) && grid.getIslandAt(x, z) == null && !grid.nearSpawn(x, z);
+    }
+
+    /**
+     * @return true if the spot is free and, without our own generator, the world has no blocks there.
+     * Free list spots are probed as well, because they may be holes the spiral skipped for that reason.
+     */
+    private boolean isEmpty(int x, int z) {
+        return isFree(x, z) && (Settings.useOwnGenerator
+                || !grid.islandAtLocation(new Location(ASkyBlock.getIslandWorld(), x, Settings.islandHeight, z)));
+    }
+
+    private void advance() {
+        long next = step(x, z);
+        x = getX(next);
+        z = getZ(next);
+    }
+
+    /**
+     * Finds the spot after x,z on the spiral. Uses the island distance from the config.
+     *
+     * @return the next spot
+     */
+    private static long step(int x, int z) {
+        if (x < z) {
+            if (-1 * x < z) {
+                return spot(x + Settings.islandDistance, z);
+            }
+            return spot(x, z + Settings.islandDistance);
+        }
+        if (x > z) {
+            if (-1 * x >= z) {
+                return spot(x - Settings.islandDistance, z);
+            }
+            return spot(x, z - Settings.islandDistance);
+        }
+        if (x <= 0) {
+            return spot(x, z + Settings.islandDistance);
+        }
+        return spot(x, z - Settings.islandDistance);
+    }
+}
@@ -0,0 +1,113 @@
+package com.wasteofplastic.askyblock;
+
+import org.bukkit.Bukkit;
+import org.bukkit.ChunkSnapshot;
+import org.bukkit.Location;
+import org.bukkit.Material;
+import org.bukkit.World;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Counts blocks around a location for island challenges. The chunks are snapshot on the main thread and
+ * the blocks are counted async, stopping as soon as everything needed has been found. Only the part of the
+ * search area that is inside the island's protected area is searched.
+ *
+ * @author tastybento
+ */
+public class IslandBlockScanner {
+
+    private static final boolean DEBUG = false;
+    // Highest block type id
+    private static final int MAX_ID = maxId();
+    private final ASkyBlock plugin;
+
+    public IslandBlockScanner(ASkyBlock plugin) {
+        this.plugin = plugin;
+    }
+
+    /**
+     * Looks for the needed blocks within radius blocks of the location
+     *
+     * @param island - the island to search, the search does not go outside its protected area
+     * @param location - center of the search
+     * @param radius - how far to search in each direction
+     * @param needed - material and how many of it are needed
+     * @param callback - run on the main thread with what is still missing. Empty if everything was found.
+     */
+    @SuppressWarnings("deprecation")
+    public void scan(Island island, Location location, int radius, Map<Material, Integer> needed, Consumer<Map<Material, Integer>> callback) {
+        final Map<Material, Integer> missing = new HashMap<>(needed);
+        if (missing.isEmpty()) {
+            callback.accept(missing);
+            return;
+        }
+        final World world = location.getWorld();
+        final int minX = Math.max(location.getBlockX() - radius, island.getMinProtectedX());
+        final int maxX = Math.min(location.getBlockX() + radius, island.getMinProtectedX() + island.getProtectionSize() - 1);
+        final int minZ = Math.max(location.getBlockZ() - radius, island.getMinProtectedZ());
+        final int maxZ = Math.min(location.getBlockZ() + radius, island.getMinProtectedZ() + island.getProtectionSize() - 1);
+        final int minY = Math.max(location.getBlockY() - radius, 0);
+        final int maxY = Math.min(location.getBlockY() + radius, world.getMaxHeight() - 1);
+        if (minX > maxX || minZ > maxZ || minY > maxY) {
+            callback.accept(missing);
+            return;
+        }
+        final List<ChunkSnapshot> snapshots = new ArrayList<>();
+        for (int x = minX >> 4; x <= maxX >> 4; x++) {
+            for (int z = minZ >> 4; z <= maxZ >> 4; z++) {
+                snapshots.add(world.getChunkAt(x, z).getChunkSnapshot());
+            }
+        }
+        // Remaining count by type id
+        final int[] remaining = new int[MAX_ID + 1];
+        for (Map.Entry<Material, Integer> en : missing.entrySet()) {
+            remaining[en.getKey().getId()] = en.getValue();
+        }
+        Bukkit.getScheduler().runTaskAsynchronously(plugin, () -> {
+            int types = missing.size();
+            long start = System.nanoTime();
+            search:
+            for (ChunkSnapshot chunk : snapshots) {
+                int baseX = chunk.getX() << 4;
+                int baseZ = chunk.getZ() << 4;
+                int fromX = Math.max(minX, baseX) - baseX;
+                int toX = Math.min(maxX, baseX + 15) - baseX;
+                int fromZ = Math.max(minZ, baseZ) - baseZ;
+                int toZ = Math.min(maxZ, baseZ + 15) - baseZ;
+                for (int x = fromX; x <= toX; x++) {
+                    for (int z = fromZ; z <= toZ; z++) {
+                        for (int y = minY; y <= maxY; y++) {
+                            int type = chunk.getBlockTypeId(x, y, z);
+                            if (type < remaining.length && remaining[type] > 0 && --remaining[type] == 0 && --types == 0) {
+                                break search;
+                            }
+                        }
+                    }
+                }
+            }
+            if (DEBUG) {
+                plugin.getLogger().info("DEBUG: challenge scan of " + snapshots.size() + " chunks took "
+                        + (System.nanoTime() - start) / 1000000 + " ms");
+            }
+            Bukkit.getScheduler().runTask(plugin, () -> {
+                missing.replaceAll((material, count) -> remaining[material.getId()]);
+                missing.values().removeIf(count -> count <= 0);
+                callback.accept(missing);
+            });
+        });
+    }
+
+    @SuppressWarnings("deprecation")
+    private static int maxId() {
+        int result = 0;
+        for (Material material : Material.values()) {
+            result = Math.max(result, material.getId());
+        }
+        return result;
+    }
+}
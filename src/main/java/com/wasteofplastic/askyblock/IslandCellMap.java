@@ -0,0 +1,139 @@
+package com.wasteofplastic.askyblock;
+
+import java.util.Arrays;
+
+/**
+ * Open addressing hash map from a grid cell key to the island in that cell.
+ * Keys are primitive longs made by {@link #key(int, int)} so lookups do not box or walk a tree.
+ * Uses linear probing and backward shift deletion, so there are no tombstones.
+ *
+ * @author tastybento
+ */
+class IslandCellMap {
+
+    private static final long EMPTY = Long.MIN_VALUE;
+    private long[] keys;
+    private Island[] values;
+    private int mask;
+    private int size;
+
+    IslandCellMap() {
+        allocate(1024);
+    }
+
+    /**
+     * @param cellX - cell x coordinate
+     * @param cellZ - cell z coordinate
+     * @return key for the cell
+     */
+    static long key(int cellX, int cellZ) {
+        return ((long) cellX << 32) | (cellZ & 0xFFFFFFFFL);
+    }
+
+    private static int hash(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        Arrays.fill(keys, EMPTY);
+        values = new Island[capacity];
+        mask = capacity - 1;
+    }
+
+    /**
+     * @return the island in the cell or null if there is none
+     */
+    Island get(long key) {
+        int i = hash(key) & mask;
+        while (true) {
+            long k = keys[i];
+            if (k == key) {
+                return values[i];
+            }
+            if (k == EMPTY) {
+                return null;
+            }
+            i = (i + 1) & mask;
+        }
+    }
+
+    /**
+     * Puts an island in a cell
+     *
+     * @return the island that was in the cell before, or null
+     */
+    Island put(long key, Island island) {
+        if ((size + 1) * 2 > keys.length) {
+            resize(keys.length * 2);
+        }
+        int i = hash(key) & mask;
+        while (keys[i] != EMPTY) {
+            if (keys[i] == key) {
+                Island previous = values[i];
+                values[i] = island;
+                return previous;
+            }
+            i = (i + 1) & mask;
+        }
+        keys[i] = key;
+        values[i] = island;
+        size++;
+        return null;
+    }
+
+    /**
+     * Removes the island in a cell
+     *
+     * @return the island that was removed, or null
+     */
+    Island remove(long key) {
+        int i = hash(key) & mask;
+        while (keys[i] != key) {
+            if (keys[i] == EMPTY) {
+                return null;
+            }
+            i = (i + 1) & mask;
+        }
+        Island removed = values[i];
+        // Shift back any entries that probed past the removed one
+        int gap = i;
+        int j = (i + 1) & mask;
+        while (keys[j] != EMPTY) {
+            int home = hash(keys[j]) & mask;
+            // Move the entry if its home slot is not between the gap and where it is now
+            if (((j - home) & mask) >= ((j - gap) & mask)) {
+                keys[gap] = keys[j];
+                values[gap] = values[j];
+                gap = j;
+            }
+            j = (j + 1) & mask;
+        }
+        keys[gap] = EMPTY;
+        values[gap] = null;
+        size--;
+        return removed;
+    }
+
+    private void resize(int capacity) {
+        long[] oldKeys = keys;
+        Island[] oldValues = values;
+        allocate(capacity);
+        size = 0;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != EMPTY) {
+                put(oldKeys[i], oldValues[i]);
+            }
+        }
+    }
+
+    void clear() {
+        allocate(1024);
+        size = 0;
+    }
+
+    int size() {
+        return size;
+    }
+}
@@ -0,0 +1,335 @@
+package com.wasteofplastic.askyblock;
+
+import com.wasteofplastic.askyblock.nms.NMSAbstraction;
+import com.wasteofplastic.askyblock.util.Util;
+import org.bukkit.Chunk;
+import org.bukkit.ChunkSnapshot;
+import org.bukkit.Location;
+import org.bukkit.Material;
+import org.bukkit.World;
+import org.bukkit.block.BlockState;
+import org.bukkit.inventory.InventoryHolder;
+import org.bukkit.scheduler.BukkitRunnable;
+import org.bukkit.scheduler.BukkitTask;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Deletes the chunks of every island being deleted, using at most the delete budget in each tick.
+ * Chunks inside an island are regenerated. Edge chunks shared with the island next door only have the
+ * island's columns cleared, a chunk section at a time through NMS. Work on the same chunk from islands
+ * deleted close together, e.g., by a purge, is merged. An island's spot is not given out again until
+ * all its chunks are done.
+ *
+ * @author tastybento
+ */
+public class IslandDeleter {
+
+    private static final boolean DEBUG = false;
+    @SuppressWarnings("deprecation")
+    private static final int STATIONARY_WATER = Material.STATIONARY_WATER.getId();
+    private final ASkyBlock plugin;
+    private NMSAbstraction nms;
+    // Chunks waiting, oldest first
+    private final Map<String, ChunkWork> queue = new LinkedHashMap<>();
+    private int islands;
+    private BukkitTask task;
+    // Chunks done in the current second and the last whole second
+    private int doneThisSecond;
+    private int chunksPerSecond;
+    private int ticks;
+
+    public IslandDeleter(ASkyBlock plugin) {
+        this.plugin = plugin;
+        try {
+            nms = Util.checkVersion();
+        } catch (ClassNotFoundException | InstantiationException | InvocationTargetException | NoSuchMethodException | IllegalAccessException e) {
+            plugin.getLogger().warning("Cannot clean up blocks because there is no NMS acceleration available");
+        }
+    }
+
+    /**
+     * Queues the chunks of an island to be deleted and removes it from the grid
+     *
+     * @param island
+     */
+    public void delete(Island island) {
+        World world = island.getCenter().getWorld();
+        if (world == null) {
+            return;
+        }
+        Deletion deletion = new Deletion(island.getCenter());
+        // Determine if blocks need to be cleaned up or not
+        boolean cleanUpBlocks = Settings.islandDistance - island.getProtectionSize() < 16 && nms != null;
+        int range = island.getProtectionSize() / 2;
+        int minx = island.getMinProtectedX();
+        int minz = island.getMinProtectedZ();
+        int maxx = minx + island.getProtectionSize();
+        int maxz = minz + island.getProtectionSize();
+
+        int blockX = island.getCenter().getBlockX();
+        int blockZ = island.getCenter().getBlockZ();
+        int islandSpacing = Settings.islandDistance - island.getProtectionSize();
+        int minxX = blockX - range - islandSpacing;
+        int minzZ = blockZ - range - islandSpacing;
+        int maxxX = blockX + range + islandSpacing;
+        int maxzZ = blockZ + range + islandSpacing;
+
+        World islandWorld = ASkyBlock.getIslandWorld();
+        World netherWorld = Settings.newNether && Settings.createNether ? ASkyBlock.getNetherWorld() : null;
+        for (int x = minx >> 4; x <= maxx >> 4; x++) {
+            for (int z = minz >> 4; z <= maxz >> 4; z++) {
+                if (x << 4 >= minxX && z << 4 >= minzZ && (x << 4) + 15 <= maxxX && (z << 4) + 15 <= maxzZ) {
+                    add(world, x, z, null, deletion);
+                    if (netherWorld != null) {
+                        if (world.equals(islandWorld)) {
+                            add(netherWorld, x, z, null, deletion);
+                        }
+                        if (world.equals(netherWorld)) {
+                            add(islandWorld, x, z, null, deletion);
+                        }
+                    }
+                } else if (cleanUpBlocks) {
+                    BitSet columns = new BitSet(256);
+                    for (int cx = 0; cx < 16; cx++) {
+                        for (int cz = 0; cz < 16; cz++) {
+                            if (island.inIslandSpace((x << 4) + cx, (z << 4) + cz)) {
+                                columns.set(cz << 4 | cx);
+                            }
+                        }
+                    }
+                    if (!columns.isEmpty()) {
+                        add(islandWorld, x, z, columns, deletion);
+                        if (netherWorld != null) {
+                            add(netherWorld, x, z, columns, deletion);
+                        }
+                    }
+                }
+            }
+        }
+        // Keep the spot until the chunks are done so no new island is pasted into chunks still to be regenerated
+        plugin.getGrid().deleteIsland(island.getCenter());
+        if (deletion.chunks > 0) {
+            plugin.getGrid().reserveIslandLocation(deletion.center);
+            islands++;
+            start();
+        }
+        if (DEBUG) {
+            plugin.getLogger().info("DEBUG: queued " + deletion.chunks + " chunks of island at " + deletion.center
+                    + ". Chunks waiting: " + queue.size());
+        }
+    }
+
+    /**
+     * @return number of chunks waiting to be regenerated or cleared
+     */
+    public int getBacklog() {
+        return queue.size();
+    }
+
+    /**
+     * @return number of islands whose chunks are not all done yet
+     */
+    public int getIslandsWaiting() {
+        return islands;
+    }
+
+    /**
+     * @return chunks done in the last second
+     */
+    public int getChunksPerSecond() {
+        return chunksPerSecond;
+    }
+
+    /**
+     * Does all the chunks waiting. Called when the plugin is disabled, because the islands are
+     * already gone from the grid and their spots would be given out again after a restart.
+     */
+    public void drain() {
+        if (task != null) {
+            task.cancel();
+            task = null;
+        }
+        if (!queue.isEmpty()) {
+            plugin.getLogger().info("Finishing deleting " + islands + " islands (" + queue.size() + " chunks)");
+        }
+        run(Long.MAX_VALUE);
+    }
+
+    private void add(World world, int x, int z, BitSet columns, Deletion deletion) {
+        if (world == null) {
+            return;
+        }
+        String key = world.getName() + ":" + x + ":" + z;
+        ChunkWork work = queue.get(key);
+        if (work == null) {
+            work = new ChunkWork(world, x, z);
+            queue.put(key, work);
+        }
+        if (columns == null) {
+            work.regen = true;
+        } else {
+            work.columns.or(columns);
+        }
+        if (!work.deletions.contains(deletion)) {
+            work.deletions.add(deletion);
+            deletion.chunks++;
+        }
+    }
+
+    private void start() {
+        if (task != null) {
+            return;
+        }
+        if (Settings.deleteBudget <= 0 || !plugin.isEnabled()) {
+            run(Long.MAX_VALUE);
+            return;
+        }
+        task = new BukkitRunnable() {
+
+            @Override
+            public void run() {
+                tick();
+            }
+        }.runTaskTimer(plugin, 1L, 1L);
+    }
+
+    private void tick() {
+        run(System.nanoTime() + Settings.deleteBudget * 1000000L);
+        if (++ticks % 20 == 0) {
+            chunksPerSecond = doneThisSecond;
+            doneThisSecond = 0;
+        }
+        if (queue.isEmpty()) {
+            task.cancel();
+            task = null;
+            chunksPerSecond = 0;
+            doneThisSecond = 0;
+            ticks = 0;
+        }
+    }
+
+    /**
+     * Does chunks until there are none left or the time is up
+     *
+     * @param end - System.nanoTime() to stop at
+     */
+    private void run(long end) {
+        Iterator<ChunkWork> it = queue.values().iterator();
+        while (it.hasNext()) {
+            ChunkWork work = it.next();
+            it.remove();
+            if (work.regen) {
+                work.world.regenerateChunk(work.x, work.z);
+            } else {
+                clear(work);
+            }
+            doneThisSecond++;
+            for (Deletion deletion : work.deletions) {
+                if (--deletion.chunks == 0) {
+                    finish(deletion);
+                }
+            }
+            if (System.nanoTime() >= end) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Clears the island's columns of an edge chunk. Sets water below sea level and air above in the
+     * over world, and air in the nether apart from the roof. Only blocks that change are written.
+     */
+    @SuppressWarnings("deprecation")
+    private void clear(ChunkWork work) {
+        Chunk chunk = work.world.getChunkAt(work.x, work.z);
+        boolean nether = work.world.getEnvironment() == World.Environment.NETHER;
+        int maxY = nether ? work.world.getMaxHeight() - 8 : work.world.getMaxHeight();
+        // Empty containers first so nothing drops when they are replaced
+        for (BlockState state : chunk.getTileEntities()) {
+            if (state instanceof InventoryHolder && state.getY() < maxY
+                    && work.columns.get((state.getZ() & 15) << 4 | (state.getX() & 15))) {
+                ((InventoryHolder) state).getInventory().clear();
+            }
+        }
+        ChunkSnapshot snapshot = chunk.getChunkSnapshot(false, false, false);
+        short[] positions = new short[4096];
+        int[] ids = new int[4096];
+        boolean changed = false;
+        for (int sectionY = 0; sectionY << 4 < maxY; sectionY++) {
+            int waterTop = nether ? 0 : Settings.seaHeight - (sectionY << 4);
+            if (waterTop <= 0 && snapshot.isSectionEmpty(sectionY)) {
+                continue;
+            }
+            int count = 0;
+            for (int y = 0; y < 16 && (sectionY << 4) + y < maxY; y++) {
+                int id = y < waterTop ? STATIONARY_WATER : 0;
+                for (int column = work.columns.nextSetBit(0); column >= 0; column = work.columns.nextSetBit(column + 1)) {
+                    int x = column & 15;
+                    int z = column >> 4;
+                    int worldY = (sectionY << 4) + y;
+                    if (snapshot.getBlockTypeId(x, worldY, z) != id || snapshot.getBlockData(x, worldY, z) != 0) {
+                        positions[count] = (short) (y << 8 | column);
+                        ids[count++] = id;
+                    }
+                }
+            }
+            if (count > 0) {
+                nms.setBlocks(chunk, sectionY, positions, ids, count);
+                changed = true;
+            }
+        }
+        if (changed) {
+            nms.finishChunk(chunk);
+        }
+    }
+
+    private void finish(Deletion deletion) {
+        islands--;
+        plugin.getGrid().unreserveIslandLocation(deletion.center);
+        if (DEBUG) {
+            plugin.getLogger().info("DEBUG: deleted island at " + deletion.center + " in "
+                    + (System.nanoTime() - deletion.start) / 1000000 + " ms");
+        }
+    }
+
+    /**
+     * An island being deleted
+     */
+    private static class Deletion {
+        private final Location center;
+        private final long start = System.nanoTime();
+        // Chunks not done yet
+        private int chunks;
+
+        private Deletion(Location center) {
+            this.center = center;
+        }
+    }
+
+    /**
+     * Work to do on one chunk
+     */
+    private static class ChunkWork {
+        private final World world;
+        private final int x;
+        private final int z;
+        private boolean regen;
+        // Columns to clear as z << 4 | x, if the chunk is not regenerated
+        private final BitSet columns = new BitSet(256);
+        // Islands waiting for this chunk
+        private final List<Deletion> deletions = new ArrayList<>(2);
+
+        private ChunkWork(World world, int x, int z) {
+            this.world = world;
+            this.x = x;
+            this.z = z;
+        }
+    }
+}
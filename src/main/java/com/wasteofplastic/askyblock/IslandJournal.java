@@ -0,0 +1,186 @@
+package com.wasteofplastic.askyblock;
+
+import com.wasteofplastic.askyblock.util.Util;
+
+import org.bukkit.Bukkit;
+import org.bukkit.configuration.file.YamlConfiguration;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Append-only journal of island changes that sits on top of islands.yml. Each backup only appends
+ * the islands that have changed. The journal is folded back into islands.yml (compacted) when it gets
+ * long, when the spawn changes and when the plugin is disabled.
+ * <p>
+ * Each line is either + followed by an island serial, or - followed by the key of a removed island.
+ * Islands are keyed by their center x and z. Replaying the journal twice gives the same result, so
+ * a crash part way through a compaction loses nothing.
+ *
+ * @author tastybento
+ */
+class IslandJournal {
+
+    private static final boolean DEBUG = false;
+    // Minimum journal lines before it is compacted
+    private static final int MIN_COMPACT = 1000;
+
+    private final File ymlFile;
+    private final File journalFile;
+    private final String settingsKeyPath;
+    // Island key -> serial, i.e., what islands.yml plus the journal holds
+    private final Map<String, String> image = new LinkedHashMap<>();
+    private int lines;
+    private List<String> settingsKey = new ArrayList<>();
+    private String spawn;
+
+    /**
+     * @param ymlFile - islands.yml
+     * @param journalFile - the journal
+     * @param settingsKeyPath - where the settings key is kept in islands.yml
+     */
+    IslandJournal(File ymlFile, File journalFile, String settingsKeyPath) {
+        this.ymlFile = ymlFile;
+        this.journalFile = journalFile;
+        this.settingsKeyPath = settingsKeyPath;
+    }
+
+    /**
+     * @return the key of an island serial made by {@link Island#save()}
+     */
+    static String getKey(String serial) {
+        String[] split = serial.split(":", 4);
+        return split[0] + ":" + split[2];
+    }
+
+    /**
+     * @return the key of an island
+     */
+    static String getKey(Island island) {
+        return island.getCenter().getBlockX() + ":" + island.getCenter().getBlockZ();
+    }
+
+    /**
+     * Applies the journal to the islands loaded from islands.yml
+     *
+     * @param serials - islands from islands.yml
+     * @param settingsKey - settings key from islands.yml
+     * @param spawn - spawn section from islands.yml, see {@link #getSpawn(Island)}
+     * @return every island, with any changes in the journal applied
+     */
+    synchronized List<String> load(List<String> serials, List<String> settingsKey, String spawn) {
+        this.settingsKey = new ArrayList<>(settingsKey);
+        this.spawn = spawn;
+        image.clear();
+        for (String serial : serials) {
+            image.put(getKey(serial), serial);
+        }
+        lines = 0;
+        if (journalFile.exists()) {
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(journalFile), StandardCharsets.UTF_8))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (line.startsWith("+")) {
+                        image.put(getKey(line.substring(1)), line.substring(1));
+                    } else if (line.startsWith("-")) {
+                        image.remove(line.substring(1));
+                    }
+                    lines++;
+                }
+            } catch (IOException | ArrayIndexOutOfBoundsException e) {
+                Bukkit.getLogger().severe("Could not read all of " + journalFile.getName() + "! " + e.getMessage());
+            }
+            if (lines > 0) {
+                Bukkit.getLogger().info("Applied " + lines + " changes from " + journalFile.getName());
+            }
+        }
+        return new ArrayList<>(image.values());
+    }
+
+    /**
+     * Writes changes to the journal, compacting it if needed
+     *
+     * @param serials - islands that have changed
+     * @param removed - keys of islands that have been removed
+     * @param settingsKey - current settings key
+     * @param spawn - current spawn section, see {@link #getSpawn(Island)}
+     * @param compact - true to compact the journal whatever its size
+     */
+    synchronized void write(List<String> serials, List<String> removed, List<String> settingsKey, String spawn, boolean compact)
+            throws IOException {
+        for (String key : removed) {
+            image.remove(key);
+        }
+        for (String serial : serials) {
+            image.put(getKey(serial), serial);
+        }
+        if (compact || !spawn.equals(this.spawn) || !settingsKey.equals(this.settingsKey)
+                || lines + serials.size() + removed.size() > Math.max(MIN_COMPACT, image.size() / 4)) {
+            this.settingsKey = new ArrayList<>(settingsKey);
+            this.spawn = spawn;
+            compact();
+            return;
+        }
+        if (serials.isEmpty() && removed.isEmpty()) {
+            return;
+        }
+        try (Writer writer = new OutputStreamWriter(new FileOutputStream(journalFile, true), StandardCharsets.UTF_8)) {
+            for (String key : removed) {
+                writer.write("-" + key + "\n");
+            }
+            for (String serial : serials) {
+                writer.write("+" + serial + "\n");
+            }
+        }
+        lines += serials.size() + removed.size();
+        if (DEBUG) {
+            Bukkit.getLogger().info("DEBUG: journaled " + serials.size() + " islands and " + removed.size() + " removals");
+        }
+    }
+
+    /**
+     * Writes every island to islands.yml and empties the journal
+     */
+    private void compact() throws IOException {
+        YamlConfiguration islandYaml = new YamlConfiguration();
+        islandYaml.set(settingsKeyPath, settingsKey);
+        String[] split = spawn.split("\n", -1);
+        if (split.length == 4) {
+            islandYaml.set("spawn.location", split[0]);
+            islandYaml.set("spawn.spawnpoint", split[1]);
+            islandYaml.set("spawn.range", Integer.valueOf(split[2]));
+            islandYaml.set("spawn.settings", split[3]);
+        }
+        islandYaml.set(Settings.worldName, new ArrayList<>(image.values()));
+        islandYaml.save(ymlFile);
+        // Only empty the journal once islands.yml is safely written
+        new FileOutputStream(journalFile).close();
+        if (DEBUG) {
+            Bukkit.getLogger().info("DEBUG: compacted " + lines + " journal lines into " + ymlFile.getName());
+        }
+        lines = 0;
+    }
+
+    /**
+     * @return the spawn section as one string so that changes can be spotted, or an empty string if there is no spawn
+     */
+    static String getSpawn(Island spawn) {
+        if (spawn == null) {
+            return "";
+        }
+        return Util.getStringLocation(spawn.getCenter()) + "\n"
+                + Util.getStringLocation(spawn.getSpawnPoint()) + "\n"
+                + spawn.getProtectionSize() + "\n" + spawn.getSettings();
+    }
+}
@@ -0,0 +1,322 @@
+package com.wasteofplastic.askyblock;
+
+import com.wasteofplastic.askyblock.commands.IslandCmd;
+import com.wasteofplastic.askyblock.schematics.Schematic;
+import org.bukkit.Bukkit;
+import org.bukkit.Location;
+import org.bukkit.configuration.file.YamlConfiguration;
+import org.bukkit.scheduler.BukkitRunnable;
+import org.bukkit.scheduler.BukkitTask;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+/**
+ * Keeps islands pasted ahead of time so that new players get one straight away. Islands are pasted
+ * into spots kept back from the grid when the server has time to spare, and handed over when a player
+ * makes an island with that schematic. The spots are saved in islandpool.yml.
+ *
+ * @author tastybento
+ */
+public class IslandPool {
+
+    private static final boolean DEBUG = false;
+    // Length of a tick in ns
+    private static final long TICK = 50000000L;
+    // Islands are only pasted if the average tick is no longer than this
+    private static final long TICK_SLACK = 1000000L;
+    // Ticks to wait after an island is taken before pasting again, so a rush of new players is not slowed down
+    private static final int QUIET_TICKS = 200;
+    // Ticks between pastes
+    private static final int PASTE_TICKS = 40;
+    // Ticks to wait for a paste to finish before giving up on it
+    private static final int PASTE_TIMEOUT = 6000;
+    private final ASkyBlock plugin;
+    private final File file;
+    // Schematic heading -> island centers that are ready
+    private final Map<String, LinkedList<Location>> ready = new HashMap<>();
+    private BukkitTask task;
+    private long lastTick;
+    // Average tick length in ns
+    private long averageTick = TICK;
+    // Ticks until the next paste
+    private int wait = QUIET_TICKS;
+    // Island being pasted, or null
+    private Location pasting;
+    // Ticks since the paste started
+    private int pasteTicks;
+    // Numbers of the last save asked for and the last one written, so an older save cannot overwrite a newer one
+    private int saves;
+    private int written;
+
+    public IslandPool(ASkyBlock plugin) {
+        this.plugin = plugin;
+        this.file = new File(plugin.getDataFolder(), "islandpool.yml");
+    }
+
+    /**
+     * Loads the islands that are ready and starts filling the pool
+     */
+    public void load() {
+        if (file.exists()) {
+            YamlConfiguration config = YamlConfiguration.loadConfiguration(file);
+            for (String heading : config.getKeys(false)) {
+                LinkedList<Location> list = new LinkedList<>();
+                for (String spot : config.getStringList(heading)) {
+                    String[] split = spot.split(":");
+                    try {
+                        Location loc = new Location(ASkyBlock.getIslandWorld(), Integer.parseInt(split[0]), Settings.islandHeight,
+                                Integer.parseInt(split[1]));
+                        // Check nobody has been given it in the meantime
+                        if (plugin.getGrid().getIslandAt(loc) == null) {
+                            plugin.getGrid().reserveIslandLocation(loc);
+                            list.add(loc);
+                        }
+                    } catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+                        plugin.getLogger().warning("Skipping island pool spot " + spot);
+                    }
+                }
+                if (!list.isEmpty()) {
+                    ready.put(heading, list);
+                }
+            }
+            plugin.getLogger().info("Island pool has " + size() + " islands ready");
+        }
+        if (Settings.islandPoolSize > 0 && task == null) {
+            lastTick = System.nanoTime();
+            task = new BukkitRunnable() {
+
+                @Override
+                public void run() {
+                    tick();
+                }
+            }.runTaskTimer(plugin, 1L, 1L);
+        }
+    }
+
+    /**
+     * Stops filling the pool
+     */
+    public void close() {
+        if (task != null) {
+            task.cancel();
+            task = null;
+        }
+    }
+
+    /**
+     * Takes a ready island for this schematic out of the pool. Only the blocks have been pasted, so the
+     * caller must finish the paste with {@link Schematic#finishPaste}.
+     *
+     * @param schematic
+     * @return the island center, or null if there is no island ready
+     */
+    public Location claim(Schematic schematic) {
+        if (schematic == null || schematic.isInNether()) {
+            return null;
+        }
+        String heading = getHeading(schematic);
+        LinkedList<Location> list = heading == null ? null : ready.get(heading);
+        if (list == null) {
+            return null;
+        }
+        Location loc = null;
+        while (loc == null && !list.isEmpty()) {
+            loc = list.removeFirst();
+            plugin.getGrid().unreserveIslandLocation(loc);
+            if (plugin.getGrid().getIslandAt(loc) != null) {
+                loc = null;
+            }
+        }
+        if (list.isEmpty()) {
+            ready.remove(heading);
+        }
+        save();
+        wait = QUIET_TICKS;
+        if (DEBUG) {
+            plugin.getLogger().info("DEBUG: island pool gave out " + loc + " for " + heading);
+        }
+        return loc;
+    }
+
+    /**
+     * @return number of islands that are ready
+     */
+    public int size() {
+        int size = 0;
+        for (List<Location> list : ready.values()) {
+            size += list.size();
+        }
+        return size;
+    }
+
+    private void tick() {
+        long now = System.nanoTime();
+        averageTick += (now - lastTick - averageTick) / 20;
+        lastTick = now;
+        if (pasting != null && ++pasteTicks > PASTE_TIMEOUT) {
+            plugin.getLogger().warning("Island pool gave up waiting for the island at " + pasting.getBlockX() + ","
+                    + pasting.getBlockZ() + " to paste");
+            failed();
+        }
+        if (--wait > 0) {
+            return;
+        }
+        wait = PASTE_TICKS;
+        if (pasting != null || averageTick > TICK + TICK_SLACK || ASkyBlock.getIslandWorld() == null) {
+            return;
+        }
+        // Top up the schematic with the fewest islands ready
+        Schematic schematic = null;
+        String heading = null;
+        int fewest = Settings.islandPoolSize;
+        for (String name : Settings.islandPoolSchematics) {
+            Schematic s = IslandCmd.getSchematics().get(name);
+            if (!canPaste(s)) {
+                continue;
+            }
+            LinkedList<Location> list = ready.get(name);
+            int count = list == null ? 0 : list.size();
+            if (count < fewest) {
+                fewest = count;
+                schematic = s;
+                heading = name;
+            }
+        }
+        if (schematic != null) {
+            paste(heading, schematic);
+        }
+    }
+
+    /**
+     * Pastes an island and its partner into a spot that is kept back for the pool
+     */
+    private void paste(final String heading, Schematic schematic) {
+        final long start = System.nanoTime();
+        final Location loc = plugin.getGrid().getNextIslandLocation();
+        plugin.getGrid().reserveIslandLocation(loc);
+        pasting = loc;
+        pasteTicks = 0;
+        final Schematic partner = getPartner(schematic);
+        try {
+            schematic.pasteBlocks(loc, null, () -> {
+                if (partner != null) {
+                    try {
+                        partner.pasteBlocks(loc.toVector().toLocation(ASkyBlock.getNetherWorld()), null, () -> ready(heading, loc, start));
+                    } catch (Exception e) {
+                        plugin.getLogger().severe("Island pool could not paste " + heading + " in the nether: " + e.getMessage());
+                        if (pasting == loc) {
+                            failed();
+                        }
+                    }
+                } else {
+                    ready(heading, loc, start);
+                }
+            });
+        } catch (Exception e) {
+            plugin.getLogger().severe("Island pool could not paste " + heading + ": " + e.getMessage());
+            if (pasting == loc) {
+                failed();
+            }
+        }
+    }
+
+    /**
+     * Gives up on the island being pasted and lets its spot be used again
+     */
+    private void failed() {
+        plugin.getGrid().unreserveIslandLocation(pasting);
+        pasting = null;
+    }
+
+    /**
+     * Adds a pasted island to the pool
+     */
+    private void ready(String heading, Location loc, long start) {
+        if (pasting != loc) {
+            // Given up on already
+            return;
+        }
+        pasting = null;
+        ready.computeIfAbsent(heading, k -> new LinkedList<>()).add(loc);
+        save();
+        if (DEBUG) {
+            plugin.getLogger().info("DEBUG: island pool pasted " + heading + " at " + loc + " in "
+                    + (System.nanoTime() - start) / 1000000 + " ms");
+        }
+    }
+
+    /**
+     * @return true if the schematic and its partner can be pasted without an owner
+     */
+    private boolean canPaste(Schematic schematic) {
+        if (schematic == null || schematic.getFile() == null || schematic.isInNether()) {
+            return false;
+        }
+        if (Settings.createNether && Settings.newNether && ASkyBlock.getNetherWorld() != null && !schematic.getPartnerName().isEmpty()) {
+            Schematic partner = getPartner(schematic);
+            return partner != null && partner.getFile() != null;
+        }
+        return true;
+    }
+
+    /**
+     * @return the schematic pasted in the nether with this one, or null if there is none
+     */
+    private Schematic getPartner(Schematic schematic) {
+        if (!Settings.createNether || !Settings.newNether || ASkyBlock.getNetherWorld() == null) {
+            return null;
+        }
+        return schematic.getPartnerName().isEmpty() ? schematic : IslandCmd.getSchematics().get(schematic.getPartnerName());
+    }
+
+    /**
+     * @return the heading the schematic is loaded under, or null if it is not loaded
+     */
+    private String getHeading(Schematic schematic) {
+        for (Entry<String, Schematic> en : IslandCmd.getSchematics().entrySet()) {
+            if (en.getValue() == schematic) {
+                return en.getKey();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Saves the pool in the background, or straight away if the plugin is being disabled
+     */
+    private void save() {
+        final YamlConfiguration config = new YamlConfiguration();
+        for (Entry<String, LinkedList<Location>> en : ready.entrySet()) {
+            List<String> spots = new ArrayList<>();
+            for (Location loc : en.getValue()) {
+                spots.add(loc.getBlockX() + ":" + loc.getBlockZ());
+            }
+            config.set(en.getKey(), spots);
+        }
+        final int number = ++saves;
+        if (plugin.isEnabled()) {
+            Bukkit.getScheduler().runTaskAsynchronously(plugin, () -> saveNow(config, number));
+        } else {
+            saveNow(config, number);
+        }
+    }
+
+    private synchronized void saveNow(YamlConfiguration config, int number) {
+        if (number < written) {
+            return;
+        }
+        written = number;
+        try {
+            config.save(file);
+        } catch (IOException e) {
+            plugin.getLogger().severe("Could not save islandpool.yml! " + e.getMessage());
+        }
+    }
+}
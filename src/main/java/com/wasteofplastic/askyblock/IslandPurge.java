@@ -0,0 +1,406 @@
+package com.wasteofplastic.askyblock;
+
+import com.wasteofplastic.askyblock.util.Util;
+
+import org.bukkit.Bukkit;
+import org.bukkit.ChatColor;
+import org.bukkit.OfflinePlayer;
+import org.bukkit.command.CommandSender;
+import org.bukkit.configuration.file.YamlConfiguration;
+import org.bukkit.entity.Player;
+import org.bukkit.scheduler.BukkitRunnable;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+
+/**
+ * Purges abandoned islands. Islands to purge are found off the main thread from the player store,
+ * using the last seen time and island level in each player's file. They are then deleted a few at a
+ * time. How much time is spent deleting each tick depends on how far behind the server is, and the
+ * players are loaded in the background before their islands are deleted.
+ * What is left to purge is saved in purge.yml so a purge carries on after a restart.
+ *
+ * @author tastybento
+ */
+public class IslandPurge {
+
+    private static final boolean DEBUG = false;
+    // Length of a tick in ns
+    private static final long TICK = 50000000L;
+    // A tick this much longer than it should be means the server is behind
+    private static final long TICK_SLACK = 2000000L;
+    // Time spent deleting in a tick, in ns
+    private static final long MIN_BUDGET = 2000000L;
+    private static final long MAX_BUDGET = 25000000L;
+    // Island chunks waiting to be deleted before the purge waits for them to catch up
+    private static final int MAX_DELETE_BACKLOG = 1000;
+    // Players loaded ahead of the island being deleted
+    private static final int PREFETCH = 20;
+    // Islands purged between saves of purge.yml
+    private static final int SAVE_EVERY = 50;
+    // Ticks between progress reports
+    private static final long REPORT_TICKS = 600L;
+    private final ASkyBlock plugin;
+    private final File file;
+    private LinkedList<UUID> queue = new LinkedList<>();
+    private final Map<UUID, CompletableFuture<Players>> loading = new HashMap<>();
+    private CommandSender sender;
+    private BukkitRunnable task;
+    // Players seen after this are not purged
+    private long cutoff;
+    private long maxLevel;
+    private int total;
+    private int done;
+    private int removed;
+    private int sinceSave;
+    private long started;
+    private int doneAtStart;
+    private long lastTick;
+    private long budget = MIN_BUDGET;
+    private long credit;
+    // Average time to delete an island in ns
+    private long averageDelete = TICK / 5;
+    private long ticks;
+    // Goes up when purge.yml is deleted so that saves still waiting to be written are dropped
+    private volatile int generation;
+
+    public IslandPurge(ASkyBlock plugin) {
+        this.plugin = plugin;
+        this.file = new File(plugin.getDataFolder(), "purge.yml");
+    }
+
+    /**
+     * @return true if islands are being purged
+     */
+    public boolean isRunning() {
+        return task != null;
+    }
+
+    /**
+     * Finds islands whose owners have not been on the server for the given time and whose level is below
+     * the abandoned island level. Runs in the background and gives the owners to result on the main thread,
+     * oldest first.
+     *
+     * @param hours - hours since the owner was last seen
+     * @param result - owners of the islands to purge
+     */
+    public void find(final int hours, final Consumer<List<UUID>> result) {
+        // Snapshot the owners on the main thread
+        final Set<UUID> owners = new HashSet<>();
+        for (Entry<UUID, Island> en : plugin.getGrid().getOwnershipMap().entrySet()) {
+            if (en.getKey() != null && !en.getValue().isPurgeProtected()) {
+                owners.add(en.getKey());
+            }
+        }
+        final long seen = System.currentTimeMillis() - hours * 3600000L;
+        final long level = Settings.abandonedIslandLevel;
+        Bukkit.getScheduler().runTaskAsynchronously(plugin, () -> {
+            long start = System.nanoTime();
+            final Map<UUID, Long> candidates = new HashMap<>();
+            final Set<UUID> found = new HashSet<>();
+            plugin.getPlayerStore().forEach(summary -> {
+                if (!owners.contains(summary.getUUID())) {
+                    return;
+                }
+                found.add(summary.getUUID());
+                if (summary.getIslandLevel() >= level) {
+                    return;
+                }
+                long lastSeen = summary.getLastSeen() > 0 ? summary.getLastSeen() : getLastPlayed(summary.getUUID());
+                if (lastSeen < seen) {
+                    candidates.put(summary.getUUID(), lastSeen);
+                }
+            });
+            // Owners without a player file
+            for (UUID owner : owners) {
+                if (!found.contains(owner)) {
+                    long lastSeen = getLastPlayed(owner);
+                    if (lastSeen < seen) {
+                        candidates.put(owner, lastSeen);
+                    }
+                }
+            }
+            final List<UUID> list = new ArrayList<>(candidates.keySet());
+            list.sort(Comparator.comparingLong(candidates::get));
+            if (DEBUG) {
+                plugin.getLogger().info("DEBUG: checked " + owners.size() + " islands in " + (System.nanoTime() - start) / 1000000 + " ms");
+            }
+            Bukkit.getScheduler().runTask(plugin, () -> {
+                cutoff = seen;
+                maxLevel = level;
+                result.accept(list);
+            });
+        });
+    }
+
+    /**
+     * @return when the player last played, or 0 if they have never played
+     */
+    private long getLastPlayed(UUID playerUUID) {
+        OfflinePlayer player = Bukkit.getOfflinePlayer(playerUUID);
+        return player.hasPlayedBefore() ? player.getLastPlayed() : 0L;
+    }
+
+    /**
+     * Starts purging. Must be called after {@link #find(int, Consumer)}.
+     *
+     * @param sender - who to tell about progress
+     * @param owners - owners of the islands to purge
+     */
+    public void start(CommandSender sender, List<UUID> owners) {
+        this.sender = sender;
+        queue = new LinkedList<>(owners);
+        total = owners.size();
+        done = 0;
+        removed = 0;
+        save();
+        run();
+    }
+
+    /**
+     * Carries on with a purge that was running when the server stopped
+     */
+    public void resume() {
+        if (!file.exists()) {
+            return;
+        }
+        YamlConfiguration config = YamlConfiguration.loadConfiguration(file);
+        queue = new LinkedList<>();
+        for (String owner : config.getStringList("islands")) {
+            try {
+                queue.add(UUID.fromString(owner));
+            } catch (IllegalArgumentException ignored) {
+            }
+        }
+        if (queue.isEmpty()) {
+            deleteFile();
+            return;
+        }
+        total = config.getInt("total", queue.size());
+        done = config.getInt("done", 0);
+        removed = config.getInt("removed", 0);
+        cutoff = config.getLong("cutoff", 0L);
+        maxLevel = config.getLong("level", Settings.abandonedIslandLevel);
+        sender = Bukkit.getConsoleSender();
+        plugin.getLogger().info("Resuming the purge of " + queue.size() + " islands");
+        run();
+    }
+
+    /**
+     * Stops purging. What is left is forgotten.
+     *
+     * @return number of islands that were not purged
+     */
+    public int stop() {
+        int left = queue.size();
+        if (task != null) {
+            task.cancel();
+            task = null;
+        }
+        queue.clear();
+        loading.clear();
+        deleteFile();
+        return left;
+    }
+
+    /**
+     * Saves what is left to purge so that it carries on at the next start. Called when the plugin is disabled.
+     */
+    public void close() {
+        if (task != null) {
+            task.cancel();
+            task = null;
+            saveNow(toConfig(), generation);
+        }
+    }
+
+    /**
+     * Tells the sender how far the purge has got and how many island chunks are still being deleted
+     *
+     * @param sender
+     */
+    public void showStatus(CommandSender sender) {
+        IslandDeleter deleter = plugin.getIslandDeleter();
+        if (deleter.getBacklog() > 0) {
+            Util.sendMessage(sender, ChatColor.YELLOW + plugin.myLocale().purgeDeleting
+                    .replace("[islands]", String.valueOf(deleter.getIslandsWaiting()))
+                    .replace("[chunks]", String.valueOf(deleter.getBacklog()))
+                    .replace("[rate]", String.valueOf(deleter.getChunksPerSecond())));
+        }
+        if (!isRunning()) {
+            Util.sendMessage(sender, ChatColor.RED + plugin.myLocale().purgeNotRunning);
+            return;
+        }
+        long elapsed = System.currentTimeMillis() - started;
+        int count = done - doneAtStart;
+        // Islands per minute
+        long rate = elapsed > 0 ? count * 60000L / elapsed : 0L;
+        long left = count > 0 ? (long) queue.size() * elapsed / count / 1000L : 0L;
+        Util.sendMessage(sender, ChatColor.YELLOW + plugin.myLocale().purgeStatus.replace("[done]", String.valueOf(done))
+                .replace("[total]", String.valueOf(total)).replace("[removed]", String.valueOf(removed))
+                .replace("[rate]", String.valueOf(rate))
+                .replace("[time]", String.format("%d h %02d m %02d s", left / 3600, (left % 3600) / 60, (left % 60))));
+    }
+
+    private void run() {
+        started = System.currentTimeMillis();
+        doneAtStart = done;
+        lastTick = System.nanoTime();
+        ticks = 0;
+        task = new BukkitRunnable() {
+
+            @Override
+            public void run() {
+                tick();
+            }
+        };
+        task.runTaskTimer(plugin, 1L, 1L);
+    }
+
+    private void tick() {
+        long now = System.nanoTime();
+        long interval = now - lastTick;
+        lastTick = now;
+        // Use more of each tick while the server keeps up and back off quickly when it does not
+        if (interval <= TICK + TICK_SLACK) {
+            budget = Math.min(MAX_BUDGET, budget + MIN_BUDGET);
+        } else {
+            budget = Math.max(MIN_BUDGET, budget / 2);
+        }
+        credit = Math.min(credit + budget, Math.max(budget, averageDelete) * 2);
+        prefetch();
+        while (!queue.isEmpty() && credit >= averageDelete && plugin.getIslandDeleter().getBacklog() < MAX_DELETE_BACKLOG) {
+            UUID owner = queue.peek();
+            CompletableFuture<Players> future = loading.get(owner);
+            if (future != null && !future.isDone()) {
+                // Wait for the player to load
+                break;
+            }
+            queue.poll();
+            loading.remove(owner);
+            long start = System.nanoTime();
+            if (purge(owner)) {
+                long time = System.nanoTime() - start;
+                averageDelete = (averageDelete * 7 + time) / 8;
+                credit -= time;
+            }
+            done++;
+            if (++sinceSave >= SAVE_EVERY) {
+                save();
+            }
+        }
+        if (queue.isEmpty()) {
+            task.cancel();
+            task = null;
+            deleteFile();
+            Util.sendMessage(getTarget(sender),
+                    ChatColor.YELLOW + plugin.myLocale().purgefinished + " [" + removed + "/" + total + "]");
+            return;
+        }
+        if (++ticks % REPORT_TICKS == 0) {
+            showStatus(getTarget(sender));
+        }
+    }
+
+    /**
+     * @return the sender if they are still online, otherwise the console
+     */
+    private CommandSender getTarget(CommandSender target) {
+        if (target instanceof Player && !((Player) target).isOnline()) {
+            return Bukkit.getConsoleSender();
+        }
+        return target == null ? Bukkit.getConsoleSender() : target;
+    }
+
+    /**
+     * Loads the players whose islands are next in the background
+     */
+    private void prefetch() {
+        Iterator<UUID> it = queue.iterator();
+        for (int i = 0; i < PREFETCH && it.hasNext(); i++) {
+            UUID owner = it.next();
+            if (!loading.containsKey(owner)) {
+                loading.put(owner, plugin.getPlayers().loadPlayer(owner));
+            }
+        }
+    }
+
+    /**
+     * Deletes the island if it is still abandoned
+     *
+     * @return true if the island was deleted
+     */
+    private boolean purge(UUID owner) {
+        if (Bukkit.getPlayer(owner) != null) {
+            return false;
+        }
+        Island island = plugin.getGrid().getIsland(owner);
+        if (island == null || island.isPurgeProtected() || !owner.equals(island.getOwner())) {
+            return false;
+        }
+        // The player may have played or levelled up since the islands were found
+        if (plugin.getPlayers().getIslandLevel(owner) >= maxLevel || plugin.getPlayers().getLastSeen(owner) >= cutoff) {
+            return false;
+        }
+        if (DEBUG) {
+            plugin.getLogger().info("DEBUG: purging " + plugin.getPlayers().getName(owner));
+        }
+        plugin.deletePlayerIsland(owner, true);
+        removed++;
+        return true;
+    }
+
+    private YamlConfiguration toConfig() {
+        YamlConfiguration config = new YamlConfiguration();
+        List<String> islands = new ArrayList<>(queue.size());
+        for (UUID owner : queue) {
+            islands.add(owner.toString());
+        }
+        config.set("islands", islands);
+        config.set("total", total);
+        config.set("done", done);
+        config.set("removed", removed);
+        config.set("cutoff", cutoff);
+        config.set("level", maxLevel);
+        return config;
+    }
+
+    /**
+     * Saves what is left to purge in the background
+     */
+    private void save() {
+        sinceSave = 0;
+        final YamlConfiguration config = toConfig();
+        final int current = generation;
+        Bukkit.getScheduler().runTaskAsynchronously(plugin, () -> saveNow(config, current));
+    }
+
+    private synchronized void saveNow(YamlConfiguration config, int current) {
+        if (current != generation) {
+            return;
+        }
+        try {
+            config.save(file);
+        } catch (IOException e) {
+            plugin.getLogger().severe("Could not save " + file.getName() + "! " + e.getMessage());
+        }
+    }
+
+    private synchronized void deleteFile() {
+        generation++;
+        file.delete();
+    }
+}
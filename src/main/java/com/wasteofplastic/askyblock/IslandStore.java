@@ -0,0 +1,319 @@
+package com.wasteofplastic.askyblock;
+
+import org.bukkit.Bukkit;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Binary, memory mapped store for the island grid. Each island is kept in a fixed size record
+ * holding its serialized form (see {@link Island#save()}) so a full load is one sequential scan
+ * with no YAML parsing, and a save only writes the records of islands that have changed.
+ * If an island no longer fits in its record, the file is rewritten with bigger records.
+ * <p>
+ * Layout: a header of HEADER_SIZE bytes, then records of recordSize bytes. A record starts
+ * with the length in bytes of the serialized island, or 0 if the record is free.
+ *
+ * @author tastybento
+ */
+class IslandStore {
+
+    private static final boolean DEBUG = false;
+    private static final int MAGIC = 0x41534B49;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 8192;
+    private static final int DEFAULT_RECORD_SIZE = 256;
+    // Records added each time the file fills up
+    private static final int GROWTH = 1024;
+
+    private final File file;
+    private RandomAccessFile raf;
+    private FileChannel channel;
+    private MappedByteBuffer buffer;
+    private int recordSize = DEFAULT_RECORD_SIZE;
+    private int capacity;
+    // Records in use or freed, i.e., the end of the data
+    private int used;
+    // Island -> record
+    private final Map<Island, Integer> records = new HashMap<>();
+    private final Deque<Integer> free = new ArrayDeque<>();
+    // Header
+    private List<String> settingsKey = new ArrayList<>();
+    private String spawnLocation = "";
+    private String spawnPoint = "";
+    private int spawnRange;
+    private String spawnSettings = "";
+
+    IslandStore(File file) {
+        this.file = file;
+    }
+
+    /**
+     * Opens the store, creating an empty one if the file does not exist
+     *
+     * @throws IOException if the file cannot be opened or is not an island store
+     */
+    synchronized void open() throws IOException {
+        boolean exists = file.exists() && file.length() >= HEADER_SIZE;
+        raf = new RandomAccessFile(file, "rw");
+        channel = raf.getChannel();
+        if (exists) {
+            ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE);
+            if (header.getInt() != MAGIC || header.getInt() != VERSION) {
+                close();
+                throw new IOException(file.getName() + " is not an island store");
+            }
+            recordSize = header.getInt();
+            used = header.getInt();
+            String key = getString(header);
+            settingsKey = key.isEmpty() ? new ArrayList<>() : new ArrayList<>(Arrays.asList(key.split(":")));
+            spawnLocation = getString(header);
+            spawnPoint = getString(header);
+            spawnRange = header.getInt();
+            spawnSettings = getString(header);
+            capacity = (int) ((channel.size() - HEADER_SIZE) / recordSize);
+            used = Math.min(used, capacity);
+        } else {
+            capacity = 0;
+            used = 0;
+        }
+        map(Math.max(capacity, GROWTH));
+        if (!exists) {
+            writeHeader();
+        }
+    }
+
+    /**
+     * Reads every island in the store in record order
+     *
+     * @param loader - makes the island from its serialized form, or returns null if the island should be dropped
+     * @return number of islands loaded
+     */
+    synchronized int load(Function<String, Island> loader) {
+        records.clear();
+        free.clear();
+        int count = 0;
+        for (int i = 0; i < used; i++) {
+            buffer.position(HEADER_SIZE + i * recordSize);
+            int length = buffer.getInt();
+            if (length <= 0 || length > recordSize - 4) {
+                free.add(i);
+                continue;
+            }
+            byte[] bytes = new byte[length];
+            buffer.get(bytes);
+            String serial = new String(bytes, StandardCharsets.UTF_8);
+            Island island = loader.apply(serial);
+            if (island == null) {
+                buffer.putInt(HEADER_SIZE + i * recordSize, 0);
+                free.add(i);
+                continue;
+            }
+            records.put(island, i);
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * Writes islands that have changed, frees the records of islands that have been removed from the grid
+     * and flushes the file.
+     *
+     * @param islands - islands to write
+     * @param serials - the serialized form of each island, in the same order
+     * @param removed - islands that are no longer in the grid
+     */
+    synchronized void update(List<Island> islands, List<String> serials, List<Island> removed) throws IOException {
+        if (channel == null) {
+            return;
+        }
+        int written = 0;
+        for (Island island : removed) {
+            Integer record = records.remove(island);
+            if (record != null) {
+                buffer.putInt(HEADER_SIZE + record * recordSize, 0);
+                free.add(record);
+            }
+        }
+        for (int i = 0; i < islands.size(); i++) {
+            byte[] bytes = serials.get(i).getBytes(StandardCharsets.UTF_8);
+            if (bytes.length > recordSize - 4) {
+                resize(bytes.length + 4);
+            }
+            Integer record = records.get(islands.get(i));
+            if (record == null) {
+                record = allocate();
+                records.put(islands.get(i), record);
+            } else if (matches(record, bytes)) {
+                continue;
+            }
+            write(record, bytes);
+            written++;
+        }
+        writeHeader();
+        buffer.force();
+        if (DEBUG) {
+            Bukkit.getLogger().info("DEBUG: wrote " + written + " of " + islands.size() + " islands to " + file.getName());
+        }
+    }
+
+    /**
+     * Sets the settings key and spawn details kept in the header. They are written on the next save.
+     */
+    synchronized void setHeader(List<String> settingsKey, String spawnLocation, String spawnPoint, int spawnRange, String spawnSettings) {
+        this.settingsKey = new ArrayList<>(settingsKey);
+        this.spawnLocation = spawnLocation == null ? "" : spawnLocation;
+        this.spawnPoint = spawnPoint == null ? "" : spawnPoint;
+        this.spawnRange = spawnRange;
+        this.spawnSettings = spawnSettings == null ? "" : spawnSettings;
+    }
+
+    List<String> getSettingsKey() {
+        return Collections.unmodifiableList(settingsKey);
+    }
+
+    String getSpawnLocation() {
+        return spawnLocation;
+    }
+
+    String getSpawnPoint() {
+        return spawnPoint;
+    }
+
+    int getSpawnRange() {
+        return spawnRange;
+    }
+
+    String getSpawnSettings() {
+        return spawnSettings;
+    }
+
+    /**
+     * Flushes and closes the file
+     */
+    synchronized void close() {
+        try {
+            if (buffer != null) {
+                buffer.force();
+            }
+            if (raf != null) {
+                raf.close();
+            }
+        } catch (IOException ignored) {
+        }
+        buffer = null;
+        channel = null;
+        raf = null;
+    }
+
+    private int allocate() throws IOException {
+        if (!free.isEmpty()) {
+            return free.poll();
+        }
+        if (used == capacity) {
+            map(capacity + GROWTH);
+        }
+        return used++;
+    }
+
+    /**
+     * @return true if the record already holds these bytes
+     */
+    private boolean matches(int record, byte[] bytes) {
+        int offset = HEADER_SIZE + record * recordSize;
+        if (buffer.getInt(offset) != bytes.length) {
+            return false;
+        }
+        for (int i = 0; i < bytes.length; i++) {
+            if (buffer.get(offset + 4 + i) != bytes[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void write(int record, byte[] bytes) {
+        int offset = HEADER_SIZE + record * recordSize;
+        buffer.position(offset);
+        buffer.putInt(bytes.length);
+        buffer.put(bytes);
+    }
+
+    /**
+     * Maps the header and this many records, growing the file if needed.
+     * Java has no way to unmap the old mapping, so it is released when it is garbage collected.
+     */
+    private void map(int records) throws IOException {
+        capacity = records;
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE + (long) capacity * recordSize);
+    }
+
+    /**
+     * Rewrites every record with a bigger record size
+     */
+    private void resize(int minimum) throws IOException {
+        int newSize = recordSize;
+        while (newSize < minimum) {
+            newSize *= 2;
+        }
+        List<byte[]> data = new ArrayList<>(used);
+        for (int i = 0; i < used; i++) {
+            buffer.position(HEADER_SIZE + i * recordSize);
+            int length = buffer.getInt();
+            byte[] bytes = new byte[Math.max(0, Math.min(length, recordSize - 4))];
+            buffer.get(bytes);
+            data.add(length > 0 ? bytes : null);
+        }
+        Bukkit.getLogger().info("Resizing " + file.getName() + " records from " + recordSize + " to " + newSize + " bytes");
+        recordSize = newSize;
+        // Records do not move, so the record index of each island stays the same
+        map(Math.max(capacity, GROWTH));
+        for (int i = 0; i < data.size(); i++) {
+            if (data.get(i) != null) {
+                write(i, data.get(i));
+            } else {
+                buffer.putInt(HEADER_SIZE + i * recordSize, 0);
+            }
+        }
+        writeHeader();
+    }
+
+    private void writeHeader() {
+        buffer.position(0);
+        buffer.putInt(MAGIC);
+        buffer.putInt(VERSION);
+        buffer.putInt(recordSize);
+        buffer.putInt(used);
+        putString(buffer, String.join(":", settingsKey));
+        putString(buffer, spawnLocation);
+        putString(buffer, spawnPoint);
+        buffer.putInt(spawnRange);
+        putString(buffer, spawnSettings);
+    }
+
+    private static void putString(ByteBuffer buffer, String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        buffer.putShort((short) bytes.length);
+        buffer.put(bytes);
+    }
+
+    private static String getString(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getShort() & 0xFFFF];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
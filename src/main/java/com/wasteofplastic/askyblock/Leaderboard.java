@@ -0,0 +1,493 @@
+package com.wasteofplastic.askyblock;
+
+import com.wasteofplastic.askyblock.events.IslandPostLevelEvent;
+
+import org.bukkit.Bukkit;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Ranks every island by level. Islands are kept in a tree that knows the size of each branch, so the
+ * rank of an island, a page of the ranking and the islands near an island are all found in O(log n).
+ * Only island owners and team leaders are ranked.
+ * <p>
+ * Changes are appended to leaderboard.log in the background. The log is rewritten when it holds
+ * many more changes than there are islands. If there is no log, the ranking is built from the player files.
+ *
+ * @author tastybento
+ */
+public class Leaderboard implements Listener {
+
+    private static final boolean DEBUG = false;
+    // Ticks to wait before writing so that changes are written together
+    private static final long DELAY = 20L;
+    // Size of a change in the log
+    private static final int RECORD_SIZE = 24;
+    private final ASkyBlock plugin;
+    private final File file;
+    private Node root;
+    // Island owner -> level
+    private final Map<UUID, Long> levels = new HashMap<>();
+    // Changes waiting to be written. A level of zero is a removal
+    private final Map<UUID, Long> pending = new LinkedHashMap<>();
+    private boolean scheduled;
+    // Changes in the log
+    private long records;
+    private boolean ready;
+
+    private static class Node {
+        private final UUID owner;
+        private final long level;
+        private final int priority = ThreadLocalRandom.current().nextInt();
+        private int size = 1;
+        private Node left;
+        private Node right;
+
+        private Node(UUID owner, long level) {
+            this.owner = owner;
+            this.level = level;
+        }
+    }
+
+    public Leaderboard(ASkyBlock plugin) {
+        this.plugin = plugin;
+        this.file = new File(plugin.getDataFolder(), "leaderboard.log");
+    }
+
+    /**
+     * Loads the ranking from the log, or builds it from the player files in the background if there is no log
+     */
+    void load() {
+        if (!file.exists()) {
+            plugin.getLogger().info("Building the island leaderboard. This could take some time with a large number of players");
+            Bukkit.getScheduler().runTaskAsynchronously(plugin, () -> {
+                Map<UUID, Long> islands = new HashMap<>();
+                for (PlayerSummary player : plugin.getPlayerStore().getHighestLevels(Integer.MAX_VALUE)) {
+                    islands.put(player.getUUID(), player.getIslandLevel());
+                }
+                synchronized (this) {
+                    // Changes made while building are newer
+                    for (Map.Entry<UUID, Long> en : islands.entrySet()) {
+                        if (!pending.containsKey(en.getKey())) {
+                            set(en.getKey(), en.getValue());
+                        }
+                    }
+                    ready = true;
+                }
+                try {
+                    compact();
+                } catch (IOException e) {
+                    plugin.getLogger().severe("Could not save the island leaderboard! " + e.getMessage());
+                }
+                plugin.getLogger().info("Built the island leaderboard with " + size() + " islands");
+            });
+            return;
+        }
+        long start = System.nanoTime();
+        long position = 0;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 65536))) {
+            while (true) {
+                UUID owner = new UUID(in.readLong(), in.readLong());
+                long level = in.readLong();
+                set(owner, level);
+                position += RECORD_SIZE;
+                records++;
+            }
+        } catch (EOFException ignored) {
+        } catch (IOException e) {
+            plugin.getLogger().severe("Could not read " + file.getName() + "! " + e.getMessage());
+        }
+        if (position < file.length()) {
+            // A change was only part written
+            try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+                raf.setLength(position);
+            } catch (IOException e) {
+                plugin.getLogger().severe("Could not repair " + file.getName() + "! " + e.getMessage());
+            }
+        }
+        ready = true;
+        if (DEBUG) {
+            plugin.getLogger().info("DEBUG: loaded " + levels.size() + " islands from " + records + " changes in "
+                    + (System.nanoTime() - start) / 1000000 + " ms");
+        }
+    }
+
+    /**
+     * @return true if the ranking has been loaded or built
+     */
+    public synchronized boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * Sets the level of a player's island. Team members that are not the leader are not ranked.
+     *
+     * @param playerUUID
+     * @param level
+     */
+    public void setIslandLevel(UUID playerUUID, long level) {
+        if (plugin.getPlayers().inTeam(playerUUID) && !playerUUID.equals(plugin.getPlayers().getTeamLeader(playerUUID))) {
+            remove(playerUUID);
+        } else {
+            put(playerUUID, level);
+        }
+    }
+
+    /**
+     * Sets the level of an island
+     *
+     * @param owner - island owner or team leader
+     * @param level - zero or less removes the island
+     */
+    public synchronized void put(UUID owner, long level) {
+        if (set(owner, level)) {
+            queue(owner, level);
+        }
+    }
+
+    /**
+     * Removes an island
+     *
+     * @param owner
+     */
+    public synchronized void remove(UUID owner) {
+        put(owner, 0L);
+    }
+
+    /**
+     * @param owner - island owner or team leader
+     * @return the rank of the island, 1 being the highest, or 0 if the island is not ranked.
+     * Islands with the same level have the same rank.
+     */
+    public synchronized int getRank(UUID owner) {
+        Long level = levels.get(owner);
+        if (level == null) {
+            return 0;
+        }
+        // Count the islands with higher levels
+        int higher = 0;
+        Node node = root;
+        while (node != null) {
+            if (node.level > level) {
+                higher += size(node.left) + 1;
+                node = node.right;
+            } else {
+                node = node.left;
+            }
+        }
+        return higher + 1;
+    }
+
+    /**
+     * @return number of ranked islands
+     */
+    public synchronized int size() {
+        return size(root);
+    }
+
+    /**
+     * Gets a page of the ranking
+     *
+     * @param page - page number, starting at 1
+     * @param pageSize - islands on each page
+     * @return island owner -> level, highest first
+     */
+    public synchronized Map<UUID, Long> getPage(int page, int pageSize) {
+        return getRange((page - 1) * pageSize, pageSize);
+    }
+
+    /**
+     * Gets the islands near an island in the ranking
+     *
+     * @param owner - island owner or team leader
+     * @param range - number of islands to include above and below the island
+     * @return island owner -> level, highest first. Empty if the island is not ranked.
+     */
+    public synchronized Map<UUID, Long> getAround(UUID owner, int range) {
+        Long level = levels.get(owner);
+        if (level == null) {
+            return new LinkedHashMap<>();
+        }
+        int position = position(owner, level);
+        int from = Math.max(0, position - range);
+        return getRange(from, position + range + 1 - from);
+    }
+
+    /**
+     * Writes any changes that have not been written and stops writing in the background
+     */
+    void close() {
+        flush();
+    }
+
+    /**
+     * Takes the level from each level calculation so that the ranking includes islands that are
+     * not in the player cache
+     */
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onIslandPostLevel(final IslandPostLevelEvent event) {
+        UUID owner = event.getPlayer();
+        if (plugin.getPlayers().inTeam(owner)) {
+            owner = plugin.getPlayers().getTeamLeader(owner);
+        }
+        if (owner != null) {
+            put(owner, event.getLongLevel());
+        }
+    }
+
+    private Map<UUID, Long> getRange(int from, int count) {
+        Map<UUID, Long> result = new LinkedHashMap<>();
+        int to = Math.min(size(root), from + count);
+        for (int i = Math.max(0, from); i < to; i++) {
+            Node node = select(i);
+            result.put(node.owner, node.level);
+        }
+        return result;
+    }
+
+    /**
+     * Changes the tree
+     *
+     * @return true if anything changed
+     */
+    private boolean set(UUID owner, long level) {
+        Long old = levels.get(owner);
+        if (old != null) {
+            if (old == level) {
+                return false;
+            }
+            root = delete(root, owner, old);
+            levels.remove(owner);
+        }
+        if (level > 0) {
+            root = insert(root, new Node(owner, level));
+            levels.put(owner, level);
+        }
+        return old != null || level > 0;
+    }
+
+    private void queue(UUID owner, long level) {
+        pending.put(owner, Math.max(0L, level));
+        if (!scheduled && ready && plugin.isEnabled()) {
+            scheduled = true;
+            Bukkit.getScheduler().runTaskLaterAsynchronously(plugin, this::flush, DELAY);
+        }
+    }
+
+    /**
+     * Appends the waiting changes to the log, rewriting it if it has got too big
+     */
+    private void flush() {
+        try {
+            // Held so that changes are written in the same order they were made
+            synchronized (file) {
+                Map<UUID, Long> batch;
+                synchronized (this) {
+                    if (!ready) {
+                        return;
+                    }
+                    batch = new LinkedHashMap<>(pending);
+                    pending.clear();
+                    scheduled = false;
+                    records += batch.size();
+                }
+                if (records > 2L * size() + 10000) {
+                    compact();
+                } else if (!batch.isEmpty()) {
+                    try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file, true)))) {
+                        for (Map.Entry<UUID, Long> en : batch.entrySet()) {
+                            writeRecord(out, en.getKey(), en.getValue());
+                        }
+                    }
+                }
+            }
+        } catch (IOException e) {
+            plugin.getLogger().severe("Could not save the island leaderboard! " + e.getMessage());
+        }
+    }
+
+    /**
+     * Rewrites the log with one change for each island
+     */
+    private void compact() throws IOException {
+        synchronized (file) {
+            Map<UUID, Long> snapshot;
+            synchronized (this) {
+                snapshot = new HashMap<>(levels);
+                // Everything waiting is in the snapshot
+                pending.clear();
+                records = snapshot.size();
+            }
+            File temp = new File(file.getParentFile(), file.getName() + ".tmp");
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp), 65536))) {
+                for (Map.Entry<UUID, Long> en : snapshot.entrySet()) {
+                    writeRecord(out, en.getKey(), en.getValue());
+                }
+            }
+            try {
+                Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+    }
+
+    private static void writeRecord(DataOutputStream out, UUID owner, long level) throws IOException {
+        out.writeLong(owner.getMostSignificantBits());
+        out.writeLong(owner.getLeastSignificantBits());
+        out.writeLong(level);
+    }
+
+    /**
+     * Order of the ranking: highest level first, then by UUID
+     */
+    private static int compare(UUID owner, long level, Node node) {
+        int result = Long.compare(node.level, level);
+        return result != 0 ? result : owner.compareTo(node.owner);
+    }
+
+    private static int size(Node node) {
+        return node == null ? 0 : node.size;
+    }
+
+    private static void update(Node node) {
+        node.size = size(node.left) + size(node.right) + 1;
+    }
+
+    private static Node insert(Node node, Node added) {
+        if (node == null) {
+            return added;
+        }
+        if (added.priority > node.priority) {
+            Node[] parts = split(node, added);
+            added.left = parts[0];
+            added.right = parts[1];
+            update(added);
+            return added;
+        }
+        if (compare(added.owner, added.level, node) < 0) {
+            node.left = insert(node.left, added);
+        } else {
+            node.right = insert(node.right, added);
+        }
+        update(node);
+        return node;
+    }
+
+    /**
+     * @return the nodes before key, and the nodes after key
+     */
+    private static Node[] split(Node node, Node key) {
+        if (node == null) {
+            return new Node[2];
+        }
+        if (compare(key.owner, key.level, node) > 0) {
+            Node[] parts = split(node.right, key);
+            node.right = parts[0];
+            update(node);
+            parts[0] = node;
+            return parts;
+        }
+        Node[] parts = split(node.left, key);
+        node.left = parts[1];
+        update(node);
+        parts[1] = node;
+        return parts;
+    }
+
+    /**
+     * Joins two trees where every node in left is before every node in right
+     */
+    private static Node merge(Node left, Node right) {
+        if (left == null) {
+            return right;
+        }
+        if (right == null) {
+            return left;
+        }
+        if (left.priority > right.priority) {
+            left.right = merge(left.right, right);
+            update(left);
+            return left;
+        }
+        right.left = merge(left, right.left);
+        update(right);
+        return right;
+    }
+
+    private static Node delete(Node node, UUID owner, long level) {
+        if (node == null) {
+            return null;
+        }
+        int result = compare(owner, level, node);
+        if (result == 0) {
+            return merge(node.left, node.right);
+        }
+        if (result < 0) {
+            node.left = delete(node.left, owner, level);
+        } else {
+            node.right = delete(node.right, owner, level);
+        }
+        update(node);
+        return node;
+    }
+
+    /**
+     * @return where the island is in the ranking, starting at 0
+     */
+    private int position(UUID owner, long level) {
+        int position = 0;
+        Node node = root;
+        while (node != null) {
+            int result = compare(owner, level, node);
+            if (result < 0) {
+                node = node.left;
+            } else if (result == 0) {
+                return position + size(node.left);
+            } else {
+                position += size(node.left) + 1;
+                node = node.right;
+            }
+        }
+        return position;
+    }
+
+    /**
+     * @return the island at this place in the ranking, starting at 0
+     */
+    private Node select(int position) {
+        Node node = root;
+        while (node != null) {
+            int left = size(node.left);
+            if (position < left) {
+                node = node.left;
+            } else if (position == left) {
+                return node;
+            } else {
+                position -= left + 1;
+                node = node.right;
+            }
+        }
+        return null;
+    }
+}
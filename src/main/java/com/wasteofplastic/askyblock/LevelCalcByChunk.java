@@ -1,14 +1,11 @@
 package com.wasteofplastic.askyblock;
 
-import com.google.common.collect.HashMultiset;
-import com.google.common.collect.Multiset;
-import com.google.common.collect.Multiset.Entry;
-import com.google.common.collect.Multisets;
 import com.wasteofplastic.askyblock.events.IslandPostLevelEvent;
 import com.wasteofplastic.askyblock.events.IslandPreLevelEvent;
 import com.wasteofplastic.askyblock.util.Util;
 
 import org.apache.commons.lang.math.NumberUtils;
+import org.bukkit.Bukkit;
 import org.bukkit.ChatColor;
 import org.bukkit.ChunkSnapshot;
 import org.bukkit.World;
@@ -23,11 +20,7 @@ import java.io.FileWriter;
 import java.io.IOException;
 import java.io.PrintWriter;
 import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.HashSet;
-import java.util.Iterator;
 import java.util.List;
-import java.util.Set;
 import java.util.UUID;
 
 /**
@@ -102,434 +95,421 @@ public class LevelCalcByChunk {
                 }
             }
             final int deathHandicap = deaths;
+            // Use the running tally if it is up to date. Reports always need a full scan.
+            if (Settings.levelIncremental && !report && island.getLevelTally() != null && island.getLevelTally().isCurrent()) {
+                setLevel(plugin, targetPlayer, sender, false, island.getLevelTally().getBlockCount(), levelMultiplier, deathHandicap,
+                        levelHandicap, null);
+                return;
+            }
             // Check if player's island world is the nether or overworld and adjust accordingly
             final World world = plugin.getPlayers().getIslandLocation(targetPlayer).getWorld();
-            // Get the chunks
-            //long nano = System.nanoTime();
-            Set<ChunkSnapshot> chunkSnapshot = new HashSet<ChunkSnapshot>();
-            for (int x = island.getMinProtectedX(); x < (island.getMinProtectedX() + island.getProtectionSize() + 16); x += 16) {
-                for (int z = island.getMinProtectedZ(); z < (island.getMinProtectedZ() + island.getProtectionSize() + 16); z += 16) {
-                    if (!world.getBlockAt(x, 0, z).getChunk().isLoaded()) {
-                        world.getBlockAt(x, 0, z).getChunk().load();
-                        chunkSnapshot.add(world.getBlockAt(x, 0, z).getChunk().getChunkSnapshot());
-                        world.getBlockAt(x, 0, z).getChunk().unload();
-                    } else {
-                        chunkSnapshot.add(world.getBlockAt(x, 0, z).getChunk().getChunkSnapshot());
-                    }
-                    //plugin.getLogger().info("DEBUG: getting chunk at " + x + ", " + z);
-                }
-            }
-            //plugin.getLogger().info("DEBUG: time = " + (System.nanoTime() - nano) / 1000000 + " ms");
-            //plugin.getLogger().info("DEBUG: size of chunk ss = " + chunkSnapshot.size());
-            final Set<ChunkSnapshot> finalChunk = chunkSnapshot;
             final int worldHeight = world.getMaxHeight();
-            //plugin.getLogger().info("DEBUG:world height = " +worldHeight);
-            Bukkit.getScheduler().runTaskAsynchronously(plugin, new Runnable() {
+            // Get the chunks. They are captured a few at a time by the snapshot queue and then counted async.
+            plugin.getChunkSnapshotQueue().request(island, world, finalChunk -> {
+                Bukkit.getScheduler().runTaskAsynchronously(plugin, new Runnable() {
 
-                @SuppressWarnings("deprecation")
-                @Override
-                public void run() {
-                    // Logging
-                    File log = null;
-                    PrintWriter out = null;
-                    List<MaterialData> mdLog = null;
-                    List<MaterialData> uwLog = null;
-                    List<MaterialData> noCountLog = null;
-                    List<MaterialData> overflowLog = null;
-                    if (Settings.levelLogging) {
-                        log = new File(plugin.getDataFolder(), "level.log");
-                        try {
-                            if (log.exists()) {
-                                out = new PrintWriter(new FileWriter(log, true));
-                            } else {
-                                out = new PrintWriter(log);
+                    @SuppressWarnings("deprecation")
+                    @Override
+                    public void run() {
+                        // Logging
+                        File log = null;
+                        PrintWriter out = null;
+                        if (Settings.levelLogging) {
+                            log = new File(plugin.getDataFolder(), "level.log");
+                            try {
+                                if (log.exists()) {
+                                    out = new PrintWriter(new FileWriter(log, true));
+                                } else {
+                                    out = new PrintWriter(log);
+                                }
+                            } catch (FileNotFoundException e) {
+                                System.out.println("Level log (level.log) could not be opened...");
+                                e.printStackTrace();
+                            } catch (IOException e) {
+                                System.out.println("Level log (level.log) could not be opened...");
+                                e.printStackTrace();
                             }
-                        } catch (FileNotFoundException e) {
-                            System.out.println("Level log (level.log) could not be opened...");
-                            e.printStackTrace();
-                        } catch (IOException e) {
-                            System.out.println("Level log (level.log) could not be opened...");
-                            e.printStackTrace();
                         }
-                    }
-                    if (Settings.levelLogging || report) {
-                        mdLog = new ArrayList<MaterialData>();
-                        uwLog = new ArrayList<MaterialData>();
-                        noCountLog = new ArrayList<MaterialData>();
-                        overflowLog = new ArrayList<MaterialData>();
-                    }
-                    // Copy the limits hashmap
-                    HashMap<MaterialData, Integer> limitCount = new HashMap<MaterialData, Integer>(Settings.blockLimits);
-                    // Calculate the island score
-                    long blockCount = 0;
-                    long underWaterBlockCount = 0;
-                    for (ChunkSnapshot chunk : finalChunk) {
-                        for (int x = 0; x < 16; x++) {
-                            // Check if the block coord is inside the protection zone and if not, don't count it
-                            if (chunk.getX() * 16 + x < island.getMinProtectedX()
-                                    || chunk.getX() * 16 + x >= island.getMinProtectedX() + island
-                                    .getProtectionSize()) {
-                                //plugin.getLogger().info("Block is outside protected area - x = " + (chunk.getX() * 16 + x));
-                                continue;
+                        final boolean logging = Settings.levelLogging || report;
+                        // Block counts by key for the report
+                        int[] mdLog = null;
+                        int[] uwLog = null;
+                        int[] noCountLog = null;
+                        int[] overflowLog = null;
+                        if (logging) {
+                            mdLog = new int[BlockValueTable.SIZE];
+                            uwLog = new int[BlockValueTable.SIZE];
+                            noCountLog = new int[BlockValueTable.SIZE];
+                            overflowLog = new int[BlockValueTable.SIZE];
+                        }
+                        // Get the compiled values and a fresh copy of the limits
+                        final BlockValueTable table = Settings.blockValueTable;
+                        final int[] values = table.getValues();
+                        final int[] limitSlots = table.getLimitSlots();
+                        final int[] limitCount = table.newLimitCounter();
+                        final int[] seenAbove = new int[table.getLimitCount()];
+                        final int[] seenUnder = new int[table.getLimitCount()];
+                        final int[] countedAbove = new int[table.getLimitCount()];
+                        final int[] countedUnder = new int[table.getLimitCount()];
+                        final int minX = island.getMinProtectedX();
+                        final int minZ = island.getMinProtectedZ();
+                        final int size = island.getProtectionSize();
+                        final int seaHeight = Settings.seaHeight;
+                        // Calculate the island score
+                        long blockCount = 0;
+                        long underWaterBlockCount = 0;
+                        for (ChunkSnapshot chunk : finalChunk) {
+                            // Find the sections of the chunk that have no blocks so they can be skipped
+                            boolean[] emptySection = new boolean[(worldHeight + 15) >> 4];
+                            for (int i = 0; i < emptySection.length; i++) {
+                                emptySection[i] = chunk.isSectionEmpty(i);
                             }
-                            for (int z = 0; z < 16; z++) {
+                            for (int x = 0; x < 16; x++) {
                                 // Check if the block coord is inside the protection zone and if not, don't count it
-                                if (chunk.getZ() * 16 + z < island.getMinProtectedZ()
-                                        || chunk.getZ() * 16 + z >= island.getMinProtectedZ() + island
-                                        .getProtectionSize()) {
-                                    //plugin.getLogger().info("Block is outside protected area - z = " + (chunk.getZ() * 16 + z));
+                                if (chunk.getX() * 16 + x < minX || chunk.getX() * 16 + x >= minX + size) {
                                     continue;
                                 }
-                                for (int y = 0; y < worldHeight; y++) {
-                                    int type = chunk.getBlockTypeId(x, y, z);
-                                    int data = chunk.getBlockData(x, y, z);
-                                    MaterialData md = new MaterialData(type, (byte) data);
-                                    MaterialData generic = new MaterialData(type);
-                                    if (type != 0) { // AIR
-                                        if (limitCount.containsKey(md) && Settings.blockValues.containsKey(md)) {
-                                            int count = limitCount.get(md);
-                                            //plugin.getLogger().info("DEBUG: Count for non-generic " + md + " is " + count);
-                                            if (count > 0) {
-                                                limitCount.put(md, --count);
-                                                if (Settings.seaHeight > 0 && y <= Settings.seaHeight) {
-                                                    underWaterBlockCount += Settings.blockValues.get(md);
-                                                    if (Settings.levelLogging || report) {
-                                                        uwLog.add(md);
-                                                    }
-                                                } else {
-                                                    blockCount += Settings.blockValues.get(md);
-                                                    if (Settings.levelLogging || report) {
-                                                        mdLog.add(md);
-                                                    }
-                                                }
-                                            } else if (Settings.levelLogging || report) {
-                                                overflowLog.add(md);
+                                for (int z = 0; z < 16; z++) {
+                                    // Check if the block coord is inside the protection zone and if not, don't count it
+                                    if (chunk.getZ() * 16 + z < minZ || chunk.getZ() * 16 + z >= minZ + size) {
+                                        continue;
+                                    }
+                                    for (int y = 0; y < worldHeight; y++) {
+                                        if (emptySection[y >> 4]) {
+                                            // Skip to the next section
+                                            y += 15;
+                                            continue;
+                                        }
+                                        int type = chunk.getBlockTypeId(x, y, z);
+                                        if (type == 0) { // AIR
+                                            continue;
+                                        }
+                                        int key = BlockValueTable.getKey(type, chunk.getBlockData(x, y, z));
+                                        int value = values[key];
+                                        if (value == BlockValueTable.NOT_COUNTED) {
+                                            if (logging) {
+                                                noCountLog[key]++;
                                             }
-                                        } else if (limitCount.containsKey(generic) && Settings.blockValues.containsKey(generic)) {
-                                            int count = limitCount.get(generic);
-                                            //plugin.getLogger().info("DEBUG: Count for generic " + generic + " is " + count);
-                                            if (count > 0) {
-                                                limitCount.put(generic, --count);
-                                                if (Settings.seaHeight > 0 && y <= Settings.seaHeight) {
-                                                    underWaterBlockCount += Settings.blockValues.get(generic);
-                                                    if (Settings.levelLogging || report) {
-                                                        uwLog.add(md);
-                                                    }
-                                                } else {
-                                                    blockCount += Settings.blockValues.get(generic);
-                                                    if (Settings.levelLogging || report) {
-                                                        mdLog.add(md);
-                                                    }
+                                            continue;
+                                        }
+                                        boolean underWater = seaHeight > 0 && y <= seaHeight;
+                                        int slot = limitSlots[key];
+                                        if (slot != BlockValueTable.NO_LIMIT) {
+                                            int[] seen = underWater ? seenUnder : seenAbove;
+                                            seen[slot]++;
+                                            if (limitCount[slot] <= 0) {
+                                                if (logging) {
+                                                    overflowLog[key]++;
                                                 }
-                                            } else if (Settings.levelLogging || report) {
-                                                overflowLog.add(md);
+                                                continue;
                                             }
-                                        } else if (Settings.blockValues.containsKey(md)) {
-                                            //plugin.getLogger().info("DEBUG: Adding " + md + " = " + Settings.blockValues.get(md));
-                                            if (Settings.seaHeight > 0 && y <= Settings.seaHeight) {
-                                                underWaterBlockCount += Settings.blockValues.get(md);
-                                                if (Settings.levelLogging || report) {
-                                                    uwLog.add(md);
-                                                }
-                                            } else {
-                                                blockCount += Settings.blockValues.get(md);
-                                                if (Settings.levelLogging || report) {
-                                                    mdLog.add(md);
-                                                }
+                                            limitCount[slot]--;
+                                            int[] counted = underWater ? countedUnder : countedAbove;
+                                            counted[slot]++;
+                                        }
+                                        if (underWater) {
+                                            underWaterBlockCount += value;
+                                            if (logging) {
+                                                uwLog[key]++;
                                             }
-                                        } else if (Settings.blockValues.containsKey(generic)) {
-                                            //plugin.getLogger().info("DEBUG: Adding " + generic + " = " + Settings.blockValues.get(generic));
-                                            if (Settings.seaHeight > 0 && y <= Settings.seaHeight) {
-                                                underWaterBlockCount += Settings.blockValues.get(generic);
-                                                if (Settings.levelLogging || report) {
-                                                    uwLog.add(md);
-                                                }
-                                            } else {
-                                                blockCount += Settings.blockValues.get(generic);
-                                                if (Settings.levelLogging || report) {
-                                                    mdLog.add(md);
-                                                }
+                                        } else {
+                                            blockCount += value;
+                                            if (logging) {
+                                                mdLog[key]++;
                                             }
-                                        } else if (Settings.levelLogging || report) {
-                                            noCountLog.add(md);
                                         }
                                     }
                                 }
                             }
                         }
-                    }
 
-                    blockCount += (long) ((double) underWaterBlockCount * Settings.underWaterMultiplier);
-                    //System.out.println("block count = "+blockCount);
+                        final long tallyValue = blockCount;
+                        blockCount += (long) ((double) underWaterBlockCount * Settings.underWaterMultiplier);
+                        //System.out.println("block count = "+blockCount);
 
-                    final long score =
-                            (((blockCount * levelMultiplier) - (deathHandicap * Settings.deathpenalty)) / Settings.levelCost)
-                                    - levelHandicap;
-                    // Logging or report
-                    if (Settings.levelLogging || report) {
-                        // provide counts
-                        Multiset<MaterialData> uwCount = HashMultiset.create(uwLog);
-                        Multiset<MaterialData> mdCount = HashMultiset.create(mdLog);
-                        Multiset<MaterialData> ncCount = HashMultiset.create(noCountLog);
-                        Multiset<MaterialData> ofCount = HashMultiset.create(overflowLog);
-                        reportLines.add("Level Log for island at " + island.getCenter());
-                        if (sender instanceof Player) {
-                            reportLines.add("Asker is " + sender.getName() + " (" + ((Player) sender).getUniqueId().toString() + ")");
-                        } else {
-                            reportLines.add("Asker is console");
-                        }
-                        reportLines.add("Target player UUID = " + targetPlayer.toString());
-                        reportLines.add("Total block value count = " + String.format("%,d", blockCount));
-                        reportLines.add("Level cost = " + Settings.levelCost);
-                        reportLines.add(
-                                "Level multiplier = " + levelMultiplier + " (Player must be online to get a permission multiplier)");
-                        reportLines.add("Schematic level handicap = " + levelHandicap + " (level is reduced by this amount)");
-                        reportLines.add(
-                                "Deaths handicap = " + (deathHandicap * Settings.deathpenalty) + " (" + deathHandicap + " deaths)");
-                        reportLines.add("Level calculated = " + score);
-                        reportLines.add("==================================");
-                        int total = 0;
-                        if (!uwCount.isEmpty()) {
-                            reportLines.add("Underwater block count (Multiplier = x" + Settings.underWaterMultiplier + ") value");
-                            reportLines.add("Total number of underwater blocks = " + String.format("%,d", uwCount.size()));
-                            Iterable<Multiset.Entry<MaterialData>> entriesSortedByCount =
-                                    Multisets.copyHighestCountFirst(uwCount).entrySet();
-                            Iterator<Entry<MaterialData>> it = entriesSortedByCount.iterator();
-                            while (it.hasNext()) {
-                                Entry<MaterialData> type = it.next();
-                                int value = 0;
-                                if (Settings.blockValues.containsKey(type)) {
-                                    // Specific
-                                    value = Settings.blockValues.get(type);
-                                } else if (Settings.blockValues.containsKey(new MaterialData(type.getElement().getItemType()))) {
-                                    // Generic
-                                    value = Settings.blockValues.get(new MaterialData(type.getElement().getItemType()));
+                        final long score =
+                                (((blockCount * levelMultiplier) - (deathHandicap * Settings.deathpenalty)) / Settings.levelCost)
+                                        - levelHandicap;
+                        // Logging or report
+                        if (logging) {
+                            reportLines.add("Level Log for island at " + island.getCenter());
+                            if (sender instanceof Player) {
+                                reportLines.add("Asker is " + sender.getName() + " (" + ((Player) sender).getUniqueId().toString() + ")");
+                            } else {
+                                reportLines.add("Asker is console");
+                            }
+                            reportLines.add("Target player UUID = " + targetPlayer.toString());
+                            reportLines.add("Total block value count = " + String.format("%,d", blockCount));
+                            reportLines.add("Level cost = " + Settings.levelCost);
+                            reportLines.add(
+                                    "Level multiplier = " + levelMultiplier + " (Player must be online to get a permission multiplier)");
+                            reportLines.add("Schematic level handicap = " + levelHandicap + " (level is reduced by this amount)");
+                            reportLines.add(
+                                    "Deaths handicap = " + (deathHandicap * Settings.deathpenalty) + " (" + deathHandicap + " deaths)");
+                            reportLines.add("Level calculated = " + score);
+                            reportLines.add("==================================");
+                            long total = 0;
+                            long uwTotal = sum(uwLog);
+                            if (uwTotal > 0) {
+                                reportLines.add("Underwater block count (Multiplier = x" + Settings.underWaterMultiplier + ") value");
+                                reportLines.add("Total number of underwater blocks = " + String.format("%,d", uwTotal));
+                                total += reportValues(uwLog, table, true);
+                                reportLines.add("Subtotal = " + total);
+                                reportLines.add("==================================");
+                            }
+                            reportLines.add("Regular block count");
+                            reportLines.add("Total number of blocks = " + String.format("%,d", sum(mdLog)));
+                            total += reportValues(mdLog, table, false);
+                            reportLines.add("Total = " + total);
+                            reportLines.add("==================================");
+                            reportLines.add("Blocks not counted because they exceeded limits: " + String.format("%,d", sum(overflowLog)));
+                            for (int key = 0; key < BlockValueTable.SIZE; key++) {
+                                if (overflowLog[key] == 0) {
+                                    continue;
                                 }
-                                if (value > 0) {
-                                    reportLines.add(type.getElement().toString() + ":"
-                                            + String.format("%,d", type.getCount()) + " blocks x " + value + " = " + (value
-                                            * type.getCount()));
-                                    total += (value * type.getCount());
+                                MaterialData md = BlockValueTable.getMaterialData(key);
+                                Integer limit = Settings.blockLimits.get(md);
+                                String explain = ")";
+                                if (limit == null) {
+                                    MaterialData generic = new MaterialData(md.getItemType());
+                                    limit = Settings.blockLimits.get(generic);
+                                    explain = " - All types)";
                                 }
+                                reportLines.add(
+                                        md.toString() + ": " + String.format("%,d", overflowLog[key]) + " blocks (max "
+                                                + limit
+                                                + explain);
                             }
-                            reportLines.add("Subtotal = " + total);
                             reportLines.add("==================================");
-                        }
-                        reportLines.add("Regular block count");
-                        reportLines.add("Total number of blocks = " + String.format("%,d", mdCount.size()));
-                        //Iterable<Multiset.Entry<MaterialData>> entriesSortedByCount = 
-                        //        Multisets.copyHighestCountFirst(mdCount).entrySet();
-                        Iterable<Multiset.Entry<MaterialData>> entriesSortedByCount =
-                                mdCount.entrySet();
-                        Iterator<Entry<MaterialData>> it = entriesSortedByCount.iterator();
-                        while (it.hasNext()) {
-                            Entry<MaterialData> type = it.next();
-                            int value = 0;
-                            if (Settings.blockValues.containsKey(type)) {
-                                // Specific
-                                value = Settings.blockValues.get(type);
-                            } else if (Settings.blockValues.containsKey(new MaterialData(type.getElement().getItemType()))) {
-                                // Generic
-                                value = Settings.blockValues.get(new MaterialData(type.getElement().getItemType()));
-                            }
-                            if (value > 0) {
-                                reportLines.add(type.getElement().toString() + ":"
-                                        + String.format("%,d", type.getCount()) + " blocks x " + value + " = " + (value
-                                        * type.getCount()));
-                                total += (value * type.getCount());
+                            reportLines.add("Blocks on island that are not in blockvalues.yml");
+                            reportLines.add("Total number = " + String.format("%,d", sum(noCountLog)));
+                            for (int key = 0; key < BlockValueTable.SIZE; key++) {
+                                if (noCountLog[key] > 0) {
+                                    reportLines.add(BlockValueTable.getMaterialData(key).toString() + ": "
+                                            + String.format("%,d", noCountLog[key]) + " blocks");
+                                }
                             }
+                            reportLines.add("=================================");
                         }
-                        reportLines.add("Total = " + total);
-                        reportLines.add("==================================");
-                        reportLines.add("Blocks not counted because they exceeded limits: " + String.format("%,d", ofCount.size()));
-                        //entriesSortedByCount = Multisets.copyHighestCountFirst(ofCount).entrySet();
-                        entriesSortedByCount = ofCount.entrySet();
-                        it = entriesSortedByCount.iterator();
-                        while (it.hasNext()) {
-                            Entry<MaterialData> type = it.next();
-                            Integer limit = Settings.blockLimits.get(type.getElement());
-                            String explain = ")";
-                            if (limit == null) {
-                                MaterialData generic = new MaterialData(type.getElement().getItemType());
-                                limit = Settings.blockLimits.get(generic);
-                                explain = " - All types)";
+                        if (out != null) {
+                            // Write to file
+                            for (String line : reportLines) {
+                                out.println(line);
                             }
-                            reportLines.add(
-                                    type.getElement().toString() + ": " + String.format("%,d", type.getCount()) + " blocks (max "
-                                            + limit
-                                            + explain);
-                        }
-                        reportLines.add("==================================");
-                        reportLines.add("Blocks on island that are not in blockvalues.yml");
-                        reportLines.add("Total number = " + String.format("%,d", ncCount.size()));
-                        //entriesSortedByCount = Multisets.copyHighestCountFirst(ncCount).entrySet();
-                        entriesSortedByCount = ncCount.entrySet();
-                        it = entriesSortedByCount.iterator();
-                        while (it.hasNext()) {
-                            Entry<MaterialData> type = it.next();
-                            reportLines.add(type.getElement().toString() + ": " + String.format("%,d", type.getCount()) + " blocks");
+                            System.out.println("Finished writing level log.");
+                            out.close();
                         }
-                        reportLines.add("=================================");
-                    }
-                    if (out != null) {
-                        // Write to file
-                        for (String line : reportLines) {
-                            out.println(line);
-                        }
-                        System.out.println("Finished writing level log.");
-                        out.close();
-                    }
 
-                    // Calculate how many points are required to get to the next level
-                    long calculatePointsToNextLevel =
-                            (Settings.levelCost * (score + 1 + levelHandicap)) - ((blockCount * levelMultiplier) - (deathHandicap
-                                    * Settings.deathpenalty));
-                    // Sometimes it will return 0, so calculate again to make sure it will display a good value
-                    if (calculatePointsToNextLevel == 0) {
-                        calculatePointsToNextLevel =
-                                (Settings.levelCost * (score + 2 + levelHandicap)) - ((blockCount * levelMultiplier) - (deathHandicap
-                                        * Settings.deathpenalty));
+                        setLevel(plugin, targetPlayer, sender, report, blockCount, levelMultiplier, deathHandicap, levelHandicap,
+                                Settings.levelIncremental ? new LevelTally(tallyValue, underWaterBlockCount, seenAbove, seenUnder,
+                                        countedAbove, countedUnder) : null);
                     }
+                });
+            });
+        }
+    }
+
+    /**
+     * Works out the island level from the block count and then updates the player, team and top ten on the main thread
+     *
+     * @param blockCount - total block value of the island
+     * @param tally - new running tally for the island, or null to leave it as it is
+     */
+    private void setLevel(final ASkyBlock plugin, final UUID targetPlayer, final CommandSender sender, final boolean report,
+            final long blockCount, final int levelMultiplier, final int deathHandicap, final int levelHandicap, final LevelTally tally) {
+        final long score =
+                (((blockCount * levelMultiplier) - (deathHandicap * Settings.deathpenalty)) / Settings.levelCost)
+                        - levelHandicap;
+        // Calculate how many points are required to get to the next level
+        long calculatePointsToNextLevel =
+                (Settings.levelCost * (score + 1 + levelHandicap)) - ((blockCount * levelMultiplier) - (deathHandicap
+                        * Settings.deathpenalty));
+        // Sometimes it will return 0, so calculate again to make sure it will display a good value
+        if (calculatePointsToNextLevel == 0) {
+            calculatePointsToNextLevel =
+                    (Settings.levelCost * (score + 2 + levelHandicap)) - ((blockCount * levelMultiplier) - (deathHandicap
+                            * Settings.deathpenalty));
+        }
+
+        final long pointsToNextLevel = calculatePointsToNextLevel;
+
+        // Return to main thread
+        Bukkit.getScheduler().runTask(plugin, new Runnable() {
 
-                    final long pointsToNextLevel = calculatePointsToNextLevel;
+            @Override
+            public void run() {
+                // Fire the pre-level event
+                Island island = plugin.getGrid().getIsland(targetPlayer);
+                if (tally != null && island != null) {
+                    island.setLevelTally(tally);
+                }
+                final IslandPreLevelEvent event = new IslandPreLevelEvent(targetPlayer, island, score);
+                event.setLongPointsToNextLevel(pointsToNextLevel);
+                Bukkit.getPluginManager().callEvent(event);
+                long oldLevel = plugin.getPlayers().getIslandLevel(targetPlayer);
+                if (!event.isCancelled()) {
+                    //plugin.getLogger().info("DEBUG: updating player");
 
-                    // Return to main thread
-                    Bukkit.getScheduler().runTask(plugin, new Runnable() {
+                    if (oldLevel != event.getLevel()) {
+                        // Update player and team mates
+                        plugin.getPlayers().setIslandLevel(targetPlayer, event.getLevel());
+                        //plugin.getLogger().info("DEBUG: set island level, now trying to save player");
+                        plugin.getPlayers().save(targetPlayer);
+                    }
+                    //plugin.getLogger().info("DEBUG: save player, now looking at team members");
+                    // Update any team members too
+                    if (plugin.getPlayers().inTeam(targetPlayer)) {
+                        //plugin.getLogger().info("DEBUG: player is in team");
+                        for (UUID member : plugin.getPlayers().getMembers(targetPlayer)) {
+                            //plugin.getLogger().info("DEBUG: updating team member level too");
+                            if (plugin.getPlayers().getIslandLevel(member) != event.getLevel()) {
+                                plugin.getPlayers().setIslandLevel(member, event.getLevel());
+                                plugin.getPlayers().save(member);
+                            }
+                        }
+                    }
+                    //plugin.getLogger().info("DEBUG: finished team member saving");
+                    //plugin.getLogger().info("DEBUG: updating top ten");
+                    if (plugin.getPlayers().inTeam(targetPlayer)) {
+                        UUID leader = plugin.getPlayers().getTeamLeader(targetPlayer);
+                        if (leader != null) {
+                            TopTen.topTenAddEntry(leader, event.getLongLevel());
+                        }
+                    } else {
+                        TopTen.topTenAddEntry(targetPlayer, event.getLongLevel());
+                    }
+                }
 
-                        @Override
-                        public void run() {
-                            // Fire the pre-level event
-                            Island island = plugin.getGrid().getIsland(targetPlayer);
-                            final IslandPreLevelEvent event = new IslandPreLevelEvent(targetPlayer, island, score);
-                            event.setLongPointsToNextLevel(pointsToNextLevel);
-                            Bukkit.getPluginManager().callEvent(event);
-                            long oldLevel = plugin.getPlayers().getIslandLevel(targetPlayer);
-                            if (!event.isCancelled()) {
-                                //plugin.getLogger().info("DEBUG: updating player");
+                // Fire the island post level calculation event
+                final IslandPostLevelEvent event3 =
+                        new IslandPostLevelEvent(targetPlayer, island, event.getLongLevel(),
+                                event.getLongPointsToNextLevel());
+                Bukkit.getPluginManager().callEvent(event3);
 
-                                if (oldLevel != event.getLevel()) {
-                                    // Update player and team mates
-                                    plugin.getPlayers().setIslandLevel(targetPlayer, event.getLevel());
-                                    //plugin.getLogger().info("DEBUG: set island level, now trying to save player");
-                                    plugin.getPlayers().save(targetPlayer);
+                if (!event3.isCancelled()) {
+                    // Check that sender still is online
+                    if (sender != null) {
+                        // Check if console
+                        if (!(sender instanceof Player)) {
+                            // Console  
+                            if (!report) {
+                                Util.sendMessage(sender, ChatColor.GREEN + plugin.myLocale().islandislandLevelis
+                                        .replace("[level]",
+                                                String.valueOf(plugin.getPlayers().getIslandLevel(targetPlayer))));
+                            } else {
+                                for (String line : reportLines) {
+                                    Util.sendMessage(sender, line);
                                 }
-                                //plugin.getLogger().info("DEBUG: save player, now looking at team members");
-                                // Update any team members too
-                                if (plugin.getPlayers().inTeam(targetPlayer)) {
-                                    //plugin.getLogger().info("DEBUG: player is in team");
-                                    for (UUID member : plugin.getPlayers().getMembers(targetPlayer)) {
-                                        //plugin.getLogger().info("DEBUG: updating team member level too");
-                                        if (plugin.getPlayers().getIslandLevel(member) != event.getLevel()) {
-                                            plugin.getPlayers().setIslandLevel(member, event.getLevel());
-                                            plugin.getPlayers().save(member);
-                                        }
-                                    }
+                                Util.sendMessage(sender, ChatColor.GREEN + plugin.myLocale().islandislandLevelis
+                                        .replace("[level]",
+                                                String.valueOf(plugin.getPlayers().getIslandLevel(targetPlayer))));
+                                if (event.getLongPointsToNextLevel() >= 0) {
+                                    String toNextLevel =
+                                            ChatColor.GREEN + plugin.myLocale().islandrequiredPointsToNextLevel
+                                                    .replace("[points]", String.valueOf(event.getLongPointsToNextLevel()));
+                                    toNextLevel = toNextLevel
+                                            .replace("[next]",
+                                                    String.valueOf(plugin.getPlayers().getIslandLevel(targetPlayer) + 1));
+                                    Util.sendMessage(sender, toNextLevel);
+                                }
+                            }
+                        } else {
+                            // Player
+                            if (!report) {
+                                // Tell offline team members the island level changed
+                                if (plugin.getPlayers().getIslandLevel(targetPlayer) != oldLevel) {
+                                    //plugin.getLogger().info("DEBUG: telling offline players");
+                                    plugin.getMessages().tellOfflineTeam(targetPlayer,
+                                            ChatColor.GREEN + plugin.myLocale().islandislandLevelis.replace("[level]",
+                                                    String.valueOf(plugin.getPlayers().getIslandLevel(targetPlayer))));
                                 }
-                                //plugin.getLogger().info("DEBUG: finished team member saving");
-                                //plugin.getLogger().info("DEBUG: updating top ten");
-                                if (plugin.getPlayers().inTeam(targetPlayer)) {
-                                    UUID leader = plugin.getPlayers().getTeamLeader(targetPlayer);
-                                    if (leader != null) {
-                                        TopTen.topTenAddEntry(leader, event.getLongLevel());
+                                if (sender instanceof Player && ((Player) sender).isOnline()) {
+                                    String message =
+                                            ChatColor.GREEN + plugin.myLocale(
+                                                    ((Player) sender).getUniqueId()).islandislandLevelis
+                                                    .replace("[level]", String.valueOf(
+                                                            plugin.getPlayers().getIslandLevel(targetPlayer)));
+                                    if (Settings.deathpenalty != 0) {
+                                        message += " " + plugin.myLocale(((Player) sender).getUniqueId()).levelDeaths
+                                                .replace("[number]", String.valueOf(deathHandicap));
+                                    }
+                                    Util.sendMessage(sender, message);
+                                    //Send player how many points are required to reach next island level
+                                    if (event.getLongPointsToNextLevel() >= 0) {
+                                        String toNextLevel = ChatColor.GREEN + plugin
+                                                .myLocale(((Player) sender).getUniqueId()).islandrequiredPointsToNextLevel
+                                                .replace("[points]", String.valueOf(event.getLongPointsToNextLevel()));
+                                        toNextLevel = toNextLevel
+                                                .replace("[next]", String.valueOf(
+                                                        plugin.getPlayers().getIslandLevel(targetPlayer) + 1));
+                                        Util.sendMessage(sender, toNextLevel);
                                     }
-                                } else {
-                                    TopTen.topTenAddEntry(targetPlayer, event.getLongLevel());
                                 }
-                            }
-
-                            // Fire the island post level calculation event
-                            final IslandPostLevelEvent event3 =
-                                    new IslandPostLevelEvent(targetPlayer, island, event.getLongLevel(),
-                                            event.getLongPointsToNextLevel());
-                            Bukkit.getPluginManager().callEvent(event3);
-
-                            if (!event3.isCancelled()) {
-                                // Check that sender still is online
-                                if (sender != null) {
-                                    // Check if console
-                                    if (!(sender instanceof Player)) {
-                                        // Console  
-                                        if (!report) {
-                                            Util.sendMessage(sender, ChatColor.GREEN + plugin.myLocale().islandislandLevelis
-                                                    .replace("[level]",
-                                                            String.valueOf(plugin.getPlayers().getIslandLevel(targetPlayer))));
-                                        } else {
-                                            for (String line : reportLines) {
-                                                Util.sendMessage(sender, line);
-                                            }
-                                            Util.sendMessage(sender, ChatColor.GREEN + plugin.myLocale().islandislandLevelis
-                                                    .replace("[level]",
-                                                            String.valueOf(plugin.getPlayers().getIslandLevel(targetPlayer))));
-                                            if (event.getLongPointsToNextLevel() >= 0) {
-                                                String toNextLevel =
-                                                        ChatColor.GREEN + plugin.myLocale().islandrequiredPointsToNextLevel
-                                                                .replace("[points]", String.valueOf(event.getLongPointsToNextLevel()));
-                                                toNextLevel = toNextLevel
-                                                        .replace("[next]",
-                                                                String.valueOf(plugin.getPlayers().getIslandLevel(targetPlayer) + 1));
-                                                Util.sendMessage(sender, toNextLevel);
-                                            }
-                                        }
-                                    } else {
-                                        // Player
-                                        if (!report) {
-                                            // Tell offline team members the island level changed
-                                            if (plugin.getPlayers().getIslandLevel(targetPlayer) != oldLevel) {
-                                                //plugin.getLogger().info("DEBUG: telling offline players");
-                                                plugin.getMessages().tellOfflineTeam(targetPlayer,
-                                                        ChatColor.GREEN + plugin.myLocale().islandislandLevelis.replace("[level]",
-                                                                String.valueOf(plugin.getPlayers().getIslandLevel(targetPlayer))));
-                                            }
-                                            if (sender instanceof Player && ((Player) sender).isOnline()) {
-                                                String message =
-                                                        ChatColor.GREEN + plugin.myLocale(
-                                                                ((Player) sender).getUniqueId()).islandislandLevelis
-                                                                .replace("[level]", String.valueOf(
-                                                                        plugin.getPlayers().getIslandLevel(targetPlayer)));
-                                                if (Settings.deathpenalty != 0) {
-                                                    message += " " + plugin.myLocale(((Player) sender).getUniqueId()).levelDeaths
-                                                            .replace("[number]", String.valueOf(deathHandicap));
-                                                }
-                                                Util.sendMessage(sender, message);
-                                                //Send player how many points are required to reach next island level
-                                                if (event.getLongPointsToNextLevel() >= 0) {
-                                                    String toNextLevel = ChatColor.GREEN + plugin
-                                                            .myLocale(((Player) sender).getUniqueId()).islandrequiredPointsToNextLevel
-                                                            .replace("[points]", String.valueOf(event.getLongPointsToNextLevel()));
-                                                    toNextLevel = toNextLevel
-                                                            .replace("[next]", String.valueOf(
-                                                                    plugin.getPlayers().getIslandLevel(targetPlayer) + 1));
-                                                    Util.sendMessage(sender, toNextLevel);
-                                                }
-                                            }
-                                        } else {
-                                            if (((Player) sender).isOnline()) {
-                                                for (String line : reportLines) {
-                                                    Util.sendMessage(sender, line);
-                                                }
-                                            }
-                                            Util.sendMessage(sender,
-                                                    ChatColor.GREEN + plugin.myLocale().islandislandLevelis + " " + ChatColor.WHITE
-                                                            + plugin
-                                                            .getPlayers().getIslandLevel(targetPlayer));
-                                            if (event.getLongPointsToNextLevel() >= 0) {
-                                                String toNextLevel =
-                                                        ChatColor.GREEN + plugin.myLocale().islandrequiredPointsToNextLevel
-                                                                .replace("[points]", String.valueOf(event.getLongPointsToNextLevel()));
-                                                toNextLevel = toNextLevel
-                                                        .replace("[next]",
-                                                                String.valueOf(plugin.getPlayers().getIslandLevel(targetPlayer) + 1));
-                                                Util.sendMessage(sender, toNextLevel);
-                                            }
-                                        }
+                            } else {
+                                if (((Player) sender).isOnline()) {
+                                    for (String line : reportLines) {
+                                        Util.sendMessage(sender, line);
                                     }
                                 }
+                                Util.sendMessage(sender,
+                                        ChatColor.GREEN + plugin.myLocale().islandislandLevelis + " " + ChatColor.WHITE
+                                                + plugin
+                                                .getPlayers().getIslandLevel(targetPlayer));
+                                if (event.getLongPointsToNextLevel() >= 0) {
+                                    String toNextLevel =
+                                            ChatColor.GREEN + plugin.myLocale().islandrequiredPointsToNextLevel
+                                                    .replace("[points]", String.valueOf(event.getLongPointsToNextLevel()));
+                                    toNextLevel = toNextLevel
+                                            .replace("[next]",
+                                                    String.valueOf(plugin.getPlayers().getIslandLevel(targetPlayer) + 1));
+                                    Util.sendMessage(sender, toNextLevel);
+                                }
                             }
                         }
-                    });
+                    }
                 }
-            });
+            }
+        });
+    }
+
+    /**
+     * @param counts - block counts by key
+     * @return the total number of blocks
+     */
+    private static long sum(int[] counts) {
+        long result = 0;
+        for (int count : counts) {
+            result += count;
+        }
+        return result;
+    }
+
+    /**
+     * Adds a line to the report for each block type that has a value
+     *
+     * @param counts - block counts by key
+     * @param table - compiled block values
+     * @param highestFirst - if true, list the most common blocks first
+     * @return the total value of the blocks
+     */
+    private long reportValues(int[] counts, BlockValueTable table, boolean highestFirst) {
+        List<Integer> keys = new ArrayList<Integer>();
+        for (int key = 0; key < BlockValueTable.SIZE; key++) {
+            if (counts[key] > 0 && table.getValue(key) > 0) {
+                keys.add(key);
+            }
+        }
+        if (highestFirst) {
+            keys.sort((a, b) -> Integer.compare(counts[b], counts[a]));
+        }
+        long total = 0;
+        for (int key : keys) {
+            int value = table.getValue(key);
+            reportLines.add(BlockValueTable.getMaterialData(key).toString() + ":"
+                    + String.format("%,d", counts[key]) + " blocks x " + value + " = " + ((long) value * counts[key]));
+            total += (long) value * counts[key];
         }
+        return total;
     }
 
 }
@@ -0,0 +1,190 @@
+package com.wasteofplastic.askyblock;
+
+/**
+ * Running total of the block values on an island. It is set by a full level calculation
+ * and then kept up to date from block changes so that the island level can be worked out
+ * without scanning the island. It is only valid for the block values and sea height it was
+ * counted with.
+ *
+ * @author tastybento
+ */
+public class LevelTally {
+
+    private long value;
+    private long underWaterValue;
+    // For each limit slot, the blocks above and at or below sea level, and how many of them are counted
+    private final int[] seenAbove;
+    private final int[] seenUnder;
+    private final int[] countedAbove;
+    private final int[] countedUnder;
+    private final int signature;
+    private final long lastScan;
+
+    /**
+     * Makes a tally from the results of a full level calculation
+     *
+     * @param value - value of the blocks above sea level, including counted limited blocks
+     * @param underWaterValue - value of the blocks at or below sea level, including counted limited blocks, before the multiplier
+     * @param seenAbove - number of blocks found above sea level for each limit slot, including ones over the limit
+     * @param seenUnder - number of blocks found at or below sea level for each limit slot, including ones over the limit
+     * @param countedAbove - number of the blocks above sea level that were counted for each limit slot
+     * @param countedUnder - number of the blocks at or below sea level that were counted for each limit slot
+     */
+    public LevelTally(long value, long underWaterValue, int[] seenAbove, int[] seenUnder, int[] countedAbove, int[] countedUnder) {
+        this(value, underWaterValue, seenAbove, seenUnder, countedAbove, countedUnder, getCurrentSignature(), System.currentTimeMillis());
+    }
+
+    private LevelTally(long value, long underWaterValue, int[] seenAbove, int[] seenUnder, int[] countedAbove, int[] countedUnder,
+                       int signature, long lastScan) {
+        this.value = value;
+        this.underWaterValue = underWaterValue;
+        this.seenAbove = seenAbove;
+        this.seenUnder = seenUnder;
+        this.countedAbove = countedAbove;
+        this.countedUnder = countedUnder;
+        this.signature = signature;
+        this.lastScan = lastScan;
+    }
+
+    /**
+     * Loads a tally saved by {@link #toString()}
+     *
+     * @param serial
+     * @return the tally, or null if it cannot be read or was made with different block values
+     */
+    public static LevelTally fromString(String serial) {
+        try {
+            String[] split = serial.split(";", -1);
+            int signature = Integer.parseInt(split[3]);
+            if (signature != getCurrentSignature()) {
+                return null;
+            }
+            int slots = Settings.blockValueTable.getLimitCount();
+            int[] seenAbove = new int[slots];
+            int[] seenUnder = new int[slots];
+            int[] countedAbove = new int[slots];
+            int[] countedUnder = new int[slots];
+            if (!split[4].isEmpty()) {
+                String[] counts = split[4].split(",");
+                if (counts.length != slots) {
+                    return null;
+                }
+                for (int i = 0; i < counts.length; i++) {
+                    // Older tallies used : which is also the island serial separator
+                    String[] count = counts[i].split("[/:]");
+                    if (count.length != 4) {
+                        // Saved before blocks under water were told apart
+                        return null;
+                    }
+                    seenAbove[i] = Integer.parseInt(count[0]);
+                    seenUnder[i] = Integer.parseInt(count[1]);
+                    countedAbove[i] = Integer.parseInt(count[2]);
+                    countedUnder[i] = Integer.parseInt(count[3]);
+                }
+            }
+            return new LevelTally(Long.parseLong(split[0]), Long.parseLong(split[1]), seenAbove, seenUnder, countedAbove, countedUnder,
+                    signature, Long.parseLong(split[2]));
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    private static int getCurrentSignature() {
+        return 31 * Settings.blockValueTable.getSignature() + Settings.seaHeight;
+    }
+
+    /**
+     * Adds or removes a block
+     *
+     * @param key - block key, see {@link BlockValueTable#getKey(int, int)}
+     * @param y - height of the block
+     * @param delta - 1 if the block was added, -1 if it was removed
+     */
+    public void add(int key, int y, int delta) {
+        BlockValueTable table = Settings.blockValueTable;
+        int blockValue = table.getValue(key);
+        if (blockValue == BlockValueTable.NOT_COUNTED) {
+            return;
+        }
+        boolean underWater = Settings.seaHeight > 0 && y <= Settings.seaHeight;
+        int slot = table.getLimitSlots()[key];
+        if (slot != BlockValueTable.NO_LIMIT) {
+            int above = countedAbove[slot];
+            int under = countedUnder[slot];
+            if (underWater) {
+                changeLimited(slot, table.getLimit(slot), delta, seenUnder, countedUnder, seenAbove, countedAbove);
+            } else {
+                changeLimited(slot, table.getLimit(slot), delta, seenAbove, countedAbove, seenUnder, countedUnder);
+            }
+            // Only the change to the number of blocks that are under the limit counts
+            value += (long) (countedAbove[slot] - above) * blockValue;
+            underWaterValue += (long) (countedUnder[slot] - under) * blockValue;
+        } else if (underWater) {
+            underWaterValue += (long) delta * blockValue;
+        } else {
+            value += (long) delta * blockValue;
+        }
+    }
+
+    /**
+     * Adds or removes a limited block on one side of sea level. A block that is added is counted if there is room
+     * under the limit. A block that is removed is taken to be one over the limit if its side has any. Otherwise it
+     * was counted, and a block over the limit on the other side of sea level takes its place.
+     *
+     * @param seen - blocks found on the side of the block
+     * @param counted - blocks counted on the side of the block
+     * @param otherSeen - blocks found on the other side of sea level
+     * @param otherCounted - blocks counted on the other side of sea level
+     */
+    private static void changeLimited(int slot, int limit, int delta, int[] seen, int[] counted, int[] otherSeen, int[] otherCounted) {
+        if (delta > 0) {
+            seen[slot]++;
+            if (counted[slot] + otherCounted[slot] < limit) {
+                counted[slot]++;
+            }
+            return;
+        }
+        if (seen[slot] == 0) {
+            return;
+        }
+        seen[slot]--;
+        // If every block on this side was counted, the one removed was
+        if (counted[slot] > seen[slot]) {
+            counted[slot]--;
+            if (otherSeen[slot] > otherCounted[slot]) {
+                otherCounted[slot]++;
+            }
+        }
+    }
+
+    /**
+     * @return the total block value of the island, with the under water multiplier applied
+     */
+    public long getBlockCount() {
+        return value + (long) ((double) underWaterValue * Settings.underWaterMultiplier);
+    }
+
+    /**
+     * @return true if the tally was made with the current block values and is not due for a full rescan
+     */
+    public boolean isCurrent() {
+        if (signature != getCurrentSignature()) {
+            return false;
+        }
+        return Settings.levelRescan <= 0 || System.currentTimeMillis() - lastScan < Settings.levelRescan * 60000L;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder counts = new StringBuilder();
+        for (int i = 0; i < seenAbove.length; i++) {
+            if (i > 0) {
+                counts.append(",");
+            }
+            // Not : because the tally is part of the island serial
+            counts.append(seenAbove[i]).append("/").append(seenUnder[i]).append("/").append(countedAbove[i]).append("/")
+                    .append(countedUnder[i]);
+        }
+        return value + ";" + underWaterValue + ";" + lastScan + ";" + signature + ";" + counts;
+    }
+}
@@ -0,0 +1,508 @@
+package com.wasteofplastic.askyblock;
+
+import org.bukkit.Bukkit;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.TreeMap;
+import java.util.UUID;
+
+/**
+ * Name and UUID database used by {@link TinyDB}. Names are kept in a file sorted by name, and again
+ * sorted by UUID, in blocks of {@link #BLOCK_SIZE} entries. Only the first entry of each block is kept
+ * in memory, so a lookup reads one block from disk and the file is never read in full.
+ * New names are appended to a log file and kept in memory. When the log gets big it is merged into
+ * the sorted file.
+ * <p>
+ * Layout: MAGIC and VERSION, the entries sorted by name, the entries sorted by UUID, the block index,
+ * then the position of the block index and MAGIC. An entry is the name, then the UUID.
+ *
+ * @author tastybento
+ */
+class NameDatabase {
+
+    private static final boolean DEBUG = false;
+    private static final int MAGIC = 0x41534B4E;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 8;
+    private static final int TRAILER_SIZE = 12;
+    // Entries in each block
+    private static final int BLOCK_SIZE = 64;
+    // Entries in the log before it is merged into the file
+    private static final int MAX_LOG = 10000;
+    private static final Comparator<NameEntry> BY_NAME = Comparator.comparing(e -> e.name);
+    private static final Comparator<NameEntry> BY_UUID = Comparator.comparing(e -> e.uuid);
+
+    private final File file;
+    private final File logFile;
+    private RandomAccessFile data;
+    private DataOutputStream logOut;
+    // First name of each block -> position
+    private final TreeMap<String, Long> nameBlocks = new TreeMap<>();
+    // First UUID of each block -> position
+    private final TreeMap<UUID, Long> uuidBlocks = new TreeMap<>();
+    private long uuidStart;
+    private long uuidEnd;
+    private int nameCount;
+    private int uuidCount;
+    // Entries in the log, oldest first
+    private List<NameEntry> log = new ArrayList<>();
+    private final Map<String, NameEntry> logByName = new HashMap<>();
+    private final Map<UUID, NameEntry> logByUUID = new HashMap<>();
+    // Held while the log is merged into the file
+    private final Object compactLock = new Object();
+
+    private static class NameEntry {
+        private final String name;
+        private final UUID uuid;
+
+        private NameEntry(String name, UUID uuid) {
+            this.name = name;
+            this.uuid = uuid;
+        }
+    }
+
+    /**
+     * @param file - the sorted file
+     * @param logFile - where new names are appended
+     */
+    NameDatabase(File file, File logFile) {
+        this.file = file;
+        this.logFile = logFile;
+    }
+
+    /**
+     * Opens the database, creating an empty one if the file does not exist
+     *
+     * @throws IOException if the file cannot be opened or is not a name database
+     */
+    synchronized void open() throws IOException {
+        if (!file.exists()) {
+            write(file, Collections.emptyIterator(), Collections.emptyIterator());
+        }
+        openData();
+        readLog();
+        logOut = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(logFile, true)));
+    }
+
+    /**
+     * @param name - lower case name
+     * @return the UUID, or null if the name is not known
+     */
+    synchronized UUID getUUID(String name) throws IOException {
+        NameEntry entry = logByName.get(name);
+        if (entry != null) {
+            return entry.uuid;
+        }
+        if (data == null) {
+            return null;
+        }
+        Map.Entry<String, Long> block = nameBlocks.floorEntry(name);
+        if (block == null) {
+            return null;
+        }
+        Map.Entry<String, Long> next = nameBlocks.higherEntry(name);
+        for (NameEntry e : readBlock(block.getValue(), next == null ? uuidStart : next.getValue())) {
+            if (e.name.equals(name)) {
+                return e.uuid;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @param playerUUID
+     * @return the name, or null if the UUID is not known
+     */
+    synchronized String getName(UUID playerUUID) throws IOException {
+        NameEntry entry = logByUUID.get(playerUUID);
+        if (entry != null) {
+            return entry.name;
+        }
+        if (data == null) {
+            return null;
+        }
+        Map.Entry<UUID, Long> block = uuidBlocks.floorEntry(playerUUID);
+        if (block == null) {
+            return null;
+        }
+        Map.Entry<UUID, Long> next = uuidBlocks.higherEntry(playerUUID);
+        for (NameEntry e : readBlock(block.getValue(), next == null ? uuidEnd : next.getValue())) {
+            if (e.uuid.equals(playerUUID)) {
+                return e.name;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Adds names to the database. Names that are already known with the same UUID are skipped.
+     * Should not be called from the main thread.
+     *
+     * @param names - lower case name -> UUID
+     * @return number of names that were added
+     */
+    int putAll(Map<String, UUID> names) throws IOException {
+        int added = 0;
+        boolean compact;
+        synchronized (this) {
+            if (logOut == null) {
+                throw new IOException(file.getName() + " is not open");
+            }
+            for (Map.Entry<String, UUID> en : names.entrySet()) {
+                if (en.getValue().equals(getUUID(en.getKey())) && en.getKey().equals(getName(en.getValue()))) {
+                    continue;
+                }
+                NameEntry entry = new NameEntry(en.getKey(), en.getValue());
+                writeEntry(logOut, entry);
+                addToLog(entry);
+                added++;
+            }
+            logOut.flush();
+            compact = log.size() >= MAX_LOG;
+        }
+        if (compact) {
+            compact();
+        }
+        return added;
+    }
+
+    /**
+     * Closes the database. New names stay in the log until it is next opened.
+     */
+    synchronized void close() {
+        try {
+            if (logOut != null) {
+                logOut.close();
+            }
+            if (data != null) {
+                data.close();
+            }
+        } catch (IOException e) {
+            Bukkit.getLogger().severe("Could not close " + file.getName() + "! " + e.getMessage());
+        }
+        logOut = null;
+        data = null;
+    }
+
+    private void addToLog(NameEntry entry) {
+        log.add(entry);
+        logByName.put(entry.name, entry);
+        logByUUID.put(entry.uuid, entry);
+    }
+
+    /**
+     * Merges the log into the sorted file. Lookups can carry on while the new file is written.
+     */
+    private void compact() throws IOException {
+        synchronized (compactLock) {
+            List<NameEntry> merged;
+            long namesAt = HEADER_SIZE;
+            long uuidsAt;
+            int names;
+            int uuids;
+            synchronized (this) {
+                if (log.size() < MAX_LOG) {
+                    return;
+                }
+                merged = new ArrayList<>(log);
+                uuidsAt = uuidStart;
+                names = nameCount;
+                uuids = uuidCount;
+            }
+            // Later entries replace earlier ones
+            Map<String, NameEntry> byName = new LinkedHashMap<>();
+            Map<UUID, NameEntry> byUUID = new LinkedHashMap<>();
+            for (NameEntry entry : merged) {
+                byName.put(entry.name, entry);
+                byUUID.put(entry.uuid, entry);
+            }
+            List<NameEntry> newNames = new ArrayList<>(byName.values());
+            newNames.sort(BY_NAME);
+            List<NameEntry> newUUIDs = new ArrayList<>(byUUID.values());
+            newUUIDs.sort(BY_UUID);
+            File temp = new File(file.getParentFile(), file.getName() + ".tmp");
+            long start = System.nanoTime();
+            try (DataInputStream nameIn = openSection(namesAt); DataInputStream uuidIn = openSection(uuidsAt)) {
+                write(temp, merge(new SectionIterator(nameIn, names), newNames.iterator(), BY_NAME),
+                        merge(new SectionIterator(uuidIn, uuids), newUUIDs.iterator(), BY_UUID));
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            synchronized (this) {
+                data.close();
+                try {
+                    Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                } catch (AtomicMoveNotSupportedException e) {
+                    Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+                }
+                openData();
+                // Keep what was added to the log while the file was being written
+                List<NameEntry> remaining = new ArrayList<>(log.subList(merged.size(), log.size()));
+                log = new ArrayList<>();
+                logByName.clear();
+                logByUUID.clear();
+                logOut.close();
+                logOut = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(logFile)));
+                for (NameEntry entry : remaining) {
+                    writeEntry(logOut, entry);
+                    addToLog(entry);
+                }
+                logOut.flush();
+            }
+            if (DEBUG) {
+                Bukkit.getLogger().info("DEBUG: merged " + merged.size() + " names into " + file.getName() + " in "
+                        + (System.nanoTime() - start) / 1000000 + " ms");
+            }
+        }
+    }
+
+    /**
+     * Opens the sorted file and reads the block index
+     */
+    private void openData() throws IOException {
+        data = new RandomAccessFile(file, "r");
+        if (data.length() < HEADER_SIZE + TRAILER_SIZE || data.readInt() != MAGIC || data.readInt() != VERSION) {
+            data.close();
+            throw new IOException(file.getName() + " is not a name database");
+        }
+        data.seek(data.length() - TRAILER_SIZE);
+        long indexStart = data.readLong();
+        if (data.readInt() != MAGIC) {
+            data.close();
+            throw new IOException(file.getName() + " is damaged");
+        }
+        data.seek(indexStart);
+        byte[] index = new byte[(int) (data.length() - TRAILER_SIZE - indexStart)];
+        data.readFully(index);
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(index));
+        nameCount = in.readInt();
+        uuidCount = in.readInt();
+        uuidStart = in.readLong();
+        uuidEnd = indexStart;
+        nameBlocks.clear();
+        int blocks = in.readInt();
+        for (int i = 0; i < blocks; i++) {
+            nameBlocks.put(in.readUTF(), in.readLong());
+        }
+        uuidBlocks.clear();
+        blocks = in.readInt();
+        for (int i = 0; i < blocks; i++) {
+            uuidBlocks.put(new UUID(in.readLong(), in.readLong()), in.readLong());
+        }
+    }
+
+    /**
+     * Reads the log into memory. A damaged entry at the end of the log, e.g., from a crash part way
+     * through a write, is removed.
+     */
+    private void readLog() throws IOException {
+        if (!logFile.exists()) {
+            return;
+        }
+        long position = 0;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(logFile)))) {
+            while (true) {
+                NameEntry entry = readEntry(in);
+                addToLog(entry);
+                position += entrySize(entry);
+            }
+        } catch (EOFException ignored) {
+        }
+        if (position < logFile.length()) {
+            Bukkit.getLogger().warning(logFile.getName() + " ends with a damaged entry. Removing it.");
+            try (RandomAccessFile raf = new RandomAccessFile(logFile, "rw")) {
+                raf.setLength(position);
+            }
+        }
+    }
+
+    private List<NameEntry> readBlock(long start, long end) throws IOException {
+        byte[] bytes = new byte[(int) (end - start)];
+        data.seek(start);
+        data.readFully(bytes);
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+        List<NameEntry> entries = new ArrayList<>(BLOCK_SIZE);
+        while (in.available() > 0) {
+            entries.add(readEntry(in));
+        }
+        return entries;
+    }
+
+    private DataInputStream openSection(long position) throws IOException {
+        FileInputStream in = new FileInputStream(file);
+        in.getChannel().position(position);
+        return new DataInputStream(new BufferedInputStream(in, 65536));
+    }
+
+    /**
+     * Writes a sorted file
+     *
+     * @param target - file to write
+     * @param byName - entries sorted by name
+     * @param byUUID - the same entries sorted by UUID
+     */
+    private static void write(File target, Iterator<NameEntry> byName, Iterator<NameEntry> byUUID) throws IOException {
+        List<String> nameKeys = new ArrayList<>();
+        List<Long> namePositions = new ArrayList<>();
+        List<UUID> uuidKeys = new ArrayList<>();
+        List<Long> uuidPositions = new ArrayList<>();
+        try (FileOutputStream stream = new FileOutputStream(target)) {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(stream, 65536));
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            long position = HEADER_SIZE;
+            int names = 0;
+            while (byName.hasNext()) {
+                NameEntry entry = byName.next();
+                if (names++ % BLOCK_SIZE == 0) {
+                    nameKeys.add(entry.name);
+                    namePositions.add(position);
+                }
+                writeEntry(out, entry);
+                position += entrySize(entry);
+            }
+            long uuidStart = position;
+            int uuids = 0;
+            while (byUUID.hasNext()) {
+                NameEntry entry = byUUID.next();
+                if (uuids++ % BLOCK_SIZE == 0) {
+                    uuidKeys.add(entry.uuid);
+                    uuidPositions.add(position);
+                }
+                writeEntry(out, entry);
+                position += entrySize(entry);
+            }
+            long indexStart = position;
+            out.writeInt(names);
+            out.writeInt(uuids);
+            out.writeLong(uuidStart);
+            out.writeInt(nameKeys.size());
+            for (int i = 0; i < nameKeys.size(); i++) {
+                out.writeUTF(nameKeys.get(i));
+                out.writeLong(namePositions.get(i));
+            }
+            out.writeInt(uuidKeys.size());
+            for (int i = 0; i < uuidKeys.size(); i++) {
+                out.writeLong(uuidKeys.get(i).getMostSignificantBits());
+                out.writeLong(uuidKeys.get(i).getLeastSignificantBits());
+                out.writeLong(uuidPositions.get(i));
+            }
+            out.writeLong(indexStart);
+            out.writeInt(MAGIC);
+            out.flush();
+            stream.getFD().sync();
+        }
+    }
+
+    /**
+     * Merges two sorted iterators. Where both have the same key, the entry from newer is used.
+     */
+    private static Iterator<NameEntry> merge(Iterator<NameEntry> older, Iterator<NameEntry> newer, Comparator<NameEntry> order) {
+        return new Iterator<NameEntry>() {
+            private NameEntry a = older.hasNext() ? older.next() : null;
+            private NameEntry b = newer.hasNext() ? newer.next() : null;
+
+            @Override
+            public boolean hasNext() {
+                return a != null || b != null;
+            }
+
+            @Override
+            public NameEntry next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                NameEntry result;
+                int compare = a == null ? 1 : b == null ? -1 : order.compare(a, b);
+                if (compare < 0) {
+                    result = a;
+                    a = older.hasNext() ? older.next() : null;
+                } else {
+                    result = b;
+                    b = newer.hasNext() ? newer.next() : null;
+                    if (compare == 0) {
+                        a = older.hasNext() ? older.next() : null;
+                    }
+                }
+                return result;
+            }
+        };
+    }
+
+    /**
+     * Reads one sorted section of the file
+     */
+    private static class SectionIterator implements Iterator<NameEntry> {
+        private final DataInputStream in;
+        private int remaining;
+
+        private SectionIterator(DataInputStream in, int count) {
+            this.in = in;
+            this.remaining = count;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return remaining > 0;
+        }
+
+        @Override
+        public NameEntry next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            remaining--;
+            try {
+                return readEntry(in);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    private static NameEntry readEntry(DataInputStream in) throws IOException {
+        String name = in.readUTF();
+        return new NameEntry(name, new UUID(in.readLong(), in.readLong()));
+    }
+
+    private static void writeEntry(DataOutputStream out, NameEntry entry) throws IOException {
+        out.writeUTF(entry.name);
+        out.writeLong(entry.uuid.getMostSignificantBits());
+        out.writeLong(entry.uuid.getLeastSignificantBits());
+    }
+
+    /**
+     * @return bytes used by the entry in a file
+     */
+    private static long entrySize(NameEntry entry) {
+        int length = 0;
+        for (int i = 0; i < entry.name.length(); i++) {
+            char c = entry.name.charAt(i);
+            length += c >= 0x0001 && c <= 0x007F ? 1 : c > 0x07FF ? 3 : 2;
+        }
+        return 2 + length + 16;
+    }
+}
@@ -19,29 +19,58 @@ package com.wasteofplastic.askyblock;
 import com.google.common.collect.Lists;
 import com.wasteofplastic.askyblock.util.VaultHelper;
 
+import org.bukkit.Bukkit;
 import org.bukkit.Location;
 import org.bukkit.entity.Player;
 
-import java.io.File;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Provides a memory cache of online player information
  * This is the one-stop-shop of player info
  * If the player is not cached, then a request is made to Players to obtain it
+ * <p>
+ * Online players are always cached. Up to Settings.playerCacheSize offline players are also kept,
+ * and the least recently used ones are saved and dropped when there are more. Player data is loaded
+ * on the login thread when a player logs in, or in the background by {@link #loadPlayer(UUID)}, so the
+ * server does not have to wait for the disk.
  *
  * @author tastybento
  */
 public class PlayerCache {
 
+    private static final boolean DEBUG = false;
+    // Ticks that a player loaded at login is kept if they do not join
+    private static final long PRELOAD_TICKS = 1200L;
     private final ASkyBlock plugin;
-    private HashMap<UUID, Players> playerCache = new HashMap<UUID, Players>();
+    // Least recently used first
+    private LinkedHashMap<UUID, Players> playerCache = new LinkedHashMap<UUID, Players>(16, 0.75F, true);
     private Set<UUID> inTeleport = new HashSet<UUID>();
+    // Players being loaded in the background
+    private final Map<UUID, CompletableFuture<Players>> loading = new HashMap<UUID, CompletableFuture<Players>>();
+    // Players loaded while logging in, waiting to be put in the cache
+    private final Map<UUID, Players> preLoaded = new ConcurrentHashMap<UUID, Players>();
+    // Set while trimming, because saving can load team leaders into the cache
+    private boolean trimming;
+    // Stats
+    private long hits;
+    private long misses;
+    private final AtomicLong loads = new AtomicLong();
+    private final AtomicLong loadTime = new AtomicLong();
+    private final AtomicLong maxLoadTime = new AtomicLong();
 
     public PlayerCache(ASkyBlock plugin) {
         this.plugin = plugin;
@@ -90,31 +119,38 @@ public class PlayerCache {
      */
 
     /**
-     * Stores the player's info to a file and removes the player from the list
-     * of currently online players
+     * Stores the player's info to a file. The player stays in the cache as an offline
+     * player until they are pushed out by more recently used players.
      *
      * @param player - name of player
      */
     public void removeOnlinePlayer(final UUID player) {
         if (playerCache.containsKey(player)) {
+            playerCache.get(player).setLastSeen(System.currentTimeMillis());
             playerCache.get(player).save();
-            playerCache.remove(player);
+            plugin.getChallenges().clearPanels(player);
             // plugin.getLogger().info("Removing player from cache: " + player);
         }
+        // In case they left before joining
+        preLoaded.remove(player);
     }
 
     /**
      * Removes all players on the server now from cache and saves their info
      */
     public void removeAllPlayers() {
-        for (UUID pl : playerCache.keySet()) {
-            playerCache.get(pl).save();
+        // Saving can look up team leaders, which reorders the cache, so go through a copy
+        for (Players pl : new ArrayList<Players>(playerCache.values())) {
+            if (Bukkit.getPlayer(pl.getPlayerUUID()) != null) {
+                pl.setLastSeen(System.currentTimeMillis());
+            }
+            pl.save();
         }
         playerCache.clear();
     }
 
     /**
-     * Checks if the player is known or not by looking through the filesystem
+     * Checks if the player is known or not by looking in the player store
      *
      * @param uniqueID
      * @return true if player is know, otherwise false
@@ -126,13 +162,8 @@ public class PlayerCache {
         if (playerCache.containsKey(uniqueID)) {
             return true;
         } else {
-            // Get the file system
-            try {
-                final File file = new File(plugin.getPlayersFolder(), uniqueID.toString() + ".yml");
-                return file.exists();
-            } catch (Exception e) {
-                return false;
-            }
+            // Check the player store
+            return plugin.getPlayerStore().exists(uniqueID);
         }
     }
 
@@ -168,17 +199,273 @@ public class PlayerCache {
 
     public void addPlayer(final UUID playerUUID) {
         //plugin.getLogger().info("DEBUG: added player " + playerUUID);
-        if (!playerCache.containsKey(playerUUID)) {
-            try {
-                final Players player = new Players(plugin, playerUUID);
+        if (playerUUID == null) {
+            return;
+        }
+        // Get rather than containsKey so that the player becomes the most recently used
+        if (playerCache.get(playerUUID) != null) {
+            hits++;
+            // Anything loaded at login is older than the cached player
+            preLoaded.remove(playerUUID);
+            return;
+        }
+        Players preLoadedPlayer = preLoaded.remove(playerUUID);
+        if (preLoadedPlayer != null) {
+            hits++;
+            playerCache.put(playerUUID, preLoadedPlayer);
+            trim();
+            return;
+        }
+        // The player has to be loaded now. If a background load is running, wait for it.
+        misses++;
+        if (DEBUG) {
+            plugin.getLogger().info("DEBUG: player cache miss for " + playerUUID);
+        }
+        CompletableFuture<Players> pending = loading.get(playerUUID);
+        final Players player = pending != null ? pending.join() : load(playerUUID);
+        if (player != null) {
+            playerCache.put(playerUUID, player);
+            trim();
+        }
+    }
+
+    /**
+     * Loads the player's data in the background if it is not already cached. Use this
+     * before working with players who may be offline.
+     *
+     * @param playerUUID
+     * @return future that is completed on the main thread once the player is in the cache,
+     * or with null if the player's data could not be loaded
+     */
+    public CompletableFuture<Players> loadPlayer(final UUID playerUUID) {
+        final CompletableFuture<Players> result = new CompletableFuture<Players>();
+        if (!Bukkit.isPrimaryThread()) {
+            // The cache is only used from the main thread
+            Bukkit.getScheduler().runTask(plugin, () -> loadPlayer(playerUUID).thenAccept(result::complete));
+            return result;
+        }
+        if (playerUUID == null) {
+            result.complete(null);
+            return result;
+        }
+        Players player = playerCache.get(playerUUID);
+        if (player == null) {
+            player = preLoaded.remove(playerUUID);
+            if (player != null) {
                 playerCache.put(playerUUID, player);
-            } catch (Exception e) {
-                // Be silent.
-                //plugin.getLogger().severe("Player add request for a null UUID");
+                trim();
+            }
+        } else {
+            preLoaded.remove(playerUUID);
+        }
+        if (player != null) {
+            hits++;
+            result.complete(player);
+            return result;
+        }
+        final CompletableFuture<Players> pending = loading.computeIfAbsent(playerUUID, uuid -> {
+            CompletableFuture<Players> future = new CompletableFuture<Players>();
+            Bukkit.getScheduler().runTaskAsynchronously(plugin, () -> future.complete(load(uuid)));
+            return future;
+        });
+        pending.thenAccept(loaded -> Bukkit.getScheduler().runTask(plugin, () -> {
+            loading.remove(playerUUID, pending);
+            // The player may have been loaded while waiting for this task
+            Players cached = playerCache.get(playerUUID);
+            if (cached == null && loaded != null) {
+                playerCache.put(playerUUID, loaded);
+                trim();
+                cached = loaded;
             }
+            result.complete(cached);
+        }));
+        return result;
+    }
+
+    /**
+     * Reads the player's file on this thread, ready for when they join. Called from the login thread,
+     * which waits for it instead of the server.
+     *
+     * @param playerUUID
+     */
+    public void preLoadPlayer(final UUID playerUUID) {
+        final Players player = load(playerUUID);
+        if (player != null) {
+            preLoaded.put(playerUUID, player);
+            // In case the login is stopped without an event saying so, e.g., the player disconnects
+            Bukkit.getScheduler().runTaskLater(plugin, () -> preLoaded.remove(playerUUID, player), PRELOAD_TICKS);
         }
     }
 
+    /**
+     * Forgets the player's data that was loaded at login, e.g., because the login was denied
+     *
+     * @param playerUUID
+     */
+    public void dropPreLoadedPlayer(final UUID playerUUID) {
+        preLoaded.remove(playerUUID);
+    }
+
+    /**
+     * Loads players in the background that are not already cached
+     *
+     * @param players
+     * @return future that is completed on the main thread once they are all in the cache
+     */
+    public CompletableFuture<Void> loadPlayers(final Collection<UUID> players) {
+        List<CompletableFuture<Players>> futures = new ArrayList<CompletableFuture<Players>>();
+        for (UUID playerUUID : players) {
+            futures.add(loadPlayer(playerUUID));
+        }
+        return CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0]));
+    }
+
+    /**
+     * Loads players in the background along with their team leaders and team members, e.g., before
+     * showing information about them
+     *
+     * @param players
+     * @return future that is completed on the main thread once they are all in the cache
+     */
+    public CompletableFuture<Void> loadTeams(final Collection<UUID> players) {
+        return loadPlayers(players).thenCompose(v -> {
+            Set<UUID> leaders = new HashSet<UUID>();
+            for (UUID playerUUID : players) {
+                UUID leader = getTeamLeader(playerUUID);
+                if (leader != null) {
+                    leaders.add(leader);
+                }
+            }
+            return loadPlayers(leaders);
+        }).thenCompose(v -> {
+            Set<UUID> others = new HashSet<UUID>();
+            for (UUID playerUUID : players) {
+                UUID leader = getTeamLeader(playerUUID);
+                others.addAll(getMembers(leader == null ? playerUUID : leader));
+            }
+            return loadPlayers(others);
+        });
+    }
+
+    /**
+     * Loads the players whose file says they are in this leader's team, whether or not the leader
+     * lists them. Used to find team members that the leader has lost.
+     *
+     * @param teamLeader
+     * @return future that is completed on the main thread with the players once they are all in the cache
+     */
+    public CompletableFuture<Set<UUID>> loadStoredTeam(final UUID teamLeader) {
+        final CompletableFuture<Set<UUID>> members = new CompletableFuture<Set<UUID>>();
+        Bukkit.getScheduler().runTaskAsynchronously(plugin,
+                () -> members.complete(plugin.getPlayerStore().getTeamMembers(teamLeader)));
+        return members.thenCompose(found -> loadPlayers(found).thenApply(v -> found));
+    }
+
+    /**
+     * Reads the player's file. Can be called from any thread.
+     *
+     * @param playerUUID
+     * @return player or null if the player could not be loaded
+     */
+    private Players load(final UUID playerUUID) {
+        long start = System.nanoTime();
+        try {
+            return new Players(plugin, playerUUID);
+        } catch (Exception e) {
+            // Be silent.
+            //plugin.getLogger().severe("Player add request for a null UUID");
+            return null;
+        } finally {
+            long time = System.nanoTime() - start;
+            loads.incrementAndGet();
+            loadTime.addAndGet(time);
+            maxLoadTime.accumulateAndGet(time, Math::max);
+        }
+    }
+
+    /**
+     * Saves and removes the least recently used offline players if there are too many
+     */
+    private void trim() {
+        int excess = playerCache.size() - Settings.playerCacheSize;
+        if (excess <= 0 || trimming) {
+            return;
+        }
+        for (Player p : Bukkit.getOnlinePlayers()) {
+            if (playerCache.containsKey(p.getUniqueId())) {
+                excess--;
+            }
+        }
+        // Saving can look up team leaders, which reorders the cache, so go through a copy
+        List<UUID> oldest = new ArrayList<UUID>(playerCache.keySet());
+        // Never remove the most recently used player, which may have just been added
+        oldest.remove(oldest.size() - 1);
+        trimming = true;
+        try {
+            for (UUID playerUUID : oldest) {
+                if (excess <= 0) {
+                    break;
+                }
+                Players player = playerCache.get(playerUUID);
+                if (player != null && Bukkit.getPlayer(playerUUID) == null) {
+                    if (DEBUG) {
+                        plugin.getLogger().info("DEBUG: removing offline player " + playerUUID + " from the cache");
+                    }
+                    // The file is made in the background because nothing uses this player any more.
+                    // Removed afterwards so that saving does not load the player again.
+                    player.saveLater();
+                    playerCache.remove(playerUUID);
+                    excess--;
+                }
+            }
+        } finally {
+            trimming = false;
+        }
+    }
+
+    /**
+     * @return number of players in the cache
+     */
+    public int getCacheSize() {
+        return playerCache.size();
+    }
+
+    /**
+     * @return number of times a player was found in the cache
+     */
+    public long getHits() {
+        return hits;
+    }
+
+    /**
+     * @return number of times the server had to wait for a player to be loaded
+     */
+    public long getMisses() {
+        return misses;
+    }
+
+    /**
+     * @return number of player files read, including background loads
+     */
+    public long getLoads() {
+        return loads.get();
+    }
+
+    /**
+     * @return average time to read a player file in milliseconds
+     */
+    public double getAverageLoadTime() {
+        long count = loads.get();
+        return count == 0 ? 0D : loadTime.get() / 1000000D / count;
+    }
+
+    /**
+     * @return longest time to read a player file in milliseconds
+     */
+    public double getMaxLoadTime() {
+        return maxLoadTime.get() / 1000000D;
+    }
+
     /**
      * Checks if player has island from cache if available
      *
@@ -237,6 +524,7 @@ public class PlayerCache {
         playerCache.get(playerUUID).setIslandLevel(0);
         playerCache.get(playerUUID).save(); // Needed?
         TopTen.topTenRemoveEntry(playerUUID);
+        plugin.getLeaderboard().remove(playerUUID);
     }
 
     /**
@@ -335,10 +623,20 @@ public class PlayerCache {
         return playerCache.get(playerUUID).getIslandLevel();
     }
 
+    /**
+     * @param playerUUID
+     * @return when the player was last on the server, or 0 if it is not known
+     */
+    public long getLastSeen(UUID playerUUID) {
+        addPlayer(playerUUID);
+        return playerCache.get(playerUUID).getLastSeen();
+    }
+
     public void setIslandLevel(UUID playerUUID, long l) {
         addPlayer(playerUUID);
         playerCache.get(playerUUID).setIslandLevel(l);
         plugin.getChatListener().setPlayerLevel(playerUUID, l);
+        plugin.getLeaderboard().setIslandLevel(playerUUID, l);
     }
 
     public void setTeamIslandLocation(UUID playerUUID, Location islandLocation) {
@@ -395,6 +693,7 @@ public class PlayerCache {
     public void resetChallenge(UUID playerUUID, String challenge) {
         addPlayer(playerUUID);
         playerCache.get(playerUUID).resetChallenge(challenge);
+        plugin.getChallenges().clearPanels(playerUUID);
     }
 
     /**
@@ -406,6 +705,7 @@ public class PlayerCache {
      */
     public void resetAllChallenges(UUID playerUUID, boolean resetAll) {
         addPlayer(playerUUID);
+        plugin.getChallenges().clearPanels(playerUUID);
         if (resetAll) {
             playerCache.get(playerUUID).resetAllChallenges();
         } else {
@@ -506,6 +806,7 @@ public class PlayerCache {
     public void completeChallenge(UUID playerUUID, String challenge) {
         addPlayer(playerUUID);
         playerCache.get(playerUUID).completeChallenge(challenge);
+        plugin.getChallenges().clearPanels(playerUUID);
     }
 
     public boolean challengeExists(UUID playerUUID, String challenge) {
@@ -543,12 +844,12 @@ public class PlayerCache {
         // the cache. For example, Bill had an island but left. Bill changes his name to Bob. Then Alice changes
         // her name to Bill and logs into the game. There are now two islands with owner names called "Bill"
         // The name database will ensure the names are updated.
-        for (UUID id : playerCache.keySet()) {
-            String name = playerCache.get(id).getPlayerName();
+        for (Entry<UUID, Players> en : playerCache.entrySet()) {
+            String name = en.getValue().getPlayerName();
             //plugin.getLogger().info("DEBUG: Testing name " + name);
             if (name != null && name.equalsIgnoreCase(string)) {
-                //plugin.getLogger().info("DEBUG: found it! " + id);
-                return id;
+                //plugin.getLogger().info("DEBUG: found it! " + en.getKey());
+                return en.getKey();
             }
         }
         // Try the server
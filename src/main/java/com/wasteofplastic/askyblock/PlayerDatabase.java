@@ -0,0 +1,535 @@
+package com.wasteofplastic.askyblock;
+
+import org.bukkit.Bukkit;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+/**
+ * Keeps every player in one file instead of one file per player. Saves are appended to the end of
+ * the file, so a batch of players is written with one write and one sync. Where each player's latest
+ * record is, and the summary of each player, are kept in memory so that looking players up by island
+ * location, team leader or island level does not read the file. They are saved in an index file when
+ * the store is closed so that the whole file does not have to be read at startup. If the index file is
+ * missing or out of date, the file is read instead.
+ * The file is rewritten without the old records when more than half of it is old records.
+ * <p>
+ * Layout: MAGIC and VERSION, then records. A record is the length in bytes of the player file,
+ * a CRC32 of the player file, the player's UUID and then the player file in UTF-8.
+ *
+ * @author tastybento
+ */
+class PlayerDatabase implements PlayerStore {
+
+    private static final boolean DEBUG = false;
+    private static final int MAGIC = 0x41534B50;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 8;
+    private static final int RECORD_HEADER_SIZE = 24;
+    private static final int INDEX_VERSION = 2;
+    // Smallest file that is compacted
+    private static final long MIN_COMPACT = 1024 * 1024;
+    // Player files changed at a time by setAll
+    private static final int BATCH_SIZE = 1000;
+
+    private final File file;
+    private final File indexFile;
+    private RandomAccessFile raf;
+    private FileChannel channel;
+    // End of the data
+    private long end;
+    // Bytes used by the latest records
+    private long live;
+    // Player -> latest record
+    private final Map<UUID, Record> records = new HashMap<>();
+    // Secondary indexes
+    private final Map<String, UUID> byIslandLocation = new HashMap<>();
+    private final TreeMap<Long, Set<UUID>> byLevel = new TreeMap<>();
+    private final Map<UUID, Set<UUID>> byTeamLeader = new HashMap<>();
+
+    private static class Record {
+        private final long offset;
+        private final int length;
+        private final PlayerSummary summary;
+
+        private Record(long offset, int length, PlayerSummary summary) {
+            this.offset = offset;
+            this.length = length;
+            this.summary = summary;
+        }
+    }
+
+    /**
+     * @param file - the player database
+     * @param indexFile - where the index is kept when the database is closed
+     */
+    PlayerDatabase(File file, File indexFile) {
+        this.file = file;
+        this.indexFile = indexFile;
+    }
+
+    /**
+     * Opens the database, creating an empty one if the file does not exist
+     *
+     * @throws IOException if the file cannot be opened or is not a player database
+     */
+    synchronized void open() throws IOException {
+        boolean exists = file.exists() && file.length() >= HEADER_SIZE;
+        raf = new RandomAccessFile(file, "rw");
+        channel = raf.getChannel();
+        if (exists) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            readFully(header, 0);
+            header.flip();
+            if (header.getInt() != MAGIC || header.getInt() != VERSION) {
+                close();
+                throw new IOException(file.getName() + " is not a player database");
+            }
+            if (!loadIndex()) {
+                scan();
+            }
+        } else {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            header.putInt(MAGIC).putInt(VERSION).flip();
+            channel.truncate(0);
+            channel.write(header, 0);
+            channel.force(true);
+            end = HEADER_SIZE;
+        }
+        // The index is out of date as soon as anything is written
+        if (indexFile.exists()) {
+            indexFile.delete();
+        }
+        if (end > MIN_COMPACT && end - HEADER_SIZE > 2 * live) {
+            compact();
+        }
+    }
+
+    @Override
+    public synchronized String load(UUID playerUUID) throws IOException {
+        Record record = records.get(playerUUID);
+        if (record == null) {
+            return null;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(record.length);
+        readFully(buffer, record.offset + RECORD_HEADER_SIZE);
+        return new String(buffer.array(), StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public synchronized Map<UUID, String> save(Map<UUID, String> files) {
+        if (files.isEmpty()) {
+            return new LinkedHashMap<>();
+        }
+        try {
+            append(files);
+            return new LinkedHashMap<>();
+        } catch (IOException e) {
+            // The records are appended with one write, so none of them are in the file
+            Bukkit.getLogger().severe("Could not save " + files.size() + " players to " + file.getName() + "! " + e.getMessage());
+            return new LinkedHashMap<>(files);
+        }
+    }
+
+    /**
+     * Appends the records with one write and one sync, then indexes them
+     */
+    private void append(Map<UUID, String> files) throws IOException {
+        List<byte[]> data = new ArrayList<>(files.size());
+        int size = 0;
+        for (String contents : files.values()) {
+            byte[] bytes = contents.getBytes(StandardCharsets.UTF_8);
+            data.add(bytes);
+            size += RECORD_HEADER_SIZE + bytes.length;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        int i = 0;
+        for (UUID playerUUID : files.keySet()) {
+            putRecord(buffer, playerUUID, data.get(i++));
+        }
+        buffer.flip();
+        long position = end;
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+        channel.force(false);
+        // Only index the records once they are safely on disk
+        i = 0;
+        long offset = end;
+        for (Map.Entry<UUID, String> en : files.entrySet()) {
+            int length = data.get(i++).length;
+            put(en.getKey(), new Record(offset, length, PlayerSummary.parse(en.getKey(), en.getValue())));
+            offset += RECORD_HEADER_SIZE + length;
+        }
+        end = offset;
+        if (DEBUG) {
+            Bukkit.getLogger().info("DEBUG: appended " + files.size() + " players to " + file.getName());
+        }
+    }
+
+    @Override
+    public synchronized boolean exists(UUID playerUUID) {
+        return records.containsKey(playerUUID);
+    }
+
+    @Override
+    public void forEachFile(BiConsumer<UUID, String> consumer) {
+        List<UUID> players;
+        synchronized (this) {
+            players = new ArrayList<>(records.keySet());
+        }
+        for (UUID playerUUID : players) {
+            try {
+                String contents = load(playerUUID);
+                if (contents != null) {
+                    consumer.accept(playerUUID, contents);
+                }
+            } catch (IOException e) {
+                Bukkit.getLogger().severe("Problem reading " + playerUUID + " from " + file.getName() + " skipping...");
+            }
+        }
+    }
+
+    @Override
+    public void forEach(Consumer<PlayerSummary> consumer) {
+        List<PlayerSummary> summaries = new ArrayList<>();
+        synchronized (this) {
+            for (Record record : records.values()) {
+                summaries.add(record.summary);
+            }
+        }
+        summaries.forEach(consumer);
+    }
+
+    @Override
+    public synchronized Map<String, UUID> getIslandOwners(Collection<String> islandLocations) {
+        Map<String, UUID> result = new HashMap<>();
+        for (String islandLocation : islandLocations) {
+            UUID owner = byIslandLocation.get(islandLocation);
+            if (owner != null) {
+                result.put(islandLocation, owner);
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public synchronized Set<UUID> getTeamMembers(UUID teamLeader) {
+        Set<UUID> members = byTeamLeader.get(teamLeader);
+        return members == null ? new HashSet<>() : new HashSet<>(members);
+    }
+
+    @Override
+    public synchronized List<PlayerSummary> getHighestLevels(int count) {
+        List<PlayerSummary> result = new ArrayList<>();
+        for (Set<UUID> players : byLevel.descendingMap().values()) {
+            for (UUID playerUUID : players) {
+                if (result.size() >= count) {
+                    return result;
+                }
+                result.add(records.get(playerUUID).summary);
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public int setAll(String key, String value) throws IOException {
+        List<UUID> players;
+        synchronized (this) {
+            players = new ArrayList<>(records.keySet());
+        }
+        int count = 0;
+        for (int i = 0; i < players.size(); i += BATCH_SIZE) {
+            count += setAll(players.subList(i, Math.min(players.size(), i + BATCH_SIZE)), key, value);
+        }
+        return count;
+    }
+
+    /**
+     * Changes a setting in the files of some players. The lock is held from reading the files until the
+     * changed ones are appended, so a save in between cannot be overwritten with old contents.
+     *
+     * @return the number of player files that were changed
+     */
+    private synchronized int setAll(List<UUID> players, String key, String value) throws IOException {
+        Map<UUID, String> batch = new LinkedHashMap<>();
+        for (UUID playerUUID : players) {
+            String contents = load(playerUUID);
+            if (contents == null) {
+                continue;
+            }
+            String[] lines = contents.split("\n", -1);
+            for (int i = 0; i < lines.length; i++) {
+                if (lines[i].startsWith(key + ":")) {
+                    lines[i] = key + ": " + value;
+                    batch.put(playerUUID, String.join("\n", lines));
+                    break;
+                }
+            }
+        }
+        if (!batch.isEmpty()) {
+            append(batch);
+        }
+        return batch.size();
+    }
+
+    @Override
+    public synchronized void close() {
+        if (channel == null) {
+            return;
+        }
+        try {
+            if (end > MIN_COMPACT && end - HEADER_SIZE > 2 * live) {
+                compact();
+            }
+            channel.force(true);
+            saveIndex();
+        } catch (IOException e) {
+            Bukkit.getLogger().severe("Could not save the index of " + file.getName() + "! " + e.getMessage());
+        }
+        try {
+            raf.close();
+        } catch (IOException ignored) {
+        }
+        raf = null;
+        channel = null;
+    }
+
+    /**
+     * Makes this player's latest record the given record
+     */
+    private void put(UUID playerUUID, Record record) {
+        Record previous = records.put(playerUUID, record);
+        if (previous != null) {
+            live -= RECORD_HEADER_SIZE + previous.length;
+            unindex(previous.summary);
+        }
+        live += RECORD_HEADER_SIZE + record.length;
+        index(record.summary);
+    }
+
+    private void index(PlayerSummary summary) {
+        if (!summary.getIslandLocation().isEmpty()) {
+            byIslandLocation.put(summary.getIslandLocation(), summary.getUUID());
+        }
+        // Only islands are ranked
+        if (summary.getIslandLevel() > 0 && summary.isIslandOwner()) {
+            byLevel.computeIfAbsent(summary.getIslandLevel(), k -> new HashSet<>()).add(summary.getUUID());
+        }
+        if (summary.inTeam() && summary.getTeamLeader() != null) {
+            byTeamLeader.computeIfAbsent(summary.getTeamLeader(), k -> new HashSet<>()).add(summary.getUUID());
+        }
+    }
+
+    private void unindex(PlayerSummary summary) {
+        byIslandLocation.remove(summary.getIslandLocation(), summary.getUUID());
+        Set<UUID> players = byLevel.get(summary.getIslandLevel());
+        if (players != null && players.remove(summary.getUUID()) && players.isEmpty()) {
+            byLevel.remove(summary.getIslandLevel());
+        }
+        if (summary.getTeamLeader() != null) {
+            Set<UUID> members = byTeamLeader.get(summary.getTeamLeader());
+            if (members != null && members.remove(summary.getUUID()) && members.isEmpty()) {
+                byTeamLeader.remove(summary.getTeamLeader());
+            }
+        }
+    }
+
+    /**
+     * Reads every record in the file to build the index. A damaged record at the end of the file,
+     * e.g., from a crash part way through a write, is removed.
+     */
+    private void scan() throws IOException {
+        long size = channel.size();
+        long position = HEADER_SIZE;
+        int count = 0;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 65536))) {
+            // Header
+            in.readLong();
+            CRC32 crc = new CRC32();
+            while (position + RECORD_HEADER_SIZE <= size) {
+                int length = in.readInt();
+                int checksum = in.readInt();
+                UUID playerUUID = new UUID(in.readLong(), in.readLong());
+                if (length < 0 || position + RECORD_HEADER_SIZE + length > size) {
+                    break;
+                }
+                byte[] bytes = new byte[length];
+                in.readFully(bytes);
+                crc.reset();
+                crc.update(bytes);
+                if ((int) crc.getValue() != checksum) {
+                    break;
+                }
+                put(playerUUID, new Record(position, length,
+                        PlayerSummary.parse(playerUUID, new String(bytes, StandardCharsets.UTF_8))));
+                position += RECORD_HEADER_SIZE + length;
+                count++;
+            }
+        } catch (EOFException ignored) {
+        }
+        if (position < size) {
+            Bukkit.getLogger().warning(file.getName() + " ends with a damaged record. Removing it.");
+            channel.truncate(position);
+        }
+        end = position;
+        Bukkit.getLogger().info("Read " + count + " records for " + records.size() + " players from " + file.getName());
+    }
+
+    /**
+     * Rewrites the file with only the latest record of each player
+     */
+    private void compact() throws IOException {
+        File temp = new File(file.getParentFile(), file.getName() + ".tmp");
+        Map<UUID, Record> moved = new HashMap<>();
+        long position = HEADER_SIZE;
+        try (FileChannel out = new FileOutputStream(temp).getChannel()) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            header.putInt(MAGIC).putInt(VERSION).flip();
+            out.write(header);
+            for (Map.Entry<UUID, Record> en : records.entrySet()) {
+                Record record = en.getValue();
+                ByteBuffer buffer = ByteBuffer.allocate(RECORD_HEADER_SIZE + record.length);
+                readFully(buffer, record.offset);
+                buffer.flip();
+                while (buffer.hasRemaining()) {
+                    out.write(buffer);
+                }
+                moved.put(en.getKey(), new Record(position, record.length, record.summary));
+                position += RECORD_HEADER_SIZE + record.length;
+            }
+            out.force(true);
+        }
+        raf.close();
+        try {
+            Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+        raf = new RandomAccessFile(file, "rw");
+        channel = raf.getChannel();
+        Bukkit.getLogger().info("Compacted " + file.getName() + " from " + end / 1024 + " KB to " + position / 1024 + " KB");
+        // Summaries are the same, so the secondary indexes do not change
+        records.putAll(moved);
+        end = position;
+    }
+
+    private void saveIndex() throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(indexFile), 65536))) {
+            out.writeInt(INDEX_VERSION);
+            out.writeLong(end);
+            out.writeInt(records.size());
+            for (Map.Entry<UUID, Record> en : records.entrySet()) {
+                Record record = en.getValue();
+                PlayerSummary summary = record.summary;
+                out.writeLong(en.getKey().getMostSignificantBits());
+                out.writeLong(en.getKey().getLeastSignificantBits());
+                out.writeLong(record.offset);
+                out.writeInt(record.length);
+                out.writeUTF(summary.getPlayerName());
+                out.writeUTF(summary.getIslandLocation());
+                out.writeBoolean(summary.getTeamLeader() != null);
+                if (summary.getTeamLeader() != null) {
+                    out.writeLong(summary.getTeamLeader().getMostSignificantBits());
+                    out.writeLong(summary.getTeamLeader().getLeastSignificantBits());
+                }
+                out.writeLong(summary.getIslandLevel());
+                out.writeBoolean(summary.hasIsland());
+                out.writeBoolean(summary.inTeam());
+                out.writeLong(summary.getLastSeen());
+            }
+        }
+    }
+
+    /**
+     * @return true if the index was loaded, false if it is missing or out of date
+     */
+    private boolean loadIndex() {
+        if (!indexFile.exists()) {
+            return false;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(indexFile), 65536))) {
+            if (in.readInt() != INDEX_VERSION) {
+                return false;
+            }
+            long dataEnd = in.readLong();
+            if (dataEnd != channel.size()) {
+                return false;
+            }
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                UUID playerUUID = new UUID(in.readLong(), in.readLong());
+                long offset = in.readLong();
+                int length = in.readInt();
+                String playerName = in.readUTF();
+                String islandLocation = in.readUTF();
+                UUID teamLeader = in.readBoolean() ? new UUID(in.readLong(), in.readLong()) : null;
+                long islandLevel = in.readLong();
+                boolean hasIsland = in.readBoolean();
+                boolean hasTeam = in.readBoolean();
+                long lastSeen = in.readLong();
+                put(playerUUID, new Record(offset, length,
+                        new PlayerSummary(playerUUID, playerName, islandLocation, teamLeader, islandLevel, hasIsland, hasTeam,
+                                lastSeen)));
+            }
+            end = dataEnd;
+            return true;
+        } catch (IOException e) {
+            Bukkit.getLogger().warning("Could not read " + indexFile.getName() + ". Reading " + file.getName() + " instead.");
+            records.clear();
+            byIslandLocation.clear();
+            byLevel.clear();
+            byTeamLeader.clear();
+            live = 0;
+            return false;
+        }
+    }
+
+    private static void putRecord(ByteBuffer buffer, UUID playerUUID, byte[] bytes) {
+        CRC32 crc = new CRC32();
+        crc.update(bytes);
+        buffer.putInt(bytes.length);
+        buffer.putInt((int) crc.getValue());
+        buffer.putLong(playerUUID.getMostSignificantBits());
+        buffer.putLong(playerUUID.getLeastSignificantBits());
+        buffer.put(bytes);
+    }
+
+    private void readFully(ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position);
+            if (read < 0) {
+                throw new EOFException(file.getName() + " is shorter than expected");
+            }
+            position += read;
+        }
+    }
+}
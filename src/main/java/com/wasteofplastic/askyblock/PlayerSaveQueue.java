@@ -0,0 +1,168 @@
+package com.wasteofplastic.askyblock;
+
+import org.bukkit.Bukkit;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.Supplier;
+
+/**
+ * Writes player files to the player store in the background. Saves of a player that is still waiting
+ * to be written replace the earlier save, so only the latest is written. Everything waiting is written
+ * to the store as one batch. Files that could not be written are tried again later.
+ * If too many players are waiting to be written, the thread that saves writes them itself.
+ *
+ * @author tastybento
+ */
+public class PlayerSaveQueue {
+
+    private static final boolean DEBUG = false;
+    // Ticks to wait before writing so that saves of the same player are combined
+    private static final long DELAY = 20L;
+    // Most players that can wait to be written
+    private static final int MAX_PENDING = 1000;
+    private final ASkyBlock plugin;
+    private final PlayerStore store;
+    // Player -> file contents, in the order they were saved
+    private final Map<UUID, Supplier<String>> pending = new LinkedHashMap<>();
+    // Held while files are being written
+    private final Object writeLock = new Object();
+    private boolean scheduled;
+
+    public PlayerSaveQueue(ASkyBlock plugin, PlayerStore store) {
+        this.plugin = plugin;
+        this.store = store;
+    }
+
+    /**
+     * Queues the player's file to be written
+     *
+     * @param playerUUID
+     * @param contents - the whole file
+     */
+    public void save(UUID playerUUID, String contents) {
+        save(playerUUID, () -> contents);
+    }
+
+    /**
+     * Queues the player's file to be written. The contents are made when the file is written, on the
+     * thread that writes it, so whatever makes them must not be changed by anything else afterwards.
+     *
+     * @param playerUUID
+     * @param contents - makes the whole file
+     */
+    public void save(UUID playerUUID, Supplier<String> contents) {
+        boolean full;
+        boolean schedule = false;
+        synchronized (pending) {
+            pending.put(playerUUID, contents);
+            full = pending.size() >= MAX_PENDING;
+            // When the plugin is being disabled, drain() writes everything
+            if (!full && !scheduled && plugin.isEnabled()) {
+                scheduled = true;
+                schedule = true;
+            }
+        }
+        if (full) {
+            flush();
+        } else if (schedule) {
+            Bukkit.getScheduler().runTaskLaterAsynchronously(plugin, this::flush, DELAY);
+        }
+    }
+
+    /**
+     * Writes the player's file now if it is waiting to be written. Used before the file is read.
+     *
+     * @param playerUUID
+     */
+    public void waitFor(UUID playerUUID) {
+        synchronized (writeLock) {
+            Supplier<String> contents;
+            synchronized (pending) {
+                contents = pending.remove(playerUUID);
+            }
+            if (contents != null) {
+                Map<UUID, Supplier<String>> batch = new LinkedHashMap<>();
+                batch.put(playerUUID, contents);
+                write(batch);
+            }
+        }
+    }
+
+    /**
+     * Writes every player file that is waiting to be written and waits until they are on disk.
+     * Called when the plugin is disabled.
+     */
+    public void drain() {
+        int count;
+        synchronized (pending) {
+            count = pending.size();
+        }
+        flush();
+        if (count > 0) {
+            plugin.getLogger().info("Saved " + count + " player files");
+        }
+    }
+
+    private void flush() {
+        synchronized (writeLock) {
+            Map<UUID, Supplier<String>> batch;
+            synchronized (pending) {
+                batch = new LinkedHashMap<>(pending);
+                pending.clear();
+                scheduled = false;
+            }
+            write(batch);
+        }
+    }
+
+    private void write(Map<UUID, Supplier<String>> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        long start = System.nanoTime();
+        Map<UUID, String> files = new LinkedHashMap<>();
+        for (Map.Entry<UUID, Supplier<String>> en : batch.entrySet()) {
+            try {
+                files.put(en.getKey(), en.getValue().get());
+            } catch (RuntimeException e) {
+                plugin.getLogger().severe("Could not save player " + en.getKey() + "! " + e.getMessage());
+            }
+        }
+        Map<UUID, String> failed = store.save(files);
+        if (!failed.isEmpty()) {
+            requeue(failed);
+        }
+        if (DEBUG) {
+            plugin.getLogger().info("DEBUG: wrote " + batch.size() + " player files in "
+                    + (System.nanoTime() - start) / 1000000 + " ms");
+        }
+    }
+
+    /**
+     * Puts files that could not be written back in the queue to be tried again. A newer save of
+     * the same player that was made in the meantime is kept instead.
+     */
+    private void requeue(Map<UUID, String> failed) {
+        if (!plugin.isEnabled()) {
+            plugin.getLogger().severe("Could not save " + failed.size() + " player files!");
+            return;
+        }
+        boolean schedule = false;
+        synchronized (pending) {
+            for (Map.Entry<UUID, String> en : failed.entrySet()) {
+                String contents = en.getValue();
+                pending.putIfAbsent(en.getKey(), () -> contents);
+            }
+            if (!scheduled) {
+                scheduled = true;
+                schedule = true;
+            }
+        }
+        plugin.getLogger().warning(failed.size() + " player files could not be saved and will be tried again");
+        if (schedule) {
+            Bukkit.getScheduler().runTaskLaterAsynchronously(plugin, this::flush, DELAY);
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package com.wasteofplastic.askyblock;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+/**
+ * Where player files are kept. Each player has one file in the YAML format made by {@link Players#save()}.
+ * Methods can be called from any thread. Methods that look through every player can be slow and
+ * should not be called from the main thread.
+ *
+ * @author tastybento
+ */
+public interface PlayerStore {
+
+    /**
+     * @param playerUUID
+     * @return the player's file, or null if the player is not known
+     */
+    String load(UUID playerUUID) throws IOException;
+
+    /**
+     * Writes player files. The files that were written are on disk when this returns. A file that
+     * cannot be written does not stop the others being written.
+     *
+     * @param files - player and their file
+     * @return the players whose files could not be written, with their files. Empty if all were written.
+     */
+    Map<UUID, String> save(Map<UUID, String> files);
+
+    /**
+     * @param playerUUID
+     * @return true if the player has a file
+     */
+    boolean exists(UUID playerUUID);
+
+    /**
+     * Reads every player file
+     *
+     * @param consumer - given each player and their file
+     */
+    void forEachFile(BiConsumer<UUID, String> consumer);
+
+    /**
+     * Changes a top level setting in every player file that has it
+     *
+     * @param key - the setting
+     * @param value - the new value in YAML form
+     * @return the number of player files that were changed
+     */
+    int setAll(String key, String value) throws IOException;
+
+    /**
+     * Closes the store. Nothing can be done with it afterwards.
+     */
+    void close();
+
+    /**
+     * Gets the summary of every player
+     *
+     * @param consumer - given each summary
+     */
+    default void forEach(Consumer<PlayerSummary> consumer) {
+        forEachFile((uuid, contents) -> consumer.accept(PlayerSummary.parse(uuid, contents)));
+    }
+
+    /**
+     * Finds who has islands at these locations
+     *
+     * @param islandLocations - island locations in string form
+     * @return island location -> player for each location that a player has as their island
+     */
+    default Map<String, UUID> getIslandOwners(Collection<String> islandLocations) {
+        Set<String> wanted = new HashSet<>(islandLocations);
+        Map<String, UUID> result = new HashMap<>();
+        forEach(summary -> {
+            if (wanted.contains(summary.getIslandLocation())) {
+                result.put(summary.getIslandLocation(), summary.getUUID());
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Finds the players whose file says they are in a team
+     *
+     * @param teamLeader
+     * @return the players whose file says they are in this leader's team
+     */
+    default Set<UUID> getTeamMembers(UUID teamLeader) {
+        Set<UUID> result = new HashSet<>();
+        forEach(summary -> {
+            if (summary.inTeam() && teamLeader.equals(summary.getTeamLeader())) {
+                result.add(summary.getUUID());
+            }
+        });
+        return result;
+    }
+
+    /**
+     * @param count - how many to return
+     * @return the island owners with the highest island levels, highest first. Islands of level 0 are left out.
+     */
+    default List<PlayerSummary> getHighestLevels(int count) {
+        Comparator<PlayerSummary> byLevel = Comparator.comparingLong(PlayerSummary::getIslandLevel);
+        PriorityQueue<PlayerSummary> highest = new PriorityQueue<>(byLevel);
+        forEach(summary -> {
+            if (count > 0 && summary.getIslandLevel() > 0 && summary.isIslandOwner()
+                    && (highest.size() < count || summary.getIslandLevel() > highest.peek().getIslandLevel())) {
+                highest.add(summary);
+                if (highest.size() > count) {
+                    highest.poll();
+                }
+            }
+        });
+        List<PlayerSummary> result = new ArrayList<>(highest);
+        result.sort(Collections.reverseOrder(byLevel));
+        return result;
+    }
+}
@@ -0,0 +1,67 @@
+package com.wasteofplastic.askyblock;
+
+import org.bukkit.Bukkit;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Copies every player from one player store to another, e.g., from the players folder into
+ * the player database when it is turned on.
+ *
+ * @author tastybento
+ */
+class PlayerStoreMigrator {
+
+    // Players written at a time
+    private static final int BATCH_SIZE = 1000;
+
+    private PlayerStoreMigrator() {
+    }
+
+    /**
+     * Copies every player
+     *
+     * @param from - where the players are now
+     * @param to - where to put them
+     * @return number of players copied
+     */
+    static int migrate(PlayerStore from, PlayerStore to) throws IOException {
+        Map<UUID, String> batch = new LinkedHashMap<>();
+        int[] count = new int[1];
+        try {
+            from.forEachFile((playerUUID, contents) -> {
+                batch.put(playerUUID, contents);
+                if (batch.size() >= BATCH_SIZE) {
+                    try {
+                        save(to, batch);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                    count[0] += batch.size();
+                    batch.clear();
+                    if (count[0] % 10000 == 0) {
+                        Bukkit.getLogger().info("Moved " + count[0] + " players...");
+                    }
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        save(to, batch);
+        return count[0] + batch.size();
+    }
+
+    /**
+     * Saves the batch. The move is stopped if any player cannot be saved.
+     */
+    private static void save(PlayerStore to, Map<UUID, String> batch) throws IOException {
+        Map<UUID, String> failed = to.save(batch);
+        if (!failed.isEmpty()) {
+            throw new IOException("Could not save " + failed.size() + " players");
+        }
+    }
+}
@@ -0,0 +1,168 @@
+package com.wasteofplastic.askyblock;
+
+import java.util.UUID;
+
+/**
+ * The few player settings that are needed when looking through every player, e.g., for the
+ * top ten, purges and the name database. They are read straight from the top level lines
+ * of a player file, so the YAML does not have to be parsed.
+ *
+ * @author tastybento
+ */
+public class PlayerSummary {
+
+    private final UUID uuid;
+    private final String playerName;
+    private final String islandLocation;
+    private final UUID teamLeader;
+    private final long islandLevel;
+    private final boolean hasIsland;
+    private final boolean hasTeam;
+    private final long lastSeen;
+
+    PlayerSummary(UUID uuid, String playerName, String islandLocation, UUID teamLeader, long islandLevel, boolean hasIsland,
+            boolean hasTeam, long lastSeen) {
+        this.uuid = uuid;
+        this.playerName = playerName;
+        this.islandLocation = islandLocation;
+        this.teamLeader = teamLeader;
+        this.islandLevel = islandLevel;
+        this.hasIsland = hasIsland;
+        this.hasTeam = hasTeam;
+        this.lastSeen = lastSeen;
+    }
+
+    /**
+     * Reads the summary from a player file made by {@link Players#save()}
+     *
+     * @param uuid - the player
+     * @param contents - the player file
+     * @return summary
+     */
+    static PlayerSummary parse(UUID uuid, String contents) {
+        String playerName = "";
+        String islandLocation = "";
+        UUID teamLeader = null;
+        long islandLevel = 0;
+        boolean hasIsland = false;
+        boolean hasTeam = false;
+        long lastSeen = 0;
+        for (String line : contents.split("\n")) {
+            // Only top level settings
+            if (line.isEmpty() || line.charAt(0) == ' ') {
+                continue;
+            }
+            int colon = line.indexOf(": ");
+            if (colon < 0) {
+                continue;
+            }
+            String value = unquote(line.substring(colon + 2).trim());
+            switch (line.substring(0, colon)) {
+            case "playerName":
+                playerName = value;
+                break;
+            case "islandLocation":
+                islandLocation = value;
+                break;
+            case "teamLeader":
+                try {
+                    teamLeader = value.isEmpty() ? null : UUID.fromString(value);
+                } catch (IllegalArgumentException e) {
+                    teamLeader = null;
+                }
+                break;
+            case "islandLevel":
+                try {
+                    islandLevel = Long.parseLong(value);
+                } catch (NumberFormatException e) {
+                    islandLevel = 0;
+                }
+                break;
+            case "hasIsland":
+                hasIsland = Boolean.parseBoolean(value);
+                break;
+            case "hasTeam":
+                hasTeam = Boolean.parseBoolean(value);
+                break;
+            case "lastSeen":
+                try {
+                    lastSeen = Long.parseLong(value);
+                } catch (NumberFormatException e) {
+                    lastSeen = 0;
+                }
+                break;
+            default:
+            }
+        }
+        return new PlayerSummary(uuid, playerName, islandLocation, teamLeader, islandLevel, hasIsland, hasTeam, lastSeen);
+    }
+
+    private static String unquote(String value) {
+        if (value.length() >= 2) {
+            if (value.startsWith("'") && value.endsWith("'")) {
+                return value.substring(1, value.length() - 1).replace("''", "'");
+            }
+            if (value.startsWith("\"") && value.endsWith("\"")) {
+                return value.substring(1, value.length() - 1).replace("\\\"", "\"").replace("\\\\", "\\");
+            }
+        }
+        return value;
+    }
+
+    /**
+     * @return the player's UUID
+     */
+    public UUID getUUID() {
+        return uuid;
+    }
+
+    /**
+     * @return the player's name, or an empty string if it is not known
+     */
+    public String getPlayerName() {
+        return playerName;
+    }
+
+    /**
+     * @return the player's island location in string form, or an empty string if there is none
+     */
+    public String getIslandLocation() {
+        return islandLocation;
+    }
+
+    /**
+     * @return the player's team leader or null if there is none
+     */
+    public UUID getTeamLeader() {
+        return teamLeader;
+    }
+
+    /**
+     * @return the island level in the player's file
+     */
+    public long getIslandLevel() {
+        return islandLevel;
+    }
+
+    public boolean hasIsland() {
+        return hasIsland;
+    }
+
+    public boolean inTeam() {
+        return hasTeam;
+    }
+
+    /**
+     * @return true if the player is not in a team or leads it, so their island level is the island's
+     */
+    public boolean isIslandOwner() {
+        return !hasTeam || uuid.equals(teamLeader);
+    }
+
+    /**
+     * @return when the player was last on the server, or 0 if it is not known
+     */
+    public long getLastSeen() {
+        return lastSeen;
+    }
+}
@@ -23,6 +23,7 @@ import com.wasteofplastic.askyblock.util.Util;
 import org.bukkit.Bukkit;
 import org.bukkit.Location;
 import org.bukkit.OfflinePlayer;
+import org.bukkit.configuration.InvalidConfigurationException;
 import org.bukkit.configuration.file.YamlConfiguration;
 import org.bukkit.entity.Player;
 
@@ -33,6 +34,7 @@ import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map.Entry;
+import java.util.Objects;
 import java.util.UUID;
 
 /**
@@ -42,6 +44,12 @@ import java.util.UUID;
  */
 public class Players {
 
+    // Parts of the player file that have changed since it was last saved
+    private static final int DIRTY_BASIC = 1;
+    private static final int DIRTY_CHALLENGES = 2;
+    private static final int DIRTY_HOMES = 4;
+    private static final int DIRTY_COOLDOWNS = 8;
+    private static final int DIRTY_ALL = DIRTY_BASIC | DIRTY_CHALLENGES | DIRTY_HOMES | DIRTY_COOLDOWNS;
     private ASkyBlock plugin;
     private YamlConfiguration playerInfo;
     private HashMap<String, Boolean> challengeList;
@@ -65,6 +73,11 @@ public class Players {
     private int startIslandRating;
     private boolean useControlPanel;
     private int deaths;
+    // When the player was last on the server
+    private long lastSeen;
+    private int dirty;
+    // Island info last saved in the player file
+    private String islandInfo;
 
     /**
      * @param uuid Constructor - initializes the state variables
@@ -104,10 +117,23 @@ public class Players {
      * @param uuid
      */
     public void load(UUID uuid) {
-        playerInfo = Util.loadYamlFile("players/" + uuid.toString() + ".yml");
+        // Make sure any save that is waiting to be written is read
+        plugin.getPlayerSaveQueue().waitFor(uuid);
+        playerInfo = new YamlConfiguration();
+        try {
+            String contents = plugin.getPlayerStore().load(uuid);
+            if (contents != null) {
+                playerInfo.loadFromString(contents);
+            }
+        } catch (IOException | InvalidConfigurationException e) {
+            plugin.getLogger().severe("Could not load player " + uuid + "! " + e.getMessage());
+        }
         // Load in from YAML file
         this.playerName = playerInfo.getString("playerName", "");
+        this.islandInfo = playerInfo.getString("islandInfo");
         if (playerName.isEmpty()) {
+            // New player
+            dirty = DIRTY_ALL;
             Player player = Bukkit.getPlayer(uuid);
             if (player != null && player.hasMetadata("NPC")) {
                 //plugin.getLogger().info("DEBUG: Entity is NPC");
@@ -149,6 +175,7 @@ public class Players {
         if (homeLocation != null) {
             // Transfer the old into the new
             this.homeLocations.put(1, homeLocation);
+            dirty |= DIRTY_HOMES;
         } else {
             // Import
             if (playerInfo.contains("homeLocations")) {
@@ -211,6 +238,7 @@ public class Players {
         }
         // Deaths
         this.deaths = playerInfo.getInt("deaths", 0);
+        this.lastSeen = playerInfo.getLong("lastSeen", 0L);
         // Load control panel setting
         useControlPanel = playerInfo.getBoolean("useControlPanel", Settings.useControlPanel);
         // Load the invite cool downs
@@ -243,10 +271,57 @@ public class Players {
     }
 
     /**
-     * Saves the player info to the file system
+     * Saves the player info to the player store if it has changed. The file is written in the background.
      */
     public void save() {
+        if (prepareSave()) {
+            plugin.getPlayerSaveQueue().save(uuid, saveToString());
+        }
+    }
+
+    /**
+     * Saves the player info to the player store if it has changed. The file is made and written in the
+     * background, so this is only for players that nothing will use again, e.g., ones dropped from the cache.
+     */
+    void saveLater() {
+        if (prepareSave()) {
+            plugin.getPlayerSaveQueue().save(uuid, this::saveToString);
+        }
+    }
+
+    /**
+     * Brings the island info up to date
+     *
+     * @return true if anything needs to be saved
+     */
+    private boolean prepareSave() {
         //plugin.getLogger().info("Saving player..." + playerName);
+        // Check what the global limit is
+        if (Settings.resetLimit < this.resetsLeft) {
+            this.resetsLeft = Settings.resetLimit;
+            dirty |= DIRTY_BASIC;
+        }
+        // Island info - to be used if the island.yml file is removed
+        String newIslandInfo = null;
+        if (hasIsland) {
+            if (plugin.getGrid() != null) {
+                Island island = plugin.getGrid().getIsland(uuid);
+                if (island != null) {
+                    newIslandInfo = island.save();
+                }
+            }
+        }
+        if (!Objects.equals(newIslandInfo, islandInfo)) {
+            islandInfo = newIslandInfo;
+            dirty |= DIRTY_BASIC;
+        }
+        return dirty != 0;
+    }
+
+    /**
+     * @return the player's file
+     */
+    private String saveToString() {
         // Save the variables
         playerInfo.set("playerName", playerName);
         playerInfo.set("hasIsland", hasIsland);
@@ -261,12 +336,14 @@ public class Players {
             playerInfo.set("banList", null);
         }
         playerInfo.set("islandLocation", islandLocation);
-        playerInfo.set("homeLocation", null);
-        // Only store the new way
-        // Clear any old home locations
-        playerInfo.set("homeLocations", null);
-        for (int num : homeLocations.keySet()) {
-            playerInfo.set("homeLocations." + num, Util.getStringLocation(homeLocations.get(num)));
+        if ((dirty & DIRTY_HOMES) != 0) {
+            playerInfo.set("homeLocation", null);
+            // Only store the new way
+            // Clear any old home locations
+            playerInfo.set("homeLocations", null);
+            for (int num : homeLocations.keySet()) {
+                playerInfo.set("homeLocations." + num, Util.getStringLocation(homeLocations.get(num)));
+            }
         }
         playerInfo.set("hasTeam", inTeam);
         if (teamLeader == null) {
@@ -283,35 +360,36 @@ public class Players {
         }
         playerInfo.set("members", temp);
         // Save the challenges
-        playerInfo.set("challenges", null);
-        for (String challenge : challengeList.keySet()) {
-            if (!challenge.isEmpty()) {
-                playerInfo.set("challenges.status." + challenge.replace(".", "[dot]"), challengeList.get(challenge));
+        if ((dirty & DIRTY_CHALLENGES) != 0) {
+            playerInfo.set("challenges", null);
+            for (String challenge : challengeList.keySet()) {
+                if (!challenge.isEmpty()) {
+                    playerInfo.set("challenges.status." + challenge.replace(".", "[dot]"), challengeList.get(challenge));
+                }
             }
-        }
-        for (String challenge : challengeListTimes.keySet()) {
-            if (!challenge.isEmpty()) {
-                playerInfo.set("challenges.times." + challenge.replace(".", "[dot]"), challengeListTimes.get(challenge));
+            for (String challenge : challengeListTimes.keySet()) {
+                if (!challenge.isEmpty()) {
+                    playerInfo.set("challenges.times." + challenge.replace(".", "[dot]"), challengeListTimes.get(challenge));
+                }
             }
-        }
-        for (String challenge : challengeListTimestamp.keySet()) {
-            if (!challenge.isEmpty()) {
-                playerInfo.set("challenges.timestamp." + challenge.replace(".", "[dot]"), challengeListTimestamp.get(challenge));
+            for (String challenge : challengeListTimestamp.keySet()) {
+                if (!challenge.isEmpty()) {
+                    playerInfo.set("challenges.timestamp." + challenge.replace(".", "[dot]"), challengeListTimestamp.get(challenge));
+                }
             }
         }
-        // Check what the global limit is
-        if (Settings.resetLimit < this.resetsLeft) {
-            this.resetsLeft = Settings.resetLimit;
-        }
         playerInfo.set("resetsLeft", this.resetsLeft);
         playerInfo.set("deaths", deaths);
+        playerInfo.set("lastSeen", lastSeen);
         // Save invite cooldown timers
-        playerInfo.set("invitecooldown", null);
-        for (Entry<Location, Date> en : kickedList.entrySet()) {
-            // Convert location and date to string (time in millis)
-            Calendar coolDownTime = Calendar.getInstance();
-            coolDownTime.setTime(en.getValue());
-            playerInfo.set("invitecooldown." + coolDownTime.getTimeInMillis(), Util.getStringLocation(en.getKey()));
+        if ((dirty & DIRTY_COOLDOWNS) != 0) {
+            playerInfo.set("invitecooldown", null);
+            for (Entry<Location, Date> en : kickedList.entrySet()) {
+                // Convert location and date to string (time in millis)
+                Calendar coolDownTime = Calendar.getInstance();
+                coolDownTime.setTime(en.getValue());
+                playerInfo.set("invitecooldown." + coolDownTime.getTimeInMillis(), Util.getStringLocation(en.getKey()));
+            }
         }
         // Locale
         playerInfo.set("locale", locale);
@@ -322,23 +400,31 @@ public class Players {
         } else {
             playerInfo.set("startIslandRating", startIslandRating);
         }
-        // Island info - to be used if the island.yml file is removed
-        playerInfo.set("islandInfo", null);
-        if (hasIsland) {
-            if (plugin.getGrid() != null) {
-                Island island = plugin.getGrid().getIsland(uuid);
-                if (island != null) {
-                    playerInfo.set("islandInfo", island.save());
-                }
-            }
-        }
+        playerInfo.set("islandInfo", islandInfo);
         // Control panel
         playerInfo.set("useControlPanel", useControlPanel);
 
         //playerInfo.set("coops", value);
 
-        // Actually save the file
-        Util.saveYamlFile(playerInfo, "players/" + uuid.toString() + ".yml");
+        dirty = 0;
+        return playerInfo.saveToString();
+    }
+
+    /**
+     * Marks the member sets of the islands owned by these players as stale
+     *
+     * @param owners - players whose islands changed, may be null
+     */
+    private void membersChanged(UUID... owners) {
+        if (plugin.getGrid() == null) {
+            return;
+        }
+        for (UUID owner : owners) {
+            Island island = owner == null ? null : plugin.getGrid().getOwnershipMap().get(owner);
+            if (island != null) {
+                island.membersChanged();
+            }
+        }
     }
 
     /**
@@ -347,6 +433,8 @@ public class Players {
      */
     public void addTeamMember(final UUID member) {
         members.add(member);
+        dirty |= DIRTY_BASIC;
+        membersChanged(uuid);
     }
 
     /**
@@ -393,6 +481,7 @@ public class Players {
         //plugin.getLogger().info("DEBUG: reset challenge");
         challengeList.put(challenge, false);
         challengeListTimes.put(challenge, 0);
+        dirty |= DIRTY_CHALLENGES;
     }
 
     /**
@@ -435,12 +524,14 @@ public class Players {
         // challengeListTimes.get(challenge.toLowerCase()).intValue() );
         // Add timestamp
         challengeListTimestamp.put(challenge, System.currentTimeMillis());
+        dirty |= DIRTY_CHALLENGES;
     }
 
     public boolean hasIsland() {
         // Check if the player really has an island
         if (hasIsland && islandLocation.isEmpty()) {
             hasIsland = false;
+            dirty |= DIRTY_BASIC;
             plugin.getLogger().warning(playerName + " apparently had an island, but the location is unknown.");
         }
         return hasIsland;
@@ -452,6 +543,7 @@ public class Players {
     public boolean inTeam() {
         // Check if this player really has a team island
         if (inTeam && teamIslandLocation.isEmpty()) {
+            dirty |= DIRTY_BASIC;
             // Something odd is going on
             // See if the player has a team leader
             if (teamLeader == null) {
@@ -522,6 +614,7 @@ public class Players {
      * @param number
      */
     public void setHomeLocation(final Location location, int number) {
+        dirty |= DIRTY_HOMES;
         if (location == null) {
             homeLocations.clear();
         } else {
@@ -561,6 +654,7 @@ public class Players {
      */
     public void setIslandLevel(final long l) {
         islandLevel = l;
+        dirty |= DIRTY_BASIC;
         if (Settings.setTeamName) {
             Scoreboards.getInstance().setLevel(uuid, l);
         }
@@ -583,6 +677,7 @@ public class Players {
      */
     public void setIslandLocation(final Location l) {
         islandLocation = Util.getStringLocation(l);
+        dirty |= DIRTY_BASIC;
     }
 
     public List<UUID> getMembers() {
@@ -603,6 +698,7 @@ public class Players {
      */
     public void setTeamIslandLocation(final Location l) {
         teamIslandLocation = Util.getStringLocation(l);
+        dirty |= DIRTY_BASIC;
     }
 
     /**
@@ -635,6 +731,7 @@ public class Players {
 
     public void setPlayerN(String playerName) {
         this.playerName = playerName;
+        dirty |= DIRTY_BASIC;
     }
 
     /**
@@ -645,11 +742,13 @@ public class Players {
         if (Settings.resetLimit < resetsLeft) {
             // Lower to the limit, which may be -1
             resetsLeft = Settings.resetLimit;
+            dirty |= DIRTY_BASIC;
         }
         if (Settings.resetLimit > 0 && resetsLeft == -1) {
             // Set to the new limit if it has been raised from previously being
             // unlimited
             resetsLeft = Settings.resetLimit;
+            dirty |= DIRTY_BASIC;
         }
         return resetsLeft;
     }
@@ -659,6 +758,7 @@ public class Players {
      */
     public void setResetsLeft(int resetsLeft) {
         this.resetsLeft = resetsLeft;
+        dirty |= DIRTY_BASIC;
     }
 
     /**
@@ -668,6 +768,8 @@ public class Players {
      */
     public void removeMember(final UUID member) {
         members.remove(member);
+        dirty |= DIRTY_BASIC;
+        membersChanged(uuid);
     }
 
     /**
@@ -676,10 +778,12 @@ public class Players {
     public void resetAllChallenges() {
         challengeList.clear();
         challengeListTimes.clear();
+        dirty |= DIRTY_CHALLENGES;
     }
 
     public void setHasIsland(final boolean b) {
         hasIsland = b;
+        dirty |= DIRTY_BASIC;
     }
 
     /**
@@ -704,10 +808,11 @@ public class Players {
             return false;
         }
         // Success
+        membersChanged(uuid, teamLeader, leader);
         inTeam = true;
         teamLeader = leader;
         teamIslandLocation = Util.getStringLocation(l);
-
+        dirty |= DIRTY_BASIC;
         return true;
     }
 
@@ -726,11 +831,13 @@ public class Players {
             }
         }
 
+        membersChanged(uuid, teamLeader);
         inTeam = false;
         teamLeader = null;
         islandLevel = 0;
         teamIslandLocation = null;
         members = new ArrayList<>();
+        dirty |= DIRTY_BASIC;
         return true;
     }
 
@@ -753,7 +860,9 @@ public class Players {
                 return false;
             }
         }
+        membersChanged(uuid, teamLeader, leader);
         teamLeader = leader;
+        dirty |= DIRTY_BASIC;
         return true;
     }
 
@@ -781,6 +890,7 @@ public class Players {
             if (coolDownTime.before(timeNow)) {
                 // The time has expired
                 kickedList.remove(location);
+                dirty |= DIRTY_COOLDOWNS;
                 return 0;
             } else {
                 // Still not there yet
@@ -802,6 +912,7 @@ public class Players {
     public void startInviteCoolDownTimer(Location location) {
         if (location != null) {
             kickedList.put(location, new Date());
+            dirty |= DIRTY_COOLDOWNS;
         }
     }
 
@@ -817,6 +928,7 @@ public class Players {
      */
     public void clearHomeLocations() {
         homeLocations.clear();
+        dirty |= DIRTY_HOMES;
     }
 
     /**
@@ -831,6 +943,7 @@ public class Players {
      */
     public void setLocale(String locale) {
         this.locale = locale;
+        dirty |= DIRTY_BASIC;
     }
 
     /**
@@ -845,6 +958,7 @@ public class Players {
      */
     public void setStartIslandRating(int startIslandRating) {
         this.startIslandRating = startIslandRating;
+        dirty |= DIRTY_BASIC;
     }
 
     /**
@@ -861,6 +975,7 @@ public class Players {
      */
     public void addToBanList(UUID banned) {
         this.banList.add(banned);
+        dirty |= DIRTY_BASIC;
     }
 
     /**
@@ -870,6 +985,7 @@ public class Players {
      */
     public void unBan(UUID unbanned) {
         this.banList.remove(unbanned);
+        dirty |= DIRTY_BASIC;
     }
 
     /**
@@ -894,6 +1010,7 @@ public class Players {
      */
     public void setControlPanel(boolean b) {
         useControlPanel = b;
+        dirty |= DIRTY_BASIC;
     }
 
     /**
@@ -908,16 +1025,33 @@ public class Players {
      */
     public void setDeaths(int deaths) {
         this.deaths = deaths;
+        dirty |= DIRTY_BASIC;
         if (this.deaths > Settings.maxDeaths) {
             this.deaths = Settings.maxDeaths;
         }
     }
 
+    /**
+     * @return when the player was last on the server, or 0 if it is not known
+     */
+    public long getLastSeen() {
+        return lastSeen;
+    }
+
+    /**
+     * @param lastSeen - when the player was last on the server
+     */
+    public void setLastSeen(long lastSeen) {
+        this.lastSeen = lastSeen;
+        dirty |= DIRTY_BASIC;
+    }
+
     /**
      * Add death
      */
     public void addDeath() {
         this.deaths++;
+        dirty |= DIRTY_BASIC;
         if (this.deaths > Settings.maxDeaths) {
             this.deaths = Settings.maxDeaths;
         }
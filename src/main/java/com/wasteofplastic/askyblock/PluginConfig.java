@@ -157,6 +157,14 @@ public class PluginConfig {
         if (Settings.levelWait < 0) {
             Settings.levelWait = 0;
         }
+        // Incremental island levels
+        Settings.levelIncremental = plugin.getConfig().getBoolean("island.levelincremental", false);
+        Settings.levelRescan = plugin.getConfig().getInt("island.levelrescan", 60);
+        // Chunks captured per tick for level calculations
+        Settings.levelChunksPerTick = plugin.getConfig().getInt("island.levelchunkspertick", 10);
+        if (Settings.levelChunksPerTick < 1) {
+            Settings.levelChunksPerTick = 1;
+        }
 
         // Get chest items
         String chestItems = plugin.getConfig().getString("island.chestItems", "");
@@ -295,12 +303,6 @@ public class PluginConfig {
         Settings.allowPistonPush = plugin.getConfig().getBoolean("island.allowpistonpush", true);
         Settings.allowMobDamageToItemFrames = plugin.getConfig().getBoolean("island.allowitemframedamage", false);
 
-        // Clean up blocks around edges when deleting islands - this is a hidden setting not in the config.yml
-        // Add if admins complain about slow cleaning.
-        Settings.cleanRate = plugin.getConfig().getInt("island.cleanrate", 2);
-        if (Settings.cleanRate < 1) {
-            Settings.cleanRate = 1;
-        }
 
 
         // ******** General Settings **********
@@ -653,6 +655,25 @@ public class PluginConfig {
 
         // How often the grid will be saved to file. Default is 5 minutes
         Settings.backupDuration = (plugin.getConfig().getLong("general.backupduration", 5) * 20 * 60);
+        // Binary island store
+        Settings.binaryIslands = plugin.getConfig().getBoolean("general.binaryislands", false);
+        // Keep players in players.db
+        Settings.playerDatabase = plugin.getConfig().getBoolean("general.playerdatabase", false);
+        // Milliseconds per tick spent pasting schematics
+        Settings.pasteBudget = Math.max(0, plugin.getConfig().getInt("general.pastebudget", 10));
+        // Milliseconds per tick spent deleting island chunks
+        Settings.deleteBudget = Math.max(0, plugin.getConfig().getInt("general.deletebudget", 10));
+        // Islands pasted ahead of time for new players
+        Settings.islandPoolSize = Math.max(0, plugin.getConfig().getInt("general.islandpoolsize", 0));
+        Settings.islandPoolSchematics = plugin.getConfig().getStringList("general.islandpoolschematics");
+        if (Settings.islandPoolSchematics.isEmpty()) {
+            Settings.islandPoolSchematics.add("default");
+        }
+        // Offline players kept in memory
+        Settings.playerCacheSize = plugin.getConfig().getInt("general.playercachesize", 500);
+        if (Settings.playerCacheSize < 100) {
+            Settings.playerCacheSize = 100;
+        }
 
         // Allow pushing
         Settings.allowPushing = plugin.getConfig().getBoolean("general.allowpushing", true);
@@ -698,6 +719,10 @@ public class PluginConfig {
 
         // Use old display (chat instead of GUI) for Island top ten
         Settings.displayIslandTopTenInChat = plugin.getConfig().getBoolean("general.islandtopteninchat", false);
+        Settings.topTenSize = plugin.getConfig().getInt("general.toptensize", 20);
+        if (Settings.topTenSize < 10) {
+            Settings.topTenSize = 10;
+        }
 
         // Magic Cobble Generator
         Settings.useMagicCobbleGen = plugin.getConfig().getBoolean("general.usemagiccobblegen", false);
@@ -940,6 +965,8 @@ public class PluginConfig {
         } else {
             plugin.getLogger().severe("No block values in blockvalues.yml! All island levels will be zero!");
         }
+        // Compile the values and limits for the level calculation
+        Settings.blockValueTable = new BlockValueTable(Settings.blockValues, Settings.blockLimits);
         // All done
         return true;
     }
@@ -131,6 +131,7 @@ public class Settings {
     // Levels
     public static HashMap<MaterialData, Integer> blockLimits;
     public static HashMap<MaterialData, Integer> blockValues;
+    public static BlockValueTable blockValueTable;
     // Challenge completion broadcast
     public static boolean broadcastMessages;
     // Nether world
@@ -167,6 +168,8 @@ public class Settings {
     public static boolean usePhysics;
     // Use old display (chat instead of GUI) for Island top ten
     public static boolean displayIslandTopTenInChat;
+    // Number of islands kept in the top ten list
+    public static int topTenSize;
     // Need a certain amount of island levels to create a warp sign
     public static int warpLevelsRestriction;
     // Magic Cobble Generator
@@ -181,6 +184,9 @@ public class Settings {
     public static List<String> fallingCommandBlockList;
     public static List<String> leaveCommands;
     public static int levelWait;
+    public static boolean levelIncremental;
+    public static int levelRescan;
+    public static int levelChunksPerTick;
     public static long resetConfirmWait;
     public static boolean loginLevel;
     public static boolean resetEnderChest;
@@ -214,10 +220,16 @@ public class Settings {
     public static HashMap<String, Integer> limitedBlocks;
     public static long pvpRestartCooldown;
     public static long backupDuration;
+    public static int playerCacheSize;
+    public static boolean playerDatabase;
+    public static int islandPoolSize;
+    public static int pasteBudget;
+    public static int deleteBudget;
+    public static List<String> islandPoolSchematics = new ArrayList<String>();
+    public static boolean binaryIslands;
     public static boolean acidBottle;
     public static boolean useOwnGenerator;
     public static List<String> freeLevels = new ArrayList<String>();
-    public static int cleanRate;
     public static boolean allowPushing;
     public static boolean recoverSuperFlat;
     public static boolean persistantCoops;
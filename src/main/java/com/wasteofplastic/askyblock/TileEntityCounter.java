@@ -0,0 +1,388 @@
+package com.wasteofplastic.askyblock;
+
+import org.bukkit.Chunk;
+import org.bukkit.Location;
+import org.bukkit.Material;
+import org.bukkit.World;
+import org.bukkit.block.Block;
+import org.bukkit.block.BlockState;
+import org.bukkit.entity.EnderCrystal;
+import org.bukkit.entity.Entity;
+import org.bukkit.entity.EntityType;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.block.BlockBreakEvent;
+import org.bukkit.event.block.BlockBurnEvent;
+import org.bukkit.event.block.BlockExplodeEvent;
+import org.bukkit.event.block.BlockPistonExtendEvent;
+import org.bukkit.event.block.BlockPistonRetractEvent;
+import org.bukkit.event.block.BlockPlaceEvent;
+import org.bukkit.event.entity.EntityDeathEvent;
+import org.bukkit.event.entity.EntityExplodeEvent;
+import org.bukkit.event.entity.EntitySpawnEvent;
+import org.bukkit.event.hanging.HangingBreakEvent;
+import org.bukkit.event.hanging.HangingPlaceEvent;
+import org.bukkit.event.world.ChunkLoadEvent;
+import org.bukkit.event.world.ChunkUnloadEvent;
+
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Keeps a count of the tile entities, and the entities that are limited like blocks (item frames,
+ * paintings, armor stands and end crystals), on each island so that the limitedBlocks check does
+ * not have to walk every chunk of the island on every placement.
+ * An island is counted the first time it is asked about. After that the counts are kept up to date
+ * from place, break, explode and piston events, and each chunk is recounted when it loads or unloads
+ * so that anything missed, e.g., changes made by other plugins, is corrected.
+ *
+ * @author tastybento
+ */
+public class TileEntityCounter implements Listener {
+
+    private static final boolean DEBUG = false;
+    // Materials whose blocks have a tile entity. Looked up by name because not every server version has them all.
+    private static final Set<Material> TILE_ENTITIES = EnumSet.noneOf(Material.class);
+
+    static {
+        for (String name : new String[]{"CHEST", "TRAPPED_CHEST", "ENDER_CHEST", "FURNACE", "BURNING_FURNACE", "DISPENSER",
+                "DROPPER", "HOPPER", "BREWING_STAND", "ENCHANTMENT_TABLE", "BEACON", "MOB_SPAWNER", "NOTE_BLOCK", "JUKEBOX",
+                "SIGN_POST", "WALL_SIGN", "SKULL", "FLOWER_POT", "DAYLIGHT_DETECTOR", "DAYLIGHT_DETECTOR_INVERTED",
+                "REDSTONE_COMPARATOR_OFF", "REDSTONE_COMPARATOR_ON", "COMMAND", "COMMAND_REPEATING", "COMMAND_CHAIN",
+                "ENDER_PORTAL", "END_GATEWAY", "STRUCTURE_BLOCK", "BED_BLOCK"}) {
+            Material material = Material.getMaterial(name);
+            if (material != null) {
+                TILE_ENTITIES.add(material);
+            }
+        }
+        for (Material material : Material.values()) {
+            // Avoids V1.7 issues
+            if (material.isBlock() && (material.toString().endsWith("BANNER") || material.toString().endsWith("SHULKER_BOX"))) {
+                TILE_ENTITIES.add(material);
+            }
+        }
+    }
+
+    private final ASkyBlock plugin;
+    // Island -> counts, one map per world
+    private final Map<World, Map<Island, Counts>> counts = new HashMap<>();
+    // Chunk -> counts of the islands that overlap it, one map per world
+    private final Map<World, Map<Long, List<Counts>>> chunks = new HashMap<>();
+
+    private class Counts {
+        private final Island island;
+        private final World world;
+        private final int minX, minZ, size;
+        // Chunk -> group -> count
+        private final Map<Long, Map<String, Integer>> byChunk = new HashMap<>();
+        private final Map<String, Integer> totals = new HashMap<>();
+
+        private Counts(Island island, World world) {
+            this.island = island;
+            this.world = world;
+            this.minX = island.getMinProtectedX();
+            this.minZ = island.getMinProtectedZ();
+            this.size = island.getProtectionSize();
+        }
+
+        /**
+         * @return true if the island protection area has changed since it was counted
+         */
+        private boolean isStale() {
+            return minX != island.getMinProtectedX() || minZ != island.getMinProtectedZ() || size != island.getProtectionSize();
+        }
+
+        private void change(long chunkKey, String group, int delta) {
+            Map<String, Integer> chunk = byChunk.get(chunkKey);
+            if (chunk == null) {
+                return;
+            }
+            chunk.merge(group, delta, Integer::sum);
+            totals.merge(group, delta, Integer::sum);
+        }
+
+        /**
+         * Replaces what is known about a chunk with a fresh count
+         */
+        private void recount(Chunk chunk) {
+            long chunkKey = getChunkKey(chunk.getX(), chunk.getZ());
+            Map<String, Integer> result = new HashMap<>();
+            for (BlockState holder : chunk.getTileEntities()) {
+                if (isTileEntity(holder.getType()) && island.onIsland(holder.getLocation())) {
+                    result.merge(getGroup(holder.getType()), 1, Integer::sum);
+                }
+            }
+            for (Entity holder : chunk.getEntities()) {
+                String group = getGroup(holder.getType());
+                if (group != null && island.onIsland(holder.getLocation())) {
+                    result.merge(group, 1, Integer::sum);
+                }
+            }
+            Map<String, Integer> previous = byChunk.put(chunkKey, result);
+            if (previous != null) {
+                previous.forEach((group, count) -> totals.merge(group, -count, Integer::sum));
+            }
+            result.forEach((group, count) -> totals.merge(group, count, Integer::sum));
+        }
+    }
+
+    public TileEntityCounter(ASkyBlock plugin) {
+        this.plugin = plugin;
+    }
+
+    /**
+     * Gets how many tile entities of this type are on the island. Related types are counted together,
+     * e.g., both furnaces, both comparators, all banners and all signs. Entities that are limited like blocks
+     * are counted by their matching material.
+     *
+     * @param island
+     * @param world - the world to count in
+     * @param material
+     * @return count
+     */
+    public int getCount(Island island, World world, Material material) {
+        return getCounts(island, world).totals.getOrDefault(getGroup(material), 0);
+    }
+
+    /**
+     * @param material
+     * @return true if blocks of this material have a tile entity and so are counted
+     */
+    public static boolean isTileEntity(Material material) {
+        return TILE_ENTITIES.contains(material);
+    }
+
+    /**
+     * Removes everything known about an island, e.g., when it is deleted
+     */
+    public void removeIsland(Island island) {
+        for (Map<Island, Counts> islands : counts.values()) {
+            Counts removed = islands.remove(island);
+            if (removed != null) {
+                unregister(removed);
+            }
+        }
+    }
+
+    private Counts getCounts(Island island, World world) {
+        Map<Island, Counts> islands = counts.computeIfAbsent(world, k -> new HashMap<>());
+        Counts result = islands.get(island);
+        if (result != null && !result.isStale()) {
+            return result;
+        }
+        if (result != null) {
+            unregister(result);
+        }
+        if (DEBUG) {
+            plugin.getLogger().info("DEBUG: counting tile entities on island at " + island.getCenter());
+        }
+        result = new Counts(island, world);
+        islands.put(island, result);
+        Map<Long, List<Counts>> worldChunks = chunks.computeIfAbsent(world, k -> new HashMap<>());
+        int maxX = island.getMinProtectedX() + island.getProtectionSize() - 1;
+        int maxZ = island.getMinProtectedZ() + island.getProtectionSize() - 1;
+        for (int x = island.getMinProtectedX() >> 4; x <= maxX >> 4; x++) {
+            for (int z = island.getMinProtectedZ() >> 4; z <= maxZ >> 4; z++) {
+                worldChunks.computeIfAbsent(getChunkKey(x, z), k -> new ArrayList<>()).add(result);
+                result.recount(world.getChunkAt(x, z));
+            }
+        }
+        return result;
+    }
+
+    private void unregister(Counts removed) {
+        Map<Long, List<Counts>> worldChunks = chunks.get(removed.world);
+        if (worldChunks == null) {
+            return;
+        }
+        for (long chunkKey : removed.byChunk.keySet()) {
+            List<Counts> list = worldChunks.get(chunkKey);
+            if (list != null) {
+                list.remove(removed);
+                if (list.isEmpty()) {
+                    worldChunks.remove(chunkKey);
+                }
+            }
+        }
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onBlockPlace(final BlockPlaceEvent e) {
+        change(e.getBlock(), 1);
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onBlockBreak(final BlockBreakEvent e) {
+        change(e.getBlock(), -1);
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onBlockBurn(final BlockBurnEvent e) {
+        change(e.getBlock(), -1);
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onBlockExplode(final BlockExplodeEvent e) {
+        for (Block b : e.blockList()) {
+            change(b, -1);
+        }
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onEntityExplode(final EntityExplodeEvent e) {
+        for (Block b : e.blockList()) {
+            change(b, -1);
+        }
+        if (e.getEntity() instanceof EnderCrystal) {
+            change(e.getEntity(), -1);
+        }
+    }
+
+    /**
+     * Tile entities cannot be pushed, so any that are in the list are being broken by the piston
+     */
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onPistonExtend(final BlockPistonExtendEvent e) {
+        for (Block b : e.getBlocks()) {
+            change(b, -1);
+        }
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onPistonRetract(final BlockPistonRetractEvent e) {
+        for (Block b : e.getBlocks()) {
+            change(b, -1);
+        }
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onHangingPlace(final HangingPlaceEvent e) {
+        change(e.getEntity(), 1);
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onHangingBreak(final HangingBreakEvent e) {
+        change(e.getEntity(), -1);
+    }
+
+    /**
+     * Covers armor stands and end crystals
+     */
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onEntitySpawn(final EntitySpawnEvent e) {
+        change(e.getEntity(), 1);
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onEntityDeath(final EntityDeathEvent e) {
+        change(e.getEntity(), -1);
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onChunkLoad(final ChunkLoadEvent e) {
+        recount(e.getChunk());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onChunkUnload(final ChunkUnloadEvent e) {
+        recount(e.getChunk());
+    }
+
+    private void recount(Chunk chunk) {
+        Map<Long, List<Counts>> worldChunks = chunks.get(chunk.getWorld());
+        if (worldChunks == null) {
+            return;
+        }
+        List<Counts> list = worldChunks.get(getChunkKey(chunk.getX(), chunk.getZ()));
+        if (list != null) {
+            for (Counts islandCounts : list) {
+                islandCounts.recount(chunk);
+            }
+        }
+    }
+
+    private void change(Block b, int delta) {
+        // Only blocks that have a tile entity are counted
+        if (!isTileEntity(b.getType())) {
+            return;
+        }
+        Counts islandCounts = getCountsAt(b.getLocation());
+        if (islandCounts == null) {
+            return;
+        }
+        if (DEBUG) {
+            plugin.getLogger().info("DEBUG: tile entity " + (delta > 0 ? "+" : "") + delta + " " + b.getType());
+        }
+        islandCounts.change(getChunkKey(b.getX() >> 4, b.getZ() >> 4), getGroup(b.getType()), delta);
+    }
+
+    private void change(Entity entity, int delta) {
+        String group = getGroup(entity.getType());
+        if (group == null) {
+            return;
+        }
+        Location location = entity.getLocation();
+        Counts islandCounts = getCountsAt(location);
+        if (islandCounts != null) {
+            islandCounts.change(getChunkKey(location.getBlockX() >> 4, location.getBlockZ() >> 4), group, delta);
+        }
+    }
+
+    /**
+     * @return the counts for the island protecting this location, or null if the island has not been counted yet
+     */
+    private Counts getCountsAt(Location location) {
+        Map<Island, Counts> islands = counts.get(location.getWorld());
+        if (islands == null || plugin.getGrid() == null) {
+            return null;
+        }
+        Island island = plugin.getGrid().getProtectedIslandAt(location);
+        if (island == null) {
+            return null;
+        }
+        Counts result = islands.get(island);
+        return result == null || result.isStale() ? null : result;
+    }
+
+    private static long getChunkKey(int x, int z) {
+        return ((long) x << 32) | (z & 0xFFFFFFFFL);
+    }
+
+    /**
+     * @return the name that the material is counted under
+     */
+    private static String getGroup(Material material) {
+        switch (material) {
+        case REDSTONE_COMPARATOR_ON:
+            return Material.REDSTONE_COMPARATOR_OFF.toString();
+        case BURNING_FURNACE:
+            return Material.FURNACE.toString();
+        case SIGN_POST:
+            return Material.WALL_SIGN.toString();
+        default:
+            // Avoids V1.7 issues
+            return material.toString().endsWith("BANNER") ? "BANNER" : material.toString();
+        }
+    }
+
+    /**
+     * @return the name that the entity is counted under, or null if it is not limited like a block
+     */
+    private static String getGroup(EntityType type) {
+        switch (type) {
+        case ITEM_FRAME:
+        case PAINTING:
+        case ARMOR_STAND:
+            return type.toString();
+        case ENDER_CRYSTAL:
+            return "END_CRYSTAL";
+        default:
+            return null;
+        }
+    }
+}
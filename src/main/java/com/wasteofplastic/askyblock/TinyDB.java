@@ -5,27 +5,23 @@ import org.bukkit.Bukkit;
 import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileReader;
-import java.io.FilenameFilter;
 import java.io.IOException;
-import java.io.PrintWriter;
-import java.nio.file.Files;
-import java.nio.file.StandardCopyOption;
-import java.util.Map.Entry;
-import java.util.Optional;
-import java.util.Scanner;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Tiny database for a hashmap that is not used very often, but could be very big so I
- * don't want it in memory.
+ * don't want it in memory. Names that have not been saved yet are kept in memory, the rest
+ * are looked up in the {@link NameDatabase}.
  *
  * @author tastybento
  */
 public class TinyDB {
 
-    private static File database;
     private ASkyBlock plugin;
+    private NameDatabase database;
     private ConcurrentHashMap<String, UUID> treeMap;
     private boolean dbReady, savingFlag;
 
@@ -35,51 +31,69 @@ public class TinyDB {
     TinyDB(ASkyBlock plugin) {
         this.plugin = plugin;
         this.treeMap = new ConcurrentHashMap<>();
-        database = new File(plugin.getDataFolder(), "name-uuid.txt");
-        if (!database.exists()) {
+        File file = new File(plugin.getDataFolder(), "name-uuid.db");
+        boolean exists = file.exists();
+        database = new NameDatabase(file, new File(plugin.getDataFolder(), "name-uuid.log"));
+        try {
+            database.open();
+        } catch (IOException e) {
+            plugin.getLogger().severe("Could not open the name database! " + e.getMessage());
+            return;
+        }
+        File oldDatabase = new File(plugin.getDataFolder(), "name-uuid.txt");
+        if (oldDatabase.exists()) {
+            convertTextFile(oldDatabase);
+        } else if (!exists) {
             convertFiles();
         } else {
             dbReady = true;
         }
     }
 
-    private void convertFiles() {
+    /**
+     * Moves the names from the text file used by older versions into the database
+     */
+    private void convertTextFile(File oldDatabase) {
         Bukkit.getScheduler().runTaskAsynchronously(plugin, () -> {
-            FilenameFilter ymlFilter = (dir, name) -> name.toLowerCase().endsWith(".yml");
-            int count = 0;
-
-            File[] files = plugin.getPlayersFolder().listFiles(ymlFilter);
-            if (files == null) {
-                System.err.println("[ASkyBlock/AcidIsland]: Could not get players folder...");
+            Map<String, UUID> names = new HashMap<>();
+            try (BufferedReader br = new BufferedReader(new FileReader(oldDatabase))) {
+                String line = br.readLine(), uuid = br.readLine();
+                while (line != null && uuid != null) {
+                    try {
+                        names.put(line.toLowerCase(), UUID.fromString(uuid));
+                    } catch (IllegalArgumentException ignored) {
+                    }
+                    line = br.readLine();
+                    uuid = br.readLine();
+                }
+                database.putAll(names);
+            } catch (IOException e) {
+                plugin.getLogger().severe("Problem moving " + oldDatabase.getName() + " into the name database!");
+                e.printStackTrace();
                 return;
             }
+            if (!oldDatabase.renameTo(new File(plugin.getDataFolder(), "name-uuid.txt.old"))) {
+                plugin.getLogger().warning("Could not rename " + oldDatabase.getName());
+            }
+            plugin.getLogger().info("Moved " + names.size() + " names to the name database");
+            dbReady = true;
+        });
+    }
 
-            for (final File file : files) {
-                if (count++ % 1000 == 0) {
-                    System.out.println("[ASkyBlock]: Processed " + count + " names to database");
+    private void convertFiles() {
+        Bukkit.getScheduler().runTaskAsynchronously(plugin, () -> {
+            int[] count = new int[1];
+            plugin.getPlayerStore().forEach(player -> {
+                if (count[0]++ % 1000 == 0) {
+                    System.out.println("[ASkyBlock]: Processed " + count[0] + " names to database");
                 }
-
-                try {
-                    String uuid = file.getName().substring(0, file.getName().length() - 4);
-                    final UUID playerUUID = UUID.fromString(uuid);
-
-                    try (Scanner scanner = new Scanner(file)) {
-                        while (scanner.hasNextLine()) {
-                            final String lineFromFile = scanner.nextLine();
-                            if (lineFromFile.contains("playerName:")) {
-                                String playerName = lineFromFile.substring(lineFromFile.indexOf(' ')).trim();
-                                treeMap.put(playerName.toLowerCase(), playerUUID);
-                                break;
-                            }
-                        }
-                    }
-                } catch (IOException ex) {
-                    System.err.println("[ASkyBlock/AcidIsland]: Problem reading " + file.getName() + " skipping...");
+                if (!player.getPlayerName().isEmpty()) {
+                    treeMap.put(player.getPlayerName().toLowerCase(), player.getUUID());
                 }
-            }
+            });
             saveDB();
             treeMap.clear();
-            System.out.println("Complete. Processed " + count + " names to database");
+            System.out.println("Complete. Processed " + count[0] + " names to database");
             dbReady = true;
         });
     }
@@ -90,33 +104,11 @@ public class TinyDB {
     public void saveDB() {
         savingFlag = true;
         try {
-            File newDB = new File(plugin.getDataFolder(), "name-uuid-new.txt");
-            try (PrintWriter out = new PrintWriter(newDB)) {
-                for (Entry<String, UUID> entry : treeMap.entrySet()) {
-                    out.println(entry.getKey());
-                    out.println(entry.getValue().toString());
-                }
-
-                if (database.exists()) {
-                    try (BufferedReader br = new BufferedReader(new FileReader(database))) {
-                        String line = br.readLine(), uuid = br.readLine();
-                        while (line != null) {
-                            if (!treeMap.containsKey(line)) {
-                                out.println(line);
-                                out.println(uuid);
-                            }
-
-                            line = br.readLine();
-                            uuid = br.readLine();
-                        }
-                    }
-                }
-            }
-
-            try {
-                Files.move(newDB.toPath(), database.toPath(), StandardCopyOption.REPLACE_EXISTING);
-            } catch (IOException ex) {
-                plugin.getLogger().severe("Problem saving name database! Could not rename files!");
+            Map<String, UUID> names = new HashMap<>(treeMap);
+            database.putAll(names);
+            // Saved names are looked up in the database from now on
+            for (Map.Entry<String, UUID> en : names.entrySet()) {
+                treeMap.remove(en.getKey(), en.getValue());
             }
         } catch (IOException e) {
             plugin.getLogger().severe("Problem saving name database!");
@@ -125,6 +117,14 @@ public class TinyDB {
         savingFlag = false;
     }
 
+    /**
+     * Saves the DB and closes it
+     */
+    public void close() {
+        saveDB();
+        database.close();
+    }
+
     /**
      * Async Saving of the DB
      */
@@ -161,27 +161,15 @@ public class TinyDB {
             return null;
         }
 
-        return Optional.ofNullable(treeMap.get(playerName.toLowerCase())).orElseGet(() -> {
-            try (BufferedReader br = new BufferedReader(new FileReader(database))) {
-                String line = br.readLine(), uuid = br.readLine();
-
-                while (line != null && !line.equalsIgnoreCase(playerName)) {
-                    line = br.readLine();
-                    uuid = br.readLine();
-                }
-
-                if (line == null) {
-                    return null;
-                }
-
-                UUID result = UUID.fromString(uuid);
-                treeMap.put(playerName.toLowerCase(), result);
-                return result;
+        UUID result = treeMap.get(playerName.toLowerCase());
+        if (result == null) {
+            try {
+                result = database.getUUID(playerName.toLowerCase());
             } catch (IOException e) {
                 e.printStackTrace();
             }
-            return null;
-        });
+        }
+        return result;
     }
 
     /**
@@ -194,20 +182,11 @@ public class TinyDB {
             return "";
         }
 
-        try (BufferedReader br = new BufferedReader(new FileReader(database))) {
-            String line = br.readLine(), uuid = br.readLine();
-
-            while (uuid != null && !uuid.equals(playerUuid.toString())) {
-                line = br.readLine();
-                uuid = br.readLine();
-            }
-
-            if (line == null) {
-                return "";
+        try {
+            String name = database.getName(playerUuid);
+            if (name != null) {
+                return name;
             }
-
-            treeMap.put(line.toLowerCase(), playerUuid);
-            return line;
         } catch (IOException e) {
             e.printStackTrace();
         }
@@ -1,6 +1,5 @@
 package com.wasteofplastic.askyblock;
 
-import com.wasteofplastic.askyblock.util.MapUtil;
 import com.wasteofplastic.askyblock.util.Util;
 
 import org.bukkit.Bukkit;
@@ -21,11 +20,8 @@ import org.bukkit.inventory.meta.SkullMeta;
 
 import java.io.File;
 import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
-import java.util.Map.Entry;
 import java.util.UUID;
 
 /**
@@ -40,9 +36,13 @@ public class TopTen implements Listener {
     private static final boolean DEBUG = false;
     private static ASkyBlock plugin = ASkyBlock.getPlugin();
     // Top ten list of players
-    private static Map<UUID, Long> topTenList = new HashMap<>();
+    private static volatile TopTenHeap topTenList = new TopTenHeap(Math.max(10, Settings.topTenSize));
     // Store this as a static because it's the same for everyone and saves memory cleanup
     private static Inventory gui;
+    // Top ten list and its version that are in the GUI. The list is replaced when the top ten is loaded
+    // or made again, and a new list counts its versions from the start, so both are checked.
+    private static TopTenHeap guiList;
+    private static long guiVersion = -1;
 
     public TopTen(ASkyBlock plugin) {
         TopTen.plugin = plugin;
@@ -53,7 +53,7 @@ public class TopTen implements Listener {
     }
 
     public static void topTenLoad() {
-        topTenList.clear();
+        topTenList = new TopTenHeap(Settings.topTenSize);
         // Check to see if the top ten list exists
         File topTenFile = new File(plugin.getDataFolder(), "topten.yml");
         if (!topTenFile.exists()) {
@@ -70,7 +70,7 @@ public class TopTen implements Listener {
                     try {
                         UUID uuid = UUID.fromString(playerUUID);
                         // getLogger().info(uuid.toString());
-                        int level = topTenConfig.getInt("topten." + playerUUID);
+                        long level = topTenConfig.getLong("topten." + playerUUID);
                         // getLogger().info("Level = " + level);
                         TopTen.topTenAddEntry(uuid, level);
                     } catch (Exception e) {
@@ -98,42 +98,13 @@ public class TopTen implements Listener {
      */
     public static void topTenCreate(final CommandSender sender) {
         Bukkit.getScheduler().runTaskAsynchronously(plugin, () -> {
-            // This map is a list of owner and island level
-            YamlConfiguration player = new YamlConfiguration();
-            int index = 0;
-            for (final File f : plugin.getPlayersFolder().listFiles()) {
-                // Need to remove the .yml suffix
-                String fileName = f.getName();
-                if (fileName.endsWith(".yml")) {
-                    try {
-                        String playerUUIDString = fileName.substring(0, fileName.length() - 4);
-                        final UUID playerUUID = UUID.fromString(playerUUIDString);
-                        player.load(f);
-                        index++;
-                        if (index % 1000 == 0) {
-                            plugin.getLogger().info("Processed " + index + " players for top ten");
-                        }
-                        // Players player = new Players(this, playerUUID);
-                        int islandLevel = player.getInt("islandLevel", 0);
-                        String teamLeaderUUID = player.getString("teamLeader", "");
-                        if (islandLevel > 0) {
-                            if (!player.getBoolean("hasTeam")) {
-                                // Single player
-                                topTenAddEntry(playerUUID, islandLevel);
-                            } else if (!teamLeaderUUID.isEmpty() && teamLeaderUUID.equals(playerUUIDString)) {
-                                // Only enter team leaders into the top ten
-                                topTenAddEntry(playerUUID, islandLevel);
-                            }
-                        }
-                    } catch (Exception e) {
-                        plugin.getLogger().severe("Error when reading player file. File is " + fileName);
-                        plugin.getLogger()
-                                .severe("Look at the stack trace and edit the file - it probably has broken YAML in it for some reason.");
-                        e.printStackTrace();
-                    }
-                }
+            // This is a list of owner and island level
+            TopTenHeap created = new TopTenHeap(Settings.topTenSize);
+            // Only single players and team leaders are in the top ten
+            for (PlayerSummary player : plugin.getPlayerStore().getHighestLevels(Settings.topTenSize)) {
+                created.put(player.getUUID(), player.getIslandLevel());
             }
-            plugin.getLogger().info("Processed " + index + " players for top ten");
+            topTenList = created;
             // Save the top ten
             topTenSave();
 
@@ -155,9 +126,7 @@ public class TopTen implements Listener {
         // Special case for removals. If a level of zero is given the player
         // needs to be removed from the list
         if (l < 1) {
-            if (topTenList.containsKey(ownerUUID)) {
-                topTenList.remove(ownerUUID);
-            }
+            topTenList.remove(ownerUUID);
             return;
         }
         // Try and see if the player is online
@@ -170,13 +139,9 @@ public class TopTen implements Listener {
             }
         }
         topTenList.put(ownerUUID, l);
-        topTenList = MapUtil.sortByValue(topTenList);
     }
 
     public static void topTenSave() {
-        if (topTenList == null) {
-            return;
-        }
         plugin.getLogger().info("Saving top ten list");
         // Make file
         File topTenFile = new File(plugin.getDataFolder(), "topten.yml");
@@ -184,11 +149,7 @@ public class TopTen implements Listener {
         YamlConfiguration config = new YamlConfiguration();
         // Save config
 
-        int rank = 0;
-        for (Map.Entry<UUID, Long> m : topTenList.entrySet()) {
-            if (rank++ == 10) {
-                break;
-            }
+        for (Map.Entry<UUID, Long> m : topTenList.getRanking().entrySet()) {
             config.set("topten." + m.getKey().toString(), m.getValue());
         }
         try {
@@ -201,54 +162,55 @@ public class TopTen implements Listener {
     }
 
     /**
-     * Displays the Top Ten list if it exists in chat
+     * Displays the Top Ten list if it exists in chat. Players in the list that are not cached are
+     * loaded in the background first.
      */
     public static boolean topTenShow(final Player player) {
+        removeExcluded();
+        List<UUID> owners = new ArrayList<>();
+        for (UUID owner : topTenList.getRanking().keySet()) {
+            owners.add(owner);
+            if (owners.size() == 10) {
+                break;
+            }
+        }
+        plugin.getPlayers().loadTeams(owners).thenRun(() -> {
+            if (player.isOnline()) {
+                show(player);
+            }
+        });
+        return true;
+    }
+
+    private static void show(final Player player) {
         // Old chat display
         if (Settings.displayIslandTopTenInChat) {
             Util.sendMessage(player, ChatColor.GOLD + plugin.myLocale(player.getUniqueId()).topTenheader);
-            if (topTenList == null) {
-                topTenCreate();
-            }
-            topTenList = MapUtil.sortByValue(topTenList);
             int i = 1;
-            Iterator<Entry<UUID, Long>> it = topTenList.entrySet().iterator();
-            while (it.hasNext()) {
-                Map.Entry<UUID, Long> m = it.next();
+            for (Map.Entry<UUID, Long> m : topTenList.getRanking().entrySet()) {
                 UUID playerUUID = m.getKey();
-                Player entry = Bukkit.getPlayer(playerUUID);
-                boolean show = true;
-                if (entry != null) {
-                    if (!entry.hasPermission(Settings.PERMPREFIX + "intopten")) {
-                        it.remove();
-                        show = false;
-                    }
-                }
-
-                if (show) {
-                    if (plugin.getPlayers().inTeam(playerUUID)) {
-                        final List<UUID> pMembers = plugin.getPlayers().getMembers(playerUUID);
-                        StringBuilder memberList = new StringBuilder();
-                        for (UUID members : pMembers) {
-                            memberList.append(plugin.getPlayers().getName(members)).append(", ");
-                        }
-                        if (memberList.length() > 2) {
-                            memberList = new StringBuilder(memberList.substring(0, memberList.length() - 2));
-                        }
-                        Util.sendMessage(player,
-                                ChatColor.AQUA + "#" + i + ": " + plugin.getGrid().getIslandName(playerUUID) + ChatColor.AQUA + " ("
-                                        + memberList
-                                        + ") - "
-                                        + plugin.myLocale(player.getUniqueId()).levelislandLevel + " " + m.getValue());
-                    } else {
-                        // Island name + Island level
-                        Util.sendMessage(player,
-                                ChatColor.AQUA + "#" + i + ": " + plugin.getGrid().getIslandName(playerUUID) + ChatColor.AQUA + " - "
-                                        + plugin.myLocale(player.getUniqueId()).levelislandLevel + " " + m.getValue());
+                if (plugin.getPlayers().inTeam(playerUUID)) {
+                    final List<UUID> pMembers = plugin.getPlayers().getMembers(playerUUID);
+                    StringBuilder memberList = new StringBuilder();
+                    for (UUID members : pMembers) {
+                        memberList.append(plugin.getPlayers().getName(members)).append(", ");
                     }
-                    if (i++ == 10) {
-                        break;
+                    if (memberList.length() > 2) {
+                        memberList = new StringBuilder(memberList.substring(0, memberList.length() - 2));
                     }
+                    Util.sendMessage(player,
+                            ChatColor.AQUA + "#" + i + ": " + plugin.getGrid().getIslandName(playerUUID) + ChatColor.AQUA + " ("
+                                    + memberList
+                                    + ") - "
+                                    + plugin.myLocale(player.getUniqueId()).levelislandLevel + " " + m.getValue());
+                } else {
+                    // Island name + Island level
+                    Util.sendMessage(player,
+                            ChatColor.AQUA + "#" + i + ": " + plugin.getGrid().getIslandName(playerUUID) + ChatColor.AQUA + " - "
+                                    + plugin.myLocale(player.getUniqueId()).levelislandLevel + " " + m.getValue());
+                }
+                if (i++ == 10) {
+                    break;
                 }
             }
         } else {
@@ -256,10 +218,6 @@ public class TopTen implements Listener {
                 plugin.getLogger().info("DEBUG: new GUI display");
             }
             // New GUI display (shown by default)
-            if (topTenList == null) {
-                topTenCreate();
-            }
-            topTenList = MapUtil.sortByValue(topTenList);
             // Create the top ten GUI if it does not exist
             if (gui == null) {
                 gui = Bukkit.createInventory(null, GUISIZE, plugin.myLocale(player.getUniqueId()).topTenGuiTitle);
@@ -267,41 +225,41 @@ public class TopTen implements Listener {
                     plugin.getLogger().info("DEBUG: creating GUI for the first time");
                 }
             }
-            // Reset
-            gui.clear();
-            int i = 1;
-            Iterator<Entry<UUID, Long>> it = topTenList.entrySet().iterator();
-            while (it.hasNext()) {
-                Map.Entry<UUID, Long> m = it.next();
-                UUID playerUUID = m.getKey();
+            // Only rebuild the GUI if the top ten has changed
+            TopTenHeap list = topTenList;
+            long version = list.getVersion();
+            if (list != guiList || version != guiVersion) {
                 if (DEBUG) {
-                    plugin.getLogger().info("DEBUG: " + i + ": " + playerUUID);
+                    plugin.getLogger().info("DEBUG: rebuilding GUI");
                 }
-                // Remove from TopTen if the player is online and has the permission
-                Player entry = Bukkit.getPlayer(playerUUID);
-                boolean show = true;
-                if (entry != null) {
-                    if (!entry.hasPermission(Settings.PERMPREFIX + "intopten")) {
-                        it.remove();
-                        show = false;
-                    }
-                } else {
+                gui.clear();
+                int i = 1;
+                for (Map.Entry<UUID, Long> m : list.getRanking().entrySet()) {
                     if (DEBUG) {
-                        plugin.getLogger().info("DEBUG: player not online, so no per check");
+                        plugin.getLogger().info("DEBUG: " + i + ": " + m.getKey());
                     }
-
-                }
-                if (show) {
-                    gui.setItem(SLOTS[i - 1], getSkull(i, m.getValue(), playerUUID));
+                    gui.setItem(SLOTS[i - 1], getSkull(i, m.getValue(), m.getKey()));
                     if (i++ == 10) {
                         break;
                     }
                 }
+                guiList = list;
+                guiVersion = version;
             }
-
             player.openInventory(gui);
         }
-        return true;
+    }
+
+    /**
+     * Removes online players that do not have the permission to be in the top ten
+     */
+    private static void removeExcluded() {
+        for (UUID playerUUID : new ArrayList<>(topTenList.getRanking().keySet())) {
+            Player entry = Bukkit.getPlayer(playerUUID);
+            if (entry != null && !entry.hasPermission(Settings.PERMPREFIX + "intopten")) {
+                topTenList.remove(playerUUID);
+            }
+        }
     }
 
     static ItemStack getSkull(int rank, Long long1, UUID player) {
@@ -347,10 +305,10 @@ public class TopTen implements Listener {
     /**
      * Get a sorted descending map of the top players
      *
-     * @return the topTenList - may be more or less than ten
+     * @return the topTenList - may be more or less than ten. Cannot be changed.
      */
     public static Map<UUID, Long> getTopTenList() {
-        return topTenList;
+        return topTenList.getRanking();
     }
 
     @SuppressWarnings("deprecation")
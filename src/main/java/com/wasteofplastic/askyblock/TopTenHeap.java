@@ -0,0 +1,178 @@
+package com.wasteofplastic.askyblock;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Keeps the highest island levels, up to a fixed number of islands. The lowest level is at the top
+ * of a min-heap and each island's place in the heap is indexed, so adding, changing or removing an
+ * island takes O(log n). The sorted ranking is only worked out again after it changes.
+ * Methods can be called from any thread.
+ *
+ * @author tastybento
+ */
+class TopTenHeap {
+
+    private final int capacity;
+    private final UUID[] owners;
+    private final long[] levels;
+    private int size;
+    // Island owner -> place in the heap
+    private final Map<UUID, Integer> index = new HashMap<>();
+    // Highest first. Null when it needs to be worked out again
+    private Map<UUID, Long> ranking;
+    // Goes up by one each time the ranking changes
+    private long version;
+
+    /**
+     * @param capacity - most islands to keep
+     */
+    TopTenHeap(int capacity) {
+        this.capacity = capacity;
+        this.owners = new UUID[capacity];
+        this.levels = new long[capacity];
+    }
+
+    /**
+     * Adds or updates an island. If the heap is full, the island is only added if it is higher
+     * than the lowest island, which is then dropped.
+     *
+     * @param owner
+     * @param level
+     * @return true if the ranking changed
+     */
+    synchronized boolean put(UUID owner, long level) {
+        Integer i = index.get(owner);
+        if (i != null) {
+            if (levels[i] == level) {
+                return false;
+            }
+            long old = levels[i];
+            levels[i] = level;
+            if (level < old) {
+                siftUp(i);
+            } else {
+                siftDown(i);
+            }
+        } else if (size < capacity) {
+            set(size, owner, level);
+            siftUp(size++);
+        } else if (capacity > 0 && level > levels[0]) {
+            index.remove(owners[0]);
+            set(0, owner, level);
+            siftDown(0);
+        } else {
+            return false;
+        }
+        changed();
+        return true;
+    }
+
+    /**
+     * @param owner
+     * @return true if the island was in the heap
+     */
+    synchronized boolean remove(UUID owner) {
+        Integer i = index.remove(owner);
+        if (i == null) {
+            return false;
+        }
+        size--;
+        if (i != size) {
+            set(i, owners[size], levels[size]);
+            siftUp(i);
+            siftDown(index.get(owners[size]));
+        }
+        owners[size] = null;
+        changed();
+        return true;
+    }
+
+    synchronized void clear() {
+        index.clear();
+        for (int i = 0; i < size; i++) {
+            owners[i] = null;
+        }
+        size = 0;
+        changed();
+    }
+
+    /**
+     * @return island owner -> level, highest first. Cannot be changed.
+     */
+    synchronized Map<UUID, Long> getRanking() {
+        if (ranking == null) {
+            List<Integer> order = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                order.add(i);
+            }
+            order.sort((a, b) -> Long.compare(levels[b], levels[a]));
+            Map<UUID, Long> sorted = new LinkedHashMap<>();
+            for (int i : order) {
+                sorted.put(owners[i], levels[i]);
+            }
+            ranking = Collections.unmodifiableMap(sorted);
+        }
+        return ranking;
+    }
+
+    /**
+     * @return a number that changes each time the ranking changes
+     */
+    synchronized long getVersion() {
+        return version;
+    }
+
+    private void changed() {
+        ranking = null;
+        version++;
+    }
+
+    private void set(int i, UUID owner, long level) {
+        owners[i] = owner;
+        levels[i] = level;
+        index.put(owner, i);
+    }
+
+    private void swap(int a, int b) {
+        UUID owner = owners[a];
+        long level = levels[a];
+        set(a, owners[b], levels[b]);
+        set(b, owner, level);
+    }
+
+    private void siftUp(int i) {
+        while (i > 0) {
+            int parent = (i - 1) / 2;
+            if (levels[parent] <= levels[i]) {
+                return;
+            }
+            swap(i, parent);
+            i = parent;
+        }
+    }
+
+    private void siftDown(int i) {
+        while (true) {
+            int smallest = i;
+            int left = 2 * i + 1;
+            int right = left + 1;
+            if (left < size && levels[left] < levels[smallest]) {
+                smallest = left;
+            }
+            if (right < size && levels[right] < levels[smallest]) {
+                smallest = right;
+            }
+            if (smallest == i) {
+                return;
+            }
+            swap(i, smallest);
+            i = smallest;
+        }
+    }
+}
@@ -0,0 +1,183 @@
+package com.wasteofplastic.askyblock;
+
+import org.bukkit.Bukkit;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.UUID;
+import java.util.function.BiConsumer;
+
+/**
+ * Keeps each player in their own file in the players folder. Files are written in batches:
+ * each batch is written to temporary files, synced to disk together and then moved into place,
+ * so a crash never leaves a half written player file.
+ *
+ * @author tastybento
+ */
+class YamlPlayerStore implements PlayerStore {
+
+    // Files synced together
+    private static final int BATCH_SIZE = 64;
+    private final File folder;
+
+    YamlPlayerStore(File folder) {
+        this.folder = folder;
+    }
+
+    @Override
+    public String load(UUID playerUUID) throws IOException {
+        File file = getFile(playerUUID);
+        if (!file.exists()) {
+            return null;
+        }
+        return new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public Map<UUID, String> save(Map<UUID, String> files) {
+        Map<UUID, String> failed = new LinkedHashMap<>();
+        List<Entry<UUID, String>> entries = new ArrayList<>(files.entrySet());
+        for (int i = 0; i < entries.size(); i += BATCH_SIZE) {
+            save(entries.subList(i, Math.min(entries.size(), i + BATCH_SIZE)), failed);
+        }
+        return failed;
+    }
+
+    /**
+     * Writes each file to a temporary file, syncs them all and then moves them into place.
+     * A player whose file cannot be written is added to failed and the rest carry on.
+     */
+    private void save(List<Entry<UUID, String>> entries, Map<UUID, String> failed) {
+        Map<Entry<UUID, String>, FileChannel> channels = new LinkedHashMap<>();
+        try {
+            for (Entry<UUID, String> en : entries) {
+                FileChannel channel = null;
+                try {
+                    channel = new FileOutputStream(getTempFile(en.getKey())).getChannel();
+                    ByteBuffer buffer = ByteBuffer.wrap(en.getValue().getBytes(StandardCharsets.UTF_8));
+                    while (buffer.hasRemaining()) {
+                        channel.write(buffer);
+                    }
+                    channels.put(en, channel);
+                } catch (IOException e) {
+                    close(channel);
+                    failed(en, e, failed);
+                }
+            }
+            Iterator<Entry<Entry<UUID, String>, FileChannel>> it = channels.entrySet().iterator();
+            while (it.hasNext()) {
+                Entry<Entry<UUID, String>, FileChannel> en = it.next();
+                try {
+                    en.getValue().force(true);
+                } catch (IOException e) {
+                    close(en.getValue());
+                    it.remove();
+                    failed(en.getKey(), e, failed);
+                }
+            }
+        } finally {
+            for (FileChannel channel : channels.values()) {
+                close(channel);
+            }
+        }
+        for (Entry<UUID, String> en : channels.keySet()) {
+            try {
+                try {
+                    Files.move(getTempFile(en.getKey()).toPath(), getFile(en.getKey()).toPath(), StandardCopyOption.REPLACE_EXISTING,
+                            StandardCopyOption.ATOMIC_MOVE);
+                } catch (AtomicMoveNotSupportedException e) {
+                    Files.move(getTempFile(en.getKey()).toPath(), getFile(en.getKey()).toPath(), StandardCopyOption.REPLACE_EXISTING);
+                }
+            } catch (IOException e) {
+                failed(en, e, failed);
+            }
+        }
+    }
+
+    private void failed(Entry<UUID, String> en, IOException e, Map<UUID, String> failed) {
+        Bukkit.getLogger().severe("Could not save player file " + getFile(en.getKey()).getName() + "! " + e.getMessage());
+        getTempFile(en.getKey()).delete();
+        failed.put(en.getKey(), en.getValue());
+    }
+
+    private static void close(FileChannel channel) {
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    @Override
+    public boolean exists(UUID playerUUID) {
+        return getFile(playerUUID).exists();
+    }
+
+    @Override
+    public void forEachFile(BiConsumer<UUID, String> consumer) {
+        File[] files = folder.listFiles((dir, name) -> name.toLowerCase().endsWith(".yml"));
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            UUID playerUUID;
+            try {
+                playerUUID = UUID.fromString(file.getName().substring(0, file.getName().length() - 4));
+            } catch (IllegalArgumentException e) {
+                continue;
+            }
+            try {
+                consumer.accept(playerUUID, new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8));
+            } catch (IOException e) {
+                Bukkit.getLogger().severe("Problem reading " + file.getName() + " skipping...");
+            }
+        }
+    }
+
+    @Override
+    public int setAll(String key, String value) throws IOException {
+        File[] files = folder.listFiles((dir, name) -> name.toLowerCase().endsWith(".yml"));
+        if (files == null) {
+            return 0;
+        }
+        int count = 0;
+        for (File file : files) {
+            List<String> fileContent = new ArrayList<>(Files.readAllLines(file.toPath(), StandardCharsets.UTF_8));
+            for (int i = 0; i < fileContent.size(); i++) {
+                if (fileContent.get(i).startsWith(key + ":")) {
+                    fileContent.set(i, key + ": " + value);
+                    Files.write(file.toPath(), fileContent, StandardCharsets.UTF_8);
+                    count++;
+                    break;
+                }
+            }
+        }
+        return count;
+    }
+
+    @Override
+    public void close() {
+    }
+
+    private File getFile(UUID playerUUID) {
+        return new File(folder, playerUUID.toString() + ".yml");
+    }
+
+    private File getTempFile(UUID playerUUID) {
+        return new File(folder, playerUUID.toString() + ".yml.tmp");
+    }
+}
@@ -4,12 +4,14 @@ import com.google.common.collect.HashMultiset;
 import com.google.common.collect.Multiset;
 import com.wasteofplastic.askyblock.ASLocale;
 import com.wasteofplastic.askyblock.ASkyBlock;
+import com.wasteofplastic.askyblock.ChunkSnapshotQueue;
 import com.wasteofplastic.askyblock.CoopPlay;
 import com.wasteofplastic.askyblock.DeleteIslandChunk;
 import com.wasteofplastic.askyblock.FileLister;
 import com.wasteofplastic.askyblock.GridManager;
 import com.wasteofplastic.askyblock.Island;
 import com.wasteofplastic.askyblock.Island.SettingsFlag;
+import com.wasteofplastic.askyblock.PlayerCache;
 import com.wasteofplastic.askyblock.PluginConfig;
 import com.wasteofplastic.askyblock.SafeSpotTeleport;
 import com.wasteofplastic.askyblock.Settings;
@@ -39,22 +41,19 @@ import org.bukkit.entity.Player;
 import org.bukkit.scheduler.BukkitRunnable;
 import org.bukkit.util.BlockIterator;
 
-import java.io.File;
-import java.io.FileNotFoundException;
-import java.io.FileWriter;
-import java.io.FilenameFilter;
 import java.io.IOException;
 import java.text.Collator;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
-import java.util.Scanner;
+import java.util.Set;
 import java.util.TreeMap;
 import java.util.TreeSet;
 import java.util.UUID;
@@ -126,7 +125,9 @@ public class AdminCmd implements CommandExecutor, TabCompleter {
                         || split[0].equalsIgnoreCase("reserve") || split[0].equalsIgnoreCase("addrange")
                         || split[0].equalsIgnoreCase("unregister") || split[0].equalsIgnoreCase("clearresetall")
                         || split[0].equalsIgnoreCase("settingsreset") || split[0].equalsIgnoreCase("cobblestats")
-                        || split[0].equalsIgnoreCase("setlanguage")) {
+                        || split[0].equalsIgnoreCase("setlanguage") || split[0].equalsIgnoreCase("entityindex")
+                        || split[0].equalsIgnoreCase("levelqueue") || split[0].equalsIgnoreCase("exportislands")
+                        || split[0].equalsIgnoreCase("playercache")) {
                     if (!checkAdminPerms(player, split)) {
                         Util.sendMessage(player, ChatColor.RED + plugin.myLocale(player.getUniqueId()).errorNoPermission);
                         return true;
@@ -187,6 +188,41 @@ public class AdminCmd implements CommandExecutor, TabCompleter {
                     Util.sendMessage(sender, plugin.myLocale().helpColor + plugin.myLocale().adminHelpsetLanguage);
                     return true;
                 }
+                if (split[0].equalsIgnoreCase("entityindex")) {
+                    Util.sendMessage(sender, plugin.myLocale().helpColor + label + " entityindex <rebuild | verify>:" + ChatColor.WHITE + " "
+                            + plugin.myLocale().adminHelpEntityIndex);
+                    return true;
+                }
+                if (split[0].equalsIgnoreCase("levelqueue")) {
+                    ChunkSnapshotQueue queue = plugin.getChunkSnapshotQueue();
+                    Util.sendMessage(sender, ChatColor.YELLOW + "Queued level requests: " + ChatColor.WHITE + queue.getQueuedRequests());
+                    Util.sendMessage(sender, ChatColor.YELLOW + "Queued chunks: " + ChatColor.WHITE + queue.getQueuedChunks()
+                            + " (" + Settings.levelChunksPerTick + " per tick)");
+                    Util.sendMessage(sender, ChatColor.YELLOW + "Completed requests: " + ChatColor.WHITE + queue.getCompleted()
+                            + " (" + queue.getCaptured() + " chunks)");
+                    Util.sendMessage(sender, ChatColor.YELLOW + "Wait: " + ChatColor.WHITE + "last " + queue.getLastWait() + " ms, average "
+                            + queue.getAverageWait() + " ms, max " + queue.getMaxWait() + " ms");
+                    return true;
+                }
+                if (split[0].equalsIgnoreCase("playercache")) {
+                    PlayerCache cache = plugin.getPlayers();
+                    Util.sendMessage(sender, ChatColor.YELLOW + "Cached players: " + ChatColor.WHITE + cache.getCacheSize()
+                            + " (" + Settings.playerCacheSize + " offline max)");
+                    Util.sendMessage(sender, ChatColor.YELLOW + "Hits: " + ChatColor.WHITE + cache.getHits() + ChatColor.YELLOW
+                            + " Misses: " + ChatColor.WHITE + cache.getMisses());
+                    Util.sendMessage(sender, ChatColor.YELLOW + "Loads: " + ChatColor.WHITE + cache.getLoads() + ", average "
+                            + String.format("%.2f", cache.getAverageLoadTime()) + " ms, max "
+                            + String.format("%.2f", cache.getMaxLoadTime()) + " ms");
+                    return true;
+                }
+                if (split[0].equalsIgnoreCase("exportislands")) {
+                    if (plugin.getGrid().exportGrid()) {
+                        Util.sendMessage(sender, ChatColor.GREEN + plugin.myLocale().adminExportIslandsDone);
+                    } else {
+                        Util.sendMessage(sender, ChatColor.RED + plugin.myLocale().adminExportIslandsError);
+                    }
+                    return true;
+                }
                 if (split[0].equalsIgnoreCase("listchallengeresets")) {
                     // Reset the challenge now
                     for (String challenge : plugin.getChallenges().getRepeatingChallengeResets()) {
@@ -586,6 +622,8 @@ public class AdminCmd implements CommandExecutor, TabCompleter {
                         Settings.useEconomy = false;
                     }
                     ControlPanel.loadControlPanel();
+                    // The entity limits decide which entities are indexed
+                    plugin.getEntityIndex().rebuild();
                     if (Settings.updateCheck) {
                         plugin.checkUpdates();
                     } else {
@@ -640,72 +678,30 @@ public class AdminCmd implements CommandExecutor, TabCompleter {
                         // Do online players first
                         plugin.getPlayers().clearResets(Settings.resetLimit);
                         // Do offline players
-                        final File playerFolder = plugin.getPlayersFolder();
                         // Set the pending flag
                         asyncPending = true;
-                        // Check against player files
+                        // Change player files
                         Bukkit.getScheduler().runTaskAsynchronously(plugin, new Runnable() {
 
                             @Override
                             public void run() {
-                                //System.out.println("DEBUG: Running async task");
                                 int done = 0;
-                                // Check files against potentialUnowned
-                                FilenameFilter ymlFilter = new FilenameFilter() {
+                                try {
+                                    done = plugin.getPlayerStore().setAll("resetsLeft", String.valueOf(Settings.resetLimit));
+                                } catch (IOException e) {
+                                    plugin.getLogger().severe("Could not clear reset limits: " + e.getMessage());
+                                }
+                                final int update = done;
+                                // Run sync task
+                                Bukkit.getScheduler().runTask(plugin, new Runnable() {
+
                                     @Override
-                                    public boolean accept(File dir, String name) {
-                                        String lowercaseName = name.toLowerCase();
-                                        if (lowercaseName.endsWith(".yml")) {
-                                            return true;
-                                        } else {
-                                            return false;
-                                        }
-                                    }
-                                };
-                                for (File file : playerFolder.listFiles(ymlFilter)) {
-                                    List<String> playerFileContents = new ArrayList<String>();
-                                    done++;
-                                    try {
-                                        Scanner scanner = new Scanner(file);
-                                        while (scanner.hasNextLine()) {
-                                            final String lineFromFile = scanner.nextLine();
-                                            if (lineFromFile.contains("resetsLeft:")) {
-                                                playerFileContents.add("resetsLeft: " + Settings.resetLimit);
-                                            } else {
-                                                playerFileContents.add(lineFromFile);
-                                            }
-                                        }
-                                        scanner.close();
-                                        // Write file
-                                        FileWriter writer = new FileWriter(file);
-                                        for (String str : playerFileContents) {
-                                            writer.write(str + "\n");
-                                        }
-                                        writer.close();
-                                        if (done % 500 == 0) {
-                                            final int update = done;
-                                            Bukkit.getScheduler().runTask(plugin, new Runnable() {
-
-                                                @Override
-                                                public void run() {
-                                                    // Tell player
-                                                    Util.sendMessage(sender,
-                                                            ChatColor.GREEN + plugin.myLocale().clearedResetLimit + " [" + update
-                                                                    + " players]...");
-                                                }
-                                            });
-                                        }
-                                    } catch (FileNotFoundException e) {
-                                        e.printStackTrace();
-                                    } catch (IOException e) {
-                                        // TODO Auto-generated catch block
-                                        e.printStackTrace();
+                                    public void run() {
+                                        asyncPending = false;
+                                        Util.sendMessage(sender,
+                                                ChatColor.YELLOW + plugin.myLocale().clearedResetLimit + " [" + update + " players] completed.");
                                     }
-                                }
-                                //System.out.println("DEBUG: scanning done");
-                                asyncPending = false;
-                                Util.sendMessage(sender,
-                                        ChatColor.YELLOW + plugin.myLocale().clearedResetLimit + " [" + done + " players] completed.");
+                                });
                             }
                         });
                         return true;
@@ -714,6 +710,30 @@ public class AdminCmd implements CommandExecutor, TabCompleter {
                         return false;
                     }
             case 2:
+                if (split[0].equalsIgnoreCase("entityindex")) {
+                    if (split[1].equalsIgnoreCase("rebuild")) {
+                        int size = plugin.getEntityIndex().rebuild();
+                        Util.sendMessage(sender, ChatColor.GREEN + plugin.myLocale().adminEntityIndexRebuilt
+                                .replace("[number]", String.valueOf(size)));
+                        return true;
+                    } else if (split[1].equalsIgnoreCase("verify")) {
+                        List<String> mismatches = plugin.getEntityIndex().verify();
+                        if (mismatches.isEmpty()) {
+                            Util.sendMessage(sender, ChatColor.GREEN + plugin.myLocale().adminEntityIndexOk
+                                    .replace("[number]", String.valueOf(plugin.getEntityIndex().size())));
+                        } else {
+                            Util.sendMessage(sender, ChatColor.RED + plugin.myLocale().adminEntityIndexMismatch
+                                    .replace("[number]", String.valueOf(mismatches.size())));
+                            for (String mismatch : mismatches) {
+                                Util.sendMessage(sender, ChatColor.YELLOW + mismatch);
+                            }
+                        }
+                        return true;
+                    }
+                    Util.sendMessage(sender, plugin.myLocale().helpColor + label + " entityindex <rebuild | verify>:" + ChatColor.WHITE + " "
+                            + plugin.myLocale().adminHelpEntityIndex);
+                    return true;
+                }
                 if (split[0].equalsIgnoreCase("setlanguage")) {
                     if (asyncPending) {
                         Util.sendMessage(sender, ChatColor.RED + plugin.myLocale().errorCommandNotReady);
@@ -755,8 +775,6 @@ public class AdminCmd implements CommandExecutor, TabCompleter {
                         for (UUID onlinePlayer : plugin.getPlayers().getOnlineCachedPlayers()) {
                             plugin.getPlayers().setLocale(onlinePlayer, Settings.defaultLanguage);
                         }
-                        // Prepare for the async check - make final
-                        final File playerFolder = plugin.getPlayersFolder();
                         // Set the pending flag
                         asyncPending = true;
                         // Change player files
@@ -765,7 +783,7 @@ public class AdminCmd implements CommandExecutor, TabCompleter {
                             @Override
                             public void run() {
                                 try {
-                                    Util.setPlayerYamlConfig(playerFolder, "locale", Settings.defaultLanguage);
+                                    plugin.getPlayerStore().setAll("locale", Settings.defaultLanguage);
 
                                     // Run sync task
                                     Bukkit.getScheduler().runTask(plugin, new Runnable() {
@@ -1277,9 +1295,23 @@ public class AdminCmd implements CommandExecutor, TabCompleter {
                         return true;
                     }
 
+                    if (split[1].equalsIgnoreCase("status")) {
+                        plugin.getIslandPurge().showStatus(sender);
+                        return true;
+                    }
+                    if (split[1].equalsIgnoreCase("stop")) {
+                        if (!plugin.getIslandPurge().isRunning()) {
+                            Util.sendMessage(sender, ChatColor.RED + plugin.myLocale().purgeNotRunning);
+                        } else {
+                            Util.sendMessage(sender, ChatColor.YELLOW + plugin.myLocale().purgeStopped
+                                    .replace("[number]", String.valueOf(plugin.getIslandPurge().stop())));
+                        }
+                        return true;
+                    }
+
                     // Purge runs in the background so if one is already running
                     // this flag stops a repeat
-                    if (purgeFlag) {
+                    if (purgeFlag || plugin.getIslandPurge().isRunning()) {
                         Util.sendMessage(sender, ChatColor.RED + plugin.myLocale().purgealreadyRunning);
                         return true;
                     }
@@ -1302,114 +1334,55 @@ public class AdminCmd implements CommandExecutor, TabCompleter {
                         return true;
                     }
                     Util.sendMessage(sender, ChatColor.YELLOW + plugin.myLocale().purgecalculating.replace("[time]", split[1]));
-                    // Check who has not been online since the time
-                    for (Entry<UUID, Island> entry : plugin.getGrid().getOwnershipMap().entrySet()) {
-                        //plugin.getLogger().info("UUID = " + entry.getKey());
-                        // Only do this if it isn't protected
-                        if (entry.getKey() != null && !entry.getValue().isPurgeProtected()) {
-                            if (Bukkit.getOfflinePlayer(entry.getKey()).hasPlayedBefore()) {
-                                long offlineTime = Bukkit.getOfflinePlayer(entry.getKey()).getLastPlayed();
-                                offlineTime = (System.currentTimeMillis() - offlineTime) / 3600000L;
-                                if (offlineTime > time) {
-                                    //if (plugin.getPlayers().getIslandLevel(entry.getKey()) < Settings.abandonedIslandLevel) {
-                                    // Check level later
-                                    removeList.add(entry.getKey());
-                                    //}
-                                }
-                            } else {
-                                removeList.add(entry.getKey());
-                            }
-                        }
-                    }
-                    if (removeList.isEmpty()) {
-                        Util.sendMessage(sender, ChatColor.YELLOW + plugin.myLocale().purgenoneFound);
-                        purgeFlag = false;
-                        return true;
-                    }
-                    Util.sendMessage(sender,
-                            ChatColor.YELLOW + plugin.myLocale().purgethisWillRemove.replace("[number]",
-                                    String.valueOf(removeList.size()))
-                                    .replace("[level]", String.valueOf(Settings.abandonedIslandLevel)));
-                    long runtime = removeList.size() * 2;
-                    Util.sendMessage(sender, ChatColor.YELLOW + plugin.myLocale().purgeEstimatedRunTime
-                            .replace("[time]",
-                                    String.format("%d h %02d m %02d s", runtime / 3600, (runtime % 3600) / 60, (runtime % 60))));
-                    Util.sendMessage(sender, ChatColor.RED + plugin.myLocale().purgewarning);
-                    Util.sendMessage(sender, ChatColor.RED + plugin.myLocale().purgetypeConfirm.replace("[label]", label));
-                    if (removeList.size() > Settings.maxPurge) {
-                        Util.sendMessage(sender, plugin.myLocale().purgeLimit.replace("[number]", String.valueOf(Settings.maxPurge)));
-                        Iterator<UUID> it = removeList.iterator();
-                        int count = 1;
-                        while (it.hasNext()) {
-                            it.next();
-                            if (count++ > Settings.maxPurge) {
-                                it.remove();
-                            }
+                    // Check who has not been online since the time. Player files are read in the background.
+                    plugin.getIslandPurge().find(time, list -> {
+                        if (list.isEmpty()) {
+                            Util.sendMessage(sender, ChatColor.YELLOW + plugin.myLocale().purgenoneFound);
+                            purgeFlag = false;
+                            return;
                         }
-                    }
-                    confirmReq = true;
-                    confirmOK = false;
-                    confirmTimer = 0;
-                    new BukkitRunnable() {
-                        @Override
-                        public void run() {
-                            // This waits for 10 seconds and if no
-                            // confirmation received, then it
-                            // cancels
-                            if (confirmTimer++ > 10) {
-                                // Ten seconds is up!
-                                confirmReq = false;
-                                confirmOK = false;
-                                purgeFlag = false;
-                                removeList.clear();
-                                Util.sendMessage(sender, ChatColor.YELLOW + plugin.myLocale().purgepurgeCancelled);
-                                this.cancel();
-                            } else if (confirmOK) {
-                                // Set up a repeating task to run every 2
-                                // seconds to remove
-                                // islands one by one and then cancel when
-                                // done
-                                final int total = removeList.size();
-                                new BukkitRunnable() {
-                                    @Override
-                                    public void run() {
-                                        if (removeList.isEmpty() && purgeFlag) {
-                                            purgeFlag = false;
-                                            Util.sendMessage(sender, ChatColor.YELLOW + plugin.myLocale().purgefinished);
-                                            this.cancel();
-                                        }
-
-                                        if (removeList.size() > 0 && purgeFlag) {
-                                            // Check if the player is online
-                                            if (Bukkit.getPlayer(removeList.get(0)) == null) {
-                                                //plugin.getLogger().info("DEBUG: player is offline");
-                                                // Check the level
-                                                if (plugin.getPlayers().getIslandLevel(removeList.get(0))
-                                                        < Settings.abandonedIslandLevel) {
-                                                    Util.sendMessage(sender,
-                                                            ChatColor.YELLOW + "[" + (total - removeList.size() + 1) + "/" + total
-                                                                    + "] "
-                                                                    + plugin.myLocale().purgeremovingName
-                                                                    .replace("[name]",
-                                                                            plugin.getPlayers().getName(removeList.get(0))));
-                                                    plugin.deletePlayerIsland(removeList.get(0), true);
-                                                }
-                                            } else {
-                                                Util.sendMessage(sender,
-                                                        ChatColor.YELLOW + "[" + (total - removeList.size() + 1) + "/" + total + "] "
-                                                                + "Skipping online player...");
-                                            }
-                                            removeList.remove(0);
-                                        }
-                                        //Util.sendMessage(sender, "Now waiting...");
-                                    }
-                                }.runTaskTimer(plugin, 0L, 20L);
-                                confirmReq = false;
-                                confirmOK = false;
-                                this.cancel();
+                        removeList.clear();
+                        removeList.addAll(list);
+                        Util.sendMessage(sender,
+                                ChatColor.YELLOW + plugin.myLocale().purgethisWillRemove.replace("[number]",
+                                        String.valueOf(removeList.size()))
+                                        .replace("[level]", String.valueOf(Settings.abandonedIslandLevel)));
+                        Util.sendMessage(sender, ChatColor.RED + plugin.myLocale().purgewarning);
+                        Util.sendMessage(sender, ChatColor.RED + plugin.myLocale().purgetypeConfirm.replace("[label]", label));
+                        if (removeList.size() > Settings.maxPurge) {
+                            Util.sendMessage(sender, plugin.myLocale().purgeLimit.replace("[number]", String.valueOf(Settings.maxPurge)));
+                            removeList.subList(Settings.maxPurge, removeList.size()).clear();
+                        }
+                        confirmReq = true;
+                        confirmOK = false;
+                        confirmTimer = 0;
+                        new BukkitRunnable() {
+                            @Override
+                            public void run() {
+                                // This waits for 10 seconds and if no
+                                // confirmation received, then it
+                                // cancels
+                                if (confirmTimer++ > 10) {
+                                    // Ten seconds is up!
+                                    confirmReq = false;
+                                    confirmOK = false;
+                                    purgeFlag = false;
+                                    removeList.clear();
+                                    Util.sendMessage(sender, ChatColor.YELLOW + plugin.myLocale().purgepurgeCancelled);
+                                    this.cancel();
+                                } else if (confirmOK) {
+                                    // Islands are removed in the background using spare time in each tick.
+                                    // Use purge status to see how far it has got.
+                                    plugin.getIslandPurge().start(sender, new ArrayList<>(removeList));
+                                    removeList.clear();
+                                    purgeFlag = false;
+                                    confirmReq = false;
+                                    confirmOK = false;
+                                    this.cancel();
+                                }
                             }
-                        }
-                    }.runTaskTimer(plugin, 0L, 40L);
+                        }.runTaskTimer(plugin, 0L, 40L);
+                    });
                     return true;
                 } else if (split[0].equalsIgnoreCase("lock")) {
                     // Convert name to a UUID
@@ -2144,6 +2117,18 @@ public class AdminCmd implements CommandExecutor, TabCompleter {
             Util.sendMessage(sender,
                     plugin.myLocale().helpColor + label + " delete <player>:" + ChatColor.WHITE + " "
                             + plugin.myLocale().adminHelpdelete);
+            Util.sendMessage(sender,
+                    plugin.myLocale().helpColor + label + " entityindex <rebuild | verify>:" + ChatColor.WHITE + " "
+                            + plugin.myLocale().adminHelpEntityIndex);
+            Util.sendMessage(sender,
+                    plugin.myLocale().helpColor + label + " levelqueue:" + ChatColor.WHITE + " "
+                            + plugin.myLocale().adminHelpLevelQueue);
+            Util.sendMessage(sender,
+                    plugin.myLocale().helpColor + label + " playercache:" + ChatColor.WHITE + " "
+                            + plugin.myLocale().adminHelpPlayerCache);
+            Util.sendMessage(sender,
+                    plugin.myLocale().helpColor + label + " exportislands:" + ChatColor.WHITE + " "
+                            + plugin.myLocale().adminHelpExportIslands);
             Util.sendMessage(sender,
                     plugin.myLocale().helpColor + label + " info <player>:" + ChatColor.WHITE + " " + plugin.myLocale().adminHelpinfo);
             Util.sendMessage(sender,
@@ -2162,6 +2147,9 @@ public class AdminCmd implements CommandExecutor, TabCompleter {
             Util.sendMessage(sender,
                     plugin.myLocale().helpColor + label + " purge [TimeInDays]:" + ChatColor.WHITE + " "
                             + plugin.myLocale().adminHelppurge);
+            Util.sendMessage(sender,
+                    plugin.myLocale().helpColor + label + " purge status/stop:" + ChatColor.WHITE + " "
+                            + plugin.myLocale().adminHelppurgeStatusStop);
             Util.sendMessage(sender,
                     plugin.myLocale().helpColor + label + " name <player> <island name>:" + ChatColor.WHITE + " "
                             + plugin.myLocale().adminHelpName);
@@ -2252,6 +2240,30 @@ public class AdminCmd implements CommandExecutor, TabCompleter {
                                 + plugin
                                 .myLocale(player.getUniqueId()).adminHelpdelete);
             }
+            if (VaultHelper.checkPerm(player, Settings.PERMPREFIX + "admin.entityindex") || player.isOp()) {
+                helpMessages.add(
+                        plugin.myLocale(player.getUniqueId()).helpColor + "/" + label + " entityindex <rebuild | verify>:" + ChatColor.WHITE
+                                + " " + plugin
+                                .myLocale(player.getUniqueId()).adminHelpEntityIndex);
+            }
+            if (VaultHelper.checkPerm(player, Settings.PERMPREFIX + "admin.levelqueue") || player.isOp()) {
+                helpMessages.add(
+                        plugin.myLocale(player.getUniqueId()).helpColor + "/" + label + " levelqueue:" + ChatColor.WHITE + " "
+                                + plugin
+                                .myLocale(player.getUniqueId()).adminHelpLevelQueue);
+            }
+            if (VaultHelper.checkPerm(player, Settings.PERMPREFIX + "admin.playercache") || player.isOp()) {
+                helpMessages.add(
+                        plugin.myLocale(player.getUniqueId()).helpColor + "/" + label + " playercache:" + ChatColor.WHITE + " "
+                                + plugin
+                                .myLocale(player.getUniqueId()).adminHelpPlayerCache);
+            }
+            if (VaultHelper.checkPerm(player, Settings.PERMPREFIX + "admin.exportislands") || player.isOp()) {
+                helpMessages.add(
+                        plugin.myLocale(player.getUniqueId()).helpColor + "/" + label + " exportislands:" + ChatColor.WHITE + " "
+                                + plugin
+                                .myLocale(player.getUniqueId()).adminHelpExportIslands);
+            }
             if (VaultHelper.checkPerm(player, Settings.PERMPREFIX + "admin.deleteisland") || player.isOp()) {
                 helpMessages
                         .add(plugin.myLocale(player.getUniqueId()).helpColor + "/" + label + " deleteisland confirm:" + ChatColor.WHITE
@@ -2304,6 +2316,10 @@ public class AdminCmd implements CommandExecutor, TabCompleter {
                         .add(plugin.myLocale(player.getUniqueId()).helpColor + "/" + label + " purge allow/disallow:" + ChatColor.WHITE
                                 + " " + plugin
                                 .myLocale(player.getUniqueId()).adminHelppurgeAllowDisallow);
+                helpMessages
+                        .add(plugin.myLocale(player.getUniqueId()).helpColor + "/" + label + " purge status/stop:" + ChatColor.WHITE
+                                + " " + plugin
+                                .myLocale(player.getUniqueId()).adminHelppurgeStatusStop);
             }
 
             if (VaultHelper.checkPerm(player, Settings.PERMPREFIX + "admin.reload") || player.isOp()) {
@@ -2528,8 +2544,6 @@ public class AdminCmd implements CommandExecutor, TabCompleter {
         if (!unowned.isEmpty()) {
             purgeFlag = true;
             Util.sendMessage(sender, plugin.myLocale().purgeCountingUnowned);
-            // Prepare for the async check - make final
-            final File playerFolder = plugin.getPlayersFolder();
             // Set the pending flag
             asyncPending = true;
             // Check against player files
@@ -2538,39 +2552,8 @@ public class AdminCmd implements CommandExecutor, TabCompleter {
                 @Override
                 public void run() {
                     //System.out.println("DEBUG: Running async task");
-                    // Check files against potentialUnowned
-                    FilenameFilter ymlFilter = new FilenameFilter() {
-                        @Override
-                        public boolean accept(File dir, String name) {
-                            String lowercaseName = name.toLowerCase();
-                            if (lowercaseName.endsWith(".yml")) {
-                                return true;
-                            } else {
-                                return false;
-                            }
-                        }
-                    };
-                    for (File file : playerFolder.listFiles(ymlFilter)) {
-                        try {
-                            Scanner scanner = new Scanner(file);
-                            while (scanner.hasNextLine()) {
-                                final String lineFromFile = scanner.nextLine();
-                                if (lineFromFile.contains("islandLocation:")) {
-                                    // Check against potentialUnowned list
-                                    String loc = lineFromFile.substring(lineFromFile.indexOf(' ')).trim();
-                                    //System.out.println("DEBUG: Location in player file is " + loc);
-                                    if (unowned.containsKey(loc)) {
-                                        //System.out.println("DEBUG: Location found in player file - do not delete");
-                                        unowned.remove(loc);
-                                    }
-                                    break;
-                                }
-                            }
-                            scanner.close();
-                        } catch (FileNotFoundException e) {
-                            e.printStackTrace();
-                        }
-                    }
+                    // Islands that are in a player file are not unowned
+                    unowned.keySet().removeAll(plugin.getPlayerStore().getIslandOwners(unowned.keySet()).keySet());
                     //System.out.println("DEBUG: scanning done");
                     asyncPending = false;
                 }
@@ -2637,12 +2620,27 @@ public class AdminCmd implements CommandExecutor, TabCompleter {
     }
 
     /**
-     * Shows info on a player
+     * Shows info on a player once they, their team and the players they have banned are loaded
      *
      * @param playerUUID
      * @param sender
      */
-    private void showInfo(UUID playerUUID, CommandSender sender) {
+    private void showInfo(final UUID playerUUID, final CommandSender sender) {
+        plugin.getPlayers().loadTeams(Collections.singletonList(playerUUID))
+                .thenCompose(v -> plugin.getPlayers().loadPlayers(plugin.getPlayers().getBanList(playerUUID)))
+                .thenCompose(v -> {
+                    UUID leader = plugin.getPlayers().getTeamLeader(playerUUID);
+                    return plugin.getPlayers().loadStoredTeam(leader == null ? playerUUID : leader);
+                })
+                .thenAccept(storedTeam -> showLoadedInfo(playerUUID, sender, storedTeam));
+    }
+
+    /**
+     * @param playerUUID
+     * @param sender
+     * @param storedTeam - players whose file says they are in the team of the player or their leader
+     */
+    private void showLoadedInfo(UUID playerUUID, CommandSender sender, Set<UUID> storedTeam) {
         Util.sendMessage(sender, plugin.myLocale().adminInfoPlayer + ": " + ChatColor.GREEN + plugin.getPlayers().getName(playerUUID));
         Util.sendMessage(sender, ChatColor.WHITE + "UUID: " + playerUUID.toString());
         // Display island level
@@ -2673,6 +2671,14 @@ public class AdminCmd implements CommandExecutor, TabCompleter {
                     Util.sendMessage(sender, ChatColor.WHITE + " - " + plugin.getPlayers().getName(member));
                 }
             }
+            for (UUID member : storedTeam) {
+                // The file may be older than the cache, so check the loaded player
+                if (leader != null && !member.equals(leader) && !pList.contains(member) && plugin.getPlayers().inTeam(member)
+                        && leader.equals(plugin.getPlayers().getTeamLeader(member))) {
+                    Util.sendMessage(sender, ChatColor.RED + plugin.myLocale().adminInfoerrorNotListed
+                            .replace("[name]", plugin.getPlayers().getName(member)));
+                }
+            }
             islandLoc = plugin.getPlayers().getTeamIslandLocation(playerUUID);
         } else {
             Util.sendMessage(sender, ChatColor.YELLOW + plugin.myLocale().errorNoTeam);
@@ -2759,12 +2765,16 @@ public class AdminCmd implements CommandExecutor, TabCompleter {
     }
 
     /**
-     * Shows info on the challenge situation for player
+     * Shows info on the challenge situation for player once they are loaded
      *
      * @param playerUUID
      * @param sender
      */
-    private void showInfoChallenges(UUID playerUUID, CommandSender sender) {
+    private void showInfoChallenges(final UUID playerUUID, final CommandSender sender) {
+        plugin.getPlayers().loadPlayer(playerUUID).thenRun(() -> showLoadedInfoChallenges(playerUUID, sender));
+    }
+
+    private void showLoadedInfoChallenges(UUID playerUUID, CommandSender sender) {
         Util.sendMessage(sender, "Name:" + ChatColor.GREEN + plugin.getPlayers().getName(playerUUID));
         Util.sendMessage(sender, ChatColor.WHITE + "UUID: " + playerUUID.toString());
         // Completed challenges
@@ -2907,12 +2917,15 @@ public class AdminCmd implements CommandExecutor, TabCompleter {
                             "clearreset", "clearresetall", "setbiome", "topbreeders", "team",
                             "name", "setdeaths", "settingsreset", "setrange", "addrange",
                             "resetname", "register", "cobblestats", "clearchallengereset",
-                            "setlanguage"));
+                            "setlanguage", "entityindex", "levelqueue", "exportislands", "playercache"));
                     break;
                 case 2:
                     if (args[0].equalsIgnoreCase("setlanguage")) {
                         options.addAll(plugin.getAvailableLocales().keySet());
                     }
+                    if (args[0].equalsIgnoreCase("entityindex")) {
+                        options.addAll(Arrays.asList("rebuild", "verify"));
+                    }
                     if (args[0].equalsIgnoreCase("name") || args[0].equalsIgnoreCase("resetname") || args[0].equalsIgnoreCase(
                             "setdeaths")) {
                         options.addAll(Util.getOnlinePlayerList());
@@ -3027,6 +3040,18 @@ public class AdminCmd implements CommandExecutor, TabCompleter {
                     if (VaultHelper.checkPerm(player, Settings.PERMPREFIX + "admin.delete") || player.isOp()) {
                         options.add("delete");
                     }
+                    if (VaultHelper.checkPerm(player, Settings.PERMPREFIX + "admin.entityindex") || player.isOp()) {
+                        options.add("entityindex");
+                    }
+                    if (VaultHelper.checkPerm(player, Settings.PERMPREFIX + "admin.levelqueue") || player.isOp()) {
+                        options.add("levelqueue");
+                    }
+                    if (VaultHelper.checkPerm(player, Settings.PERMPREFIX + "admin.playercache") || player.isOp()) {
+                        options.add("playercache");
+                    }
+                    if (VaultHelper.checkPerm(player, Settings.PERMPREFIX + "admin.exportislands") || player.isOp()) {
+                        options.add("exportislands");
+                    }
                     if (VaultHelper.checkPerm(player, Settings.PERMPREFIX + "admin.deleteisland") || player.isOp()) {
                         options.add("deleteisland");
                     }
@@ -3119,6 +3144,10 @@ public class AdminCmd implements CommandExecutor, TabCompleter {
                             && args[0].equalsIgnoreCase("delete")) {
                         options.addAll(Util.getOnlinePlayerList());
                     }
+                    if ((VaultHelper.checkPerm(player, Settings.PERMPREFIX + "admin.entityindex") || player.isOp())
+                            && args[0].equalsIgnoreCase("entityindex")) {
+                        options.addAll(Arrays.asList("rebuild", "verify"));
+                    }
                     if ((VaultHelper.checkPerm(player, Settings.PERMPREFIX + "mod.challenges") || player.isOp())
                             && (args[0].equalsIgnoreCase("completechallenge") || args[0].equalsIgnoreCase("resetchallenge"))) {
                         options.addAll(Util.getOnlinePlayerList());
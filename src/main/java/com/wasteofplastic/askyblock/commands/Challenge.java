@@ -0,0 +1,576 @@
+/*******************************************************************************
+ * This file is part of ASkyBlock.
+ *
+ *     ASkyBlock is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     ASkyBlock is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with ASkyBlock.  If not, see <http://www.gnu.org/licenses/>.
+ *******************************************************************************/
+package com.wasteofplastic.askyblock.commands;
+
+import com.wasteofplastic.askyblock.ASkyBlock;
+import com.wasteofplastic.askyblock.Settings;
+import com.wasteofplastic.askyblock.util.SpawnEgg1_9;
+import com.wasteofplastic.askyblock.util.Util;
+
+import org.apache.commons.lang.StringUtils;
+import org.bukkit.Bukkit;
+import org.bukkit.ChatColor;
+import org.bukkit.Material;
+import org.bukkit.configuration.ConfigurationSection;
+import org.bukkit.entity.EntityType;
+import org.bukkit.inventory.ItemStack;
+import org.bukkit.inventory.meta.PotionMeta;
+import org.bukkit.material.SpawnEgg;
+import org.bukkit.potion.PotionData;
+import org.bukkit.potion.PotionType;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A challenge from challenges.yml. Challenges are read once when challenges.yml is loaded
+ * so that checking, completing and showing them does not parse the config again.
+ *
+ * @author tastybento
+ */
+class Challenge {
+
+    // Entity names for island challenge requirements
+    private static final Map<String, EntityType> ENTITY_TYPES = new HashMap<>();
+    static {
+        for (EntityType entityType : EntityType.values()) {
+            ENTITY_TYPES.put(entityType.toString().toUpperCase(), entityType);
+        }
+    }
+
+    private final String name;
+    private final String friendlyName;
+    private final String level;
+    private final String type;
+    private final String description;
+    private final List<String> descriptionLines;
+    private final List<String> panelDescription;
+    private final ItemStack icon;
+    private final boolean repeatable;
+    private final int maxTimes;
+    private final boolean takeItems;
+    private final boolean resetAllowed;
+    private final double requiredMoney;
+    private final int requiredLevel;
+    private final int searchRadius;
+    private final List<ItemRequirement> requiredItems;
+    private final Map<Material, Integer> requiredBlocks;
+    private final Map<EntityType, Integer> requiredEntities;
+    private final boolean islandValid;
+    private final String[] permissionRewards;
+    private final Reward reward;
+    private final Reward repeatReward;
+
+    /**
+     * An item that must be in the player's inventory
+     */
+    static class ItemRequirement {
+        private final String raw;
+        private final Material material;
+        // -1 if any durability is okay
+        private final int durability;
+        private final int amount;
+        // POTION:NAME:<LEVEL>:<EXTENDED>:<SPLASH/LINGER>:QTY, or null if this is not a potion
+        private final String[] potion;
+        private final boolean valid;
+
+        private ItemRequirement(String raw, Material material, int durability, int amount, String[] potion, boolean valid) {
+            this.raw = raw;
+            this.material = material;
+            this.durability = durability;
+            this.amount = amount;
+            this.potion = potion;
+            this.valid = valid;
+        }
+
+        String getRaw() {
+            return raw;
+        }
+
+        Material getMaterial() {
+            return material;
+        }
+
+        int getDurability() {
+            return durability;
+        }
+
+        int getAmount() {
+            return amount;
+        }
+
+        /**
+         * @return the parts of the potion requirement, or null if this is not a potion. Must not be changed.
+         */
+        String[] getPotion() {
+            return potion;
+        }
+
+        boolean isPotion() {
+            return potion != null;
+        }
+
+        /**
+         * @return false if challenges.yml could not be understood
+         */
+        boolean isValid() {
+            return valid;
+        }
+    }
+
+    /**
+     * What is given for completing a challenge
+     */
+    static class Reward {
+        private final String text;
+        private final String[] items;
+        private final double money;
+        private final int exp;
+        private final List<String> commands;
+
+        private Reward(ConfigurationSection section, boolean repeat) {
+            String rewardText = section.getString(repeat ? "repeatRewardText" : "rewardText");
+            this.text = rewardText == null ? null : ChatColor.translateAlternateColorCodes('&', rewardText);
+            this.items = section.getString(repeat ? "repeatItemReward" : "itemReward", "").split(" ");
+            this.money = section.getDouble(repeat ? "repeatMoneyReward" : "moneyReward", 0D);
+            this.exp = section.getInt(repeat ? "repeatExpReward" : "expReward", 0);
+            this.commands = Collections.unmodifiableList(new ArrayList<>(
+                    section.getStringList(repeat ? "repeatrewardcommands" : "rewardcommands")));
+        }
+
+        /**
+         * @param def - text to use if there is none
+         * @return the reward text
+         */
+        String getText(String def) {
+            return text == null ? def : text;
+        }
+
+        String[] getItems() {
+            return items.clone();
+        }
+
+        double getMoney() {
+            return money;
+        }
+
+        int getExp() {
+            return exp;
+        }
+
+        List<String> getCommands() {
+            return commands;
+        }
+    }
+
+    /**
+     * Reads a challenge
+     *
+     * @param plugin
+     * @param name - name of the challenge
+     * @param section - the challenge's section of challenges.yml
+     */
+    Challenge(ASkyBlock plugin, String name, ConfigurationSection section) {
+        this.name = name;
+        this.friendlyName = ChatColor.translateAlternateColorCodes('&',
+                section.getString("friendlyname", name.substring(0, 1).toUpperCase() + name.substring(1)));
+        this.level = section.getString("level", "");
+        this.type = section.getString("type", "").toLowerCase();
+        this.description = ChatColor.translateAlternateColorCodes('&',
+                section.getString("description", "").replace("[label]", Settings.ISLANDCOMMAND));
+        if (description.contains("|")) {
+            this.descriptionLines = Collections.unmodifiableList(Arrays.asList(description.split("\\|")));
+            this.panelDescription = descriptionLines;
+        } else {
+            this.descriptionLines = Collections.singletonList(description);
+            this.panelDescription = Collections.unmodifiableList(Util.chop(ChatColor.GOLD, description, 25));
+        }
+        this.icon = makeIcon(plugin, section.getString("icon", ""));
+        this.repeatable = section.getBoolean("repeatable", false);
+        this.maxTimes = section.getInt("maxtimes", 0);
+        this.takeItems = section.getBoolean("takeItems", false);
+        this.resetAllowed = section.getBoolean("resetallowed", true);
+        this.requiredMoney = section.getDouble("requiredMoney", 0D);
+        this.requiredLevel = section.getInt("requiredItems", 0);
+        // Get search radius - min is 10, max is 50
+        this.searchRadius = Math.max(10, Math.min(50, section.getInt("searchRadius", 10)));
+        final String reqList = section.getString("requiredItems", "");
+        List<ItemRequirement> items = new ArrayList<>();
+        Map<Material, Integer> blocks = new HashMap<>();
+        Map<EntityType, Integer> entities = new HashMap<>();
+        boolean valid = true;
+        if (type.equals("inventory")) {
+            for (String s : reqList.split(" ")) {
+                if (!s.isEmpty()) {
+                    items.add(makeItemRequirement(plugin, s));
+                }
+            }
+        } else if (type.equals("island")) {
+            valid = readIslandRequirements(plugin, reqList, blocks, entities);
+        }
+        this.requiredItems = Collections.unmodifiableList(items);
+        this.requiredBlocks = Collections.unmodifiableMap(blocks);
+        this.requiredEntities = Collections.unmodifiableMap(entities);
+        this.islandValid = valid;
+        this.permissionRewards = section.getString("permissionReward", "").split(" ");
+        this.reward = new Reward(section, false);
+        this.repeatReward = new Reward(section, true);
+    }
+
+    /**
+     * Reads one inventory requirement, i.e., Material:Qty, Material:DamageModifier:Qty or a potion
+     */
+    private static ItemRequirement makeItemRequirement(ASkyBlock plugin, String s) {
+        final String[] part = s.split(":");
+        if (part.length == 2 || part.length == 3) {
+            // Correct some common mistakes
+            if (part[0].equalsIgnoreCase("potato")) {
+                part[0] = "POTATO_ITEM";
+            } else if (part[0].equalsIgnoreCase("brewing_stand")) {
+                part[0] = "BREWING_STAND_ITEM";
+            } else if (part[0].equalsIgnoreCase("carrot")) {
+                part[0] = "CARROT_ITEM";
+            } else if (part[0].equalsIgnoreCase("cauldron")) {
+                part[0] = "CAULDRON_ITEM";
+            } else if (part[0].equalsIgnoreCase("skull")) {
+                part[0] = "SKULL_ITEM";
+            }
+            // TODO: add netherwart vs. netherstalk?
+            try {
+                Material reqItem;
+                if (StringUtils.isNumeric(part[0])) {
+                    reqItem = Material.getMaterial(Integer.parseInt(part[0]));
+                } else {
+                    reqItem = Material.getMaterial(part[0].toUpperCase());
+                }
+                if (reqItem != null) {
+                    if (part.length == 2) {
+                        return new ItemRequirement(s, reqItem, -1, Integer.parseInt(part[1]), null, true);
+                    }
+                    return new ItemRequirement(s, reqItem, Integer.parseInt(part[1]), Integer.parseInt(part[2]), null, true);
+                }
+            } catch (Exception e) {
+                // Reported below
+            }
+            plugin.getLogger().severe("Problem with " + s + " in challenges.yml!");
+            String materialList = "";
+            boolean hint = false;
+            for (Material m : Material.values()) {
+                materialList += m.toString() + ",";
+                if (part[0].length() >= 3 && m.toString().contains(part[0].substring(0, 3).toUpperCase())) {
+                    plugin.getLogger().severe("Did you mean " + m.toString() + "?");
+                    hint = true;
+                }
+            }
+            if (!hint) {
+                plugin.getLogger().severe("Sorry, I have no idea what " + s + " is. Pick from one of these:");
+                plugin.getLogger().severe(materialList.substring(0, materialList.length() - 1));
+            } else {
+                plugin.getLogger().severe("Correct challenges.yml with the correct material.");
+            }
+        } else if (part.length == 6 && part[0].contains("POTION")) {
+            try {
+                return new ItemRequirement(s, null, -1, Integer.parseInt(part[5]), part, true);
+            } catch (Exception e) {
+                plugin.getLogger().severe("Could not parse the quantity of the potion item " + s);
+            }
+        } else {
+            plugin.getLogger().severe("Problem with " + s + " in challenges.yml!");
+        }
+        return new ItemRequirement(s, null, -1, 0, null, false);
+    }
+
+    /**
+     * Reads the blocks and entities needed for an island challenge
+     *
+     * @return false if the requirements could not be read
+     */
+    private boolean readIslandRequirements(ASkyBlock plugin, String reqList, Map<Material, Integer> blocks,
+            Map<EntityType, Integer> entities) {
+        for (String req : reqList.split(" ")) {
+            if (req.isEmpty()) {
+                continue;
+            }
+            final String[] sPart = req.split(":");
+            // Parse the qty required first
+            try {
+                final int qty = Integer.parseInt(sPart[1]);
+                // Find out if the needed item is a Material or an Entity
+                EntityType entityType = ENTITY_TYPES.get(sPart[0].toUpperCase());
+                if (entityType != null) {
+                    entities.put(entityType, qty);
+                } else {
+                    Material item;
+                    if (StringUtils.isNumeric(sPart[0])) {
+                        item = Material.getMaterial(Integer.parseInt(sPart[0]));
+                    } else {
+                        item = Material.getMaterial(sPart[0].toUpperCase());
+                    }
+                    if (item == null) {
+                        plugin.getLogger().warning("Problem parsing required item for challenge " + name + " in challenges.yml!");
+                        return false;
+                    }
+                    blocks.put(item, qty);
+                }
+            } catch (Exception intEx) {
+                plugin.getLogger().warning("Problem parsing required items for challenge " + name + " in challenges.yml - skipping");
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Makes the challenge panel icon
+     *
+     * @return icon, or null if it is not set or could not be made
+     */
+    private ItemStack makeIcon(ASkyBlock plugin, String iconName) {
+        ItemStack result = null;
+        if (iconName.isEmpty()) {
+            return null;
+        }
+        try {
+            // Split if required
+            String[] split = iconName.split(":");
+            if (split.length == 1) {
+                // Some material does not show in the inventory
+                if (iconName.equalsIgnoreCase("potato")) {
+                    iconName = "POTATO_ITEM";
+                } else if (iconName.equalsIgnoreCase("brewing_stand")) {
+                    iconName = "BREWING_STAND_ITEM";
+                } else if (iconName.equalsIgnoreCase("carrot")) {
+                    iconName = "CARROT_ITEM";
+                } else if (iconName.equalsIgnoreCase("cauldron")) {
+                    iconName = "CAULDRON_ITEM";
+                } else if (iconName.equalsIgnoreCase("lava") || iconName.equalsIgnoreCase("stationary_lava")) {
+                    iconName = "LAVA_BUCKET";
+                } else if (iconName.equalsIgnoreCase("water") || iconName.equalsIgnoreCase("stationary_water")) {
+                    iconName = "WATER_BUCKET";
+                } else if (iconName.equalsIgnoreCase("portal")) {
+                    iconName = "OBSIDIAN";
+                } else if (iconName.equalsIgnoreCase("PUMPKIN_STEM")) {
+                    iconName = "PUMPKIN";
+                } else if (iconName.equalsIgnoreCase("skull")) {
+                    iconName = "SKULL_ITEM";
+                } else if (iconName.equalsIgnoreCase("COCOA")) {
+                    iconName = "INK_SACK:3";
+                } else if (iconName.equalsIgnoreCase("NETHER_WARTS")) {
+                    iconName = "NETHER_STALK";
+                }
+                if (StringUtils.isNumeric(iconName)) {
+                    result = new ItemStack(Integer.parseInt(iconName));
+                } else {
+                    result = new ItemStack(Material.valueOf(iconName));
+                }
+                // Check POTION for V1.9 - for some reason, it must be declared as WATER otherwise comparison later causes an NPE
+                if (result.getType().name().contains("POTION")) {
+                    if (!Bukkit.getVersion().contains("(MC: 1.8") && !Bukkit.getVersion().contains("(MC: 1.7")) {
+                        PotionMeta potionMeta = (PotionMeta) result.getItemMeta();
+                        potionMeta.setBasePotionData(new PotionData(PotionType.WATER));
+                        result.setItemMeta(potionMeta);
+                    }
+                }
+            } else if (split.length == 2) {
+                if (StringUtils.isNumeric(split[0])) {
+                    result = new ItemStack(Integer.parseInt(split[0]));
+                } else {
+                    result = new ItemStack(Material.valueOf(split[0]));
+                }
+                // Check POTION for V1.9 - for some reason, it must be declared as WATER otherwise comparison later causes an NPE
+                if (result.getType().name().contains("POTION")) {
+                    if (!Bukkit.getVersion().contains("(MC: 1.8") && !Bukkit.getVersion().contains("(MC: 1.7")) {
+                        PotionMeta potionMeta = (PotionMeta) result.getItemMeta();
+                        try {
+                            potionMeta.setBasePotionData(new PotionData(PotionType.valueOf(split[1].toUpperCase())));
+                        } catch (Exception e) {
+                            plugin.getLogger().severe("Challenges icon: Potion type of " + split[1]
+                                    + " is unknown, setting to WATER. Valid types are:");
+                            for (PotionType potionType : PotionType.values()) {
+                                plugin.getLogger().severe(potionType.name());
+                            }
+                            potionMeta.setBasePotionData(new PotionData(PotionType.WATER));
+                        }
+                        result.setItemMeta(potionMeta);
+                    }
+                } else if (result.getType().equals(Material.MONSTER_EGG)) {
+                    // Handle monster egg icons
+                    try {
+                        EntityType entityType = EntityType.valueOf(split[1].toUpperCase());
+                        if (Bukkit.getServer().getVersion().contains("(MC: 1.8") || Bukkit.getServer().getVersion().contains("(MC: 1.7")) {
+                            result = new SpawnEgg(entityType).toItemStack();
+                        } else {
+                            try {
+                                result = new SpawnEgg1_9(entityType).toItemStack();
+                            } catch (Exception ex) {
+                                plugin.getLogger().severe("Monster eggs not supported with this server version.");
+                            }
+                        }
+                    } catch (Exception e) {
+                        Bukkit.getLogger().severe("Spawn eggs must be described by name. Try one of these (not all are possible):");
+                        for (EntityType entityType : EntityType.values()) {
+                            if (entityType.isSpawnable() && entityType.isAlive()) {
+                                plugin.getLogger().severe(entityType.toString());
+                            }
+                        }
+                    }
+                } else {
+                    result.setDurability(Integer.valueOf(split[1]).shortValue());
+                }
+            }
+        } catch (Exception e) {
+            // Icon was not well formatted
+            plugin.getLogger().warning("Error in challenges.yml - icon format is incorrect for " + name + ":" + iconName);
+            plugin.getLogger().warning("Format should be 'icon: MaterialType:Damage' where Damage is optional");
+        }
+        return result;
+    }
+
+    String getName() {
+        return name;
+    }
+
+    /**
+     * @return name to show players, with color codes translated
+     */
+    String getFriendlyName() {
+        return friendlyName;
+    }
+
+    /**
+     * @return level, or an empty string if the challenge is a free one
+     */
+    String getLevel() {
+        return level;
+    }
+
+    /**
+     * @return type in lower case, i.e., inventory, island or level. Empty if there is no type.
+     */
+    String getType() {
+        return type;
+    }
+
+    /**
+     * @return description with color codes translated
+     */
+    String getDescription() {
+        return description;
+    }
+
+    /**
+     * @return description split into lines for chat
+     */
+    List<String> getDescriptionLines() {
+        return descriptionLines;
+    }
+
+    /**
+     * @return description split into lines for the challenge panel
+     */
+    List<String> getPanelDescription() {
+        return panelDescription;
+    }
+
+    /**
+     * @return a copy of the panel icon, or null if there is none
+     */
+    ItemStack getIcon() {
+        return icon == null ? null : icon.clone();
+    }
+
+    boolean isRepeatable() {
+        return repeatable;
+    }
+
+    /**
+     * @return most times the challenge can be done, 0 for no limit
+     */
+    int getMaxTimes() {
+        return maxTimes;
+    }
+
+    boolean isTakeItems() {
+        return takeItems;
+    }
+
+    boolean isResetAllowed() {
+        return resetAllowed;
+    }
+
+    double getRequiredMoney() {
+        return requiredMoney;
+    }
+
+    /**
+     * @return island level needed for level challenges
+     */
+    int getRequiredLevel() {
+        return requiredLevel;
+    }
+
+    /**
+     * @return how far to search for island challenges, from 10 to 50
+     */
+    int getSearchRadius() {
+        return searchRadius;
+    }
+
+    /**
+     * @return items needed for inventory challenges
+     */
+    List<ItemRequirement> getRequiredItems() {
+        return requiredItems;
+    }
+
+    /**
+     * @return blocks needed for island challenges
+     */
+    Map<Material, Integer> getRequiredBlocks() {
+        return requiredBlocks;
+    }
+
+    /**
+     * @return entities needed for island challenges
+     */
+    Map<EntityType, Integer> getRequiredEntities() {
+        return requiredEntities;
+    }
+
+    /**
+     * @return false if the island challenge requirements could not be read
+     */
+    boolean isIslandValid() {
+        return islandValid;
+    }
+
+    String[] getPermissionRewards() {
+        return permissionRewards.clone();
+    }
+
+    /**
+     * @param repeat - true for the reward for doing the challenge again
+     * @return reward
+     */
+    Reward getReward(boolean repeat) {
+        return repeat ? repeatReward : reward;
+    }
+}
@@ -16,7 +16,10 @@
  *******************************************************************************/
 package com.wasteofplastic.askyblock.commands;
 
+import com.wasteofplastic.askyblock.ASLocale;
 import com.wasteofplastic.askyblock.ASkyBlock;
+import com.wasteofplastic.askyblock.Island;
+import com.wasteofplastic.askyblock.IslandBlockScanner;
 import com.wasteofplastic.askyblock.Settings;
 import com.wasteofplastic.askyblock.events.ChallengeCompleteEvent;
 import com.wasteofplastic.askyblock.events.ChallengeLevelCompleteEvent;
@@ -30,13 +33,13 @@ import net.milkbowl.vault.economy.EconomyResponse;
 import org.apache.commons.lang.StringUtils;
 import org.bukkit.Bukkit;
 import org.bukkit.ChatColor;
-import org.bukkit.Location;
 import org.bukkit.Material;
 import org.bukkit.Sound;
 import org.bukkit.command.Command;
 import org.bukkit.command.CommandExecutor;
 import org.bukkit.command.CommandSender;
 import org.bukkit.command.TabCompleter;
+import org.bukkit.configuration.ConfigurationSection;
 import org.bukkit.configuration.file.FileConfiguration;
 import org.bukkit.configuration.file.YamlConfiguration;
 import org.bukkit.enchantments.Enchantment;
@@ -59,6 +62,7 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
@@ -80,10 +84,31 @@ public class Challenges implements CommandExecutor, TabCompleter {
     private static File challengeConfigFile = null;
     private ASkyBlock plugin;
     private HashMap<UUID, List<CPItem>> playerChallengeGUI = new HashMap<UUID, List<CPItem>>();
+    // Challenge panel items by player and level, reused until something changes
+    private final Map<UUID, Map<String, PanelItems>> panelCache = new HashMap<UUID, Map<String, PanelItems>>();
     private YamlConfiguration resettingChallenges;
+    // Challenges read from challenges.yml
+    private Map<String, Challenge> challenges = new HashMap<String, Challenge>();
+    private final IslandBlockScanner blockScanner;
+    // Players who have an island challenge being checked
+    private final Set<UUID> scanning = new HashSet<>();
+
+    private static class PanelItems {
+        private final List<CPItem> items;
+        private final ASLocale locale;
+        // When a repeating challenge reset will make this out of date
+        private final long validUntil;
+
+        private PanelItems(List<CPItem> items, ASLocale locale, long validUntil) {
+            this.items = items;
+            this.locale = locale;
+            this.validUntil = validUntil;
+        }
+    }
 
     public Challenges(ASkyBlock plugin) {
         this.plugin = plugin;
+        this.blockScanner = new IslandBlockScanner(plugin);
         saveDefaultChallengeConfig();
         reloadChallengeConfig();
         resettingChallenges = Util.loadYamlFile("resettimers.yml");
@@ -242,90 +267,59 @@ public class Challenges implements CommandExecutor, TabCompleter {
                 if (cmd[0].equalsIgnoreCase("help") || cmd[0].equalsIgnoreCase("complete") || cmd[0].equalsIgnoreCase("c")) {
                     Util.sendMessage(sender, ChatColor.GOLD + plugin.myLocale(player.getUniqueId()).challengeshelp1);
                     Util.sendMessage(sender, ChatColor.GOLD + plugin.myLocale(player.getUniqueId()).challengeshelp2);
-                } else if (isLevelAvailable(player,
-                        getChallengeConfig().getString(
-                                "challenges.challengeList." + cmd[0].toLowerCase().replaceAll("\\.", "") + ".level"))) {
+                } else if (getChallenge(cmd[0]) != null && isLevelAvailable(player, getChallenge(cmd[0]).getLevel())) {
                     // Provide info on the challenge
                     // Challenge Name
                     // Description
                     // Type
                     // Items taken or not
                     // island or not
-                    final String challenge = cmd[0].toLowerCase().toLowerCase().replaceAll("\\.", "");
+                    final Challenge challenge = getChallenge(cmd[0]);
                     Util.sendMessage(sender,
                             ChatColor.GOLD + plugin.myLocale(player.getUniqueId()).challengesname + ": " + ChatColor.WHITE
-                                    + challenge);
+                                    + challenge.getName());
                     Util.sendMessage(sender,
                             ChatColor.WHITE + plugin.myLocale(player.getUniqueId()).challengeslevel + ": " + ChatColor.GOLD
-                                    + getChallengeConfig().getString("challenges.challengeList." + challenge + ".level", ""));
-                    String desc = ChatColor.translateAlternateColorCodes('&',
-                            getChallengeConfig().getString("challenges.challengeList." + challenge + ".description", "")
-                                    .replace("[label]", Settings.ISLANDCOMMAND));
-                    List<String> result = new ArrayList<String>();
-                    if (desc.contains("|")) {
-                        result.addAll(Arrays.asList(desc.split("\\|")));
-                    } else {
-                        result.add(desc);
-                    }
-                    for (String line : result) {
+                                    + challenge.getLevel());
+                    for (String line : challenge.getDescriptionLines()) {
                         Util.sendMessage(sender, ChatColor.GOLD + line);
                     }
-                    final String type = getChallengeConfig().getString("challenges.challengeList." + challenge + ".type", "")
-                            .toLowerCase();
+                    final String type = challenge.getType();
                     if (type.equals("inventory")) {
-                        if (getChallengeConfig().getBoolean("challenges.challengeList." + cmd[0].toLowerCase() + ".takeItems")) {
+                        if (challenge.isTakeItems()) {
                             Util.sendMessage(sender, ChatColor.RED + plugin.myLocale(player.getUniqueId()).challengesitemTakeWarning);
                         }
                     } else if (type.equals("island")) {
                         Util.sendMessage(sender, ChatColor.RED + plugin.myLocale(player.getUniqueId()).challengeserrorItemsNotThere);
                     }
-                    if (plugin.getPlayers().checkChallenge(player.getUniqueId(), challenge)
-                            && (!type.equals("inventory") || !getChallengeConfig()
-                            .getBoolean("challenges.challengeList." + challenge + ".repeatable", false))) {
+                    boolean done = plugin.getPlayers().checkChallenge(player.getUniqueId(), challenge.getName());
+                    if (done && (!type.equals("inventory") || !challenge.isRepeatable())) {
                         Util.sendMessage(sender, ChatColor.RED + plugin.myLocale(player.getUniqueId()).challengesnotRepeatable);
                         return true;
                     }
-                    double moneyReward = 0;
-                    int expReward = 0;
-                    String rewardText = "";
-
-                    if (!plugin.getPlayers().checkChallenge(player.getUniqueId(), challenge)) {
+                    if (!done) {
                         // First time
-                        moneyReward = getChallengeConfig().getDouble(
-                                "challenges.challengeList." + challenge.toLowerCase() + ".moneyReward", 0D);
-                        rewardText = ChatColor.translateAlternateColorCodes('&',
-                                getChallengeConfig().getString("challenges.challengeList." + challenge.toLowerCase() + ".rewardText",
-                                        "Goodies!"));
-                        expReward = getChallengeConfig().getInt("challenges.challengeList." + challenge + ".expReward", 0);
                         Util.sendMessage(sender, ChatColor.GOLD + plugin.myLocale(player.getUniqueId()).challengesfirstTimeRewards);
                     } else {
                         // Repeat challenge
-                        moneyReward =
-                                getChallengeConfig().getDouble(
-                                        "challenges.challengeList." + challenge.toLowerCase() + ".repeatMoneyReward", 0D);
-                        rewardText = ChatColor.translateAlternateColorCodes('&',
-                                getChallengeConfig()
-                                        .getString("challenges.challengeList." + challenge.toLowerCase() + ".repeatRewardText",
-                                                "Goodies!"));
-                        expReward = getChallengeConfig().getInt("challenges.challengeList." + challenge + ".repeatExpReward", 0);
                         Util.sendMessage(sender, ChatColor.GOLD + plugin.myLocale(player.getUniqueId()).challengesrepeatRewards);
-
                     }
-                    Util.sendMessage(sender, ChatColor.WHITE + rewardText);
-                    if (expReward > 0) {
+                    Challenge.Reward reward = challenge.getReward(done);
+                    Util.sendMessage(sender, ChatColor.WHITE + reward.getText("Goodies!"));
+                    if (reward.getExp() > 0) {
                         Util.sendMessage(sender,
                                 ChatColor.GOLD + plugin.myLocale(player.getUniqueId()).challengesexpReward + ": " + ChatColor.WHITE
-                                        + expReward);
+                                        + reward.getExp());
                     }
-                    if (Settings.useEconomy && moneyReward > 0) {
+                    if (Settings.useEconomy && reward.getMoney() > 0) {
                         Util.sendMessage(sender,
                                 ChatColor.GOLD + plugin.myLocale(player.getUniqueId()).challengesmoneyReward + ": " + ChatColor.WHITE
-                                        + VaultHelper.econ.format(moneyReward));
+                                        + VaultHelper.econ.format(reward.getMoney()));
                     }
                     Util.sendMessage(sender,
                             ChatColor.GOLD + plugin.myLocale(player.getUniqueId()).challengestoCompleteUse + ChatColor.WHITE + " /"
                                     + label + " c "
-                                    + challenge);
+                                    + challenge.getName());
                 } else {
                     Util.sendMessage(sender, ChatColor.RED + plugin.myLocale(player.getUniqueId()).challengesinvalidChallengeName);
                 }
@@ -340,87 +334,8 @@ public class Challenges implements CommandExecutor, TabCompleter {
                             return true;
                         }
                     }
-                    if (checkIfCanCompleteChallenge(player, cmd[1].toLowerCase().toLowerCase().replaceAll("\\.", ""))) {
-                        int oldLevel = getLevelDone(player);
-                        giveReward(player, cmd[1].toLowerCase().toLowerCase().replaceAll("\\.", ""));
-                        //Save player
-                        plugin.getPlayers().save(player.getUniqueId());
-                        int newLevel = getLevelDone(player);
-                        // Fire an event if they are different
-                        //plugin.getLogger().info("DEBUG: " + oldLevel + " " + newLevel);
-                        if (oldLevel < newLevel) {
-                            // Update chat
-                            plugin.getChatListener().setPlayerChallengeLevel(player);
-                            // Run commands and give rewards but only if they haven't done it below
-                            //plugin.getLogger().info("DEBUG: old level = " + oldLevel + " new level = " + newLevel);
-                            String level = Settings.challengeLevels.get(newLevel);
-                            if (!level.isEmpty() && !plugin.getPlayers().checkChallenge(player.getUniqueId(), level)) {
-                                //plugin.getLogger().info("DEBUG: level name = " + level);
-                                plugin.getPlayers().completeChallenge(player.getUniqueId(), level);
-                                String message = ChatColor.translateAlternateColorCodes('&',
-                                        getChallengeConfig().getString("challenges.levelUnlock." + level + ".message", ""));
-                                if (!message.isEmpty()) {
-                                    Util.sendMessage(player, ChatColor.GREEN + message);
-                                }
-
-                                String[] itemReward =
-                                        getChallengeConfig().getString("challenges.levelUnlock." + level + ".itemReward", "")
-                                                .split(" ");
-                                String rewardDesc = getChallengeConfig().getString("challenges.levelUnlock." + level + ".rewardDesc",
-                                        "");
-                                if (!rewardDesc.isEmpty()) {
-                                    Util.sendMessage(player,
-                                            ChatColor.GOLD + plugin.myLocale(player.getUniqueId()).challengesrewards + ": "
-                                                    + ChatColor.WHITE
-                                                    + rewardDesc);
-                                }
-                                List<ItemStack> rewardedItems = giveItems(player, itemReward);
-                                double moneyReward = getChallengeConfig().getDouble("challenges.levelUnlock." + level + ".moneyReward",
-                                        0D);
-                                int expReward = getChallengeConfig().getInt("challenges.levelUnlock." + level + ".expReward", 0);
-                                if (expReward > 0) {
-                                    Util.sendMessage(player,
-                                            ChatColor.GOLD + plugin.myLocale(player.getUniqueId()).challengesexpReward + ": "
-                                                    + ChatColor.WHITE
-                                                    + expReward);
-                                    player.giveExp(expReward);
-                                }
-                                if (Settings.useEconomy && moneyReward > 0 && (VaultHelper.econ != null)) {
-                                    EconomyResponse e = VaultHelper.econ.depositPlayer(player, Settings.worldName, moneyReward);
-                                    if (e.transactionSuccess()) {
-                                        Util.sendMessage(player,
-                                                ChatColor.GOLD + plugin.myLocale(player.getUniqueId()).challengesmoneyReward + ": "
-                                                        + ChatColor.WHITE
-                                                        + VaultHelper.econ.format(moneyReward));
-                                    } else {
-                                        plugin.getLogger()
-                                                .severe("Error giving player " + player.getUniqueId() + " challenge money:"
-                                                        + e.errorMessage);
-                                        plugin.getLogger().severe("Reward was $" + moneyReward);
-                                    }
-                                }
-                                String[] permList =
-                                        getChallengeConfig().getString("challenges.levelUnlock." + level + ".permissionReward", "")
-                                                .split(" ");
-
-                                for (final String s : permList) {
-                                    if (!s.isEmpty()) {
-                                        VaultHelper.addPerm(player, s);
-                                        plugin.getLogger().info("Added permission " + s + " to " + player.getName() + "");
-                                    }
-                                }
-                                List<String> commands = getChallengeConfig().getStringList(
-                                        "challenges.levelUnlock." + level + ".commands");
-                                runCommands(player, commands);
-                                // Fire event
-                                ChallengeLevelCompleteEvent event = new ChallengeLevelCompleteEvent(player, oldLevel, newLevel,
-                                        rewardedItems);
-                                Bukkit.getPluginManager().callEvent(event);
-                                // Save player
-                                plugin.getPlayers().save(player.getUniqueId());
-                            }
-                        }
-                    }
+                    final String challenge = cmd[1].toLowerCase().replaceAll("\\.", "");
+                    checkIfCanCompleteChallenge(player, challenge, () -> finishChallenge(player, challenge));
                     return true;
                 }
             default:
@@ -428,6 +343,94 @@ public class Challenges implements CommandExecutor, TabCompleter {
         }
     }
 
+    /**
+     * Gives the reward for completing the challenge and handles any level that it unlocks
+     *
+     * @param player
+     * @param challenge
+     */
+    private void finishChallenge(final Player player, final String challenge) {
+        int oldLevel = getLevelDone(player);
+        giveReward(player, challenge);
+        //Save player
+        plugin.getPlayers().save(player.getUniqueId());
+        int newLevel = getLevelDone(player);
+        // Fire an event if they are different
+        //plugin.getLogger().info("DEBUG: " + oldLevel + " " + newLevel);
+        if (oldLevel < newLevel) {
+            // Update chat
+            plugin.getChatListener().setPlayerChallengeLevel(player);
+            // Run commands and give rewards but only if they haven't done it below
+            //plugin.getLogger().info("DEBUG: old level = " + oldLevel + " new level = " + newLevel);
+            String level = Settings.challengeLevels.get(newLevel);
+            if (!level.isEmpty() && !plugin.getPlayers().checkChallenge(player.getUniqueId(), level)) {
+                //plugin.getLogger().info("DEBUG: level name = " + level);
+                plugin.getPlayers().completeChallenge(player.getUniqueId(), level);
+                String message = ChatColor.translateAlternateColorCodes('&',
+                        getChallengeConfig().getString("challenges.levelUnlock." + level + ".message", ""));
+                if (!message.isEmpty()) {
+                    Util.sendMessage(player, ChatColor.GREEN + message);
+                }
+
+                String[] itemReward =
+                        getChallengeConfig().getString("challenges.levelUnlock." + level + ".itemReward", "")
+                                .split(" ");
+                String rewardDesc = getChallengeConfig().getString("challenges.levelUnlock." + level + ".rewardDesc",
+                        "");
+                if (!rewardDesc.isEmpty()) {
+                    Util.sendMessage(player,
+                            ChatColor.GOLD + plugin.myLocale(player.getUniqueId()).challengesrewards + ": "
+                                    + ChatColor.WHITE
+                                    + rewardDesc);
+                }
+                List<ItemStack> rewardedItems = giveItems(player, itemReward);
+                double moneyReward = getChallengeConfig().getDouble("challenges.levelUnlock." + level + ".moneyReward",
+                        0D);
+                int expReward = getChallengeConfig().getInt("challenges.levelUnlock." + level + ".expReward", 0);
+                if (expReward > 0) {
+                    Util.sendMessage(player,
+                            ChatColor.GOLD + plugin.myLocale(player.getUniqueId()).challengesexpReward + ": "
+                                    + ChatColor.WHITE
+                                    + expReward);
+                    player.giveExp(expReward);
+                }
+                if (Settings.useEconomy && moneyReward > 0 && (VaultHelper.econ != null)) {
+                    EconomyResponse e = VaultHelper.econ.depositPlayer(player, Settings.worldName, moneyReward);
+                    if (e.transactionSuccess()) {
+                        Util.sendMessage(player,
+                                ChatColor.GOLD + plugin.myLocale(player.getUniqueId()).challengesmoneyReward + ": "
+                                        + ChatColor.WHITE
+                                        + VaultHelper.econ.format(moneyReward));
+                    } else {
+                        plugin.getLogger()
+                                .severe("Error giving player " + player.getUniqueId() + " challenge money:"
+                                        + e.errorMessage);
+                        plugin.getLogger().severe("Reward was $" + moneyReward);
+                    }
+                }
+                String[] permList =
+                        getChallengeConfig().getString("challenges.levelUnlock." + level + ".permissionReward", "")
+                                .split(" ");
+
+                for (final String s : permList) {
+                    if (!s.isEmpty()) {
+                        VaultHelper.addPerm(player, s);
+                        plugin.getLogger().info("Added permission " + s + " to " + player.getName() + "");
+                    }
+                }
+                List<String> commands = getChallengeConfig().getStringList(
+                        "challenges.levelUnlock." + level + ".commands");
+                runCommands(player, commands);
+                // Fire event
+                ChallengeLevelCompleteEvent event = new ChallengeLevelCompleteEvent(player, oldLevel, newLevel,
+                        rewardedItems);
+                Bukkit.getPluginManager().callEvent(event);
+                // Save player
+                plugin.getPlayers().save(player.getUniqueId());
+            }
+        }
+    }
+
     /**
      * Gives the reward for completing the challenge
      *
@@ -436,21 +439,14 @@ public class Challenges implements CommandExecutor, TabCompleter {
      * @return ture if reward given successfully
      */
     private boolean giveReward(final Player player, final String challenge) {
-        // Grab the rewards from the config.yml file
-        String[] permList;
-        String[] itemRewards;
-        double moneyReward = 0;
-        int expReward = 0;
-        String rewardText = "";
+        final Challenge ch = getChallenge(challenge);
         // If the friendly name is available use it
-        String challengeName =
-                ChatColor.translateAlternateColorCodes('&',
-                        getChallengeConfig().getString("challenges.challengeList." + challenge + ".friendlyname",
-                                challenge.substring(0, 1).toUpperCase() + challenge.substring(1)));
+        String challengeName = ch.getFriendlyName();
 
         // Gather the rewards due
         // If player has done a challenge already, the rewards are different
-        if (!plugin.getPlayers().checkChallenge(player.getUniqueId(), challenge)) {
+        final boolean repeat = plugin.getPlayers().checkChallenge(player.getUniqueId(), challenge);
+        if (!repeat) {
             // First time
             Util.sendMessage(player,
                     ChatColor.GREEN + plugin.myLocale(player.getUniqueId()).challengesyouHaveCompleted.replace("[challenge]",
@@ -467,26 +463,17 @@ public class Challenges implements CommandExecutor, TabCompleter {
                     ChatColor.GOLD + plugin.myLocale(player.getUniqueId()).challengesnameHasCompleted.replace("[name]",
                             player.getName())
                             .replace("[challenge]", challengeName));
-            itemRewards = getChallengeConfig().getString("challenges.challengeList." + challenge.toLowerCase() + ".itemReward", "")
-                    .split(" ");
-            moneyReward = getChallengeConfig().getDouble("challenges.challengeList." + challenge.toLowerCase() + ".moneyReward", 0D);
-            rewardText = ChatColor.translateAlternateColorCodes('&',
-                    getChallengeConfig().getString("challenges.challengeList." + challenge.toLowerCase() + ".rewardText", "Goodies!"));
-            expReward = getChallengeConfig().getInt("challenges.challengeList." + challenge + ".expReward", 0);
         } else {
             // Repeat challenge
             Util.sendMessage(player,
                     ChatColor.GREEN + plugin.myLocale(player.getUniqueId()).challengesyouRepeated.replace("[challenge]",
                             challengeName));
-            itemRewards = getChallengeConfig().getString("challenges.challengeList." + challenge.toLowerCase() + ".repeatItemReward",
-                    "").split(" ");
-            moneyReward = getChallengeConfig().getDouble("challenges.challengeList." + challenge.toLowerCase() + ".repeatMoneyReward",
-                    0);
-            rewardText = ChatColor.translateAlternateColorCodes('&',
-                    getChallengeConfig().getString("challenges.challengeList." + challenge.toLowerCase() + ".repeatRewardText",
-                            "Goodies!"));
-            expReward = getChallengeConfig().getInt("challenges.challengeList." + challenge + ".repeatExpReward", 0);
         }
+        final Challenge.Reward reward = ch.getReward(repeat);
+        String[] itemRewards = reward.getItems();
+        double moneyReward = reward.getMoney();
+        int expReward = reward.getExp();
+        String rewardText = reward.getText("Goodies!");
         // Report the rewards and give out exp, money and permissions if
         // appropriate
         Util.sendMessage(player,
@@ -510,8 +497,7 @@ public class Challenges implements CommandExecutor, TabCompleter {
         }
         // Dole out permissions
         //plugin.getLogger().info("DEBUG: dole out permissions");
-        permList = getChallengeConfig().getString("challenges.challengeList." + challenge.toLowerCase() + ".permissionReward", "")
-                .split(" ");
+        String[] permList = ch.getPermissionRewards();
         for (final String s : permList) {
             if (!s.isEmpty()) {
                 VaultHelper.addPerm(player, s);
@@ -525,18 +511,7 @@ public class Challenges implements CommandExecutor, TabCompleter {
         }
 
         // Run reward commands
-        if (!plugin.getPlayers().checkChallenge(player.getUniqueId(), challenge)) {
-            // First time
-            List<String> commands = getChallengeConfig().getStringList(
-                    "challenges.challengeList." + challenge.toLowerCase() + ".rewardcommands");
-            runCommands(player, commands);
-        } else {
-            // Repeat challenge
-            List<String> commands =
-                    getChallengeConfig().getStringList(
-                            "challenges.challengeList." + challenge.toLowerCase() + ".repeatrewardcommands");
-            runCommands(player, commands);
-        }
+        runCommands(player, reward.getCommands());
 
         // Mark the challenge as complete
         // if (!plugin.getPlayers().checkChallenge(player.getUniqueId(),challenge)) {
@@ -823,137 +798,84 @@ public class Challenges implements CommandExecutor, TabCompleter {
      *
      * @param player
      * @param challenge
-     * @return true if player can complete otherwise false
+     * @param onSuccess - run if the player can complete the challenge. For island challenges this is run
+     *                  later on the main thread, once the island has been searched.
      */
-    public boolean checkIfCanCompleteChallenge(final Player player, String challenge) {
-        // plugin.getLogger().info("DEBUG: " + player.getDisplayName() + " " +
-        // challenge);
-        // plugin.getLogger().info("DEBUG: 1");
-        // Check if the challenge exists
-        /*
-        if (!isLevelAvailable(player, getChallengeConfig().getString("challenges.challengeList." + challenge.toLowerCase() + ".level"))) {
-            Util.sendMessage(player, ChatColor.RED + plugin.myLocale(player.getUniqueId()).challengesunknownChallenge + " '" + challenge + "'");
-            return false;
-        }*/
+    public void checkIfCanCompleteChallenge(final Player player, String challenge, final Runnable onSuccess) {
         // Remove any dots from the challenge name (can be used to exploit)
         challenge = challenge.replaceAll("\\.", "");
-        // Check if this challenge level is available
-        String level = getChallengeConfig().getString("challenges.challengeList." + challenge + ".level");
-        if (level == null) {
+        // Check if the challenge exists
+        final Challenge ch = getChallenge(challenge);
+        if (ch == null) {
             Util.sendMessage(player,
                     ChatColor.RED + plugin.myLocale(player.getUniqueId()).challengesunknownChallenge + " '" + challenge + "'");
-            return false;
+            return;
         }
+        // Check if this challenge level is available
         // Only check if the challenge has a level, otherwise it's a free level
-        if (!level.isEmpty()) {
-            if (!isLevelAvailable(player, level)) {
+        if (!ch.getLevel().isEmpty()) {
+            if (!isLevelAvailable(player, ch.getLevel())) {
                 Util.sendMessage(player, ChatColor.RED + plugin.myLocale(player.getUniqueId()).challengesyouHaveNotUnlocked);
-                return false;
+                return;
             }
         }
         // Check if the player has maxed out the challenge
-        if (getChallengeConfig().getBoolean("challenges.challengeList." + challenge + ".repeatable")) {
-            int maxTimes = getChallengeConfig().getInt("challenges.challengeList." + challenge + ".maxtimes", 0);
-            if (maxTimes > 0) {
-                // There is a limit
-                if (plugin.getPlayers().checkChallengeTimes(player.getUniqueId(), challenge) >= maxTimes) {
-                    Util.sendMessage(player, ChatColor.RED + plugin.myLocale(player.getUniqueId()).challengesnotRepeatable);
-                    return false;
-                }
+        if (ch.isRepeatable() && ch.getMaxTimes() > 0) {
+            // There is a limit
+            if (plugin.getPlayers().checkChallengeTimes(player.getUniqueId(), challenge) >= ch.getMaxTimes()) {
+                Util.sendMessage(player, ChatColor.RED + plugin.myLocale(player.getUniqueId()).challengesnotRepeatable);
+                return;
             }
         }
-        // plugin.getLogger().info("DEBUG: 2");
         // Check if it is repeatable
-        if (plugin.getPlayers().checkChallenge(player.getUniqueId(), challenge)
-                && !getChallengeConfig().getBoolean("challenges.challengeList." + challenge + ".repeatable")) {
-            Util.sendMessage(player, ChatColor.RED + plugin.myLocale(player.getUniqueId()).challengesnotRepeatable);
-            return false;
-        }
-        // plugin.getLogger().info("DEBUG: 3");
         // If the challenge is an island type and already done, then this too is
         // not repeatable
         if (plugin.getPlayers().checkChallenge(player.getUniqueId(), challenge)
-                && getChallengeConfig().getString("challenges.challengeList." + challenge + ".type").equalsIgnoreCase("island")) {
+                && (!ch.isRepeatable() || ch.getType().equals("island"))) {
             Util.sendMessage(player, ChatColor.RED + plugin.myLocale(player.getUniqueId()).challengesnotRepeatable);
-            return false;
+            return;
         }
-        // plugin.getLogger().info("DEBUG: 4");
-        if (getChallengeConfig().getConfigurationSection("challenges.challengeList." + challenge).contains("type")) {
-            // Check if this is an inventory challenge
-            if (getChallengeConfig().getString("challenges.challengeList." + challenge + ".type").equalsIgnoreCase("inventory")) {
-                // Check if the player has the required items
-                if (!hasRequired(player, challenge, "inventory")) {
-                    Util.sendMessage(player, ChatColor.RED + plugin.myLocale(player.getUniqueId()).challengeserrorNotEnoughItems);
-                    String desc = ChatColor.translateAlternateColorCodes('&',
-                            getChallengeConfig().getString("challenges.challengeList." + challenge + ".description", "")
-                                    .replace("[label]", Settings.ISLANDCOMMAND));
-                    List<String> result = new ArrayList<String>();
-                    if (desc.contains("|")) {
-                        result.addAll(Arrays.asList(desc.split("\\|")));
-                    } else {
-                        result.add(desc);
-                    }
-                    for (String line : result) {
-                        Util.sendMessage(player, ChatColor.RED + line);
-                    }
-                    return false;
+        if (ch.getType().isEmpty()) {
+            return;
+        }
+        // Check if this is an inventory challenge
+        if (ch.getType().equals("inventory")) {
+            // Check if the player has the required items
+            if (!hasRequired(player, challenge, "inventory")) {
+                Util.sendMessage(player, ChatColor.RED + plugin.myLocale(player.getUniqueId()).challengeserrorNotEnoughItems);
+                for (String line : ch.getDescriptionLines()) {
+                    Util.sendMessage(player, ChatColor.RED + line);
                 }
-                return true;
+                return;
             }
-            // plugin.getLogger().info("DEBUG: 5");
-            // Check if this is an island-based challenge
-            if (getChallengeConfig().getString("challenges.challengeList." + challenge + ".type").equalsIgnoreCase("island")) {
-                // plugin.getLogger().info("DEBUG: 6");
-                // Don't count coop islands
-                if (!plugin.getGrid().playerIsOnIsland(player, false)) {
-                    Util.sendMessage(player, ChatColor.RED + plugin.myLocale(player.getUniqueId()).challengeserrorNotOnIsland);
-                    return false;
-                }
-                if (!hasRequired(player, challenge, "island")) {
-                    int searchRadius = getChallengeConfig().getInt("challenges.challengeList." + challenge + ".searchRadius", 10);
-                    if (searchRadius < 10) {
-                        searchRadius = 10;
-                    } else if (searchRadius > 50) {
-                        searchRadius = 50;
-                    }
-                    Util.sendMessage(player, ChatColor.RED + plugin.myLocale(player.getUniqueId()).challengeserrorNotCloseEnough
-                            .replace("[number]", String.valueOf(searchRadius)));
-                    String desc = ChatColor.translateAlternateColorCodes('&',
-                            getChallengeConfig().getString("challenges.challengeList." + challenge + ".description")
-                                    .replace("[label]", Settings.ISLANDCOMMAND));
-                    List<String> result = new ArrayList<String>();
-                    if (desc.contains("|")) {
-                        result.addAll(Arrays.asList(desc.split("\\|")));
-                    } else {
-                        result.add(desc);
-                    }
-                    for (String line : result) {
-                        Util.sendMessage(player, ChatColor.RED + line);
-                    }
-                    return false;
-                }
-                // plugin.getLogger().info("DEBUG: 7");
-                return true;
+            onSuccess.run();
+            return;
+        }
+        // Check if this is an island-based challenge
+        if (ch.getType().equals("island")) {
+            // Don't count coop islands
+            if (!plugin.getGrid().playerIsOnIsland(player, false)) {
+                Util.sendMessage(player, ChatColor.RED + plugin.myLocale(player.getUniqueId()).challengeserrorNotOnIsland);
+                return;
             }
-            // Island level check
-            if (getChallengeConfig().getString("challenges.challengeList." + challenge + ".type").equalsIgnoreCase("level")) {
-                if (plugin.getPlayers().getIslandLevel(player.getUniqueId()) >= getChallengeConfig()
-                        .getInt("challenges.challengeList." + challenge + ".requiredItems")) {
-                    return true;
-                }
-
-                Util.sendMessage(player, ChatColor.RED
-                        + plugin.myLocale(player.getUniqueId()).challengeserrorIslandLevel.replace("[level]",
-                        String.valueOf(getChallengeConfig().getInt("challenges.challengeList." + challenge + ".requiredItems"))));
-                return false;
+            checkIsland(player, ch, onSuccess);
+            return;
+        }
+        // Island level check
+        if (ch.getType().equals("level")) {
+            if (plugin.getPlayers().getIslandLevel(player.getUniqueId()) >= ch.getRequiredLevel()) {
+                onSuccess.run();
+                return;
             }
-            Util.sendMessage(player, ChatColor.RED + plugin.myLocale(player.getUniqueId()).errorCommandNotReady);
-            plugin.getLogger().severe(
-                    "The challenge " + challenge + " is of an unknown type " + getChallengeConfig()
-                            .getString("challenges.challengeList." + challenge + ".type"));
-            plugin.getLogger().severe("Types should be 'island', 'inventory' or 'level'");
+
+            Util.sendMessage(player, ChatColor.RED
+                    + plugin.myLocale(player.getUniqueId()).challengeserrorIslandLevel.replace("[level]",
+                    String.valueOf(ch.getRequiredLevel())));
+            return;
         }
-        return false;
+        Util.sendMessage(player, ChatColor.RED + plugin.myLocale(player.getUniqueId()).errorCommandNotReady);
+        plugin.getLogger().severe("The challenge " + challenge + " is of an unknown type " + ch.getType());
+        plugin.getLogger().severe("Types should be 'island', 'inventory' or 'level'");
     }
 
     /**
@@ -982,8 +904,8 @@ public class Challenges implements CommandExecutor, TabCompleter {
     }
 
     /**
-     * Checks if a player has enough for a challenge. Supports two types of
-     * checks, inventory and island. Removes items if required.
+     * Checks if a player has enough for a challenge. Only inventory challenges are checked here,
+     * island challenges are checked by searching the island. Removes items if required.
      *
      * @param player
      * @param challenge
@@ -992,30 +914,11 @@ public class Challenges implements CommandExecutor, TabCompleter {
      */
 
     public boolean hasRequired(final Player player, final String challenge, final String type) {
-        // Check money
-        double moneyReq = 0D;
-        if (Settings.useEconomy) {
-            moneyReq = getChallengeConfig().getDouble("challenges.challengeList." + challenge + ".requiredMoney", 0D);
-            if (moneyReq > 0D) {
-                if (!VaultHelper.econ.has(player, Settings.worldName, moneyReq)) {
-                    Util.sendMessage(player, ChatColor.RED + plugin.myLocale(player.getUniqueId()).challengeserrorNotEnoughItems);
-                    String desc = ChatColor.translateAlternateColorCodes('&',
-                            getChallengeConfig().getString("challenges.challengeList." + challenge + ".description")
-                                    .replace("[label]", Settings.ISLANDCOMMAND));
-                    List<String> result = new ArrayList<String>();
-                    if (desc.contains("|")) {
-                        result.addAll(Arrays.asList(desc.split("\\|")));
-                    } else {
-                        result.add(desc);
-                    }
-                    for (String line : result) {
-                        Util.sendMessage(player, ChatColor.RED + line);
-                    }
-                    return false;
-                }
-            }
+        if (!hasMoney(player, challenge)) {
+            return false;
         }
-        final String reqList = getChallengeConfig().getString("challenges.challengeList." + challenge + ".requiredItems");
+        final Challenge ch = getChallenge(challenge);
+        double moneyReq = Settings.useEconomy ? ch.getRequiredMoney() : 0D;
         // The format of the requiredItems is as follows:
         // Material:Qty
         // or
@@ -1026,187 +929,54 @@ public class Challenges implements CommandExecutor, TabCompleter {
             List<ItemStack> toBeRemoved = new ArrayList<ItemStack>();
             Material reqItem;
             int reqAmount = 0;
-            if (!reqList.isEmpty()) {
-                for (final String s : reqList.split(" ")) {
-                    final String[] part = s.split(":");
-                    // Material:Qty
-                    if (part.length == 2) {
-                        try {
-                            // Correct some common mistakes
-                            if (part[0].equalsIgnoreCase("potato")) {
-                                part[0] = "POTATO_ITEM";
-                            } else if (part[0].equalsIgnoreCase("brewing_stand")) {
-                                part[0] = "BREWING_STAND_ITEM";
-                            } else if (part[0].equalsIgnoreCase("carrot")) {
-                                part[0] = "CARROT_ITEM";
-                            } else if (part[0].equalsIgnoreCase("cauldron")) {
-                                part[0] = "CAULDRON_ITEM";
-                            } else if (part[0].equalsIgnoreCase("skull")) {
-                                part[0] = "SKULL_ITEM";
-                            }
-                            // TODO: add netherwart vs. netherstalk?
-                            if (StringUtils.isNumeric(part[0])) {
-                                reqItem = Material.getMaterial(Integer.parseInt(part[0]));
-                            } else {
-                                reqItem = Material.getMaterial(part[0].toUpperCase());
-                            }
-                            reqAmount = Integer.parseInt(part[1]);
-                            ItemStack item = new ItemStack(reqItem);
-                            if (DEBUG) {
-                                plugin.getLogger().info("DEBUG: required item = " + reqItem.toString());
-                                plugin.getLogger().info("DEBUG: item amount = " + reqAmount);
-                            }
-                            if (!player.getInventory().contains(reqItem)) {
-                                if (DEBUG) {
-                                    plugin.getLogger().info("DEBUG: item not in inventory");
-                                }
-                                return false;
-                            } else {
-                                // check amount
-                                int amount = 0;
-                                if (DEBUG) {
-                                    plugin.getLogger()
-                                            .info("DEBUG: Amount in inventory = " + player.getInventory().all(reqItem).size());
-                                }
-                                // Go through all the inventory and try to find
-                                // enough required items
-                                for (Entry<Integer, ? extends ItemStack> en : player.getInventory().all(reqItem).entrySet()) {
-                                    // Get the item
-                                    ItemStack i = en.getValue();
-                                    // If the item is enchanted, skip - it doesn't count
-                                    if (!i.getEnchantments().isEmpty()) {
-                                        if (DEBUG) {
-                                            plugin.getLogger().info("DEBUG: item has enchantment - doesn't count");
-                                        }
-                                        continue;
-                                    }
-                                    // Map needs special handling because the
-                                    // durability increments every time a new one is
-                                    // made by the player
-                                    // TODO: if there are any other items that act
-                                    // in the same way, they need adding too...
-                                    if (i.getDurability() == 0 || (reqItem == Material.MAP && i.getType() == Material.MAP)) {
-                                        // Clear any naming, or lore etc.
-                                        //i.setItemMeta(null);
-                                        //player.getInventory().setItem(en.getKey(), i);
-                                        // #1 item stack qty + amount is less than
-                                        // required items - take all i
-                                        // #2 item stack qty + amount = required
-                                        // item -
-                                        // take all
-                                        // #3 item stack qty + amount > req items -
-                                        // take
-                                        // portion of i
-                                        // amount += i.getAmount();
-                                        if ((amount + i.getAmount()) < reqAmount) {
-                                            // Remove all of this item stack - clone
-                                            // otherwise it will keep a reference to
-                                            // the
-                                            // original
-                                            toBeRemoved.add(i.clone());
-                                            amount += i.getAmount();
-                                            if (DEBUG) {
-                                                plugin.getLogger()
-                                                        .info("DEBUG: amount is <= req Remove " + i.toString() + ":"
-                                                                + i.getDurability() + " x " + i
-                                                                .getAmount());
-                                            }
-                                        } else if ((amount + i.getAmount()) == reqAmount) {
-                                            if (DEBUG) {
-                                                plugin.getLogger()
-                                                        .info("DEBUG: amount is = req Remove " + i.toString() + ":" + i.getDurability()
-                                                                + " x " + i
-                                                                .getAmount());
-                                            }
-                                            toBeRemoved.add(i.clone());
-                                            amount += i.getAmount();
-                                            break;
-                                        } else {
-                                            // Remove a portion of this item
-                                            if (DEBUG) {
-                                                plugin.getLogger()
-                                                        .info("DEBUG: amount is > req Remove " + i.toString() + ":" + i.getDurability()
-                                                                + " x " + i
-                                                                .getAmount());
-                                            }
-
-                                            item.setAmount(reqAmount - amount);
-                                            item.setDurability(i.getDurability());
-                                            toBeRemoved.add(item);
-                                            amount += i.getAmount();
-                                            break;
-                                        }
-                                    }
-                                }
-                                if (DEBUG) {
-                                    plugin.getLogger().info("DEBUG: amount " + amount);
-                                }
-                                if (amount < reqAmount) {
-                                    return false;
-                                }
-                            }
-                        } catch (Exception e) {
-                            plugin.getLogger().severe("Problem with " + s + " in challenges.yml!");
-                            Util.sendMessage(player, ChatColor.RED + plugin.myLocale(player.getUniqueId()).errorCommandNotReady);
-                            String materialList = "";
-                            boolean hint = false;
-                            for (Material m : Material.values()) {
-                                materialList += m.toString() + ",";
-                                if (m.toString().contains(s.substring(0, 3).toUpperCase())) {
-                                    plugin.getLogger().severe("Did you mean " + m.toString() + "?");
-                                    hint = true;
-                                }
-                            }
-                            if (!hint) {
-                                plugin.getLogger().severe("Sorry, I have no idea what " + s + " is. Pick from one of these:");
-                                plugin.getLogger().severe(materialList.substring(0, materialList.length() - 1));
-                            } else {
-                                plugin.getLogger().severe("Correct challenges.yml with the correct material.");
-                            }
-                            return false;
-                        }
-                    } else if (part.length == 3) {
+            for (final Challenge.ItemRequirement req : ch.getRequiredItems()) {
+                if (!req.isValid()) {
+                    plugin.getLogger().severe("Problem with " + req.getRaw() + " in challenges.yml!");
+                    Util.sendMessage(player, ChatColor.RED + plugin.myLocale(player.getUniqueId()).errorCommandNotReady);
+                    return false;
+                }
+                // Material:Qty
+                if (!req.isPotion() && req.getDurability() < 0) {
+                    reqItem = req.getMaterial();
+                    reqAmount = req.getAmount();
+                    ItemStack item = new ItemStack(reqItem);
+                    if (DEBUG) {
+                        plugin.getLogger().info("DEBUG: required item = " + reqItem.toString());
+                        plugin.getLogger().info("DEBUG: item amount = " + reqAmount);
+                    }
+                    if (!player.getInventory().contains(reqItem)) {
                         if (DEBUG) {
-                            plugin.getLogger().info("DEBUG: Item with durability");
+                            plugin.getLogger().info("DEBUG: item not in inventory");
                         }
-                        // This handles items with durability
-                        // Correct some common mistakes
-                        if (part[0].equalsIgnoreCase("potato")) {
-                            part[0] = "POTATO_ITEM";
-                        } else if (part[0].equalsIgnoreCase("brewing_stand")) {
-                            part[0] = "BREWING_STAND_ITEM";
-                        } else if (part[0].equalsIgnoreCase("carrot")) {
-                            part[0] = "CARROT_ITEM";
-                        } else if (part[0].equalsIgnoreCase("cauldron")) {
-                            part[0] = "CAULDRON_ITEM";
-                        } else if (part[0].equalsIgnoreCase("skull")) {
-                            part[0] = "SKULL_ITEM";
-                        }
-                        if (StringUtils.isNumeric(part[0])) {
-                            reqItem = Material.getMaterial(Integer.parseInt(part[0]));
-                        } else {
-                            reqItem = Material.getMaterial(part[0].toUpperCase());
-                        }
-                        reqAmount = Integer.parseInt(part[2]);
-                        int reqDurability = Integer.parseInt(part[1]);
-                        ItemStack item = new ItemStack(reqItem);
-
-                        // Item
-                        item.setDurability((short) reqDurability);
+                        return false;
+                    } else {
                         // check amount
                         int amount = 0;
+                        if (DEBUG) {
+                            plugin.getLogger()
+                                    .info("DEBUG: Amount in inventory = " + player.getInventory().all(reqItem).size());
+                        }
                         // Go through all the inventory and try to find
                         // enough required items
                         for (Entry<Integer, ? extends ItemStack> en : player.getInventory().all(reqItem).entrySet()) {
                             // Get the item
                             ItemStack i = en.getValue();
-                            if (i.hasItemMeta()) {
+                            // If the item is enchanted, skip - it doesn't count
+                            if (!i.getEnchantments().isEmpty()) {
+                                if (DEBUG) {
+                                    plugin.getLogger().info("DEBUG: item has enchantment - doesn't count");
+                                }
                                 continue;
                             }
-                            if (i.getDurability() == reqDurability) {
+                            // Map needs special handling because the
+                            // durability increments every time a new one is
+                            // made by the player
+                            // TODO: if there are any other items that act
+                            // in the same way, they need adding too...
+                            if (i.getDurability() == 0 || (reqItem == Material.MAP && i.getType() == Material.MAP)) {
                                 // Clear any naming, or lore etc.
                                 //i.setItemMeta(null);
-                                // player.getInventory().setItem(en.getKey(), i);
+                                //player.getInventory().setItem(en.getKey(), i);
                                 // #1 item stack qty + amount is less than
                                 // required items - take all i
                                 // #2 item stack qty + amount = required
@@ -1225,11 +995,17 @@ public class Challenges implements CommandExecutor, TabCompleter {
                                     amount += i.getAmount();
                                     if (DEBUG) {
                                         plugin.getLogger()
-                                                .info("DEBUG: amount is <= req Remove " + i.toString() + ":" + i.getDurability()
-                                                        + " x " + i
+                                                .info("DEBUG: amount is <= req Remove " + i.toString() + ":"
+                                                        + i.getDurability() + " x " + i
                                                         .getAmount());
                                     }
                                 } else if ((amount + i.getAmount()) == reqAmount) {
+                                    if (DEBUG) {
+                                        plugin.getLogger()
+                                                .info("DEBUG: amount is = req Remove " + i.toString() + ":" + i.getDurability()
+                                                        + " x " + i
+                                                        .getAmount());
+                                    }
                                     toBeRemoved.add(i.clone());
                                     amount += i.getAmount();
                                     break;
@@ -1237,8 +1013,8 @@ public class Challenges implements CommandExecutor, TabCompleter {
                                     // Remove a portion of this item
                                     if (DEBUG) {
                                         plugin.getLogger()
-                                                .info("DEBUG: amount is > req Remove " + i.toString() + ":" + i.getDurability() + " x "
-                                                        + i
+                                                .info("DEBUG: amount is > req Remove " + i.toString() + ":" + i.getDurability()
+                                                        + " x " + i
                                                         .getAmount());
                                     }
 
@@ -1251,175 +1027,138 @@ public class Challenges implements CommandExecutor, TabCompleter {
                             }
                         }
                         if (DEBUG) {
-                            plugin.getLogger().info("DEBUG: amount is " + amount);
-                            plugin.getLogger().info("DEBUG: req amount is " + reqAmount);
+                            plugin.getLogger().info("DEBUG: amount " + amount);
                         }
                         if (amount < reqAmount) {
-                            if (DEBUG) {
-                                plugin.getLogger()
-                                        .info("DEBUG: Failure! Insufficient amount of " + item.toString() + " required = " + reqAmount
-                                                + " actual = "
-                                                + amount);
-                            }
                             return false;
                         }
-                        if (DEBUG) {
-                            plugin.getLogger()
-                                    .info("DEBUG: before set amount " + item.toString() + ":" + item.getDurability() + " x "
-                                            + item.getAmount());
+                    }
+                } else if (!req.isPotion()) {
+                    if (DEBUG) {
+                        plugin.getLogger().info("DEBUG: Item with durability");
+                    }
+                    // This handles items with durability
+                    reqItem = req.getMaterial();
+                    reqAmount = req.getAmount();
+                    int reqDurability = req.getDurability();
+                    ItemStack item = new ItemStack(reqItem);
+
+                    // Item
+                    item.setDurability((short) reqDurability);
+                    // check amount
+                    int amount = 0;
+                    // Go through all the inventory and try to find
+                    // enough required items
+                    for (Entry<Integer, ? extends ItemStack> en : player.getInventory().all(reqItem).entrySet()) {
+                        // Get the item
+                        ItemStack i = en.getValue();
+                        if (i.hasItemMeta()) {
+                            continue;
                         }
+                        if (i.getDurability() == reqDurability) {
+                            // Clear any naming, or lore etc.
+                            //i.setItemMeta(null);
+                            // player.getInventory().setItem(en.getKey(), i);
+                            // #1 item stack qty + amount is less than
+                            // required items - take all i
+                            // #2 item stack qty + amount = required
+                            // item -
+                            // take all
+                            // #3 item stack qty + amount > req items -
+                            // take
+                            // portion of i
+                            // amount += i.getAmount();
+                            if ((amount + i.getAmount()) < reqAmount) {
+                                // Remove all of this item stack - clone
+                                // otherwise it will keep a reference to
+                                // the
+                                // original
+                                toBeRemoved.add(i.clone());
+                                amount += i.getAmount();
+                                if (DEBUG) {
+                                    plugin.getLogger()
+                                            .info("DEBUG: amount is <= req Remove " + i.toString() + ":" + i.getDurability()
+                                                    + " x " + i
+                                                    .getAmount());
+                                }
+                            } else if ((amount + i.getAmount()) == reqAmount) {
+                                toBeRemoved.add(i.clone());
+                                amount += i.getAmount();
+                                break;
+                            } else {
+                                // Remove a portion of this item
+                                if (DEBUG) {
+                                    plugin.getLogger()
+                                            .info("DEBUG: amount is > req Remove " + i.toString() + ":" + i.getDurability() + " x "
+                                                    + i
+                                                    .getAmount());
+                                }
 
-                    } else if (part.length == 6 && part[0].contains("POTION")) {
-                        // Run through player's inventory for the item
-                        ItemStack[] playerInv = player.getInventory().getContents();
-                        try {
-                            reqAmount = Integer.parseInt(part[5]);
-                            if (DEBUG) {
-                                plugin.getLogger().info("DEBUG: required amount is " + reqAmount);
+                                item.setAmount(reqAmount - amount);
+                                item.setDurability(i.getDurability());
+                                toBeRemoved.add(item);
+                                amount += i.getAmount();
+                                break;
                             }
-                        } catch (Exception e) {
-                            plugin.getLogger().severe("Could not parse the quantity of the potion item " + s);
-                            return false;
                         }
-                        int count = reqAmount;
-                        for (ItemStack i : playerInv) {
-                            // Catches all POTION, LINGERING_POTION and SPLASH_POTION
-                            if (i != null && i.getType().toString().contains("POTION")) {
-                                //plugin.getLogger().info("DEBUG:6 part potion check!");
-                                // POTION:NAME:<LEVEL>:<EXTENDED>:<SPLASH/LINGER>:QTY
-                                if (Bukkit.getVersion().contains("(MC: 1.8") || Bukkit
-                                        .getVersion()
-                                        .contains("(MC: 1.7")) {
-                                    // Test potion
-                                    Potion potion = null;
-                                    try {
-                                        // This may fail if there are custom potions in the player's inventory
-                                        // If so, just skip this item stack.
-                                        potion = Potion.fromItemStack(i);
-                                    } catch (Exception e) {
-                                        potion = null;
-                                    }
-                                    if (potion != null) {
-                                        PotionType potionType = potion.getType();
-                                        boolean match = true;
-                                        if (DEBUG) {
-                                            plugin.getLogger().info("DEBUG: name check " + part[1]);
-                                            plugin.getLogger().info("DEBUG: potion = " + potion);
-                                            plugin.getLogger().info("DEBUG: potionType = " + potionType);
-                                            plugin.getLogger().info("DEBUG: part[1] = " + part[1]);
-                                        }
-                                        // Name check
-                                        if (potionType != null && !part[1].isEmpty()) {
-                                            // There is a name
-                                            // Custom potions may not have names
-                                            if (potionType.name() != null) {
-                                                if (!part[1].equalsIgnoreCase(potionType.name())) {
-                                                    match = false;
-                                                    if (DEBUG) {
-                                                        plugin.getLogger().info("DEBUG: name does not match");
-                                                    }
-                                                } else {
-                                                    if (DEBUG) {
-                                                        plugin.getLogger().info("DEBUG: name matches");
-                                                    }
-                                                }
-                                            } else {
-                                                plugin.getLogger().severe("Potion type is unknown. Please pick from the following:");
-                                                for (PotionType pt : PotionType.values()) {
-                                                    plugin.getLogger().severe(pt.name());
-                                                }
-                                                match = false;
-                                            }
-                                        } else {
-                                            if (DEBUG) {
-                                                plugin.getLogger().info("DEBUG: potionType = null");
-                                            }
-                                            match = false;
-                                        }
-                                        // Level check (upgraded)
-                                        if (DEBUG) {
-                                            plugin.getLogger().info("DEBUG: level check " + part[2]);
-                                        }
-                                        if (!part[2].isEmpty()) {
-                                            // There is a level declared - check it
-                                            if (StringUtils.isNumeric(part[2])) {
-                                                int level = Integer.valueOf(part[2]);
-                                                if (level != potion.getLevel()) {
-                                                    if (DEBUG) {
-                                                        plugin.getLogger().info("DEBUG: level does not match");
-                                                    }
-                                                    match = false;
-                                                }
-                                            }
-                                        }
-                                        // Extended check
-                                        if (DEBUG) {
-                                            plugin.getLogger().info("DEBUG: extended check " + part[3]);
-                                        }
-                                        if (!part[3].isEmpty()) {
-                                            if (part[3].equalsIgnoreCase("EXTENDED") && !potion.hasExtendedDuration()) {
-                                                match = false;
-                                                if (DEBUG) {
-                                                    plugin.getLogger().info("DEBUG: extended does not match");
-                                                }
-                                            }
-                                            if (part[3].equalsIgnoreCase("NOTEXTENDED") && potion.hasExtendedDuration()) {
-                                                match = false;
-                                                if (DEBUG) {
-                                                    plugin.getLogger().info("DEBUG: extended does not match");
-                                                }
-                                            }
-                                        }
-                                        // Splash check
-                                        if (DEBUG) {
-                                            plugin.getLogger().info("DEBUG: splash/linger check " + part[4]);
-                                        }
-                                        if (!part[4].isEmpty()) {
-                                            if (part[4].equalsIgnoreCase("SPLASH") && !potion.isSplash()) {
-                                                match = false;
-                                                if (DEBUG) {
-                                                    plugin.getLogger().info("DEBUG: not splash");
-                                                }
-                                            }
-                                            if (part[4].equalsIgnoreCase("NOSPLASH") && potion.isSplash()) {
-                                                match = false;
-                                                if (DEBUG) {
-                                                    plugin.getLogger().info("DEBUG: not no splash");
-                                                }
-                                            }
-                                        }
-                                        // Quantity check
-                                        if (match) {
-                                            if (DEBUG) {
-                                                plugin.getLogger().info("DEBUG: potion matches!");
-                                            }
-                                            ItemStack removeItem = i.clone();
-                                            if (removeItem.getAmount() > reqAmount) {
-                                                if (DEBUG) {
-                                                    plugin.getLogger().info("DEBUG: found " + removeItem.getAmount() + " qty in inv");
-                                                }
-                                                removeItem.setAmount(reqAmount);
-                                            }
-                                            count = count - removeItem.getAmount();
-                                            if (DEBUG) {
-                                                plugin.getLogger().info("DEBUG: " + count + " left");
-                                            }
-                                            toBeRemoved.add(removeItem);
-                                        }
-                                    }
-                                } else {
-                                    // V1.9 and above
-                                    PotionMeta potionMeta = (PotionMeta) i.getItemMeta();
-                                    // If any of the settings above are missing, then any is okay
+                    }
+                    if (DEBUG) {
+                        plugin.getLogger().info("DEBUG: amount is " + amount);
+                        plugin.getLogger().info("DEBUG: req amount is " + reqAmount);
+                    }
+                    if (amount < reqAmount) {
+                        if (DEBUG) {
+                            plugin.getLogger()
+                                    .info("DEBUG: Failure! Insufficient amount of " + item.toString() + " required = " + reqAmount
+                                            + " actual = "
+                                            + amount);
+                        }
+                        return false;
+                    }
+                    if (DEBUG) {
+                        plugin.getLogger()
+                                .info("DEBUG: before set amount " + item.toString() + ":" + item.getDurability() + " x "
+                                        + item.getAmount());
+                    }
+
+                } else {
+                    final String[] part = req.getPotion();
+                    // Run through player's inventory for the item
+                    ItemStack[] playerInv = player.getInventory().getContents();
+                    reqAmount = req.getAmount();
+                    int count = reqAmount;
+                    for (ItemStack i : playerInv) {
+                        // Catches all POTION, LINGERING_POTION and SPLASH_POTION
+                        if (i != null && i.getType().toString().contains("POTION")) {
+                            //plugin.getLogger().info("DEBUG:6 part potion check!");
+                            // POTION:NAME:<LEVEL>:<EXTENDED>:<SPLASH/LINGER>:QTY
+                            if (Bukkit.getVersion().contains("(MC: 1.8") || Bukkit
+                                    .getVersion()
+                                    .contains("(MC: 1.7")) {
+                                // Test potion
+                                Potion potion = null;
+                                try {
+                                    // This may fail if there are custom potions in the player's inventory
+                                    // If so, just skip this item stack.
+                                    potion = Potion.fromItemStack(i);
+                                } catch (Exception e) {
+                                    potion = null;
+                                }
+                                if (potion != null) {
+                                    PotionType potionType = potion.getType();
                                     boolean match = true;
                                     if (DEBUG) {
                                         plugin.getLogger().info("DEBUG: name check " + part[1]);
+                                        plugin.getLogger().info("DEBUG: potion = " + potion);
+                                        plugin.getLogger().info("DEBUG: potionType = " + potionType);
+                                        plugin.getLogger().info("DEBUG: part[1] = " + part[1]);
                                     }
                                     // Name check
-                                    if (!part[1].isEmpty()) {
+                                    if (potionType != null && !part[1].isEmpty()) {
                                         // There is a name
-                                        if (PotionType.valueOf(part[1]) != null) {
-                                            if (!potionMeta.getBasePotionData().getType().name().equalsIgnoreCase(part[1])) {
+                                        // Custom potions may not have names
+                                        if (potionType.name() != null) {
+                                            if (!part[1].equalsIgnoreCase(potionType.name())) {
                                                 match = false;
                                                 if (DEBUG) {
                                                     plugin.getLogger().info("DEBUG: name does not match");
@@ -1436,25 +1175,26 @@ public class Challenges implements CommandExecutor, TabCompleter {
                                             }
                                             match = false;
                                         }
+                                    } else {
+                                        if (DEBUG) {
+                                            plugin.getLogger().info("DEBUG: potionType = null");
+                                        }
+                                        match = false;
                                     }
                                     // Level check (upgraded)
-                                    // plugin.getLogger().info("DEBUG: level check " + part[2]);
+                                    if (DEBUG) {
+                                        plugin.getLogger().info("DEBUG: level check " + part[2]);
+                                    }
                                     if (!part[2].isEmpty()) {
                                         // There is a level declared - check it
                                         if (StringUtils.isNumeric(part[2])) {
                                             int level = Integer.valueOf(part[2]);
-                                            if (level == 1 && potionMeta.getBasePotionData().isUpgraded()) {
+                                            if (level != potion.getLevel()) {
                                                 if (DEBUG) {
                                                     plugin.getLogger().info("DEBUG: level does not match");
                                                 }
                                                 match = false;
                                             }
-                                            if (level != 1 && !potionMeta.getBasePotionData().isUpgraded()) {
-                                                match = false;
-                                                if (DEBUG) {
-                                                    plugin.getLogger().info("DEBUG: level does not match");
-                                                }
-                                            }
                                         }
                                     }
                                     // Extended check
@@ -1462,48 +1202,36 @@ public class Challenges implements CommandExecutor, TabCompleter {
                                         plugin.getLogger().info("DEBUG: extended check " + part[3]);
                                     }
                                     if (!part[3].isEmpty()) {
-                                        if (part[3].equalsIgnoreCase("EXTENDED") && !potionMeta.getBasePotionData().isExtended()) {
+                                        if (part[3].equalsIgnoreCase("EXTENDED") && !potion.hasExtendedDuration()) {
                                             match = false;
                                             if (DEBUG) {
                                                 plugin.getLogger().info("DEBUG: extended does not match");
                                             }
                                         }
-                                        if (part[3].equalsIgnoreCase("NOTEXTENDED") && potionMeta.getBasePotionData().isExtended()) {
+                                        if (part[3].equalsIgnoreCase("NOTEXTENDED") && potion.hasExtendedDuration()) {
                                             match = false;
                                             if (DEBUG) {
                                                 plugin.getLogger().info("DEBUG: extended does not match");
                                             }
                                         }
                                     }
-                                    // Splash or Linger check
+                                    // Splash check
                                     if (DEBUG) {
                                         plugin.getLogger().info("DEBUG: splash/linger check " + part[4]);
                                     }
                                     if (!part[4].isEmpty()) {
-                                        if (part[4].equalsIgnoreCase("SPLASH") && !i.getType().equals(Material.SPLASH_POTION)) {
+                                        if (part[4].equalsIgnoreCase("SPLASH") && !potion.isSplash()) {
                                             match = false;
                                             if (DEBUG) {
                                                 plugin.getLogger().info("DEBUG: not splash");
                                             }
                                         }
-                                        if (part[4].equalsIgnoreCase("NOSPLASH") && i.getType().equals(Material.SPLASH_POTION)) {
+                                        if (part[4].equalsIgnoreCase("NOSPLASH") && potion.isSplash()) {
                                             match = false;
                                             if (DEBUG) {
                                                 plugin.getLogger().info("DEBUG: not no splash");
                                             }
                                         }
-                                        if (part[4].equalsIgnoreCase("LINGER") && !i.getType().equals(Material.LINGERING_POTION)) {
-                                            match = false;
-                                            if (DEBUG) {
-                                                plugin.getLogger().info("DEBUG: not linger");
-                                            }
-                                        }
-                                        if (part[4].equalsIgnoreCase("NOLINGER") && i.getType().equals(Material.LINGERING_POTION)) {
-                                            match = false;
-                                            if (DEBUG) {
-                                                plugin.getLogger().info("DEBUG: not no linger");
-                                            }
-                                        }
                                     }
                                     // Quantity check
                                     if (match) {
@@ -1524,34 +1252,147 @@ public class Challenges implements CommandExecutor, TabCompleter {
                                         toBeRemoved.add(removeItem);
                                     }
                                 }
-                            }
-                            if (count <= 0) {
+                            } else {
+                                // V1.9 and above
+                                PotionMeta potionMeta = (PotionMeta) i.getItemMeta();
+                                // If any of the settings above are missing, then any is okay
+                                boolean match = true;
                                 if (DEBUG) {
-                                    plugin.getLogger().info("DEBUG: Player has enough");
+                                    plugin.getLogger().info("DEBUG: name check " + part[1]);
+                                }
+                                // Name check
+                                if (!part[1].isEmpty()) {
+                                    // There is a name
+                                    if (PotionType.valueOf(part[1]) != null) {
+                                        if (!potionMeta.getBasePotionData().getType().name().equalsIgnoreCase(part[1])) {
+                                            match = false;
+                                            if (DEBUG) {
+                                                plugin.getLogger().info("DEBUG: name does not match");
+                                            }
+                                        } else {
+                                            if (DEBUG) {
+                                                plugin.getLogger().info("DEBUG: name matches");
+                                            }
+                                        }
+                                    } else {
+                                        plugin.getLogger().severe("Potion type is unknown. Please pick from the following:");
+                                        for (PotionType pt : PotionType.values()) {
+                                            plugin.getLogger().severe(pt.name());
+                                        }
+                                        match = false;
+                                    }
+                                }
+                                // Level check (upgraded)
+                                // plugin.getLogger().info("DEBUG: level check " + part[2]);
+                                if (!part[2].isEmpty()) {
+                                    // There is a level declared - check it
+                                    if (StringUtils.isNumeric(part[2])) {
+                                        int level = Integer.valueOf(part[2]);
+                                        if (level == 1 && potionMeta.getBasePotionData().isUpgraded()) {
+                                            if (DEBUG) {
+                                                plugin.getLogger().info("DEBUG: level does not match");
+                                            }
+                                            match = false;
+                                        }
+                                        if (level != 1 && !potionMeta.getBasePotionData().isUpgraded()) {
+                                            match = false;
+                                            if (DEBUG) {
+                                                plugin.getLogger().info("DEBUG: level does not match");
+                                            }
+                                        }
+                                    }
+                                }
+                                // Extended check
+                                if (DEBUG) {
+                                    plugin.getLogger().info("DEBUG: extended check " + part[3]);
+                                }
+                                if (!part[3].isEmpty()) {
+                                    if (part[3].equalsIgnoreCase("EXTENDED") && !potionMeta.getBasePotionData().isExtended()) {
+                                        match = false;
+                                        if (DEBUG) {
+                                            plugin.getLogger().info("DEBUG: extended does not match");
+                                        }
+                                    }
+                                    if (part[3].equalsIgnoreCase("NOTEXTENDED") && potionMeta.getBasePotionData().isExtended()) {
+                                        match = false;
+                                        if (DEBUG) {
+                                            plugin.getLogger().info("DEBUG: extended does not match");
+                                        }
+                                    }
+                                }
+                                // Splash or Linger check
+                                if (DEBUG) {
+                                    plugin.getLogger().info("DEBUG: splash/linger check " + part[4]);
+                                }
+                                if (!part[4].isEmpty()) {
+                                    if (part[4].equalsIgnoreCase("SPLASH") && !i.getType().equals(Material.SPLASH_POTION)) {
+                                        match = false;
+                                        if (DEBUG) {
+                                            plugin.getLogger().info("DEBUG: not splash");
+                                        }
+                                    }
+                                    if (part[4].equalsIgnoreCase("NOSPLASH") && i.getType().equals(Material.SPLASH_POTION)) {
+                                        match = false;
+                                        if (DEBUG) {
+                                            plugin.getLogger().info("DEBUG: not no splash");
+                                        }
+                                    }
+                                    if (part[4].equalsIgnoreCase("LINGER") && !i.getType().equals(Material.LINGERING_POTION)) {
+                                        match = false;
+                                        if (DEBUG) {
+                                            plugin.getLogger().info("DEBUG: not linger");
+                                        }
+                                    }
+                                    if (part[4].equalsIgnoreCase("NOLINGER") && i.getType().equals(Material.LINGERING_POTION)) {
+                                        match = false;
+                                        if (DEBUG) {
+                                            plugin.getLogger().info("DEBUG: not no linger");
+                                        }
+                                    }
+                                }
+                                // Quantity check
+                                if (match) {
+                                    if (DEBUG) {
+                                        plugin.getLogger().info("DEBUG: potion matches!");
+                                    }
+                                    ItemStack removeItem = i.clone();
+                                    if (removeItem.getAmount() > reqAmount) {
+                                        if (DEBUG) {
+                                            plugin.getLogger().info("DEBUG: found " + removeItem.getAmount() + " qty in inv");
+                                        }
+                                        removeItem.setAmount(reqAmount);
+                                    }
+                                    count = count - removeItem.getAmount();
+                                    if (DEBUG) {
+                                        plugin.getLogger().info("DEBUG: " + count + " left");
+                                    }
+                                    toBeRemoved.add(removeItem);
                                 }
-                                break;
-                            }
-                            if (DEBUG) {
-                                plugin.getLogger().info("DEBUG: still need " + count + " to complete");
                             }
                         }
-                        if (count > 0) {
+                        if (count <= 0) {
                             if (DEBUG) {
-                                plugin.getLogger().info("DEBUG: Player does not have enough");
+                                plugin.getLogger().info("DEBUG: Player has enough");
                             }
-                            return false;
+                            break;
+                        }
+                        if (DEBUG) {
+                            plugin.getLogger().info("DEBUG: still need " + count + " to complete");
+                        }
+                    }
+                    if (count > 0) {
+                        if (DEBUG) {
+                            plugin.getLogger().info("DEBUG: Player does not have enough");
                         }
-
-                    } else {
-                        plugin.getLogger().severe("Problem with " + s + " in challenges.yml!");
                         return false;
                     }
+
                 }
             }
             // Build up the items in the inventory and remove them if they are
             // all there.
 
-            if (getChallengeConfig().getBoolean("challenges.challengeList." + challenge + ".takeItems")) {
+            if (ch.isTakeItems()) {
                 // checkChallengeItems(player, challenge);
                 // int qty = 0;
                 if (DEBUG) {
@@ -1588,135 +1429,107 @@ public class Challenges implements CommandExecutor, TabCompleter {
             }
             return true;
         }
-        if (type.equalsIgnoreCase("island")) {
-            final HashMap<Material, Integer> neededItem = new HashMap<Material, Integer>();
-            final HashMap<EntityType, Integer> neededEntities = new HashMap<EntityType, Integer>();
-            if (!reqList.isEmpty()) {
-                for (int i = 0; i < reqList.split(" ").length; i++) {
-                    final String[] sPart = reqList.split(" ")[i].split(":");
-                    // Parse the qty required first
-                    try {
-                        final int qty = Integer.parseInt(sPart[1]);
-                        // Find out if the needed item is a Material or an Entity
-                        boolean isEntity = false;
-                        for (EntityType entityType : EntityType.values()) {
-                            if (entityType.toString().equalsIgnoreCase(sPart[0])) {
-                                isEntity = true;
-                                break;
-                            }
-                        }
-                        if (isEntity) {
-                            // plugin.getLogger().info("DEBUG: Item " +
-                            // sPart[0].toUpperCase() + " is an entity");
-                            EntityType entityType = EntityType.valueOf(sPart[0].toUpperCase());
-                            if (entityType != null) {
-                                neededEntities.put(entityType, qty);
-                                // plugin.getLogger().info("DEBUG: Needed entity is "
-                                // + Integer.parseInt(sPart[1]) + " x " +
-                                // EntityType.valueOf(sPart[0].toUpperCase()).toString());
-                            }
-                        } else {
-                            Material item;
-                            if (StringUtils.isNumeric(sPart[0])) {
-                                item = Material.getMaterial(Integer.parseInt(sPart[0]));
-                            } else {
-                                item = Material.getMaterial(sPart[0].toUpperCase());
-                            }
-                            if (item != null) {
-                                neededItem.put(item, qty);
-                                // plugin.getLogger().info("DEBUG: Needed item is "
-                                // + Integer.parseInt(sPart[1]) + " x " +
-                                // Material.getMaterial(sPart[0]).toString());
+        return true;
+    }
 
-                            } else {
-                                plugin.getLogger()
-                                        .warning("Problem parsing required item for challenge " + challenge + " in challenges.yml!");
-                                return false;
-                            }
-                        }
-                    } catch (Exception intEx) {
-                        plugin.getLogger()
-                                .warning(
-                                        "Problem parsing required items for challenge " + challenge + " in challenges.yml - skipping");
-                        return false;
+    /**
+     * Checks if the player has the money needed for a challenge
+     *
+     * @param player
+     * @param challenge
+     * @return true if the player has enough money or no money is needed
+     */
+    private boolean hasMoney(final Player player, final String challenge) {
+        if (Settings.useEconomy) {
+            final Challenge ch = getChallenge(challenge);
+            double moneyReq = ch.getRequiredMoney();
+            if (moneyReq > 0D) {
+                if (!VaultHelper.econ.has(player, Settings.worldName, moneyReq)) {
+                    Util.sendMessage(player, ChatColor.RED + plugin.myLocale(player.getUniqueId()).challengeserrorNotEnoughItems);
+                    for (String line : ch.getDescriptionLines()) {
+                        Util.sendMessage(player, ChatColor.RED + line);
                     }
+                    return false;
                 }
             }
-            // We now have two sets of required items or entities
-            // Check the items first
-            final Location l = player.getLocation();
-            // if (!neededItem.isEmpty()) {
-            final int px = l.getBlockX();
-            final int py = l.getBlockY();
-            final int pz = l.getBlockZ();
-            // Get search radius - min is 10, max is 50
-            int searchRadius = getChallengeConfig().getInt("challenges.challengeList." + challenge + ".searchRadius", 10);
-            if (searchRadius < 10) {
-                searchRadius = 10;
-            } else if (searchRadius > 50) {
-                searchRadius = 50;
-            }
-            for (int x = -searchRadius; x <= searchRadius; x++) {
-                for (int y = -searchRadius; y <= searchRadius; y++) {
-                    for (int z = -searchRadius; z <= searchRadius; z++) {
-                        final Material b = new Location(l.getWorld(), px + x, py + y, pz + z).getBlock().getType();
-                        if (neededItem.containsKey(b)) {
-                            if (neededItem.get(b) == 1) {
-                                neededItem.remove(b);
-                            } else {
-                                // Reduce the require amount by 1
-                                neededItem.put(b, neededItem.get(b) - 1);
-                            }
-                        }
+        }
+        return true;
+    }
+
+    /**
+     * Checks that the blocks and entities needed for an island challenge are near the player.
+     * Entities are counted straight away and blocks are counted async, so the result comes later.
+     * A player can only have one island challenge being checked at a time.
+     *
+     * @param player
+     * @param ch - the challenge
+     * @param onSuccess - run on the main thread if everything is there
+     */
+    private void checkIsland(final Player player, final Challenge ch, final Runnable onSuccess) {
+        final UUID playerUUID = player.getUniqueId();
+        final Island island = plugin.getGrid().getProtectedIslandAt(player.getLocation());
+        if (island == null || !scanning.add(playerUUID)) {
+            return;
+        }
+        final int radius = ch.getSearchRadius();
+        if (!hasMoney(player, ch.getName()) || !ch.isIslandValid()) {
+            scanning.remove(playerUUID);
+            sendIslandFailure(player, ch);
+            return;
+        }
+        final Map<EntityType, Integer> neededEntities = new HashMap<EntityType, Integer>(ch.getRequiredEntities());
+        if (!neededEntities.isEmpty()) {
+            for (Entity entity : player.getNearbyEntities(radius, radius, radius)) {
+                Integer qty = neededEntities.get(entity.getType());
+                if (qty != null) {
+                    if (qty == 1) {
+                        neededEntities.remove(entity.getType());
+                    } else {
+                        neededEntities.put(entity.getType(), qty - 1);
                     }
                 }
             }
-            // }
-            // Check if all the needed items have been amassed
-            if (!neededItem.isEmpty()) {
-                // plugin.getLogger().info("DEBUG: Insufficient items around");
-                for (Material missing : neededItem.keySet()) {
-                    Util.sendMessage(player,
-                            ChatColor.RED + plugin.myLocale(player.getUniqueId()).challengeserrorYouAreMissing + " " + neededItem.get(
-                                    missing) + " x "
-                                    + Util.prettifyText(missing.toString()));
-                }
-                return false;
-            } else {
-                // plugin.getLogger().info("DEBUG: Items are there");
-                // Check for needed entities
-                for (Entity entity : player.getNearbyEntities(searchRadius, searchRadius, searchRadius)) {
-                    // plugin.getLogger().info("DEBUG: Entity found:" +
-                    // entity.getType().toString());
-                    if (neededEntities.containsKey(entity.getType())) {
-                        // plugin.getLogger().info("DEBUG: Entity in list");
-                        if (neededEntities.get(entity.getType()) == 1) {
-                            neededEntities.remove(entity.getType());
-                            // plugin.getLogger().info("DEBUG: Entity qty satisfied");
-                        } else {
-                            neededEntities.put(entity.getType(), neededEntities.get(entity.getType()) - 1);
-                            // plugin.getLogger().info("DEBUG: Entity qty reduced by 1");
-                        }
-                    } else {
-                        // plugin.getLogger().info("DEBUG: Entity not in list");
-                    }
+        }
+        blockScanner.scan(island, player.getLocation(), radius, ch.getRequiredBlocks(), missingItems -> {
+            scanning.remove(playerUUID);
+            if (!player.isOnline()) {
+                return;
+            }
+            // Items are reported first, then entities
+            if (!missingItems.isEmpty()) {
+                for (Entry<Material, Integer> missing : missingItems.entrySet()) {
+                    Util.sendMessage(player, ChatColor.RED + plugin.myLocale(playerUUID).challengeserrorYouAreMissing + " "
+                            + missing.getValue() + " x " + Util.prettifyText(missing.getKey().toString()));
                 }
-                if (neededEntities.isEmpty()) {
-                    return true;
-                } else {
-                    for (EntityType missing : neededEntities.keySet()) {
-                        Util.sendMessage(player,
-                                ChatColor.RED + plugin.myLocale(player.getUniqueId()).challengeserrorYouAreMissing + " "
-                                        + neededEntities.get(missing)
-                                        + " x "
-                                        + Util.prettifyText(missing.toString()));
-                    }
-                    return false;
+                sendIslandFailure(player, ch);
+                return;
+            }
+            if (!neededEntities.isEmpty()) {
+                for (Entry<EntityType, Integer> missing : neededEntities.entrySet()) {
+                    Util.sendMessage(player, ChatColor.RED + plugin.myLocale(playerUUID).challengeserrorYouAreMissing + " "
+                            + missing.getValue() + " x " + Util.prettifyText(missing.getKey().toString()));
                 }
+                sendIslandFailure(player, ch);
+                return;
             }
-        }
+            // Island challenges can only be done once, so check again in case it was done during the search
+            if (plugin.getPlayers().checkChallenge(playerUUID, ch.getName())) {
+                Util.sendMessage(player, ChatColor.RED + plugin.myLocale(playerUUID).challengesnotRepeatable);
+                return;
+            }
+            onSuccess.run();
+        });
+    }
 
-        return true;
+    /**
+     * Tells the player that the island challenge could not be completed, and what it needs
+     */
+    private void sendIslandFailure(final Player player, final Challenge ch) {
+        Util.sendMessage(player, ChatColor.RED + plugin.myLocale(player.getUniqueId()).challengeserrorNotCloseEnough
+                .replace("[number]", String.valueOf(ch.getSearchRadius())));
+        for (String line : ch.getDescriptionLines()) {
+            Util.sendMessage(player, ChatColor.RED + line);
+        }
     }
 
     /**
@@ -1764,6 +1577,16 @@ public class Challenges implements CommandExecutor, TabCompleter {
                 return error;
             }
         }
+        Map<String, PanelItems> playerPanels = panelCache.get(player.getUniqueId());
+        PanelItems cached = playerPanels == null ? null : playerPanels.get(level);
+        if (cached != null && cached.locale == plugin.myLocale(player.getUniqueId()) && System.currentTimeMillis() < cached.validUntil) {
+            if (DEBUG) {
+                plugin.getLogger().info("DEBUG: reusing challenge panel " + level + " for " + player.getName());
+            }
+            return makePanel(player, cached.items);
+        }
+        // Work this out before the panel is made in case a reset happens while it is being made
+        long validUntil = getNextReset();
         if (challengeList.get(level) != null) {
             // Only show a control panel for the level requested.
             for (String challengeName : challengeList.get(level)) {
@@ -1818,6 +1641,22 @@ public class Challenges implements CommandExecutor, TabCompleter {
                 }
             }
         }
+        if (playerPanels == null) {
+            playerPanels = new HashMap<String, PanelItems>();
+            panelCache.put(player.getUniqueId(), playerPanels);
+        }
+        playerPanels.put(level, new PanelItems(cp, plugin.myLocale(player.getUniqueId()), validUntil));
+        return makePanel(player, cp);
+    }
+
+    /**
+     * Creates the panel inventory from the panel items
+     *
+     * @param player
+     * @param cp - panel items
+     * @return inventory or null if there are no items
+     */
+    private Inventory makePanel(Player player, List<CPItem> cp) {
         // Create the panel
         if (cp.size() > 0) {
             // Make sure size is a multiple of 9
@@ -1836,6 +1675,35 @@ public class Challenges implements CommandExecutor, TabCompleter {
         return null;
     }
 
+    /**
+     * Forgets the player's challenge panels so they are made again next time. Must be called when
+     * the player completes or resets a challenge.
+     *
+     * @param playerUUID
+     */
+    public void clearPanels(UUID playerUUID) {
+        panelCache.remove(playerUUID);
+    }
+
+    /**
+     * @return the time of the next repeating challenge reset, or Long.MAX_VALUE if there is none
+     */
+    private long getNextReset() {
+        long result = Long.MAX_VALUE;
+        long now = System.currentTimeMillis();
+        for (String challenge : resettingChallenges.getKeys(false)) {
+            long resetTime = resettingChallenges.getLong(challenge + ".resettime");
+            long repeat = resettingChallenges.getLong(challenge + ".repeat");
+            if (repeat > 0) {
+                long periods = now < resetTime ? 0 : (now - resetTime) / repeat + 1;
+                result = Math.min(result, resetTime + periods * repeat);
+            } else if (resetTime > now) {
+                result = Math.min(result, resetTime);
+            }
+        }
+        return result;
+    }
+
     /**
      * Creates an inventory item for the challenge
      *
@@ -1845,112 +1713,12 @@ public class Challenges implements CommandExecutor, TabCompleter {
      */
     private CPItem createItem(String challengeName, Player player) {
         CPItem item = null;
-        // Get the icon
-        ItemStack icon = null;
-        String iconName = getChallengeConfig().getString("challenges.challengeList." + challengeName + ".icon", "");
-        if (!iconName.isEmpty()) {
-            try {
-                // Split if required
-                String[] split = iconName.split(":");
-                if (split.length == 1) {
-                    // Some material does not show in the inventory
-                    if (iconName.equalsIgnoreCase("potato")) {
-                        iconName = "POTATO_ITEM";
-                    } else if (iconName.equalsIgnoreCase("brewing_stand")) {
-                        iconName = "BREWING_STAND_ITEM";
-                    } else if (iconName.equalsIgnoreCase("carrot")) {
-                        iconName = "CARROT_ITEM";
-                    } else if (iconName.equalsIgnoreCase("cauldron")) {
-                        iconName = "CAULDRON_ITEM";
-                    } else if (iconName.equalsIgnoreCase("lava") || iconName.equalsIgnoreCase("stationary_lava")) {
-                        iconName = "LAVA_BUCKET";
-                    } else if (iconName.equalsIgnoreCase("water") || iconName.equalsIgnoreCase("stationary_water")) {
-                        iconName = "WATER_BUCKET";
-                    } else if (iconName.equalsIgnoreCase("portal")) {
-                        iconName = "OBSIDIAN";
-                    } else if (iconName.equalsIgnoreCase("PUMPKIN_STEM")) {
-                        iconName = "PUMPKIN";
-                    } else if (iconName.equalsIgnoreCase("skull")) {
-                        iconName = "SKULL_ITEM";
-                    } else if (iconName.equalsIgnoreCase("COCOA")) {
-                        iconName = "INK_SACK:3";
-                    } else if (iconName.equalsIgnoreCase("NETHER_WARTS")) {
-                        iconName = "NETHER_STALK";
-                    }
-                    if (StringUtils.isNumeric(iconName)) {
-                        icon = new ItemStack(Integer.parseInt(iconName));
-                    } else {
-                        icon = new ItemStack(Material.valueOf(iconName));
-                    }
-                    // Check POTION for V1.9 - for some reason, it must be declared as WATER otherwise comparison later causes an NPE
-                    if (icon.getType().name().contains("POTION")) {
-                        if (!Bukkit.getVersion().contains("(MC: 1.8") && !Bukkit
-                                .getVersion()
-                                .contains("(MC: 1.7")) {
-                            PotionMeta potionMeta = (PotionMeta) icon.getItemMeta();
-                            potionMeta.setBasePotionData(new PotionData(PotionType.WATER));
-                            icon.setItemMeta(potionMeta);
-                        }
-                    }
-                } else if (split.length == 2) {
-                    if (StringUtils.isNumeric(split[0])) {
-                        icon = new ItemStack(Integer.parseInt(split[0]));
-                    } else {
-                        icon = new ItemStack(Material.valueOf(split[0]));
-                    }
-                    // Check POTION for V1.9 - for some reason, it must be declared as WATER otherwise comparison later causes an NPE
-                    if (icon.getType().name().contains("POTION")) {
-                        if (!Bukkit.getVersion().contains("(MC: 1.8") && !Bukkit
-                                .getVersion()
-                                .contains("(MC: 1.7")) {
-                            PotionMeta potionMeta = (PotionMeta) icon.getItemMeta();
-                            try {
-                                potionMeta.setBasePotionData(new PotionData(PotionType.valueOf(split[1].toUpperCase())));
-                            } catch (Exception e) {
-                                plugin.getLogger()
-                                        .severe("Challenges icon: Potion type of " + split[1]
-                                                + " is unknown, setting to WATER. Valid types are:");
-                                for (PotionType type : PotionType.values()) {
-                                    plugin.getLogger().severe(type.name());
-                                }
-                                potionMeta.setBasePotionData(new PotionData(PotionType.WATER));
-                            }
-                            icon.setItemMeta(potionMeta);
-                        }
-                    } else if (icon.getType().equals(Material.MONSTER_EGG)) {
-                        // Handle monster egg icons
-                        try {
-                            EntityType type = EntityType.valueOf(split[1].toUpperCase());
-                            if (Bukkit.getServer().getVersion().contains("(MC: 1.8") || Bukkit.getServer()
-                                    .getVersion()
-                                    .contains("(MC: 1.7")) {
-                                icon = new SpawnEgg(type).toItemStack();
-                            } else {
-                                try {
-                                    icon = new SpawnEgg1_9(type).toItemStack();
-                                } catch (Exception ex) {
-                                    plugin.getLogger().severe("Monster eggs not supported with this server version.");
-                                }
-                            }
-                        } catch (Exception e) {
-                            Bukkit.getLogger()
-                                    .severe("Spawn eggs must be described by name. Try one of these (not all are possible):");
-                            for (EntityType type : EntityType.values()) {
-                                if (type.isSpawnable() && type.isAlive()) {
-                                    plugin.getLogger().severe(type.toString());
-                                }
-                            }
-                        }
-                    } else {
-                        icon.setDurability(Integer.valueOf(split[1]).shortValue());
-                    }
-                }
-            } catch (Exception e) {
-                // Icon was not well formatted
-                plugin.getLogger().warning("Error in challenges.yml - icon format is incorrect for " + challengeName + ":" + iconName);
-                plugin.getLogger().warning("Format should be 'icon: MaterialType:Damage' where Damage is optional");
-            }
+        final Challenge ch = getChallenge(challengeName);
+        if (ch == null) {
+            return null;
         }
+        // Get the icon
+        ItemStack icon = ch.getIcon();
         if (icon == null) {
             icon = new ItemStack(Material.PAPER);
         }
@@ -1958,11 +1726,7 @@ public class Challenges implements CommandExecutor, TabCompleter {
         if (icon.getType() == Material.AIR) {
             return new CPItem(icon, "");
         }
-        String description = ChatColor.GREEN
-                + ChatColor
-                .translateAlternateColorCodes('&',
-                        getChallengeConfig().getString("challenges.challengeList." + challengeName + ".friendlyname",
-                                challengeName.substring(0, 1).toUpperCase() + challengeName.substring(1)));
+        String description = ChatColor.GREEN + ch.getFriendlyName();
         // Remove extraneous info
         ItemMeta im = icon.getItemMeta();
         if (!Bukkit.getVersion().contains("1.7")) {
@@ -1981,11 +1745,7 @@ public class Challenges implements CommandExecutor, TabCompleter {
             complete = true;
         }
         icon.setItemMeta(im);
-        boolean repeatable = false;
-        if (getChallengeConfig().getBoolean("challenges.challengeList." + challengeName + ".repeatable", false)) {
-            // Repeatable
-            repeatable = true;
-        }
+        boolean repeatable = ch.isRepeatable();
         // Only show this challenge if it is not done or repeatable if the
         // setting Settings.removeCompleteOntimeChallenges
         if (!complete || ((complete && repeatable) || !Settings.removeCompleteOntimeChallenges)) {
@@ -2014,28 +1774,21 @@ public class Challenges implements CommandExecutor, TabCompleter {
     private List<String> challengeDescription(String challenge, Player player) {
         List<String> result = new ArrayList<String>();
         final int length = 25;
-        // plugin.getLogger().info("DEBUG: challenge is '"+challenge+"'");
-        // plugin.getLogger().info("challenges.challengeList." + challenge +
-        // ".level");
-        // plugin.getLogger().info(getChallengeConfig().getString("challenges.challengeList."
-        // + challenge + ".level"));
-        String level = getChallengeConfig().getString("challenges.challengeList." + challenge + ".level", "");
+        final Challenge ch = getChallenge(challenge);
+        String level = ch.getLevel();
         if (!level.isEmpty()) {
             result.addAll(Util.chop(ChatColor.WHITE, plugin.myLocale(player.getUniqueId()).challengeslevel + ": " + level, length));
         }
         // Check if completed or not
         boolean complete = false;
-        int maxTimes = getChallengeConfig().getInt("challenges.challengeList." + challenge + ".maxtimes", 0);
+        int maxTimes = ch.getMaxTimes();
         int doneTimes = plugin.getPlayers().checkChallengeTimes(player.getUniqueId(), challenge);
         if (plugin.getPlayers().checkChallenge(player.getUniqueId(), challenge)) {
             // Complete!
             // result.add(ChatColor.AQUA + plugin.myLocale(player.getUniqueId()).challengescomplete);
             complete = true;
         }
-        boolean repeatable = false;
-        if (getChallengeConfig().getBoolean("challenges.challengeList." + challenge + ".repeatable", false)) {
-            repeatable = true;
-        }
+        boolean repeatable = ch.isRepeatable();
 
         if (repeatable) {
             if (maxTimes == 0) {
@@ -2059,18 +1812,11 @@ public class Challenges implements CommandExecutor, TabCompleter {
             result.add(ChatColor.AQUA + plugin.myLocale(player.getUniqueId()).challengescomplete);
         }
 
-        final String type = getChallengeConfig().getString("challenges.challengeList." + challenge + ".type", "").toLowerCase();
+        final String type = ch.getType();
         if (!complete || (complete && repeatable)) {
-            String desc = ChatColor.translateAlternateColorCodes('&',
-                    getChallengeConfig().getString("challenges.challengeList." + challenge + ".description", "")
-                            .replace("[label]", Settings.ISLANDCOMMAND));
-            if (desc.contains("|")) {
-                result.addAll(Arrays.asList(desc.split("\\|")));
-            } else {
-                result.addAll(Util.chop(ChatColor.GOLD, desc, length));
-            }
+            result.addAll(ch.getPanelDescription());
             if (type.equals("inventory")) {
-                if (getChallengeConfig().getBoolean("challenges.challengeList." + challenge.toLowerCase() + ".takeItems")) {
+                if (ch.isTakeItems()) {
                     result.addAll(Util.chop(ChatColor.RED, plugin.myLocale(player.getUniqueId()).challengesitemTakeWarning, length));
                 }
             } else if (type.equals("island")) {
@@ -2081,31 +1827,18 @@ public class Challenges implements CommandExecutor, TabCompleter {
             result.addAll(Util.chop(ChatColor.RED, plugin.myLocale(player.getUniqueId()).challengesnotRepeatable, length));
             return result;
         }
-        double moneyReward = 0;
-        int expReward = 0;
-        String rewardText = "";
-        if (!plugin.getPlayers().checkChallenge(player.getUniqueId(), challenge)) {
-            // First time
-            moneyReward = getChallengeConfig().getDouble("challenges.challengeList." + challenge.toLowerCase() + ".moneyReward", 0);
-            rewardText = ChatColor.translateAlternateColorCodes('&',
-                    getChallengeConfig().getString("challenges.challengeList." + challenge.toLowerCase() + ".rewardText", ""));
-            expReward = getChallengeConfig().getInt("challenges.challengeList." + challenge + ".expReward", 0);
-            if (!rewardText.isEmpty()) {
+        final Challenge.Reward reward = ch.getReward(complete);
+        double moneyReward = reward.getMoney();
+        int expReward = reward.getExp();
+        String rewardText = reward.getText("");
+        if (!rewardText.isEmpty()) {
+            if (!complete) {
+                // First time
                 result.addAll(Util.chop(ChatColor.GOLD, plugin.myLocale(player.getUniqueId()).challengesfirstTimeRewards, length));
-            }
-        } else {
-            // Repeat challenge
-            moneyReward = getChallengeConfig().getDouble("challenges.challengeList." + challenge.toLowerCase() + ".repeatMoneyReward",
-                    0);
-            rewardText = ChatColor.translateAlternateColorCodes('&',
-                    getChallengeConfig().getString("challenges.challengeList." + challenge.toLowerCase() + ".repeatRewardText", ""));
-            expReward = getChallengeConfig().getInt("challenges.challengeList." + challenge + ".repeatExpReward", 0);
-            if (!rewardText.isEmpty()) {
+            } else {
+                // Repeat challenge
                 result.addAll(Util.chop(ChatColor.GOLD, plugin.myLocale(player.getUniqueId()).challengesrepeatRewards, length));
             }
-
-        }
-        if (!rewardText.isEmpty()) {
             result.addAll(Util.chop(ChatColor.WHITE, rewardText, length));
         }
         if (expReward > 0) {
@@ -2162,6 +1895,24 @@ public class Challenges implements CommandExecutor, TabCompleter {
             Settings.waiverAmount = 0;
         }
         populateChallengeList();
+        // Read the challenges once so they do not need to be parsed each time they are used
+        Map<String, Challenge> newChallenges = new HashMap<String, Challenge>();
+        ConfigurationSection section = getChallengeConfig().getConfigurationSection("challenges.challengeList");
+        for (String name : Settings.challengeList) {
+            if (section.isConfigurationSection(name)) {
+                newChallenges.put(name.toLowerCase(), new Challenge(plugin, name, section.getConfigurationSection(name)));
+            }
+        }
+        challenges = newChallenges;
+        panelCache.clear();
+    }
+
+    /**
+     * @param name - challenge name, any case
+     * @return the challenge or null if there is no challenge by that name
+     */
+    private Challenge getChallenge(String name) {
+        return challenges.get(name.toLowerCase().replaceAll("\\.", ""));
     }
 
     /**
@@ -2308,7 +2059,8 @@ public class Challenges implements CommandExecutor, TabCompleter {
      * @return true if this challenge can be reset, false if not
      */
     public boolean resetable(String challenge) {
-        return getChallengeConfig().getBoolean("challenges.challengeList." + challenge + ".resetallowed", true);
+        Challenge ch = getChallenge(challenge);
+        return ch == null || ch.isResetAllowed();
     }
 
     /**
@@ -2353,6 +2105,7 @@ public class Challenges implements CommandExecutor, TabCompleter {
         resettingChallenges.set(challenge + ".repeat", repeat);
         resettingChallenges.set(challenge + ".duration", entry);
         Util.saveYamlFile(resettingChallenges, "resettimers.yml");
+        panelCache.clear();
     }
 
     /**
@@ -2432,6 +2185,7 @@ public class Challenges implements CommandExecutor, TabCompleter {
             resettingChallenges.set(challenge, null);
             Util.saveYamlFile(resettingChallenges, "resettimers.yml");
         }
+        panelCache.clear();
     }
 
 }
@@ -23,6 +23,7 @@ import com.wasteofplastic.askyblock.DeleteIslandChunk;
 import com.wasteofplastic.askyblock.GridManager;
 import com.wasteofplastic.askyblock.Island;
 import com.wasteofplastic.askyblock.Island.SettingsFlag;
+import com.wasteofplastic.askyblock.Leaderboard;
 import com.wasteofplastic.askyblock.LevelCalcByChunk;
 import com.wasteofplastic.askyblock.Settings;
 import com.wasteofplastic.askyblock.TopTen;
@@ -99,8 +100,6 @@ public class IslandCmd implements CommandExecutor, TabCompleter {
     // To choose an island randomly
     private final Random random = new Random();
     public boolean levelCalcFreeFlag = true;
-    // Last island
-    Location last = null;
     // Level calc checker
     BukkitTask checker = null;
     private ASkyBlock plugin;
@@ -758,7 +757,15 @@ public class IslandCmd implements CommandExecutor, TabCompleter {
             firstTime = true;
         }
         //plugin.getLogger().info("DEBUG: finding island location");
-        Location next = getNextIsland(player.getUniqueId());
+        // Use an island pasted ahead of time if there is one, unless an admin has kept a spot for the player
+        Location next = null;
+        if (!islandSpot.containsKey(playerUUID) && plugin.getIslandPool() != null) {
+            next = plugin.getIslandPool().claim(schematic);
+        }
+        final boolean pasted = next != null;
+        if (!pasted) {
+            next = getNextIsland(player.getUniqueId());
+        }
         //plugin.getLogger().info("DEBUG: found " + next);
         // Set the player's parameters to this island
         plugin.getPlayers().setHasIsland(playerUUID, true);
@@ -791,7 +798,7 @@ public class IslandCmd implements CommandExecutor, TabCompleter {
                 // Paste the overworld if it exists
                 if (!schematic.getPartnerName().isEmpty() && schematics.containsKey(schematic.getPartnerName())) {
                     // A partner schematic is available
-                    pastePartner(schematics.get(schematic.getPartnerName()), next, player);
+                    pastePartner(schematics.get(schematic.getPartnerName()), next, player, false);
                 }
                 // Switch home location to the Nether
                 next = next.toVector().toLocation(ASkyBlock.getNetherWorld());
@@ -803,7 +810,11 @@ public class IslandCmd implements CommandExecutor, TabCompleter {
                 //plugin.getLogger().info("DEBUG: pasting");
                 //long timer = System.nanoTime();
                 // Paste the island and teleport the player home
-                schematic.pasteSchematic(next, player, true, firstTime ? PasteReason.NEW_ISLAND : PasteReason.RESET);
+                if (pasted) {
+                    schematic.finishPaste(next, player, true, firstTime ? PasteReason.NEW_ISLAND : PasteReason.RESET);
+                } else {
+                    schematic.pasteSchematic(next, player, true, firstTime ? PasteReason.NEW_ISLAND : PasteReason.RESET);
+                }
                 //double diff = (System.nanoTime() - timer)/1000000;
                 //plugin.getLogger().info("DEBUG: nano time = " + diff + " ms");
                 //plugin.getLogger().info("DEBUG: pasted overworld");
@@ -813,13 +824,13 @@ public class IslandCmd implements CommandExecutor, TabCompleter {
                     if (schematic.getPartnerName().isEmpty()) {
                         // This will paste the over world schematic again
                         //plugin.getLogger().info("DEBUG: pasting nether");
-                        pastePartner(schematic, netherLoc, player);
+                        pastePartner(schematic, netherLoc, player, pasted);
                         //plugin.getLogger().info("DEBUG: pasted nether");
                     } else {
                         if (schematics.containsKey(schematic.getPartnerName())) {
                             //plugin.getLogger().info("DEBUG: pasting partner");
                             // A partner schematic is available
-                            pastePartner(schematics.get(schematic.getPartnerName()), netherLoc, player);
+                            pastePartner(schematics.get(schematic.getPartnerName()), netherLoc, player, pasted);
                         } else {
                             plugin.getLogger().severe("Partner schematic heading '" + schematic.getPartnerName() + "' does not exist");
                         }
@@ -888,13 +899,18 @@ public class IslandCmd implements CommandExecutor, TabCompleter {
      *
      * @param schematic
      * @param player
+     * @param pasted - true if the blocks were pasted ahead of time
      */
-    private void pastePartner(final Schematic schematic, final Location loc, final Player player) {
+    private void pastePartner(final Schematic schematic, final Location loc, final Player player, final boolean pasted) {
         Bukkit.getScheduler().runTaskLater(plugin, new Runnable() {
 
             @Override
             public void run() {
-                schematic.pasteSchematic(loc, player, false, PasteReason.PARTNER);
+                if (pasted) {
+                    schematic.finishPaste(loc, player, false, PasteReason.PARTNER);
+                } else {
+                    schematic.pasteSchematic(loc, player, false, PasteReason.PARTNER);
+                }
                 if (schematic.isPlayerSpawn()) {
                     // Set partner home
                     plugin.getPlayers().setHomeLocation(player.getUniqueId(), schematic.getPlayerSpawn(loc), -2);
@@ -928,6 +944,7 @@ public class IslandCmd implements CommandExecutor, TabCompleter {
             Location next = plugin.getGrid().getClosestIsland(islandSpot.get(playerUUID));
             // Single shot only
             islandSpot.remove(playerUUID);
+            plugin.getGrid().unreserveIslandLocation(next);
             // Check if it is already occupied (shouldn't be)
             Island island = plugin.getGrid().getIslandAt(next);
             if (island == null || island.getOwner() == null) {
@@ -937,54 +954,48 @@ public class IslandCmd implements CommandExecutor, TabCompleter {
             // Else, fall back to the random pick
         }
         // Find the next free spot
-        if (last == null) {
-            last = new Location(ASkyBlock.getIslandWorld(), Settings.islandXOffset + Settings.islandStartX, Settings.islandHeight,
-                    Settings.islandZOffset + Settings.islandStartZ);
-        }
-        Location next = last.clone();
-
-        while (plugin.getGrid().islandAtLocation(next) || islandSpot.containsValue(next)) {
-            next = nextGridLocation(next);
-        }
-        // Make the last next, last
-        last = next.clone();
-        return next;
+        return plugin.getGrid().getNextIslandLocation();
     }
 
     /**
-     * Finds the next free island spot based off the last known island Uses
-     * island_distance setting from the config file Builds up in a grid fashion
+     * Shows the player's island rank and the islands near it, or a page of the island ranking
      *
-     * @param lastIsland
-     * @return Location of next free island
+     * @param player
+     * @param page - page to show, or 0 to show the islands near the player's island
      */
-    private Location nextGridLocation(final Location lastIsland) {
-        // plugin.getLogger().info("DEBUG nextIslandLocation");
-        final int x = lastIsland.getBlockX();
-        final int z = lastIsland.getBlockZ();
-        final Location nextPos = lastIsland;
-        if (x < z) {
-            if (-1 * x < z) {
-                nextPos.setX(nextPos.getX() + Settings.islandDistance);
-                return nextPos;
-            }
-            nextPos.setZ(nextPos.getZ() + Settings.islandDistance);
-            return nextPos;
+    private void showRank(final Player player, int page) {
+        final UUID playerUUID = player.getUniqueId();
+        Leaderboard leaderboard = plugin.getLeaderboard();
+        if (!leaderboard.isReady()) {
+            Util.sendMessage(player, ChatColor.RED + plugin.myLocale(playerUUID).topTenerrorNotReady);
+            return;
+        }
+        UUID owner = playerUUID;
+        if (plugin.getPlayers().inTeam(playerUUID) && plugin.getPlayers().getTeamLeader(playerUUID) != null) {
+            owner = plugin.getPlayers().getTeamLeader(playerUUID);
         }
-        if (x > z) {
-            if (-1 * x >= z) {
-                nextPos.setX(nextPos.getX() - Settings.islandDistance);
-                return nextPos;
+        int total = leaderboard.size();
+        Map<UUID, Long> islands;
+        if (page == 0) {
+            int rank = leaderboard.getRank(owner);
+            if (rank == 0) {
+                Util.sendMessage(player, ChatColor.RED + plugin.myLocale(playerUUID).rankNotRanked);
+                return;
             }
-            nextPos.setZ(nextPos.getZ() - Settings.islandDistance);
-            return nextPos;
+            Util.sendMessage(player, ChatColor.GOLD + plugin.myLocale(playerUUID).rankYourRank.replace("[rank]", String.valueOf(rank))
+                    .replace("[total]", String.valueOf(total)));
+            islands = leaderboard.getAround(owner, 2);
+        } else {
+            int pages = Math.max(1, (total + 9) / 10);
+            Util.sendMessage(player, ChatColor.GOLD + plugin.myLocale(playerUUID).rankHeader.replace("[page]", String.valueOf(page))
+                    .replace("[total]", String.valueOf(pages)));
+            islands = leaderboard.getPage(page, 10);
         }
-        if (x <= 0) {
-            nextPos.setZ(nextPos.getZ() + Settings.islandDistance);
-            return nextPos;
+        for (Entry<UUID, Long> en : islands.entrySet()) {
+            ChatColor color = en.getKey().equals(owner) ? ChatColor.GREEN : ChatColor.AQUA;
+            Util.sendMessage(player, color + "#" + leaderboard.getRank(en.getKey()) + ": " + plugin.getGrid().getIslandName(en.getKey())
+                    + color + " - " + plugin.myLocale(playerUUID).levelislandLevel + " " + en.getValue());
         }
-        nextPos.setZ(nextPos.getZ() - Settings.islandDistance);
-        return nextPos;
     }
 
     /**
@@ -1786,6 +1797,11 @@ public class IslandCmd implements CommandExecutor, TabCompleter {
                                 plugin.myLocale(player.getUniqueId()).helpColor + "/" + label + " top: " + ChatColor.WHITE + plugin
                                         .myLocale(player.getUniqueId()).islandhelpTop);
                     }
+                    if (VaultHelper.checkPerm(player, Settings.PERMPREFIX + "island.rank")) {
+                        Util.sendMessage(player,
+                                plugin.myLocale(player.getUniqueId()).helpColor + "/" + label + " rank [page]: " + ChatColor.WHITE + plugin
+                                        .myLocale(player.getUniqueId()).islandhelpRank);
+                    }
                     if (Settings.useEconomy && VaultHelper.checkPerm(player, Settings.PERMPREFIX + "island.minishop")) {
                         Util.sendMessage(player,
                                 plugin.myLocale(player.getUniqueId()).helpColor + "/" + label + " minishop or ms: " + ChatColor.WHITE
@@ -1997,6 +2013,13 @@ public class IslandCmd implements CommandExecutor, TabCompleter {
                         Util.sendMessage(player, ChatColor.RED + plugin.myLocale(playerUUID).errorNoPermission);
                         return true;
                     }
+                } else if (split[0].equalsIgnoreCase("rank")) {
+                    if (VaultHelper.checkPerm(player, Settings.PERMPREFIX + "island.rank")) {
+                        showRank(player, 0);
+                    } else {
+                        Util.sendMessage(player, ChatColor.RED + plugin.myLocale(playerUUID).errorNoPermission);
+                    }
+                    return true;
                 } else if (split[0].equalsIgnoreCase("level")) {
                     if (VaultHelper.checkPerm(player, Settings.PERMPREFIX + "island.info")) {
                         if (!plugin.getPlayers().inTeam(playerUUID) && !plugin.getPlayers().hasIsland(playerUUID)) {
@@ -2299,7 +2322,14 @@ public class IslandCmd implements CommandExecutor, TabCompleter {
                  * Commands that have two parameters
                  */
             case 2:
-                if (split[0].equalsIgnoreCase("controlpanel") || split[0].equalsIgnoreCase("cp")) {
+                if (split[0].equalsIgnoreCase("rank") && NumberUtils.isDigits(split[1])) {
+                    if (VaultHelper.checkPerm(player, Settings.PERMPREFIX + "island.rank")) {
+                        showRank(player, Math.max(1, NumberUtils.toInt(split[1])));
+                    } else {
+                        Util.sendMessage(player, ChatColor.RED + plugin.myLocale(playerUUID).errorNoPermission);
+                    }
+                    return true;
+                } else if (split[0].equalsIgnoreCase("controlpanel") || split[0].equalsIgnoreCase("cp")) {
                     if (VaultHelper.checkPerm(player, Settings.PERMPREFIX + "island.controlpanel")) {
                         if (split[1].equalsIgnoreCase("on")) {
                             plugin.getPlayers().setControlPanel(playerUUID, true);
@@ -3719,7 +3749,11 @@ public class IslandCmd implements CommandExecutor, TabCompleter {
      * @param location
      */
     public void reserveLocation(UUID playerUUID, Location location) {
-        islandSpot.put(playerUUID, location);
+        Location old = islandSpot.put(playerUUID, location);
+        if (old != null) {
+            plugin.getGrid().unreserveIslandLocation(old);
+        }
+        plugin.getGrid().reserveIslandLocation(location);
     }
 
     @Override
@@ -3775,6 +3809,9 @@ public class IslandCmd implements CommandExecutor, TabCompleter {
                 if (VaultHelper.checkPerm(player, Settings.PERMPREFIX + "island.topten")) {
                     options.add("top");
                 }
+                if (VaultHelper.checkPerm(player, Settings.PERMPREFIX + "island.rank")) {
+                    options.add("rank");
+                }
                 if (Settings.useEconomy && VaultHelper.checkPerm(player, Settings.PERMPREFIX + "island.minishop")) {
                     options.add("minishop");
                     options.add("ms");
@@ -4,6 +4,7 @@ import com.wasteofplastic.askyblock.ASkyBlock;
 import com.wasteofplastic.askyblock.Island;
 import com.wasteofplastic.askyblock.Island.SettingsFlag;
 import com.wasteofplastic.askyblock.Settings;
+import com.wasteofplastic.askyblock.TileEntityCounter;
 import com.wasteofplastic.askyblock.util.Util;
 import com.wasteofplastic.askyblock.util.VaultHelper;
 
@@ -31,7 +32,6 @@ import org.bukkit.event.vehicle.VehicleCreateEvent;
 import org.bukkit.event.world.StructureGrowEvent;
 import org.bukkit.inventory.ItemStack;
 import org.bukkit.metadata.FixedMetadataValue;
-import org.bukkit.metadata.MetadataValue;
 
 import java.util.ArrayList;
 import java.util.Iterator;
@@ -95,88 +95,20 @@ public class EntityLimits implements Listener {
             }
             return;
         }
-        // Count how many animals are there and who is the most likely spawner if it was a player
-        // This had to be reworked because the previous snowball approach doesn't work for large volumes
-        List<Player> culprits = new ArrayList<Player>();
-        boolean overLimit = false;
-        int animals = 0;
-        for (int x = island.getMinProtectedX() / 16; x <= (island.getMinProtectedX() + island.getProtectionSize() - 1) / 16; x++) {
-            for (int z = island.getMinProtectedZ() / 16; z <= (island.getMinProtectedZ() + island.getProtectionSize() - 1) / 16; z++) {
-                for (Entity entity : ASkyBlock.getIslandWorld().getChunkAt(x, z).getEntities()) {
-                    if (entity instanceof Animals || entity.getType().equals(EntityType.SQUID)) {
-                        if (DEBUG2) {
-                            plugin.getLogger().info("DEBUG: Animal count is " + animals);
-                        }
-                        animals++;
-                        if (animals >= Settings.breedingLimit) {
-                            // Delete any extra animals
-                            overLimit = true;
-                            animal.remove();
-                            if (DEBUG2) {
-                                plugin.getLogger().info("Over limit! >=" + Settings.breedingLimit);
-                            }
-                            e.setCancelled(true);
-                        }
-                    } else if (entity instanceof Player && e.getSpawnReason() != SpawnReason.SPAWNER
-                            && e.getSpawnReason() != SpawnReason.DISPENSE_EGG) {
-                        for (ItemStack itemInHand : Util.getPlayerInHandItems((Player) entity)) {
-                            if (itemInHand != null) {
-                                Material type = itemInHand.getType();
-                                if (type == Material.EGG || type == Material.MONSTER_EGG || type == Material.WHEAT
-                                        || type == Material.CARROT_ITEM
-                                        || type == Material.SEEDS) {
-                                    if (DEBUG2) {
-                                        plugin.getLogger().info("Player used egg or did breeding ");
-                                    }
-                                    if (!culprits.contains((Player) entity)) {
-                                        culprits.add(((Player) entity));
-                                    }
-                                }
-                            }
-                        }
-                    }
-                }
-            }
-        }
+        // Count how many animals are there using the entity index
+        int animals = plugin.getEntityIndex().countAnimals(island, Settings.breedingLimit);
         if (DEBUG2) {
-            plugin.getLogger().info("Counting nether");
-        }
-        // Nether check
-        if (Settings.createNether && Settings.newNether && ASkyBlock.getNetherWorld() != null) {
-            for (int x = island.getMinProtectedX() / 16; x <= (island.getMinProtectedX() + island.getProtectionSize() - 1) / 16; x++) {
-                for (int z = island.getMinProtectedZ() / 16; z <= (island.getMinProtectedZ() + island.getProtectionSize() - 1) / 16;
-                        z++) {
-                    for (Entity entity : ASkyBlock.getNetherWorld().getChunkAt(x, z).getEntities()) {
-                        if (entity instanceof Animals || entity.getType().equals(EntityType.SQUID)) {
-                            if (DEBUG2) {
-                                plugin.getLogger().info("DEBUG: Animal count is " + animals);
-                            }
-                            animals++;
-                            if (animals >= Settings.breedingLimit) {
-                                // Delete any extra animals
-                                if (DEBUG2) {
-                                    plugin.getLogger().info("Over limit! >=" + Settings.breedingLimit);
-                                }
-                                overLimit = true;
-                                animal.remove();
-                                e.setCancelled(true);
-                            }
-                        } else if (entity instanceof Player && e.getSpawnReason() != SpawnReason.SPAWNER
-                                && e.getSpawnReason() != SpawnReason.DISPENSE_EGG) {
-                            for (ItemStack itemInHand : Util.getPlayerInHandItems(((Player) entity))) {
-                                Material type = itemInHand.getType();
-                                if (type == Material.EGG || type == Material.MONSTER_EGG || type == Material.WHEAT
-                                        || type == Material.CARROT_ITEM
-                                        || type == Material.SEEDS) {
-                                    if (!culprits.contains((Player) entity)) {
-                                        culprits.add(((Player) entity));
-                                    }
-                                }
-                            }
-                        }
-                    }
-                }
+            plugin.getLogger().info("DEBUG: Animal count is " + animals);
+        }
+        boolean overLimit = false;
+        if (animals >= Settings.breedingLimit) {
+            // Delete any extra animals
+            overLimit = true;
+            animal.remove();
+            if (DEBUG2) {
+                plugin.getLogger().info("Over limit! >=" + Settings.breedingLimit);
             }
+            e.setCancelled(true);
         }
         if (overLimit) {
             if (e.getSpawnReason() != SpawnReason.SPAWNER) {
@@ -184,7 +116,7 @@ public class EntityLimits implements Listener {
                         "Island at " + island.getCenter().getBlockX() + "," + island.getCenter().getBlockZ()
                                 + " hit the island animal breeding limit of "
                                 + Settings.breedingLimit);
-                for (Player player : culprits) {
+                for (Player player : getCulprits(island, e.getSpawnReason())) {
                     Util.sendMessage(player, ChatColor.RED + plugin.myLocale(player.getUniqueId()).moblimitsError
                             .replace("[number]", String.valueOf(Settings.breedingLimit)));
                     plugin.getLogger()
@@ -195,6 +127,40 @@ public class EntityLimits implements Listener {
         // plugin.getLogger().info("DEBUG: Animal count is " + animals);
     }
 
+    /**
+     * Finds the players on the island who are most likely to have caused an animal to spawn
+     *
+     * @param island
+     * @param reason
+     * @return list of players holding eggs or breeding items
+     */
+    private List<Player> getCulprits(Island island, SpawnReason reason) {
+        List<Player> culprits = new ArrayList<Player>();
+        if (reason == SpawnReason.DISPENSE_EGG) {
+            return culprits;
+        }
+        for (Player player : plugin.getServer().getOnlinePlayers()) {
+            if (!island.onIsland(player.getLocation())) {
+                continue;
+            }
+            for (ItemStack itemInHand : Util.getPlayerInHandItems(player)) {
+                if (itemInHand != null) {
+                    Material type = itemInHand.getType();
+                    if (type == Material.EGG || type == Material.MONSTER_EGG || type == Material.WHEAT
+                            || type == Material.CARROT_ITEM
+                            || type == Material.SEEDS) {
+                        if (DEBUG2) {
+                            plugin.getLogger().info("Player used egg or did breeding ");
+                        }
+                        culprits.add(player);
+                        break;
+                    }
+                }
+            }
+        }
+        return culprits;
+    }
+
     /**
      * Prevents mobs spawning naturally at spawn or in an island
      *
@@ -292,18 +258,11 @@ public class EntityLimits implements Listener {
                 return;
             }
             // Island exists
-            if (island.getIgsFlag(SettingsFlag.PLACE_BLOCKS) || island.getMembers().contains(e.getPlayer().getUniqueId())) {
+            if (island.getIgsFlag(SettingsFlag.PLACE_BLOCKS) || island.getMemberSet().contains(e.getPlayer().getUniqueId())) {
                 // Check how many placed
                 //plugin.getLogger().info("DEBUG: block placed " + e.getBlock().getType());
                 String type = e.getBlock().getType().toString();
-                if (!e.getBlock().getState().getClass().getName().endsWith("CraftBlockState")
-                        // Not all blocks have that type of class, so we have to do some explicit checking...
-                        || e.getBlock().getType().equals(Material.REDSTONE_COMPARATOR_OFF)
-                        || type.endsWith("BANNER") // Avoids V1.7 issues
-                        || e.getBlock().getType().equals(Material.ENDER_CHEST)
-                        || e.getBlock().getType().equals(Material.ENCHANTMENT_TABLE)
-                        || e.getBlock().getType().equals(Material.DAYLIGHT_DETECTOR)
-                        || e.getBlock().getType().equals(Material.FLOWER_POT)) {
+                if (TileEntityCounter.isTileEntity(e.getBlock().getType())) {
                     // tile entity placed
                     if (Settings.limitedBlocks.containsKey(type) && Settings.limitedBlocks.get(type) > -1) {
                         int count = island.getTileEntityCount(e.getBlock().getType(), e.getBlock().getWorld());
@@ -367,14 +326,7 @@ public class EntityLimits implements Listener {
                 // Check how many placed
                 //plugin.getLogger().info("DEBUG: block placed " + e.getBlock().getType());
                 String type = e.getBlock().getType().toString();
-                if (!e.getBlock().getState().getClass().getName().endsWith("CraftBlockState")
-                        // Not all blocks have that type of class, so we have to do some explicit checking...
-                        || e.getBlock().getType().equals(Material.REDSTONE_COMPARATOR_OFF)
-                        || type.endsWith("BANNER") // Avoids V1.7 issues
-                        || e.getBlock().getType().equals(Material.ENDER_CHEST)
-                        || e.getBlock().getType().equals(Material.ENCHANTMENT_TABLE)
-                        || e.getBlock().getType().equals(Material.DAYLIGHT_DETECTOR)
-                        || e.getBlock().getType().equals(Material.FLOWER_POT)) {
+                if (TileEntityCounter.isTileEntity(e.getBlock().getType())) {
                     // tile entity placed
                     if (Settings.limitedBlocks.containsKey(type) && Settings.limitedBlocks.get(type) > -1) {
                         int count = island.getTileEntityCount(e.getBlock().getType(), e.getBlock().getWorld());
@@ -415,7 +367,7 @@ public class EntityLimits implements Listener {
             return true;
         }
         Island island = plugin.getGrid().getProtectedIslandAt(location);
-        if (island != null && (island.getIgsFlag(flag) || island.getMembers().contains(player.getUniqueId()))) {
+        if (island != null && (island.getIgsFlag(flag) || island.getMemberSet().contains(player.getUniqueId()))) {
             return true;
         }
         if (island == null && Settings.defaultWorldSettings.get(flag)) {
@@ -451,7 +403,7 @@ public class EntityLimits implements Listener {
                 }
                 return;
             }
-            if (island.getIgsFlag(SettingsFlag.PLACE_BLOCKS) || island.getMembers().contains(e.getPlayer().getUniqueId())) {
+            if (island.getIgsFlag(SettingsFlag.PLACE_BLOCKS) || island.getMemberSet().contains(e.getPlayer().getUniqueId())) {
                 // Check how many placed
                 String type = e.getEntity().getType().toString();
                 if (e.getEntity().getType().equals(EntityType.ITEM_FRAME) || e.getEntity().getType().equals(EntityType.PAINTING)) {
@@ -542,7 +494,7 @@ public class EntityLimits implements Listener {
         int limit = Settings.villagerLimit * Math.max(1, plugin.getPlayers().getMembers(island.getOwner()).size());
         //plugin.getLogger().info("DEBUG: villager limit = " + limit);
         //long time = System.nanoTime();
-        int pop = island.getPopulation();
+        int pop = plugin.getEntityIndex().count(island, ASkyBlock.getIslandWorld(), EntityType.VILLAGER, limit);
         //plugin.getLogger().info("DEBUG: time = " + ((System.nanoTime() - time)*0.000000001));
         if (pop >= limit) {
             plugin.getLogger().warning(
@@ -655,51 +607,21 @@ public class EntityLimits implements Listener {
      * @return true if at the limit, false if not
      */
     private boolean atLimit(Island island, boolean bypass, Entity ent) {
-        int count = 0;
         checkLimits:
         if (bypass || Settings.entityLimits.get(ent.getType()) > 0) {
             // If bypass, just tag the creature. If not, then we need to count creatures
             if (!bypass) {
-                // Run through all the current entities on this world
-                for (Entity entity : ent.getWorld().getEntities()) {
-                    // If it is the right one
-                    if (entity.getType().equals(ent.getType())) {
-                        if (DEBUG) {
-                            plugin.getLogger().info("DEBUG: " + entity.getType() + " found");
-                        }
-                        // Check spawn location
-                        if (entity.hasMetadata("spawnLoc")) {
-                            if (DEBUG) {
-                                plugin.getLogger().info("DEBUG: has meta");
-                            }
-                            // Get the meta data
-                            List<MetadataValue> values = entity.getMetadata("spawnLoc");
-                            for (MetadataValue v : values) {
-                                // There is a chance another plugin also uses the meta data spawnLoc
-                                if (v.getOwningPlugin().equals(plugin)) {
-                                    // Get the island spawn location
-                                    Location spawnLoc = Util.getLocationString(v.asString());
-                                    if (DEBUG) {
-                                        plugin.getLogger().info("DEBUG: entity spawnLoc = " + spawnLoc);
-                                    }
-                                    if (spawnLoc != null && spawnLoc.equals(island.getCenter())) {
-                                        // Entity is on this island
-                                        count++;
-                                        if (DEBUG) {
-                                            plugin.getLogger().info("DEBUG: entity is on island. Number = " + count);
-                                        }
-                                        if (count >= Settings.entityLimits.get(ent.getType())) {
-                                            // No more allowed!
-                                            if (DEBUG) {
-                                                plugin.getLogger().info("DEBUG: no more allowed! >=" + count);
-                                            }
-                                            break checkLimits;
-                                        }
-                                    }
-                                }
-                            }
-                        }
+                int limit = Settings.entityLimits.get(ent.getType());
+                int count = plugin.getEntityIndex().count(island, ent.getWorld(), ent.getType(), limit);
+                if (DEBUG) {
+                    plugin.getLogger().info("DEBUG: " + ent.getType() + " on island. Number = " + count);
+                }
+                if (count >= limit) {
+                    // No more allowed!
+                    if (DEBUG) {
+                        plugin.getLogger().info("DEBUG: no more allowed! >=" + count);
                     }
+                    break checkLimits;
                 }
             }
             // Okay to spawn, but tag it
@@ -204,7 +204,7 @@ public class IslandGuard implements Listener {
             return true;
         }
         Island island = plugin.getGrid().getProtectedIslandAt(location);
-        if (island != null && (island.getIgsFlag(flag) || island.getMembers().contains(player.getUniqueId()))) {
+        if (island != null && (island.getIgsFlag(flag) || island.getMemberSet().contains(player.getUniqueId()))) {
             return true;
         }
         if (island == null && Settings.defaultWorldSettings.get(flag)) {
@@ -304,7 +304,7 @@ public class IslandGuard implements Listener {
         if (islandTo != null && (islandTo.getOwner() != null || islandTo.isSpawn())) {
             // Lock check
             if (islandTo.isLocked() || plugin.getPlayers().isBanned(islandTo.getOwner(), player.getUniqueId())) {
-                if (!islandTo.getMembers().contains(player.getUniqueId()) && !player.isOp()
+                if (!islandTo.getMemberSet().contains(player.getUniqueId()) && !player.isOp()
                         && !VaultHelper.checkPerm(player, Settings.PERMPREFIX + "mod.bypassprotect")
                         && !VaultHelper.checkPerm(player, Settings.PERMPREFIX + "mod.bypasslock")) {
                     Util.sendMessage(player, ChatColor.RED + plugin.myLocale(player.getUniqueId()).lockIslandLocked);
@@ -444,7 +444,7 @@ public class IslandGuard implements Listener {
         if (islandTo != null && (islandTo.getOwner() != null || islandTo.isSpawn())) {
             // Lock check
             if (islandTo.isLocked() || plugin.getPlayers().isBanned(islandTo.getOwner(), e.getPlayer().getUniqueId())) {
-                if (!islandTo.getMembers().contains(e.getPlayer().getUniqueId()) && !e.getPlayer().isOp()
+                if (!islandTo.getMemberSet().contains(e.getPlayer().getUniqueId()) && !e.getPlayer().isOp()
                         && !VaultHelper.checkPerm(e.getPlayer(), Settings.PERMPREFIX + "mod.bypassprotect")
                         && !VaultHelper.checkPerm(e.getPlayer(), Settings.PERMPREFIX + "mod.bypasslock")) {
                     Util.sendMessage(e.getPlayer(), ChatColor.RED + plugin.myLocale(e.getPlayer().getUniqueId()).lockIslandLocked);
@@ -960,7 +960,7 @@ public class IslandGuard implements Listener {
         // ITEM FRAME ENTITY DAMAGE or Armor Stand
         // Check to see if it's an item frame
         if (e.getEntity() instanceof ItemFrame || e.getEntityType().toString().endsWith("STAND")) {
-            if (island != null && (island.getIgsFlag(SettingsFlag.BREAK_BLOCKS) || island.getMembers()
+            if (island != null && (island.getIgsFlag(SettingsFlag.BREAK_BLOCKS) || island.getMemberSet()
                     .contains(attacker.getUniqueId()))) {
                 return;
             }
@@ -978,7 +978,7 @@ public class IslandGuard implements Listener {
         // Monsters being hurt
         if (e.getEntity() instanceof Monster || e.getEntity() instanceof Slime || e.getEntity() instanceof Squid) {
             // Normal island check
-            if (island != null && island.getMembers().contains(attacker.getUniqueId())) {
+            if (island != null && island.getMemberSet().contains(attacker.getUniqueId())) {
                 // Members always allowed
                 return;
             }
@@ -1012,7 +1012,7 @@ public class IslandGuard implements Listener {
         // Mobs being hurt
         if (e.getEntity() instanceof Animals || e.getEntity() instanceof IronGolem || e.getEntity() instanceof Snowman
                 || e.getEntity() instanceof Villager) {
-            if (island != null && (island.getIgsFlag(SettingsFlag.HURT_MOBS) || island.getMembers()
+            if (island != null && (island.getIgsFlag(SettingsFlag.HURT_MOBS) || island.getMemberSet()
                     .contains(attacker.getUniqueId()))) {
                 return;
             }
@@ -1378,7 +1378,7 @@ public class IslandGuard implements Listener {
             }
             Island island = plugin.getGrid().getProtectedIslandAt(e.getBlockClicked().getLocation());
             if (island != null) {
-                if (island.getMembers().contains(e.getPlayer().getUniqueId())) {
+                if (island.getMemberSet().contains(e.getPlayer().getUniqueId())) {
                     return;
                 }
                 if (island.getIgsFlag(SettingsFlag.COLLECT_LAVA) && e.getItemStack().getType().equals(Material.LAVA_BUCKET)) {
@@ -2115,7 +2115,7 @@ public class IslandGuard implements Listener {
                     return;
                 }
                 if (island != null) {
-                    if ((!island.getIgsFlag(SettingsFlag.HURT_MOBS) && !island.getMembers().contains(p.getUniqueId()))) {
+                    if ((!island.getIgsFlag(SettingsFlag.HURT_MOBS) && !island.getMemberSet().contains(p.getUniqueId()))) {
                         Util.sendMessage(e.getPlayer(), ChatColor.RED + plugin.myLocale(e.getPlayer().getUniqueId()).islandProtected);
                         e.setCancelled(true);
                         e.getHook().remove();
@@ -2132,7 +2132,7 @@ public class IslandGuard implements Listener {
                     return;
                 }
                 if (island != null) {
-                    if ((!island.getIgsFlag(SettingsFlag.HURT_MONSTERS) && !island.getMembers().contains(p.getUniqueId()))) {
+                    if ((!island.getIgsFlag(SettingsFlag.HURT_MONSTERS) && !island.getMemberSet().contains(p.getUniqueId()))) {
                         Util.sendMessage(e.getPlayer(), ChatColor.RED + plugin.myLocale(e.getPlayer().getUniqueId()).islandProtected);
                         e.setCancelled(true);
                         e.getHook().remove();
@@ -2217,7 +2217,7 @@ public class IslandGuard implements Listener {
                         plugin.getLogger().info("DEBUG: island is not spawn");
                         plugin.getLogger().info("DEBUG: villager trading is " + island.getIgsFlag(SettingsFlag.VILLAGER_TRADING));
                     }
-                    if ((!island.getIgsFlag(SettingsFlag.VILLAGER_TRADING) && !island.getMembers().contains(p.getUniqueId()))) {
+                    if ((!island.getIgsFlag(SettingsFlag.VILLAGER_TRADING) && !island.getMemberSet().contains(p.getUniqueId()))) {
                         Util.sendMessage(e.getPlayer(), ChatColor.RED + plugin.myLocale(e.getPlayer().getUniqueId()).islandProtected);
                         e.setCancelled(true);
                         return;
@@ -2239,7 +2239,7 @@ public class IslandGuard implements Listener {
                     return;
                 }
                 if (island != null) {
-                    if ((!island.getIgsFlag(SettingsFlag.HURT_MOBS) && !island.getMembers().contains(p.getUniqueId()))) {
+                    if ((!island.getIgsFlag(SettingsFlag.HURT_MOBS) && !island.getMemberSet().contains(p.getUniqueId()))) {
                         Util.sendMessage(e.getPlayer(), ChatColor.RED + plugin.myLocale(e.getPlayer().getUniqueId()).islandProtected);
                         e.setCancelled(true);
                         return;
@@ -2258,7 +2258,7 @@ public class IslandGuard implements Listener {
                             return;
                         }
                         if (island != null) {
-                            if ((!island.getIgsFlag(SettingsFlag.BREEDING) && !island.getMembers().contains(p.getUniqueId()))) {
+                            if ((!island.getIgsFlag(SettingsFlag.BREEDING) && !island.getMemberSet().contains(p.getUniqueId()))) {
                                 Util.sendMessage(e.getPlayer(),
                                         ChatColor.RED + plugin.myLocale(e.getPlayer().getUniqueId()).islandProtected);
                                 e.setCancelled(true);
@@ -2274,7 +2274,7 @@ public class IslandGuard implements Listener {
                     if (!Settings.allowCreeperGriefing) {
                         for (ItemStack item : Util.getPlayerInHandItems(e.getPlayer())) {
                             if (item != null && item.getType().equals(Material.FLINT_AND_STEEL)) {
-                                if (!island.getMembers().contains(e.getPlayer().getUniqueId())) {
+                                if (!island.getMemberSet().contains(e.getPlayer().getUniqueId())) {
                                     // Visitor
                                     litCreeper.add(e.getRightClicked().getUniqueId());
                                     if (DEBUG) {
@@ -2669,7 +2669,7 @@ public class IslandGuard implements Listener {
             if (island == null || island.isSpawn()) {
                 return;
             }
-            for (UUID member : island.getMembers()) {
+            for (UUID member : island.getMemberSet()) {
                 if (Bukkit.getPlayer(member) != null) {
                     return;
                 }
@@ -2763,7 +2763,7 @@ public class IslandGuard implements Listener {
                 // Monsters being hurt
                 if (entity instanceof Monster || entity instanceof Slime || entity instanceof Squid) {
                     // Normal island check
-                    if (island != null && island.getMembers().contains(attacker.getUniqueId())) {
+                    if (island != null && island.getMemberSet().contains(attacker.getUniqueId())) {
                         // Members always allowed
                         continue;
                     }
@@ -2779,7 +2779,7 @@ public class IslandGuard implements Listener {
                 // Mobs being hurt
                 if (entity instanceof Animals || entity instanceof IronGolem || entity instanceof Snowman
                         || entity instanceof Villager) {
-                    if (island != null && (island.getIgsFlag(SettingsFlag.HURT_MOBS) || island.getMembers()
+                    if (island != null && (island.getIgsFlag(SettingsFlag.HURT_MOBS) || island.getMemberSet()
                             .contains(attacker.getUniqueId()))) {
                         continue;
                     }
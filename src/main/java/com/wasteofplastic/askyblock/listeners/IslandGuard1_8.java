@@ -91,7 +91,7 @@ public class IslandGuard1_8 implements Listener {
             return true;
         }
         Island island = plugin.getGrid().getProtectedIslandAt(location);
-        if (island != null && (island.getIgsFlag(flag) || island.getMembers().contains(player.getUniqueId()))) {
+        if (island != null && (island.getIgsFlag(flag) || island.getMemberSet().contains(player.getUniqueId()))) {
             return true;
         }
         if (island == null && Settings.defaultWorldSettings.get(flag)) {
@@ -166,7 +166,7 @@ public class IslandGuard1_8 implements Listener {
                 if (island == null && Settings.defaultWorldSettings.get(SettingsFlag.PLACE_BLOCKS)) {
                     return;
                 }
-                if (island != null && (island.getMembers().contains(p.getUniqueId()) || island.getIgsFlag(
+                if (island != null && (island.getMemberSet().contains(p.getUniqueId()) || island.getIgsFlag(
                         SettingsFlag.PLACE_BLOCKS))) {
                     //plugin.getLogger().info("1.8 " + "DEBUG: armor stand place check");
                     if (Settings.limitedBlocks.containsKey("ARMOR_STAND") && Settings.limitedBlocks.get("ARMOR_STAND") > -1) {
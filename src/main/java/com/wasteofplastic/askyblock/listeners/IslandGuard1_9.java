@@ -127,7 +127,7 @@ public class IslandGuard1_9 implements Listener {
                 return;
             }
             if (island != null) {
-                if (island.getMembers().contains(player.getUniqueId()) || island.getIgsFlag(SettingsFlag.PLACE_BLOCKS)) {
+                if (island.getMemberSet().contains(player.getUniqueId()) || island.getIgsFlag(SettingsFlag.PLACE_BLOCKS)) {
                     return;
                 }
             }
@@ -164,7 +164,7 @@ public class IslandGuard1_9 implements Listener {
                 return;
             }
             if (island != null) {
-                if (island.getMembers().contains(e.getPlayer().getUniqueId()) || island.getIgsFlag(SettingsFlag.BREAK_BLOCKS)) {
+                if (island.getMemberSet().contains(e.getPlayer().getUniqueId()) || island.getIgsFlag(SettingsFlag.BREAK_BLOCKS)) {
                     return;
                 }
             }
@@ -197,7 +197,7 @@ public class IslandGuard1_9 implements Listener {
                 if (island == null && Settings.defaultWorldSettings.get(SettingsFlag.PLACE_BLOCKS)) {
                     return;
                 }
-                if (island != null && (island.getMembers().contains(p.getUniqueId()) || island.getIgsFlag(
+                if (island != null && (island.getMemberSet().contains(p.getUniqueId()) || island.getIgsFlag(
                         SettingsFlag.PLACE_BLOCKS))) {
                     //plugin.getLogger().info("1.9 " +"DEBUG: armor stand place check");
                     if (Settings.limitedBlocks.containsKey("END_CRYSTAL") && Settings.limitedBlocks.get("END_CRYSTAL") > -1) {
@@ -551,7 +551,7 @@ public class IslandGuard1_9 implements Listener {
             // Monsters being hurt
             if (e.getEntity() instanceof Monster || e.getEntity() instanceof Slime || e.getEntity() instanceof Squid) {
                 // Normal island check
-                if (island != null && island.getMembers().contains(attacker)) {
+                if (island != null && island.getMemberSet().contains(attacker)) {
                     // Members always allowed
                     return;
                 }
@@ -566,7 +566,7 @@ public class IslandGuard1_9 implements Listener {
             // Mobs being hurt
             if (e.getEntity() instanceof Animals || e.getEntity() instanceof IronGolem || e.getEntity() instanceof Snowman
                     || e.getEntity() instanceof Villager) {
-                if (island != null && (island.getIgsFlag(SettingsFlag.HURT_MOBS) || island.getMembers().contains(attacker))) {
+                if (island != null && (island.getIgsFlag(SettingsFlag.HURT_MOBS) || island.getMemberSet().contains(attacker))) {
                     return;
                 }
                 if (DEBUG) {
@@ -622,7 +622,7 @@ public class IslandGuard1_9 implements Listener {
             return true;
         }
         Island island = plugin.getGrid().getProtectedIslandAt(location);
-        if (island != null && (island.getIgsFlag(flag) || island.getMembers().contains(player.getUniqueId()))) {
+        if (island != null && (island.getIgsFlag(flag) || island.getMemberSet().contains(player.getUniqueId()))) {
             return true;
         }
         if (island == null && Settings.defaultWorldSettings.get(flag)) {
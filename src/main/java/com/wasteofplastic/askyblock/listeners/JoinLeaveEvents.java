@@ -34,7 +34,9 @@ import org.bukkit.entity.Player;
 import org.bukkit.event.EventHandler;
 import org.bukkit.event.EventPriority;
 import org.bukkit.event.Listener;
+import org.bukkit.event.player.AsyncPlayerPreLoginEvent;
 import org.bukkit.event.player.PlayerJoinEvent;
+import org.bukkit.event.player.PlayerLoginEvent;
 import org.bukkit.event.player.PlayerQuitEvent;
 import org.bukkit.permissions.PermissionAttachmentInfo;
 
@@ -55,6 +57,35 @@ public class JoinLeaveEvents implements Listener {
         this.players = plugin.getPlayers();
     }
 
+    /**
+     * Loads the player's data on the login thread so that joining does not wait for the disk
+     *
+     * @param event
+     */
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerPreLogin(final AsyncPlayerPreLoginEvent event) {
+        if (plugin.getPlayers() == null) {
+            return;
+        }
+        if (event.getLoginResult() == AsyncPlayerPreLoginEvent.Result.ALLOWED) {
+            plugin.getPlayers().preLoadPlayer(event.getUniqueId());
+        } else {
+            plugin.getPlayers().dropPreLoadedPlayer(event.getUniqueId());
+        }
+    }
+
+    /**
+     * Forgets the data loaded at login if the login is denied later on, e.g., by a ban or the whitelist
+     *
+     * @param event
+     */
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerLogin(final PlayerLoginEvent event) {
+        if (event.getResult() != PlayerLoginEvent.Result.ALLOWED && plugin.getPlayers() != null) {
+            plugin.getPlayers().dropPreLoadedPlayer(event.getPlayer().getUniqueId());
+        }
+    }
+
     /**
      * @param event
      */
@@ -374,7 +405,7 @@ public class JoinLeaveEvents implements Listener {
             if (DEBUG) {
                 plugin.getLogger().info("DEBUG: Current island is locked, or player is banned");
             }
-            if (!currentIsland.getMembers().contains(playerUUID) && !player.isOp()
+            if (!currentIsland.getMemberSet().contains(playerUUID) && !player.isOp()
                     && !VaultHelper.checkPerm(player, Settings.PERMPREFIX + "mod.bypassprotect")) {
                 if (DEBUG) {
                     plugin.getLogger().info("DEBUG: No bypass - teleporting");
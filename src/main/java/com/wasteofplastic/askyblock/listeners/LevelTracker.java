@@ -0,0 +1,285 @@
+package com.wasteofplastic.askyblock.listeners;
+
+import com.wasteofplastic.askyblock.ASkyBlock;
+import com.wasteofplastic.askyblock.BlockValueTable;
+import com.wasteofplastic.askyblock.Island;
+import com.wasteofplastic.askyblock.Settings;
+
+import org.bukkit.Location;
+import org.bukkit.Material;
+import org.bukkit.block.Block;
+import org.bukkit.block.BlockState;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.block.BlockBreakEvent;
+import org.bukkit.event.block.BlockBurnEvent;
+import org.bukkit.event.block.BlockExplodeEvent;
+import org.bukkit.event.block.BlockFadeEvent;
+import org.bukkit.event.block.BlockFormEvent;
+import org.bukkit.event.block.BlockFromToEvent;
+import org.bukkit.event.block.BlockGrowEvent;
+import org.bukkit.event.block.BlockMultiPlaceEvent;
+import org.bukkit.event.block.BlockPistonEvent;
+import org.bukkit.event.block.BlockPistonExtendEvent;
+import org.bukkit.event.block.BlockPistonRetractEvent;
+import org.bukkit.event.block.BlockPlaceEvent;
+import org.bukkit.event.block.BlockSpreadEvent;
+import org.bukkit.event.block.LeavesDecayEvent;
+import org.bukkit.event.entity.EntityChangeBlockEvent;
+import org.bukkit.event.entity.EntityExplodeEvent;
+import org.bukkit.event.player.PlayerBucketEmptyEvent;
+import org.bukkit.event.player.PlayerBucketFillEvent;
+import org.bukkit.event.world.StructureGrowEvent;
+
+import java.util.List;
+
+/**
+ * Keeps the running level tally of islands up to date as blocks change.
+ * Anything that is missed, e.g., blocks changed by other plugins, is corrected by the next full level calculation.
+ *
+ * @author tastybento
+ */
+public class LevelTracker implements Listener {
+
+    private static final boolean DEBUG = false;
+    private final ASkyBlock plugin;
+
+    public LevelTracker(ASkyBlock plugin) {
+        this.plugin = plugin;
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onBlockPlace(final BlockPlaceEvent e) {
+        if (!Settings.levelIncremental) {
+            return;
+        }
+        if (e instanceof BlockMultiPlaceEvent) {
+            for (BlockState replaced : ((BlockMultiPlaceEvent) e).getReplacedBlockStates()) {
+                remove(replaced);
+                add(replaced.getBlock());
+            }
+            return;
+        }
+        remove(e.getBlockReplacedState());
+        add(e.getBlockPlaced());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onBlockBreak(final BlockBreakEvent e) {
+        if (Settings.levelIncremental) {
+            remove(e.getBlock());
+        }
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onBlockBurn(final BlockBurnEvent e) {
+        if (Settings.levelIncremental) {
+            remove(e.getBlock());
+        }
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onLeavesDecay(final LeavesDecayEvent e) {
+        if (Settings.levelIncremental) {
+            remove(e.getBlock());
+        }
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onEntityExplode(final EntityExplodeEvent e) {
+        if (Settings.levelIncremental) {
+            removeAll(e.blockList());
+        }
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onBlockExplode(final BlockExplodeEvent e) {
+        if (Settings.levelIncremental) {
+            removeAll(e.blockList());
+        }
+    }
+
+    /**
+     * Pushed blocks keep their value but may move off the island or in or out of the water
+     */
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onPistonExtend(final BlockPistonExtendEvent e) {
+        if (Settings.levelIncremental) {
+            move(e.getBlocks(), e);
+        }
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onPistonRetract(final BlockPistonRetractEvent e) {
+        if (Settings.levelIncremental) {
+            move(e.getBlocks(), e);
+        }
+    }
+
+    /**
+     * Liquids flowing into a block. The flowing block's data is not known yet, so the generic value is used.
+     */
+    @SuppressWarnings("deprecation")
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onFlow(final BlockFromToEvent e) {
+        if (!Settings.levelIncremental || !e.getBlock().isLiquid()) {
+            return;
+        }
+        Material flow = e.getBlock().getType();
+        if (flow == Material.STATIONARY_WATER) {
+            flow = Material.WATER;
+        } else if (flow == Material.STATIONARY_LAVA) {
+            flow = Material.LAVA;
+        }
+        if (e.getToBlock().getType() == flow) {
+            return;
+        }
+        remove(e.getToBlock());
+        change(e.getToBlock().getLocation(), flow.getId(), 0, 1);
+    }
+
+    /**
+     * Covers cobblestone and obsidian made by lava and water, as well as snow and ice
+     */
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onBlockForm(final BlockFormEvent e) {
+        if (Settings.levelIncremental) {
+            remove(e.getBlock());
+            add(e.getNewState());
+        }
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onBlockFade(final BlockFadeEvent e) {
+        if (Settings.levelIncremental) {
+            remove(e.getBlock());
+            add(e.getNewState());
+        }
+    }
+
+    /**
+     * Crops and cactus growing, and melons and pumpkins appearing
+     */
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onBlockGrow(final BlockGrowEvent e) {
+        if (Settings.levelIncremental) {
+            remove(e.getBlock());
+            add(e.getNewState());
+        }
+    }
+
+    /**
+     * Grass, mycelium, mushrooms, vines and fire spreading
+     */
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onBlockSpread(final BlockSpreadEvent e) {
+        if (Settings.levelIncremental) {
+            remove(e.getBlock());
+            add(e.getNewState());
+        }
+    }
+
+    /**
+     * Trees and huge mushrooms growing
+     */
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onStructureGrow(final StructureGrowEvent e) {
+        if (Settings.levelIncremental) {
+            for (BlockState state : e.getBlocks()) {
+                remove(state.getBlock());
+                add(state);
+            }
+        }
+    }
+
+    @SuppressWarnings("deprecation")
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onBucketEmpty(final PlayerBucketEmptyEvent e) {
+        if (!Settings.levelIncremental) {
+            return;
+        }
+        Material liquid;
+        if (e.getBucket() == Material.WATER_BUCKET) {
+            liquid = Material.STATIONARY_WATER;
+        } else if (e.getBucket() == Material.LAVA_BUCKET) {
+            liquid = Material.STATIONARY_LAVA;
+        } else {
+            return;
+        }
+        Block b = e.getBlockClicked().getRelative(e.getBlockFace());
+        remove(b);
+        change(b.getLocation(), liquid.getId(), 0, 1);
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onBucketFill(final PlayerBucketFillEvent e) {
+        if (Settings.levelIncremental && e.getBlockClicked().isLiquid()) {
+            remove(e.getBlockClicked());
+        }
+    }
+
+    /**
+     * Sand and gravel falling and landing, endermen, sheep eating grass and other mobs changing blocks
+     */
+    @SuppressWarnings("deprecation")
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onEntityChangeBlock(final EntityChangeBlockEvent e) {
+        if (Settings.levelIncremental) {
+            remove(e.getBlock());
+            change(e.getBlock().getLocation(), e.getTo().getId(), e.getData(), 1);
+        }
+    }
+
+    @SuppressWarnings("deprecation")
+    private void move(List<Block> blocks, BlockPistonEvent e) {
+        for (Block b : blocks) {
+            remove(b);
+            change(b.getRelative(e.getDirection()).getLocation(), b.getTypeId(), b.getData(), 1);
+        }
+    }
+
+    private void removeAll(List<Block> blocks) {
+        for (Block b : blocks) {
+            remove(b);
+        }
+    }
+
+    @SuppressWarnings("deprecation")
+    private void add(Block b) {
+        change(b.getLocation(), b.getTypeId(), b.getData(), 1);
+    }
+
+    @SuppressWarnings("deprecation")
+    private void add(BlockState b) {
+        change(b.getLocation(), b.getTypeId(), b.getRawData(), 1);
+    }
+
+    @SuppressWarnings("deprecation")
+    private void remove(Block b) {
+        change(b.getLocation(), b.getTypeId(), b.getData(), -1);
+    }
+
+    @SuppressWarnings("deprecation")
+    private void remove(BlockState b) {
+        change(b.getLocation(), b.getTypeId(), b.getRawData(), -1);
+    }
+
+    /**
+     * Adds or removes a block from the tally of the island it is on
+     */
+    private void change(Location location, int typeId, int data, int delta) {
+        if (typeId == 0 || plugin.getGrid() == null) {
+            return;
+        }
+        Island island = plugin.getGrid().getProtectedIslandAt(location);
+        if (island == null || island.getLevelTally() == null || !location.getWorld().equals(island.getCenter().getWorld())) {
+            return;
+        }
+        if (DEBUG) {
+            plugin.getLogger().info("DEBUG: level tally " + (delta > 0 ? "+" : "") + delta + " " + typeId + ":" + data);
+        }
+        island.getLevelTally().add(BlockValueTable.getKey(typeId, data), location.getBlockY(), delta);
+        island.setDirty(true);
+    }
+}
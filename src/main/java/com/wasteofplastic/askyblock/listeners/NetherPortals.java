@@ -161,7 +161,7 @@ public class NetherPortals implements Listener {
         // Check if player has permission
         Island island = plugin.getGrid().getIslandAt(currentLocation);
         if ((island == null && !Settings.defaultWorldSettings.get(SettingsFlag.PORTAL))
-                || (island != null && !(island.getIgsFlag(SettingsFlag.PORTAL) || island.getMembers()
+                || (island != null && !(island.getIgsFlag(SettingsFlag.PORTAL) || island.getMemberSet()
                 .contains(event.getPlayer().getUniqueId())))) {
             // Portals use is not allowed
             if (!event.getPlayer().isOp() && !VaultHelper.checkPerm(event.getPlayer(), Settings.PERMPREFIX + "mod.bypassprotect")) {
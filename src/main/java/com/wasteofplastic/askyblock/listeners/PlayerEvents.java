@@ -222,7 +222,7 @@ public class PlayerEvents implements Listener {
      * @param island
      */
     private void processPerms(final Player player, final Island island) {
-        if (island != null && island.getMembers().contains(player.getUniqueId())) {
+        if (island != null && island.getMemberSet().contains(player.getUniqueId())) {
             if (DEBUG) {
                 plugin.getLogger().info("DEBUG: player on island " + player.getName());
             }
@@ -513,7 +513,7 @@ public class PlayerEvents implements Listener {
             // If the player is not a visitor then they die and lose everything -
             // sorry :-(
             Island island = plugin.getGrid().getProtectedIslandAt(e.getEntity().getLocation());
-            if (island != null && !island.getMembers().contains(e.getEntity().getUniqueId())) {
+            if (island != null && !island.getMemberSet().contains(e.getEntity().getUniqueId())) {
                 // They are a visitor
                 InventorySave.getInstance().savePlayerInventory(e.getEntity());
                 e.getDrops().clear();
@@ -715,7 +715,7 @@ public class PlayerEvents implements Listener {
                     if (DEBUG) {
                         plugin.getLogger().info("DEBUG: islandTo is regular island");
                     }
-                    if (islandTo.getIgsFlag(SettingsFlag.ENDER_PEARL) || islandTo.getMembers().contains(e.getPlayer().getUniqueId())) {
+                    if (islandTo.getIgsFlag(SettingsFlag.ENDER_PEARL) || islandTo.getMemberSet().contains(e.getPlayer().getUniqueId())) {
                         if (DEBUG) {
                             plugin.getLogger().info("DEBUG: enderpearl allowed");
                         }
@@ -745,7 +745,7 @@ public class PlayerEvents implements Listener {
                             cancel = true;
                         }
                     } else {
-                        if (!islandTo.getIgsFlag(SettingsFlag.CHORUS_FRUIT) && !islandTo.getMembers()
+                        if (!islandTo.getIgsFlag(SettingsFlag.CHORUS_FRUIT) && !islandTo.getMemberSet()
                                 .contains(e.getPlayer().getUniqueId())) {
                             cancel = true;
                         }
@@ -755,7 +755,7 @@ public class PlayerEvents implements Listener {
                             cancel = true;
                         }
                     } else {
-                        if (!islandFrom.getIgsFlag(SettingsFlag.CHORUS_FRUIT) && !islandFrom.getMembers()
+                        if (!islandFrom.getIgsFlag(SettingsFlag.CHORUS_FRUIT) && !islandFrom.getMemberSet()
                                 .contains(e.getPlayer().getUniqueId())) {
                             cancel = true;
                         }
@@ -900,7 +900,7 @@ public class PlayerEvents implements Listener {
                 }
             }
             // Remove temp perms
-            if (!islandTo.getMembers().contains(e.getPlayer().getUniqueId())) {
+            if (!islandTo.getMemberSet().contains(e.getPlayer().getUniqueId())) {
                 removeTempPerms(e.getPlayer(), islandFrom, islandTo);
             }
             // Fire exit event
@@ -2,6 +2,7 @@ package com.wasteofplastic.askyblock.nms;
 
 import com.wasteofplastic.org.jnbt.Tag;
 
+import org.bukkit.Chunk;
 import org.bukkit.Material;
 import org.bukkit.block.Block;
 import org.bukkit.entity.EntityType;
@@ -15,6 +16,23 @@ public interface NMSAbstraction {
      */
     void setBlockSuperFast(Block block, int blockId, byte data, boolean applyPhysics);
 
+    /**
+     * Sets many blocks in one 16x16x16 section of a chunk without physics. Call {@link #finishChunk(Chunk)}
+     * when all the sections of the chunk have been set.
+     *
+     * @param chunk - the chunk
+     * @param sectionY - the section, i.e., y / 16
+     * @param positions - position of each block in the section: y &lt;&lt; 8 | z &lt;&lt; 4 | x
+     * @param combinedIds - blockId + (data &lt;&lt; 12) of each block
+     * @param count - number of blocks
+     */
+    void setBlocks(Chunk chunk, int sectionY, short[] positions, int[] combinedIds, int count);
+
+    /**
+     * Works out the light of a chunk after {@link #setBlocks} and sends it to players again
+     */
+    void finishChunk(Chunk chunk);
+
     ItemStack setBook(Tag item);
 
     /**
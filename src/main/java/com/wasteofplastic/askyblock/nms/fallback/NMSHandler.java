@@ -6,6 +6,7 @@ import com.wasteofplastic.org.jnbt.StringTag;
 import com.wasteofplastic.org.jnbt.Tag;
 
 import org.bukkit.Bukkit;
+import org.bukkit.Chunk;
 import org.bukkit.Material;
 import org.bukkit.block.Block;
 import org.bukkit.entity.EntityType;
@@ -30,6 +31,21 @@ public class NMSHandler implements NMSAbstraction {
         b.setTypeIdAndData(blockId, data, applyPhysics);
     }
 
+    @SuppressWarnings("deprecation")
+    @Override
+    public void setBlocks(Chunk chunk, int sectionY, short[] positions, int[] combinedIds, int count) {
+        for (int i = 0; i < count; i++) {
+            int pos = positions[i];
+            chunk.getBlock(pos & 15, (sectionY << 4) + ((pos >> 8) & 15), (pos >> 4) & 15)
+                    .setTypeIdAndData(combinedIds[i] & 4095, (byte) (combinedIds[i] >> 12), false);
+        }
+    }
+
+    @Override
+    public void finishChunk(Chunk chunk) {
+        // Blocks were set one by one, so there is nothing left to do
+    }
+
     @Override
     public ItemStack setBook(Tag item) {
         Bukkit.getLogger().warning("Written books in schematics not supported with this version of server");
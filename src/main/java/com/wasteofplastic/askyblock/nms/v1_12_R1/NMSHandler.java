@@ -7,7 +7,9 @@ import com.wasteofplastic.org.jnbt.StringTag;
 import com.wasteofplastic.org.jnbt.Tag;
 
 import net.minecraft.server.v1_12_R1.BlockPosition;
+import net.minecraft.server.v1_12_R1.ChunkSection;
 import net.minecraft.server.v1_12_R1.IBlockData;
+import net.minecraft.server.v1_12_R1.ITileEntity;
 import net.minecraft.server.v1_12_R1.NBTTagCompound;
 import net.minecraft.server.v1_12_R1.NBTTagList;
 import net.minecraft.server.v1_12_R1.NBTTagString;
@@ -17,6 +19,7 @@ import org.bukkit.Bukkit;
 import org.bukkit.Location;
 import org.bukkit.Material;
 import org.bukkit.block.Block;
+import org.bukkit.craftbukkit.v1_12_R1.CraftChunk;
 import org.bukkit.craftbukkit.v1_12_R1.CraftWorld;
 import org.bukkit.craftbukkit.v1_12_R1.inventory.CraftItemStack;
 import org.bukkit.entity.EntityType;
@@ -24,13 +27,19 @@ import org.bukkit.inventory.ItemStack;
 import org.bukkit.inventory.meta.ItemMeta;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 public class NMSHandler implements NMSAbstraction {
 
     private static HashMap<EntityType, String> bToMConversion;
+    // Ids of blocks that give off light
+    private static final Set<Integer> LIGHT_SOURCES = new HashSet<>(Arrays.asList(10, 11, 50, 51, 62, 74, 76, 89, 90, 91, 94, 117, 119,
+            120, 124, 130, 138, 169, 198, 213));
 
     static {
         bToMConversion = new HashMap<EntityType, String>();
@@ -53,6 +62,36 @@ public class NMSHandler implements NMSAbstraction {
         chunk.a(bp, ibd);
     }
 
+    @Override
+    public void setBlocks(org.bukkit.Chunk chunk, int sectionY, short[] positions, int[] combinedIds, int count) {
+        net.minecraft.server.v1_12_R1.Chunk nmsChunk = ((CraftChunk) chunk).getHandle();
+        int baseX = chunk.getX() << 4;
+        int baseY = sectionY << 4;
+        int baseZ = chunk.getZ() << 4;
+        for (int i = 0; i < count; i++) {
+            int pos = positions[i];
+            int x = pos & 15;
+            int y = (pos >> 8) & 15;
+            int z = (pos >> 4) & 15;
+            IBlockData ibd = net.minecraft.server.v1_12_R1.Block.getByCombinedId(combinedIds[i]);
+            ChunkSection section = nmsChunk.getSections()[sectionY];
+            if (section == null || ibd.getBlock() instanceof ITileEntity || section.getType(x, y, z).getBlock() instanceof ITileEntity
+                    || LIGHT_SOURCES.contains(combinedIds[i] & 4095)) {
+                // Let the chunk make the section, tile entities and block light
+                nmsChunk.a(new BlockPosition(baseX + x, baseY + y, baseZ + z), ibd);
+            } else {
+                section.setType(x, y, z, ibd);
+            }
+        }
+    }
+
+    @Override
+    public void finishChunk(org.bukkit.Chunk chunk) {
+        // Height map and sky light
+        ((CraftChunk) chunk).getHandle().initLighting();
+        chunk.getWorld().refreshChunk(chunk.getX(), chunk.getZ());
+    }
+
     @Override
     public ItemStack setBook(Tag item) {
         ItemStack chestItem = new ItemStack(Material.WRITTEN_BOOK);
@@ -603,6 +603,35 @@ public class IslandBlock {
         }
     }
 
+    /**
+     * @return true if the block is just a type and data, with no sign text, contents or other tile entity
+     */
+    public boolean isPlain() {
+        return signText == null && banner == null && skull == null && pot == null && spawnerBlockType == null
+                && chestContents.isEmpty();
+    }
+
+    /**
+     * @return x position in the schematic
+     */
+    public int getX() {
+        return x;
+    }
+
+    /**
+     * @return y position in the schematic
+     */
+    public int getY() {
+        return y;
+    }
+
+    /**
+     * @return z position in the schematic
+     */
+    public int getZ() {
+        return z;
+    }
+
     /**
      * @return Vector for where this block is in the schematic
      */
@@ -72,12 +72,14 @@ import org.bukkit.material.DirectionalContainer;
 import org.bukkit.util.BlockVector;
 import org.bukkit.util.Vector;
 
+import java.io.ByteArrayInputStream;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
 import java.math.BigDecimal;
 import java.math.RoundingMode;
+import java.nio.file.Files;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
@@ -130,6 +132,12 @@ public class Schematic {
     private Map<Byte, BlockFace> facingList = new HashMap<Byte, BlockFace>();
     private Map<Byte, Rotation> rotationList = new HashMap<Byte, Rotation>();
     private List<IslandBlock> islandBlocks;
+    // What the paster is given, worked out from islandBlocks on the first paste
+    // Blocks without tile entities as cells (y * width * length + z * width + x) and combined ids
+    private int[] plainCells;
+    private int[] plainIds;
+    // Blocks with tile entities, or every block if physics is used
+    private List<IslandBlock> specialBlocks;
     //private boolean pasteAir;
     private int durability;
     private int levelHandicap;
@@ -285,23 +293,31 @@ public class Schematic {
 	WEtoME.put("PIGZOMBIE", EntityType.PIG_ZOMBIE);
          */
         this.file = file;
+        File cacheFile = SchematicCache.getFile(plugin, file);
+        byte[] hash;
+        Vector origin = new Vector(0, 0, 0);
+        ListTag entities;
+        ListTag tileEntities;
         // Try to load the file
         try {
-            FileInputStream stream = new FileInputStream(file);
-            // InputStream is = new DataInputStream(new
-            // GZIPInputStream(stream));
-            NBTInputStream nbtStream = new NBTInputStream(stream);
+            byte[] contents = Files.readAllBytes(file.toPath());
+            // Use the compiled schematic if the file has not changed since it was compiled
+            hash = SchematicCache.hash(contents);
+            SchematicCache cache = SchematicCache.load(cacheFile, hash);
+            if (cache != null) {
+                loadCache(cache);
+                return;
+            }
+            NBTInputStream nbtStream = new NBTInputStream(new ByteArrayInputStream(contents));
 
             CompoundTag schematicTag = (CompoundTag) nbtStream.readTag();
             nbtStream.close();
-            stream.close();
             if (!schematicTag.getName().equals("Schematic")) {
                 throw new IllegalArgumentException("Tag \"Schematic\" does not exist or is not first");
             }
 
             Map<String, Tag> schematic = schematicTag.getValue();
 
-            Vector origin = new Vector(0, 0, 0);
             try {
                 int originX = getChildTag(schematic, "WEOriginX", IntTag.class).getValue();
                 int originY = getChildTag(schematic, "WEOriginY", IntTag.class).getValue();
@@ -357,209 +373,10 @@ public class Schematic {
                     }
                 }
             }
-            // Entities
-            List<Tag> entities = getChildTag(schematic, "Entities", ListTag.class).getValue();
-            for (Tag tag : entities) {
-                if (!(tag instanceof CompoundTag)) {
-                    continue;
-                }
-
-                CompoundTag t = (CompoundTag) tag;
-                //Bukkit.getLogger().info("**************************************");
-                EntityObject ent = new EntityObject();
-                for (Map.Entry<String, Tag> entry : t.getValue().entrySet()) {
-                    //Bukkit.getLogger().info("DEBUG " + entry.getKey() + ">>>>" + entry.getValue());
-                    //Bukkit.getLogger().info("++++++++++++++++++++++++++++++++++++++++++++++++++");
-                    if (entry.getKey().equals("id")) {
-                        String id = ((StringTag) entry.getValue()).getValue().toUpperCase();
-                        //Bukkit.getLogger().info("DEBUG: ID is '" + id + "'");
-                        // The mob type might be prefixed with "Minecraft:"
-                        if (id.startsWith("MINECRAFT:")) {
-                            id = id.substring(10);
-                        }
-                        if (IslandBlock.WEtoME.containsKey(id)) {
-                            //Bukkit.getLogger().info("DEBUG: id found");
-                            ent.setType(IslandBlock.WEtoME.get(id));
-                        } else if (!id.equalsIgnoreCase("ITEM")) {
-                            for (EntityType type : EntityType.values()) {
-                                if (type.toString().equals(id)) {
-                                    ent.setType(type);
-                                    break;
-                                }
-                            }
-                        }
-                    }
-
-                    if (entry.getKey().equals("Pos")) {
-                        //Bukkit.getLogger().info("DEBUG Pos fond");
-                        if (entry.getValue() instanceof ListTag) {
-                            //Bukkit.getLogger().info("DEBUG coord found");
-                            List<Tag> pos = new ArrayList<Tag>();
-                            pos = ((ListTag) entry.getValue()).getValue();
-                            //Bukkit.getLogger().info("DEBUG pos: " + pos);
-                            if (pos.size() == 3) {
-                                double x = (double) pos.get(0).getValue() - origin.getX();
-                                double y = (double) pos.get(1).getValue() - origin.getY();
-                                double z = (double) pos.get(2).getValue() - origin.getZ();
-                                ent.setLocation(new BlockVector(x, y, z));
-                            } else {
-                                ent.setLocation(new BlockVector(0, 0, 0));
-                            }
-                        }
-                    } else if (entry.getKey().equals("Motion")) {
-                        //Bukkit.getLogger().info("DEBUG Pos fond");
-                        if (entry.getValue() instanceof ListTag) {
-                            //Bukkit.getLogger().info("DEBUG coord found");
-                            List<Tag> pos = new ArrayList<Tag>();
-                            pos = ((ListTag) entry.getValue()).getValue();
-                            //Bukkit.getLogger().info("DEBUG pos: " + pos);
-                            if (pos.size() == 3) {
-                                ent.setMotion(new Vector((double) pos.get(0).getValue(), (double) pos.get(1).getValue()
-                                        , (double) pos.get(2).getValue()));
-                            } else {
-                                ent.setMotion(new Vector(0, 0, 0));
-                            }
-                        }
-                    } else if (entry.getKey().equals("Rotation")) {
-                        //Bukkit.getLogger().info("DEBUG Pos fond");
-                        if (entry.getValue() instanceof ListTag) {
-                            //Bukkit.getLogger().info("DEBUG coord found");
-                            List<Tag> pos = new ArrayList<Tag>();
-                            pos = ((ListTag) entry.getValue()).getValue();
-                            //Bukkit.getLogger().info("DEBUG pos: " + pos);
-                            if (pos.size() == 2) {
-                                ent.setYaw((float) pos.get(0).getValue());
-                                ent.setPitch((float) pos.get(1).getValue());
-                            } else {
-                                ent.setYaw(0F);
-                                ent.setPitch(0F);
-                            }
-                        }
-                    } else if (entry.getKey().equals("Color")) {
-                        if (entry.getValue() instanceof ByteTag) {
-                            ent.setColor(((ByteTag) entry.getValue()).getValue());
-                        }
-                    } else if (entry.getKey().equals("Sheared")) {
-                        if (entry.getValue() instanceof ByteTag) {
-                            if (((ByteTag) entry.getValue()).getValue() != (byte) 0) {
-                                ent.setSheared(true);
-                            } else {
-                                ent.setSheared(false);
-                            }
-                        }
-                    } else if (entry.getKey().equals("RabbitType")) {
-                        if (entry.getValue() instanceof IntTag) {
-                            ent.setRabbitType(((IntTag) entry.getValue()).getValue());
-                        }
-                    } else if (entry.getKey().equals("Profession")) {
-                        if (entry.getValue() instanceof IntTag) {
-                            ent.setProfession(((IntTag) entry.getValue()).getValue());
-                        }
-                    } else if (entry.getKey().equals("CarryingChest")) {
-                        if (entry.getValue() instanceof ByteTag) {
-                            ent.setCarryingChest(((ByteTag) entry.getValue()).getValue());
-                        }
-                    } else if (entry.getKey().equals("OwnerUUID")) {
-                        ent.setOwned(true);
-                    } else if (entry.getKey().equals("CollarColor")) {
-                        if (entry.getValue() instanceof ByteTag) {
-                            ent.setCollarColor(((ByteTag) entry.getValue()).getValue());
-                        }
-                    } else if (entry.getKey().equals("Facing")) {
-                        if (entry.getValue() instanceof ByteTag) {
-                            ent.setFacing(((ByteTag) entry.getValue()).getValue());
-                        }
-                    } else if (entry.getKey().equals("Motive")) {
-                        if (entry.getValue() instanceof StringTag) {
-                            ent.setMotive(((StringTag) entry.getValue()).getValue());
-                        }
-                    } else if (entry.getKey().equals("ItemDropChance")) {
-                        if (entry.getValue() instanceof FloatTag) {
-                            ent.setItemDropChance(((FloatTag) entry.getValue()).getValue());
-                        }
-                    } else if (entry.getKey().equals("ItemRotation")) {
-                        if (entry.getValue() instanceof ByteTag) {
-                            ent.setItemRotation(((ByteTag) entry.getValue()).getValue());
-                        }
-                    } else if (entry.getKey().equals("Item")) {
-                        if (entry.getValue() instanceof CompoundTag) {
-                            CompoundTag itemTag = (CompoundTag) entry.getValue();
-                            for (Map.Entry<String, Tag> itemEntry : itemTag.getValue().entrySet()) {
-                                if (itemEntry.getKey().equals("Count")) {
-                                    if (itemEntry.getValue() instanceof ByteTag) {
-                                        ent.setCount(((ByteTag) itemEntry.getValue()).getValue());
-                                    }
-                                } else if (itemEntry.getKey().equals("Damage")) {
-                                    if (itemEntry.getValue() instanceof ShortTag) {
-                                        ent.setDamage(((ShortTag) itemEntry.getValue()).getValue());
-                                    }
-                                } else if (itemEntry.getKey().equals("id")) {
-                                    if (itemEntry.getValue() instanceof StringTag) {
-                                        ent.setId(((StringTag) itemEntry.getValue()).getValue());
-                                    }
-                                }
-                            }
-                        }
-                    } else if (entry.getKey().equals("TileX")) {
-                        if (entry.getValue() instanceof IntTag) {
-                            ent.setTileX((double) ((IntTag) entry.getValue()).getValue() - origin.getX());
-                        }
-                    } else if (entry.getKey().equals("TileY")) {
-                        if (entry.getValue() instanceof IntTag) {
-                            ent.setTileY((double) ((IntTag) entry.getValue()).getValue() - origin.getY());
-                        }
-                    } else if (entry.getKey().equals("TileZ")) {
-                        if (entry.getValue() instanceof IntTag) {
-                            ent.setTileZ((double) ((IntTag) entry.getValue()).getValue() - origin.getZ());
-                        }
-                    }
-                }
-
-                if (ent.getType() != null) {
-                    //Bukkit.getLogger().info("DEBUG: adding " + ent.getType().toString() + " at " + ent.getLocation().toString());
-                    //entitiesMap.put(new BlockVector(x,y,z), mobType);
-                    entitiesList.add(ent);
-                }
-            }
-            //Bukkit.getLogger().info("DEBUG: size of entities = " + entities.size());
-            // Tile entities
-            List<Tag> tileEntities = getChildTag(schematic, "TileEntities", ListTag.class).getValue();
-            // Map<BlockVector, Map<String, Tag>> tileEntitiesMap = new
-            // HashMap<BlockVector, Map<String, Tag>>();
-
-            for (Tag tag : tileEntities) {
-                if (!(tag instanceof CompoundTag)) {
-                    continue;
-                }
-                CompoundTag t = (CompoundTag) tag;
-
-                int x = 0;
-                int y = 0;
-                int z = 0;
-
-                Map<String, Tag> values = new HashMap<String, Tag>();
-
-                for (Map.Entry<String, Tag> entry : t.getValue().entrySet()) {
-                    if (entry.getKey().equals("x")) {
-                        if (entry.getValue() instanceof IntTag) {
-                            x = ((IntTag) entry.getValue()).getValue();
-                        }
-                    } else if (entry.getKey().equals("y")) {
-                        if (entry.getValue() instanceof IntTag) {
-                            y = ((IntTag) entry.getValue()).getValue();
-                        }
-                    } else if (entry.getKey().equals("z")) {
-                        if (entry.getValue() instanceof IntTag) {
-                            z = ((IntTag) entry.getValue()).getValue();
-                        }
-                    }
-
-                    values.put(entry.getKey(), entry.getValue());
-                }
-
-                BlockVector vec = new BlockVector(x, y, z);
-                tileEntitiesMap.put(vec, values);
-            }
+            entities = getChildTag(schematic, "Entities", ListTag.class);
+            loadEntities(entities.getValue(), origin);
+            tileEntities = getChildTag(schematic, "TileEntities", ListTag.class);
+            loadTileEntities(tileEntities.getValue());
         } catch (IOException e) {
             Bukkit.getLogger().severe("Could not load island schematic! Error in file.");
             e.printStackTrace();
@@ -638,6 +455,251 @@ public class Schematic {
 
         // Preload the blocks
         prePasteSchematic(blocks, data);
+        new SchematicCache(width, length, height, bedrock, chest, welcomeSign, topGrass, islandBlocks, origin, entities, tileEntities)
+                .save(cacheFile, hash);
+    }
+
+    /**
+     * Sets up this schematic from its compiled form
+     *
+     * @param cache
+     */
+    private void loadCache(SchematicCache cache) {
+        width = cache.width;
+        length = cache.length;
+        height = cache.height;
+        bedrock = cache.bedrock;
+        chest = cache.chest;
+        welcomeSign = cache.welcomeSign;
+        topGrass = cache.topGrass;
+        loadEntities(cache.entities.getValue(), cache.origin);
+        loadTileEntities(cache.tileEntities.getValue());
+        islandBlocks = new ArrayList<IslandBlock>(cache.cells.length);
+        int area = width * length;
+        for (int i = 0; i < cache.cells.length; i++) {
+            int cell = cache.cells[i];
+            IslandBlock block = new IslandBlock(cell % width, cell / area, (cell / width) % length);
+            block.setBlock(cache.ids[i] & 0xFFFF, (byte) (cache.ids[i] >> 16));
+            if (!tileEntitiesMap.isEmpty()) {
+                Map<String, Tag> values = tileEntitiesMap.get(new BlockVector(block.getX(), block.getY(), block.getZ()));
+                if (values != null) {
+                    setTileEntity(block, values);
+                }
+            }
+            islandBlocks.add(block);
+        }
+    }
+
+    /**
+     * Reads the entities in the schematic
+     *
+     * @param entities
+     * @param origin - WorldEdit origin of the schematic
+     */
+    private void loadEntities(List<Tag> entities, Vector origin) {
+        for (Tag tag : entities) {
+            if (!(tag instanceof CompoundTag)) {
+                continue;
+            }
+
+            CompoundTag t = (CompoundTag) tag;
+            //Bukkit.getLogger().info("**************************************");
+            EntityObject ent = new EntityObject();
+            for (Map.Entry<String, Tag> entry : t.getValue().entrySet()) {
+                //Bukkit.getLogger().info("DEBUG " + entry.getKey() + ">>>>" + entry.getValue());
+                //Bukkit.getLogger().info("++++++++++++++++++++++++++++++++++++++++++++++++++");
+                if (entry.getKey().equals("id")) {
+                    String id = ((StringTag) entry.getValue()).getValue().toUpperCase();
+                    //Bukkit.getLogger().info("DEBUG: ID is '" + id + "'");
+                    // The mob type might be prefixed with "Minecraft:"
+                    if (id.startsWith("MINECRAFT:")) {
+                        id = id.substring(10);
+                    }
+                    if (IslandBlock.WEtoME.containsKey(id)) {
+                        //Bukkit.getLogger().info("DEBUG: id found");
+                        ent.setType(IslandBlock.WEtoME.get(id));
+                    } else if (!id.equalsIgnoreCase("ITEM")) {
+                        for (EntityType type : EntityType.values()) {
+                            if (type.toString().equals(id)) {
+                                ent.setType(type);
+                                break;
+                            }
+                        }
+                    }
+                }
+
+                if (entry.getKey().equals("Pos")) {
+                    //Bukkit.getLogger().info("DEBUG Pos fond");
+                    if (entry.getValue() instanceof ListTag) {
+                        //Bukkit.getLogger().info("DEBUG coord found");
+                        List<Tag> pos = new ArrayList<Tag>();
+                        pos = ((ListTag) entry.getValue()).getValue();
+                        //Bukkit.getLogger().info("DEBUG pos: " + pos);
+                        if (pos.size() == 3) {
+                            double x = (double) pos.get(0).getValue() - origin.getX();
+                            double y = (double) pos.get(1).getValue() - origin.getY();
+                            double z = (double) pos.get(2).getValue() - origin.getZ();
+                            ent.setLocation(new BlockVector(x, y, z));
+                        } else {
+                            ent.setLocation(new BlockVector(0, 0, 0));
+                        }
+                    }
+                } else if (entry.getKey().equals("Motion")) {
+                    //Bukkit.getLogger().info("DEBUG Pos fond");
+                    if (entry.getValue() instanceof ListTag) {
+                        //Bukkit.getLogger().info("DEBUG coord found");
+                        List<Tag> pos = new ArrayList<Tag>();
+                        pos = ((ListTag) entry.getValue()).getValue();
+                        //Bukkit.getLogger().info("DEBUG pos: " + pos);
+                        if (pos.size() == 3) {
+                            ent.setMotion(new Vector((double) pos.get(0).getValue(), (double) pos.get(1).getValue()
+                                    , (double) pos.get(2).getValue()));
+                        } else {
+                            ent.setMotion(new Vector(0, 0, 0));
+                        }
+                    }
+                } else if (entry.getKey().equals("Rotation")) {
+                    //Bukkit.getLogger().info("DEBUG Pos fond");
+                    if (entry.getValue() instanceof ListTag) {
+                        //Bukkit.getLogger().info("DEBUG coord found");
+                        List<Tag> pos = new ArrayList<Tag>();
+                        pos = ((ListTag) entry.getValue()).getValue();
+                        //Bukkit.getLogger().info("DEBUG pos: " + pos);
+                        if (pos.size() == 2) {
+                            ent.setYaw((float) pos.get(0).getValue());
+                            ent.setPitch((float) pos.get(1).getValue());
+                        } else {
+                            ent.setYaw(0F);
+                            ent.setPitch(0F);
+                        }
+                    }
+                } else if (entry.getKey().equals("Color")) {
+                    if (entry.getValue() instanceof ByteTag) {
+                        ent.setColor(((ByteTag) entry.getValue()).getValue());
+                    }
+                } else if (entry.getKey().equals("Sheared")) {
+                    if (entry.getValue() instanceof ByteTag) {
+                        if (((ByteTag) entry.getValue()).getValue() != (byte) 0) {
+                            ent.setSheared(true);
+                        } else {
+                            ent.setSheared(false);
+                        }
+                    }
+                } else if (entry.getKey().equals("RabbitType")) {
+                    if (entry.getValue() instanceof IntTag) {
+                        ent.setRabbitType(((IntTag) entry.getValue()).getValue());
+                    }
+                } else if (entry.getKey().equals("Profession")) {
+                    if (entry.getValue() instanceof IntTag) {
+                        ent.setProfession(((IntTag) entry.getValue()).getValue());
+                    }
+                } else if (entry.getKey().equals("CarryingChest")) {
+                    if (entry.getValue() instanceof ByteTag) {
+                        ent.setCarryingChest(((ByteTag) entry.getValue()).getValue());
+                    }
+                } else if (entry.getKey().equals("OwnerUUID")) {
+                    ent.setOwned(true);
+                } else if (entry.getKey().equals("CollarColor")) {
+                    if (entry.getValue() instanceof ByteTag) {
+                        ent.setCollarColor(((ByteTag) entry.getValue()).getValue());
+                    }
+                } else if (entry.getKey().equals("Facing")) {
+                    if (entry.getValue() instanceof ByteTag) {
+                        ent.setFacing(((ByteTag) entry.getValue()).getValue());
+                    }
+                } else if (entry.getKey().equals("Motive")) {
+                    if (entry.getValue() instanceof StringTag) {
+                        ent.setMotive(((StringTag) entry.getValue()).getValue());
+                    }
+                } else if (entry.getKey().equals("ItemDropChance")) {
+                    if (entry.getValue() instanceof FloatTag) {
+                        ent.setItemDropChance(((FloatTag) entry.getValue()).getValue());
+                    }
+                } else if (entry.getKey().equals("ItemRotation")) {
+                    if (entry.getValue() instanceof ByteTag) {
+                        ent.setItemRotation(((ByteTag) entry.getValue()).getValue());
+                    }
+                } else if (entry.getKey().equals("Item")) {
+                    if (entry.getValue() instanceof CompoundTag) {
+                        CompoundTag itemTag = (CompoundTag) entry.getValue();
+                        for (Map.Entry<String, Tag> itemEntry : itemTag.getValue().entrySet()) {
+                            if (itemEntry.getKey().equals("Count")) {
+                                if (itemEntry.getValue() instanceof ByteTag) {
+                                    ent.setCount(((ByteTag) itemEntry.getValue()).getValue());
+                                }
+                            } else if (itemEntry.getKey().equals("Damage")) {
+                                if (itemEntry.getValue() instanceof ShortTag) {
+                                    ent.setDamage(((ShortTag) itemEntry.getValue()).getValue());
+                                }
+                            } else if (itemEntry.getKey().equals("id")) {
+                                if (itemEntry.getValue() instanceof StringTag) {
+                                    ent.setId(((StringTag) itemEntry.getValue()).getValue());
+                                }
+                            }
+                        }
+                    }
+                } else if (entry.getKey().equals("TileX")) {
+                    if (entry.getValue() instanceof IntTag) {
+                        ent.setTileX((double) ((IntTag) entry.getValue()).getValue() - origin.getX());
+                    }
+                } else if (entry.getKey().equals("TileY")) {
+                    if (entry.getValue() instanceof IntTag) {
+                        ent.setTileY((double) ((IntTag) entry.getValue()).getValue() - origin.getY());
+                    }
+                } else if (entry.getKey().equals("TileZ")) {
+                    if (entry.getValue() instanceof IntTag) {
+                        ent.setTileZ((double) ((IntTag) entry.getValue()).getValue() - origin.getZ());
+                    }
+                }
+            }
+
+            if (ent.getType() != null) {
+                //Bukkit.getLogger().info("DEBUG: adding " + ent.getType().toString() + " at " + ent.getLocation().toString());
+                //entitiesMap.put(new BlockVector(x,y,z), mobType);
+                entitiesList.add(ent);
+            }
+        }
+    }
+
+    /**
+     * Reads the tile entities in the schematic
+     *
+     * @param tileEntities
+     */
+    private void loadTileEntities(List<Tag> tileEntities) {
+        for (Tag tag : tileEntities) {
+            if (!(tag instanceof CompoundTag)) {
+                continue;
+            }
+            CompoundTag t = (CompoundTag) tag;
+
+            int x = 0;
+            int y = 0;
+            int z = 0;
+
+            Map<String, Tag> values = new HashMap<String, Tag>();
+
+            for (Map.Entry<String, Tag> entry : t.getValue().entrySet()) {
+                if (entry.getKey().equals("x")) {
+                    if (entry.getValue() instanceof IntTag) {
+                        x = ((IntTag) entry.getValue()).getValue();
+                    }
+                } else if (entry.getKey().equals("y")) {
+                    if (entry.getValue() instanceof IntTag) {
+                        y = ((IntTag) entry.getValue()).getValue();
+                    }
+                } else if (entry.getKey().equals("z")) {
+                    if (entry.getValue() instanceof IntTag) {
+                        z = ((IntTag) entry.getValue()).getValue();
+                    }
+                }
+
+                values.put(entry.getKey(), entry.getValue());
+            }
+
+            BlockVector vec = new BlockVector(x, y, z);
+            tileEntitiesMap.put(vec, values);
+        }
     }
 
     /**
@@ -671,6 +733,7 @@ public class Schematic {
         //plugin.getLogger().info("DEBUG: prepaste ");
         islandBlocks = new ArrayList<IslandBlock>();
         Map<BlockVector, Map<String, Tag>> tileEntitiesMap = this.getTileEntitiesMap();
+        boolean onePointSeven = Bukkit.getServer().getVersion().contains("(MC: 1.7");
         // Start with non-attached blocks
         //plugin.getLogger().info("DEBUG: attachable size = " + attachable.size());
         //plugin.getLogger().info("DEBUG: torch = " + Material.TORCH.getId());
@@ -688,45 +751,19 @@ public class Schematic {
                     if (h >= 0 && h < 255 && (blocks[index] != 0 || h < Settings.seaHeight)) {
                         // Only bother if the schematic blocks are within the range that y can be
                         //plugin.getLogger().info("DEBUG: height " + (count++) + ":" +h);
-                        IslandBlock block = new IslandBlock(x, y, z);
                         if (!attachable.contains((int) blocks[index]) || blocks[index] == 179) {
-                            if (Bukkit.getServer().getVersion().contains("(MC: 1.7") && blocks[index] == 179) {
+                            IslandBlock block = new IslandBlock(x, y, z);
+                            if (onePointSeven && blocks[index] == 179) {
                                 // Red sandstone - use red sand instead
                                 block.setBlock(12, (byte) 1);
                             } else {
                                 block.setBlock(blocks[index], data[index]);
                             }
                             // Tile Entities
-                            if (tileEntitiesMap.containsKey(new BlockVector(x, y, z))) {
-                                //plugin.getLogger().info("DEBUG: tile entity = " + Material.getMaterial(block.getTypeId()).name());
-                                if (plugin.isOnePointEight()) {
-                                    if (block.getTypeId() == Material.STANDING_BANNER.getId()) {
-                                        block.setBanner(tileEntitiesMap.get(new BlockVector(x, y, z)));
-                                    } else if (block.getTypeId() == Material.SKULL.getId()) {
-                                        block.setSkull(tileEntitiesMap.get(new BlockVector(x, y, z)), block.getData());
-                                    } else if (block.getTypeId() == Material.FLOWER_POT.getId()) {
-                                        block.setFlowerPot(tileEntitiesMap.get(new BlockVector(x, y, z)));
-                                    }
-                                }
-                                // Monster spawner blocks
-                                if (block.getTypeId() == Material.MOB_SPAWNER.getId()) {
-                                    block.setSpawnerType(tileEntitiesMap.get(new BlockVector(x, y, z)));
-                                } else if ((block.getTypeId() == Material.SIGN_POST.getId())) {
-                                    block.setSign(tileEntitiesMap.get(new BlockVector(x, y, z)));
-                                } else if (block.getTypeId() == Material.CHEST.getId()
-                                        || block.getTypeId() == Material.TRAPPED_CHEST.getId()
-                                        || block.getTypeId() == Material.FURNACE.getId()
-                                        || block.getTypeId() == Material.BURNING_FURNACE.getId()
-                                        || block.getTypeId() == Material.DISPENSER.getId()
-                                        || block.getTypeId() == Material.HOPPER.getId()
-                                        || block.getTypeId() == Material.DROPPER.getId()
-                                        || block.getTypeId() == Material.STORAGE_MINECART.getId()
-                                        || block.getTypeId() == Material.HOPPER_MINECART.getId()
-                                        || block.getTypeId() == Material.POWERED_MINECART.getId()
-                                        || Material.getMaterial(block.getTypeId()).name().contains("SHULKER_BOX")
-                                        ) {
-                                    //plugin.getLogger().info("DEBUG: Block is inventory holder, id = " + Material.getMaterial(block.getTypeId()));
-                                    block.setChest(nms, tileEntitiesMap.get(new BlockVector(x, y, z)));
+                            if (!tileEntitiesMap.isEmpty()) {
+                                Map<String, Tag> values = tileEntitiesMap.get(new BlockVector(x, y, z));
+                                if (values != null) {
+                                    setTileEntity(block, values);
                                 }
                             }
                             islandBlocks.add(block);
@@ -744,19 +781,14 @@ public class Schematic {
                     int h = Settings.islandHeight + y - bedrock.getBlockY();
                     if (h >= 0 && h < 255) {
                         int index = y * width * length + z * width + x;
-                        IslandBlock block = new IslandBlock(x, y, z);
                         if (attachable.contains((int) blocks[index])) {
+                            IslandBlock block = new IslandBlock(x, y, z);
                             block.setBlock(blocks[index], data[index]);
                             // Tile Entities
-                            if (tileEntitiesMap.containsKey(new BlockVector(x, y, z))) {
-                                if (plugin.isOnePointEight()) {
-                                    if (block.getTypeId() == Material.WALL_BANNER.getId()) {
-                                        block.setBanner(tileEntitiesMap.get(new BlockVector(x, y, z)));
-                                    }
-                                }
-                                // Wall Sign
-                                if (block.getTypeId() == Material.WALL_SIGN.getId()) {
-                                    block.setSign(tileEntitiesMap.get(new BlockVector(x, y, z)));
+                            if (!tileEntitiesMap.isEmpty()) {
+                                Map<String, Tag> values = tileEntitiesMap.get(new BlockVector(x, y, z));
+                                if (values != null) {
+                                    setTileEntity(block, values);
                                 }
                             }
                             islandBlocks.add(block);
@@ -768,6 +800,46 @@ public class Schematic {
         //plugin.getLogger().info("DEBUG: islandBlocks size = " + islandBlocks.size());
     }
 
+    /**
+     * Sets up the sign text, chest contents and so on of a block from its tile entity
+     *
+     * @param block
+     * @param values - tile entity tags
+     */
+    @SuppressWarnings("deprecation")
+    private void setTileEntity(IslandBlock block, Map<String, Tag> values) {
+        //plugin.getLogger().info("DEBUG: tile entity = " + Material.getMaterial(block.getTypeId()).name());
+        if (plugin.isOnePointEight()) {
+            if (block.getTypeId() == Material.STANDING_BANNER.getId() || block.getTypeId() == Material.WALL_BANNER.getId()) {
+                block.setBanner(values);
+            } else if (block.getTypeId() == Material.SKULL.getId()) {
+                block.setSkull(values, block.getData());
+            } else if (block.getTypeId() == Material.FLOWER_POT.getId()) {
+                block.setFlowerPot(values);
+            }
+        }
+        // Monster spawner blocks
+        if (block.getTypeId() == Material.MOB_SPAWNER.getId()) {
+            block.setSpawnerType(values);
+        } else if (block.getTypeId() == Material.SIGN_POST.getId() || block.getTypeId() == Material.WALL_SIGN.getId()) {
+            block.setSign(values);
+        } else if (block.getTypeId() == Material.CHEST.getId()
+                || block.getTypeId() == Material.TRAPPED_CHEST.getId()
+                || block.getTypeId() == Material.FURNACE.getId()
+                || block.getTypeId() == Material.BURNING_FURNACE.getId()
+                || block.getTypeId() == Material.DISPENSER.getId()
+                || block.getTypeId() == Material.HOPPER.getId()
+                || block.getTypeId() == Material.DROPPER.getId()
+                || block.getTypeId() == Material.STORAGE_MINECART.getId()
+                || block.getTypeId() == Material.HOPPER_MINECART.getId()
+                || block.getTypeId() == Material.POWERED_MINECART.getId()
+                || Material.getMaterial(block.getTypeId()).name().contains("SHULKER_BOX")
+                ) {
+            //plugin.getLogger().info("DEBUG: Block is inventory holder, id = " + Material.getMaterial(block.getTypeId()));
+            block.setChest(nms, values);
+        }
+    }
+
     /**
      * @return the tileEntitiesMap
      */
@@ -968,6 +1040,7 @@ public class Schematic {
      */
     public void setUsePhysics(boolean usePhysics) {
         this.usePhysics = usePhysics;
+        plainCells = null;
     }
 
     /**
@@ -977,7 +1050,7 @@ public class Schematic {
      * @param player
      * @param partner
      */
-    public void pasteSchematic(final Location loc, final Player player, boolean teleport, final PasteReason reason) {
+    public void pasteSchematic(final Location loc, final Player player, final boolean teleport, final PasteReason reason) {
         // If this is not a file schematic, paste the default island
         if (this.file == null) {
             if (Settings.GAMETYPE == GameType.ACIDISLAND) {
@@ -988,16 +1061,68 @@ public class Schematic {
             }
             return;
         }
+        // The player is teleported once all the blocks are there
+        pasteBlocks(loc, player, () -> finishPaste(loc, player, teleport, reason));
+    }
+
+    /**
+     * Pastes the blocks and entities of a file schematic and fills the chest. Does nothing that needs the
+     * island owner, so it can be used to paste islands before anyone owns them. The blocks are pasted
+     * over several ticks if they take longer than the paste budget.
+     *
+     * @param loc
+     * @param player - owner of any tamed animals, or null
+     * @param done - run when everything is pasted, may be null
+     */
+    public void pasteBlocks(final Location loc, final Player player, final Runnable done) {
         World world = loc.getWorld();
-        Location blockLoc = new Location(world, loc.getX(), loc.getY(), loc.getZ());
+        final Location blockLoc = new Location(world, loc.getX(), loc.getY(), loc.getZ());
         //Location blockLoc = new Location(world, loc.getX(), Settings.island_level, loc.getZ());
         blockLoc.subtract(bedrock);
         //plugin.getLogger().info("DEBUG: blockloc = " + blockLoc);
         // Paste the island blocks
         //plugin.getLogger().info("DEBUG: islandBlock size (paste) = " + islandBlocks.size());
+        if (plainCells == null) {
+            splitBlocks();
+        }
+        plugin.getSchematicPaster().paste(blockLoc, width, length, plainCells, plainIds, specialBlocks, nms, usePhysics, biome, () -> {
+            pasteEntitiesAndChest(loc, blockLoc, player);
+            if (done != null) {
+                done.run();
+            }
+        });
+    }
+
+    /**
+     * Splits the blocks into plain blocks, which the paster sets a chunk section at a time, and blocks
+     * that need more than an id and data
+     */
+    private void splitBlocks() {
+        specialBlocks = new ArrayList<IslandBlock>();
+        int[] cells = new int[islandBlocks.size()];
+        int[] ids = new int[islandBlocks.size()];
+        int count = 0;
         for (IslandBlock b : islandBlocks) {
-            b.paste(nms, blockLoc, this.usePhysics, biome);
+            if (usePhysics || !b.isPlain()) {
+                specialBlocks.add(b);
+            } else {
+                cells[count] = b.getY() * width * length + b.getZ() * width + b.getX();
+                ids[count++] = b.getTypeId() + (b.getData() << 12);
+            }
         }
+        plainCells = Arrays.copyOf(cells, count);
+        plainIds = Arrays.copyOf(ids, count);
+    }
+
+    /**
+     * Pastes the entities and fills the chest after the blocks are pasted
+     *
+     * @param loc
+     * @param blockLoc - location of the schematic's 0,0,0
+     * @param player - owner of any tamed animals, or null
+     */
+    private void pasteEntitiesAndChest(final Location loc, final Location blockLoc, final Player player) {
+        World world = loc.getWorld();
         // PASTE ENTS
         //Bukkit.getLogger().info("Block loc = " + blockLoc);
         if (pasteEntities) {
@@ -1135,7 +1260,7 @@ public class Schematic {
                             rabbit.setAge(ent.getAge());
                         } else if (ent.getType() == EntityType.OCELOT) {
                             Ocelot cat = (Ocelot) spawned;
-                            if (ent.isOwned()) {
+                            if (ent.isOwned() && player != null) {
                                 cat.setTamed(true);
                                 cat.setOwner(player);
                             }
@@ -1145,7 +1270,7 @@ public class Schematic {
                             cat.setSitting(ent.isSitting());
                         } else if (ent.getType() == EntityType.WOLF) {
                             Wolf wolf = (Wolf) spawned;
-                            if (ent.isOwned()) {
+                            if (ent.isOwned() && player != null) {
                                 wolf.setTamed(true);
                                 wolf.setOwner(player);
                             }
@@ -1158,6 +1283,53 @@ public class Schematic {
                 }
             }
         }
+        if (chest != null) {
+            Vector ch = chest.clone().subtract(bedrock);
+            ch.add(loc.toVector());
+            // Place the chest - no need to use the safe spawn function because we
+            // know what this island looks like
+            Block blockToChange = ch.toLocation(world).getBlock();
+            // Bukkit.getLogger().info("Chest block = " + blockToChange);
+            // blockToChange.setType(Material.CHEST);
+            // Bukkit.getLogger().info("Chest item settings = " +
+            // Settings.chestItems[0]);
+            // Bukkit.getLogger().info("Chest item settings length = " +
+            // Settings.chestItems.length);
+            if (useDefaultChest) {
+                // Fill the chest
+                if (blockToChange.getType() == Material.CHEST) {
+                    final Chest islandChest = (Chest) blockToChange.getState();
+                    DoubleChest doubleChest = null;
+                    InventoryHolder iH = islandChest.getInventory().getHolder();
+                    if (iH instanceof DoubleChest) {
+                        //Bukkit.getLogger().info("DEBUG: double chest");
+                        doubleChest = (DoubleChest) iH;
+                    }
+                    if (doubleChest != null) {
+                        Inventory inventory = doubleChest.getInventory();
+                        inventory.clear();
+                        inventory.setContents(defaultChestItems);
+                    } else {
+                        Inventory inventory = islandChest.getInventory();
+                        inventory.clear();
+                        inventory.setContents(defaultChestItems);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Does the parts of pasting that need the island owner: fills in the welcome sign, teleports the
+     * player and spawns the companion. The blocks must already be pasted.
+     *
+     * @param loc
+     * @param player
+     * @param teleport - true to teleport the player to the island
+     * @param reason
+     */
+    public void finishPaste(final Location loc, final Player player, boolean teleport, final PasteReason reason) {
+        World world = loc.getWorld();
         // Find the grass spot
         final Location grass;
         if (topGrass != null) {
@@ -1204,42 +1376,8 @@ public class Schematic {
                 sign.update(true, false);
             }
         }
-        if (chest != null) {
-            Vector ch = chest.clone().subtract(bedrock);
-            ch.add(loc.toVector());
-            // Place the chest - no need to use the safe spawn function because we
-            // know what this island looks like
-            blockToChange = ch.toLocation(world).getBlock();
-            // Bukkit.getLogger().info("Chest block = " + blockToChange);
-            // blockToChange.setType(Material.CHEST);
-            // Bukkit.getLogger().info("Chest item settings = " +
-            // Settings.chestItems[0]);
-            // Bukkit.getLogger().info("Chest item settings length = " +
-            // Settings.chestItems.length);
-            if (useDefaultChest) {
-                // Fill the chest
-                if (blockToChange.getType() == Material.CHEST) {
-                    final Chest islandChest = (Chest) blockToChange.getState();
-                    DoubleChest doubleChest = null;
-                    InventoryHolder iH = islandChest.getInventory().getHolder();
-                    if (iH instanceof DoubleChest) {
-                        //Bukkit.getLogger().info("DEBUG: double chest");
-                        doubleChest = (DoubleChest) iH;
-                    }
-                    if (doubleChest != null) {
-                        Inventory inventory = doubleChest.getInventory();
-                        inventory.clear();
-                        inventory.setContents(defaultChestItems);
-                    } else {
-                        Inventory inventory = islandChest.getInventory();
-                        inventory.clear();
-                        inventory.setContents(defaultChestItems);
-                    }
-                }
-            }
-        }
-
-        if (teleport) {
+        // The player may have left while the island was pasted, and nothing can be scheduled while the plugin is disabled
+        if (teleport && player.isOnline() && plugin.isEnabled()) {
             plugin.getPlayers().setInTeleport(player.getUniqueId(), true);
             //player.setInvulnerable(true);
             // Check distance. If it's too close, warp to spawn to try to clear the client's cache
@@ -1654,6 +1792,7 @@ public class Schematic {
                     it.remove();
                 }
             }
+            plainCells = null;
         }
         //plugin.getLogger().info("DEBUG: islandBlocks after removing air blocks = " + islandBlocks.size());
     }
@@ -1783,6 +1922,7 @@ public class Schematic {
                 playerSpawn = islandBlock.getVector().subtract(bedrock).add(new Vector(0.5D, -1D, 0.5D));
                 // Set the block to air
                 islandBlock.setTypeId((short) 0);
+                plainCells = null;
                 return true;
             }
         }
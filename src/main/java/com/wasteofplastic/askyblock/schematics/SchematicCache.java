@@ -0,0 +1,254 @@
+package com.wasteofplastic.askyblock.schematics;
+
+import com.wasteofplastic.askyblock.ASkyBlock;
+import com.wasteofplastic.askyblock.Settings;
+import com.wasteofplastic.org.jnbt.CompoundTag;
+import com.wasteofplastic.org.jnbt.IntTag;
+import com.wasteofplastic.org.jnbt.ListTag;
+import com.wasteofplastic.org.jnbt.NBTInputStream;
+import com.wasteofplastic.org.jnbt.NBTOutputStream;
+import com.wasteofplastic.org.jnbt.Tag;
+import org.bukkit.Bukkit;
+import org.bukkit.util.Vector;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compiled form of a schematic file, saved in schematics/cache so the NBT does not have to be parsed
+ * again. Holds the blocks to paste in paste order as cell indexes into a palette of id and data pairs,
+ * plus the key blocks. Entities and tile entities are few, so they are kept as NBT.
+ * A cache file is only used if the schematic file hash, the island and sea heights and the server
+ * version it was made with all still match.
+ *
+ * @author tastybento
+ */
+class SchematicCache {
+
+    private static final int MAGIC = 0x41534243;
+    private static final int VERSION = 1;
+    final short width;
+    final short length;
+    final short height;
+    final Vector bedrock;
+    final Vector chest;
+    final Vector welcomeSign;
+    final Vector topGrass;
+    // Blocks in paste order as y * width * length + z * width + x
+    final int[] cells;
+    // Block id in the low 16 bits and data in the next 8
+    final int[] ids;
+    final Vector origin;
+    final ListTag entities;
+    final ListTag tileEntities;
+
+    SchematicCache(short width, short length, short height, Vector bedrock, Vector chest, Vector welcomeSign, Vector topGrass,
+                   List<IslandBlock> blocks, Vector origin, ListTag entities, ListTag tileEntities) {
+        this.width = width;
+        this.length = length;
+        this.height = height;
+        this.bedrock = bedrock;
+        this.chest = chest;
+        this.welcomeSign = welcomeSign;
+        this.topGrass = topGrass;
+        this.cells = new int[blocks.size()];
+        this.ids = new int[blocks.size()];
+        for (int i = 0; i < cells.length; i++) {
+            IslandBlock b = blocks.get(i);
+            cells[i] = b.getY() * width * length + b.getZ() * width + b.getX();
+            ids[i] = (b.getTypeId() & 0xFFFF) | (b.getData() & 0xFF) << 16;
+        }
+        this.origin = origin;
+        this.entities = entities;
+        this.tileEntities = tileEntities;
+    }
+
+    private SchematicCache(ByteBuffer buf) throws IOException {
+        width = buf.getShort();
+        length = buf.getShort();
+        height = buf.getShort();
+        bedrock = getVector(buf);
+        chest = getVector(buf);
+        welcomeSign = getVector(buf);
+        topGrass = getVector(buf);
+        int[] palette = new int[buf.getInt()];
+        for (int i = 0; i < palette.length; i++) {
+            palette[i] = buf.getInt();
+        }
+        cells = new int[buf.getInt()];
+        ids = new int[cells.length];
+        boolean wide = palette.length > 0xFFFF;
+        for (int i = 0; i < cells.length; i++) {
+            cells[i] = buf.getInt();
+            ids[i] = palette[wide ? buf.getInt() : buf.getShort() & 0xFFFF];
+        }
+        byte[] nbt = new byte[buf.getInt()];
+        buf.get(nbt);
+        NBTInputStream nbtStream = new NBTInputStream(new ByteArrayInputStream(nbt));
+        Map<String, Tag> tags = ((CompoundTag) nbtStream.readTag()).getValue();
+        nbtStream.close();
+        origin = new Vector(((IntTag) tags.get("WEOriginX")).getValue(), ((IntTag) tags.get("WEOriginY")).getValue(),
+                ((IntTag) tags.get("WEOriginZ")).getValue());
+        entities = (ListTag) tags.get("Entities");
+        tileEntities = (ListTag) tags.get("TileEntities");
+    }
+
+    /**
+     * @return the cache file for a schematic file
+     */
+    static File getFile(ASkyBlock plugin, File schematicFile) {
+        return new File(plugin.getDataFolder(), "schematics" + File.separator + "cache" + File.separator + schematicFile.getName() + ".bin");
+    }
+
+    /**
+     * @return SHA-1 hash of the schematic file contents
+     */
+    static byte[] hash(byte[] contents) {
+        try {
+            return MessageDigest.getInstance("SHA-1").digest(contents);
+        } catch (NoSuchAlgorithmException e) {
+            // Every Java platform has SHA-1
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Loads a cache file
+     *
+     * @param cacheFile
+     * @param hash - hash of the schematic file
+     * @return the compiled schematic, or null if there is no cache file or it is out of date
+     */
+    static SchematicCache load(File cacheFile, byte[] hash) {
+        if (!cacheFile.exists()) {
+            return null;
+        }
+        try {
+            ByteBuffer buf = ByteBuffer.wrap(Files.readAllBytes(cacheFile.toPath()));
+            if (buf.getInt() != MAGIC || buf.getInt() != VERSION) {
+                return null;
+            }
+            byte[] fileHash = new byte[buf.getShort()];
+            buf.get(fileHash);
+            if (!MessageDigest.isEqual(hash, fileHash) || buf.getInt() != Settings.islandHeight || buf.getInt() != Settings.seaHeight
+                    || (buf.get() != 0) != isOnePointSeven()) {
+                return null;
+            }
+            return new SchematicCache(buf);
+        } catch (IOException | BufferUnderflowException | ClassCastException | NullPointerException e) {
+            Bukkit.getLogger().warning("Could not read schematic cache " + cacheFile.getName() + " - it will be made again");
+            return null;
+        }
+    }
+
+    /**
+     * Saves the compiled schematic. Errors are only logged because the cache can always be made again.
+     *
+     * @param cacheFile
+     * @param hash - hash of the schematic file
+     */
+    void save(File cacheFile, byte[] hash) {
+        // Palette
+        Map<Integer, Integer> index = new HashMap<Integer, Integer>();
+        List<Integer> palette = new ArrayList<Integer>();
+        for (int id : ids) {
+            if (!index.containsKey(id)) {
+                index.put(id, palette.size());
+                palette.add(id);
+            }
+        }
+        boolean wide = palette.size() > 0xFFFF;
+        File tmp = new File(cacheFile.getPath() + ".tmp");
+        try {
+            cacheFile.getParentFile().mkdirs();
+            // Entities and tile entities
+            Map<String, Tag> tags = new HashMap<String, Tag>();
+            tags.put("WEOriginX", new IntTag("WEOriginX", origin.getBlockX()));
+            tags.put("WEOriginY", new IntTag("WEOriginY", origin.getBlockY()));
+            tags.put("WEOriginZ", new IntTag("WEOriginZ", origin.getBlockZ()));
+            tags.put("Entities", entities);
+            tags.put("TileEntities", tileEntities);
+            ByteArrayOutputStream nbt = new ByteArrayOutputStream();
+            NBTOutputStream nbtStream = new NBTOutputStream(nbt);
+            nbtStream.writeTag(new CompoundTag("Cache", tags));
+            nbtStream.close();
+
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)));
+            try {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeShort(hash.length);
+                out.write(hash);
+                out.writeInt(Settings.islandHeight);
+                out.writeInt(Settings.seaHeight);
+                out.writeBoolean(isOnePointSeven());
+                out.writeShort(width);
+                out.writeShort(length);
+                out.writeShort(height);
+                writeVector(out, bedrock);
+                writeVector(out, chest);
+                writeVector(out, welcomeSign);
+                writeVector(out, topGrass);
+                out.writeInt(palette.size());
+                for (int id : palette) {
+                    out.writeInt(id);
+                }
+                out.writeInt(cells.length);
+                for (int i = 0; i < cells.length; i++) {
+                    out.writeInt(cells[i]);
+                    if (wide) {
+                        out.writeInt(index.get(ids[i]));
+                    } else {
+                        out.writeShort(index.get(ids[i]));
+                    }
+                }
+                out.writeInt(nbt.size());
+                nbt.writeTo(out);
+            } finally {
+                out.close();
+            }
+            Files.move(tmp.toPath(), cacheFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            Bukkit.getLogger().warning("Could not save schematic cache " + cacheFile.getName() + ": " + e.getMessage());
+            tmp.delete();
+        }
+    }
+
+    /**
+     * Red sandstone is swapped for red sand and fewer blocks are attachable on 1.7, so the compiled blocks differ
+     */
+    private static boolean isOnePointSeven() {
+        return Bukkit.getServer().getVersion().contains("(MC: 1.7");
+    }
+
+    private static void writeVector(DataOutputStream out, Vector v) throws IOException {
+        out.writeBoolean(v != null);
+        if (v != null) {
+            out.writeInt(v.getBlockX());
+            out.writeInt(v.getBlockY());
+            out.writeInt(v.getBlockZ());
+        }
+    }
+
+    private static Vector getVector(ByteBuffer buf) {
+        if (buf.get() == 0) {
+            return null;
+        }
+        return new Vector(buf.getInt(), buf.getInt(), buf.getInt());
+    }
+}
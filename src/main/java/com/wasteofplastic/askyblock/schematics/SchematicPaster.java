@@ -0,0 +1,280 @@
+package com.wasteofplastic.askyblock.schematics;
+
+import com.wasteofplastic.askyblock.ASkyBlock;
+import com.wasteofplastic.askyblock.Settings;
+import com.wasteofplastic.askyblock.nms.NMSAbstraction;
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.block.Biome;
+import org.bukkit.scheduler.BukkitRunnable;
+import org.bukkit.scheduler.BukkitTask;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Pastes schematic blocks over several ticks, using at most the paste budget in each tick.
+ * Plain blocks come as primitive arrays. They are grouped by chunk section and set a whole section at
+ * a time through NMS. The biome is set once for each column. Blocks with signs, contents or other tile entities are pasted one by
+ * one afterwards. When a paste is done, its callback runs on the main thread.
+ *
+ * @author tastybento
+ */
+public class SchematicPaster {
+
+    private static final boolean DEBUG = false;
+    private final ASkyBlock plugin;
+    private final LinkedList<Job> jobs = new LinkedList<>();
+    private BukkitTask task;
+
+    public SchematicPaster(ASkyBlock plugin) {
+        this.plugin = plugin;
+    }
+
+    /**
+     * Pastes blocks. If the paste budget is 0 or the plugin is being disabled, everything is pasted now.
+     *
+     * @param blockLoc - location of the schematic's 0,0,0 in the world
+     * @param width - schematic width
+     * @param length - schematic length
+     * @param cells - plain blocks as y * width * length + z * width + x
+     * @param ids - combined id and data of each plain block
+     * @param special - other blocks in the order they should be pasted, after the plain blocks
+     * @param nms - NMS handler
+     * @param usePhysics - if true, the special blocks are pasted with physics
+     * @param biome - biome to set, or null
+     * @param done - run when all the blocks are pasted, may be null
+     */
+    public void paste(Location blockLoc, int width, int length, int[] cells, int[] ids, List<IslandBlock> special,
+                      NMSAbstraction nms, boolean usePhysics, Biome biome, Runnable done) {
+        Job job = new Job(blockLoc, width, length, cells, ids, special, nms, usePhysics, biome, done);
+        if (Settings.pasteBudget <= 0 || !plugin.isEnabled()) {
+            runJob(job, Long.MAX_VALUE);
+            job.finish();
+            return;
+        }
+        jobs.add(job);
+        if (task == null) {
+            task = new BukkitRunnable() {
+
+                @Override
+                public void run() {
+                    tick();
+                }
+            }.runTaskTimer(plugin, 0L, 1L);
+        }
+    }
+
+    /**
+     * @return number of pastes waiting to finish
+     */
+    public int size() {
+        return jobs.size();
+    }
+
+    /**
+     * Pastes everything waiting and runs the callbacks, so chests are filled and the island pool is saved.
+     * Called when the plugin is disabled.
+     */
+    public void drain() {
+        if (task != null) {
+            task.cancel();
+            task = null;
+        }
+        int count = jobs.size();
+        // Callbacks may add jobs of their own, e.g., the nether partner of a pool island
+        while (!jobs.isEmpty()) {
+            Job job = jobs.removeFirst();
+            runJob(job, Long.MAX_VALUE);
+            try {
+                job.finish();
+            } catch (Exception e) {
+                plugin.getLogger().severe("Could not finish a schematic paste: " + e.getMessage());
+            }
+        }
+        if (count > 0) {
+            plugin.getLogger().info("Finished pasting " + count + " schematics");
+        }
+    }
+
+    private void tick() {
+        long end = System.nanoTime() + Settings.pasteBudget * 1000000L;
+        while (!jobs.isEmpty() && System.nanoTime() < end) {
+            Job job = jobs.getFirst();
+            if (runJob(job, end)) {
+                jobs.removeFirst();
+                job.finish();
+            }
+        }
+        if (jobs.isEmpty()) {
+            task.cancel();
+            task = null;
+        }
+    }
+
+    /**
+     * Pastes until the job is done or the time is up
+     *
+     * @param end - System.nanoTime() to stop at
+     * @return true if the job is done
+     */
+    private boolean runJob(Job job, long end) {
+        long start = System.nanoTime();
+        // Stop cleanstone generation while pasting
+        boolean newIsland = plugin.isNewIsland();
+        plugin.setNewIsland(true);
+        try {
+            while (job.sections.hasNext()) {
+                job.sections.next().paste(job);
+                if (System.nanoTime() >= end) {
+                    return false;
+                }
+            }
+            while (job.special.hasNext()) {
+                job.special.next().paste(job.nms, job.blockLoc, job.usePhysics, job.biome);
+                if (System.nanoTime() >= end) {
+                    return false;
+                }
+            }
+            while (job.chunks.hasNext()) {
+                long key = job.chunks.next();
+                job.nms.finishChunk(job.world.getChunkAt((int) (key >> 32), (int) key));
+                if (System.nanoTime() >= end) {
+                    return false;
+                }
+            }
+        } finally {
+            plugin.setNewIsland(newIsland);
+            job.time += System.nanoTime() - start;
+        }
+        if (DEBUG) {
+            plugin.getLogger().info("DEBUG: pasted " + job.size + " blocks in " + job.time / 1000000 + " ms");
+        }
+        return true;
+    }
+
+    private static class Job {
+        private final World world;
+        private final Location blockLoc;
+        private final NMSAbstraction nms;
+        private final boolean usePhysics;
+        private final Biome biome;
+        private final Runnable done;
+        private final Iterator<Section> sections;
+        private final Iterator<IslandBlock> special;
+        // Keys of the chunks that have sections
+        private final Iterator<Long> chunks;
+        // Columns whose biome has been set
+        private final Set<Long> columns = new HashSet<>();
+        private final int size;
+        private long time;
+
+        private Job(Location blockLoc, int width, int length, int[] cells, int[] ids, List<IslandBlock> special,
+                    NMSAbstraction nms, boolean usePhysics, Biome biome, Runnable done) {
+            this.world = blockLoc.getWorld();
+            this.blockLoc = blockLoc;
+            this.nms = nms;
+            this.usePhysics = usePhysics;
+            this.biome = biome;
+            this.done = done;
+            this.size = cells.length + special.size();
+            // Chunk -> its sections
+            Map<Long, Section[]> grouped = new LinkedHashMap<>();
+            int baseX = blockLoc.getBlockX();
+            int baseY = blockLoc.getBlockY();
+            int baseZ = blockLoc.getBlockZ();
+            int area = width * length;
+            for (int i = 0; i < cells.length; i++) {
+                int x = baseX + cells[i] % width;
+                int y = baseY + cells[i] / area;
+                int z = baseZ + (cells[i] / width) % length;
+                if (y < 0 || y > 255) {
+                    continue;
+                }
+                long key = ((long) (x >> 4) << 32) | ((z >> 4) & 0xFFFFFFFFL);
+                Section[] column = grouped.get(key);
+                if (column == null) {
+                    column = new Section[16];
+                    grouped.put(key, column);
+                }
+                Section section = column[y >> 4];
+                if (section == null) {
+                    section = new Section(x >> 4, y >> 4, z >> 4);
+                    column[y >> 4] = section;
+                }
+                section.add((y & 15) << 8 | (z & 15) << 4 | (x & 15), ids[i]);
+            }
+            List<Section> sections = new ArrayList<>();
+            for (Section[] column : grouped.values()) {
+                for (Section section : column) {
+                    if (section != null) {
+                        sections.add(section);
+                    }
+                }
+            }
+            this.sections = sections.iterator();
+            this.special = special.iterator();
+            this.chunks = new ArrayList<>(grouped.keySet()).iterator();
+        }
+
+        /**
+         * Runs the callback
+         */
+        private void finish() {
+            if (done != null) {
+                done.run();
+            }
+        }
+    }
+
+    /**
+     * Blocks in one 16x16x16 section of a chunk
+     */
+    private static class Section {
+        private final int chunkX;
+        private final int sectionY;
+        private final int chunkZ;
+        private short[] positions = new short[64];
+        private int[] ids = new int[64];
+        private int count;
+
+        private Section(int chunkX, int sectionY, int chunkZ) {
+            this.chunkX = chunkX;
+            this.sectionY = sectionY;
+            this.chunkZ = chunkZ;
+        }
+
+        private void add(int position, int id) {
+            if (count == positions.length) {
+                int size = Math.min(count * 2, 4096);
+                short[] p = new short[size];
+                int[] d = new int[size];
+                System.arraycopy(positions, 0, p, 0, count);
+                System.arraycopy(ids, 0, d, 0, count);
+                positions = p;
+                ids = d;
+            }
+            positions[count] = (short) position;
+            ids[count++] = id;
+        }
+
+        private void paste(Job job) {
+            if (job.biome != null) {
+                for (int i = 0; i < count; i++) {
+                    int x = (chunkX << 4) + (positions[i] & 15);
+                    int z = (chunkZ << 4) + ((positions[i] >> 4) & 15);
+                    if (job.columns.add(((long) x << 32) | (z & 0xFFFFFFFFL))) {
+                        job.world.setBiome(x, z, job.biome);
+                    }
+                }
+            }
+            job.nms.setBlocks(job.world.getChunkAt(chunkX, chunkZ), sectionY, positions, ids, count);
+        }
+    }
+}
@@ -16,7 +16,6 @@ import org.bukkit.entity.Player;
 import org.bukkit.inventory.ItemStack;
 
 import java.io.File;
-import java.io.FilenameFilter;
 import java.io.IOException;
 import java.lang.reflect.InvocationTargetException;
 import java.nio.charset.Charset;
@@ -402,45 +401,6 @@ public class Util {
         Files.write(path, content.getBytes(charset));
     }
 
-    /**
-     * Changes a setting in all player files in the player folder. If the setting does not exist, no change is made
-     * This is not a true YAML change, if the setting name exists multiple times in the file, all lines will be changed.
-     * The setting must include any spaces at the front if required
-     *
-     * @param playerFolder
-     * @param setting - name of the YAML setting, e.g., locale
-     * @param newSettingValue - the new value for this setting
-     * @throws IOException
-     */
-    public static void setPlayerYamlConfig(File playerFolder, String setting, String newSettingValue) throws IOException {
-        FilenameFilter ymlFilter = new FilenameFilter() {
-            @Override
-            public boolean accept(File dir, String name) {
-                String lowercaseName = name.toLowerCase();
-                if (lowercaseName.endsWith(".yml")) {
-                    return true;
-                } else {
-                    return false;
-                }
-            }
-        };
-        for (File file : playerFolder.listFiles(ymlFilter)) {
-            Path path = Paths.get(file.getAbsolutePath());
-            Charset charset = StandardCharsets.UTF_8;
-
-            List<String> fileContent = new ArrayList<>(Files.readAllLines(path, charset));
-
-            for (int i = 0; i < fileContent.size(); i++) {
-                if (fileContent.get(i).startsWith(setting)) {
-                    fileContent.set(i, setting + ": " + newSettingValue);
-                    break;
-                }
-            }
-
-            Files.write(path, fileContent, charset);
-        }
-    }
-
     /**
      * Display message to player in action bar (1.11+ or chat)
      *